@@ -44,6 +44,21 @@ public class CacheFactory {
     public static <K,V> LoadingCache<K,V> createLocalLoadingCache(long size, Cache.EXPIRE_POLICY expirePolicy, long ttl, Function<K,V> loader) {
         return new GuavaLoadingCache<>(size, expirePolicy, ttl, loader);
     }
+
+    /**
+     * 
+     * @param <K> the type of the cache keys
+     * @param <V> the type of the cached values
+     * @param size the size of the cache
+     * @param expirePolicy specifies how and when each entry should be automatically removed from the cache
+     * @param ttl Time To Live in milliseconds
+     * @param refreshAfter milliseconds after the last write when a read triggers the asynchronous reload of the entry, returning the current value
+     * @param loader the cache loader used to obtain new values
+     * @return the cache
+    */
+    public static <K,V> LoadingCache<K,V> createLocalLoadingCache(long size, Cache.EXPIRE_POLICY expirePolicy, long ttl, long refreshAfter, Function<K,V> loader) {
+        return new GuavaLoadingCache<>(size, expirePolicy, ttl, refreshAfter, loader);
+    }
     
     /**
      * 
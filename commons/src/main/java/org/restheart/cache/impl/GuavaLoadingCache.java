@@ -22,8 +22,12 @@ package org.restheart.cache.impl;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
@@ -37,6 +41,31 @@ import java.util.function.Function;
 public class GuavaLoadingCache<K, V> implements org.restheart.cache.LoadingCache<K, V> {
     private final LoadingCache<K, Optional<V>> wrapped;
 
+    private static final int REFRESHER_THREADS
+            = Runtime.getRuntime().availableProcessors();
+
+    private static final int REFRESHER_QUEUE_SIZE = 1_000;
+
+    // bounded: when the queue is full the reload is rejected and the current
+    // value is kept, the entry is refreshed again on a later read
+    private static final Executor REFRESHER = refresher();
+
+    private static ThreadPoolExecutor refresher() {
+        var executor = new ThreadPoolExecutor(
+                REFRESHER_THREADS,
+                REFRESHER_THREADS,
+                60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(REFRESHER_QUEUE_SIZE),
+                new ThreadFactoryBuilder()
+                        .setDaemon(true)
+                        .setNameFormat("cache-refresher-%d")
+                        .build());
+
+        executor.allowCoreThreadTimeOut(true);
+
+        return executor;
+    }
+
     public GuavaLoadingCache(long size, EXPIRE_POLICY expirePolicy, long ttl, Function<K, V> loader) {
         CacheBuilder builder = CacheBuilder.newBuilder();
 
@@ -56,6 +85,40 @@ public class GuavaLoadingCache<K, V> implements org.restheart.cache.LoadingCache
         });
     }
 
+    /**
+     * creates a cache whose entries, when read after refreshAfter
+     * milliseconds from the last write, are reloaded asynchronously while
+     * the current value is returned
+     *
+     * @param size
+     * @param expirePolicy
+     * @param ttl
+     * @param refreshAfter
+     * @param loader
+     */
+    public GuavaLoadingCache(long size, EXPIRE_POLICY expirePolicy, long ttl, long refreshAfter, Function<K, V> loader) {
+        CacheBuilder builder = CacheBuilder.newBuilder();
+
+        builder.maximumSize(size);
+
+        if (ttl > 0 && expirePolicy == EXPIRE_POLICY.AFTER_WRITE) {
+            builder.expireAfterWrite(ttl, TimeUnit.MILLISECONDS);
+        } else if (ttl > 0 && expirePolicy == EXPIRE_POLICY.AFTER_READ) {
+            builder.expireAfterAccess(ttl, TimeUnit.MILLISECONDS);
+        }
+
+        if (refreshAfter > 0) {
+            builder.refreshAfterWrite(refreshAfter, TimeUnit.MILLISECONDS);
+        }
+
+        wrapped = builder.build(CacheLoader.asyncReloading(new CacheLoader<K, Optional<V>>() {
+            @Override
+            public Optional<V> load(K key) throws Exception {
+                return Optional.ofNullable(loader.apply(key));
+            }
+        }, REFRESHER));
+    }
+
     @Override
     public Optional<V> get(K key) {
         return wrapped.getIfPresent(key);
@@ -21,6 +21,8 @@ package org.restheart.exchange;
 
 import io.undertow.connector.PooledByteBuffer;
 import java.io.IOException;
+import org.restheart.utils.BuffersUtils;
+import org.restheart.utils.PooledBuffersView;
 
 /**
  *
@@ -50,6 +52,17 @@ public interface BufferedExchange<T> {
 
     public PooledByteBuffer[] getBuffer();
 
+    /**
+     * gets a read-only view over the buffered content that allows to read it
+     * as InputStream, Reader or ByteBuffer without copying it
+     *
+     * @return the view of the buffered content
+     * @throws IOException if the content exceeds MAX_CONTENT_SIZE
+     */
+    public default PooledBuffersView getBufferView() throws IOException {
+        return BuffersUtils.view(getBuffer());
+    }
+
     public void setBuffer(PooledByteBuffer[] raw);
 
     public boolean isContentAvailable();
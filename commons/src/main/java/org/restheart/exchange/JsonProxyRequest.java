@@ -64,8 +64,11 @@ public class JsonProxyRequest extends ProxyRequest<JsonElement> {
             return JsonNull.INSTANCE;
         } else {
             try {
-                return JsonParser.parseString(BuffersUtils.toString(getBuffer(),
-                        StandardCharsets.UTF_8));
+                // parse directly from the pooled buffers
+                try (var reader = getBufferView()
+                        .reader(StandardCharsets.UTF_8)) {
+                    return JsonParser.parseReader(reader);
+                }
             } catch (JsonParseException ex) {
                 // dump bufferd content
                 BuffersUtils.dump("Error parsing content", getBuffer());
@@ -68,11 +68,11 @@ public class JsonProxyResponse extends ProxyResponse<JsonElement> {
             return JsonNull.INSTANCE;
         } else {
             try {
-                String rawContentAsString = BuffersUtils.toString(
-                        getBuffer(),
-                        StandardCharsets.UTF_8);
-
-                return JsonParser.parseString(rawContentAsString);
+                // parse directly from the pooled buffers
+                try (var reader = getBufferView()
+                        .reader(StandardCharsets.UTF_8)) {
+                    return JsonParser.parseReader(reader);
+                }
             } catch (JsonParseException ex) {
                 throw new IOException("Error parsing json", ex);
             }
@@ -24,12 +24,16 @@ import io.undertow.server.HttpServerExchange;
 import io.undertow.util.HeaderValues;
 import io.undertow.util.Headers;
 import io.undertow.util.PathTemplateMatch;
+import java.io.InputStream;
 import java.lang.reflect.Type;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Deque;
+import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 import org.bson.BsonArray;
@@ -71,6 +75,7 @@ public class MongoRequest extends BsonRequest {
     private BsonDocument collectionProps;
 
     private Path filePath;
+    private InputStream fileInputStream;
 
     private int page = 1;
     private int pagesize = 100;
@@ -79,6 +84,7 @@ public class MongoRequest extends BsonRequest {
     private WRITE_MODE writeMode = WRITE_MODE.UPSERT;
     private EAGER_CURSOR_ALLOCATION_POLICY cursorAllocationPolicy;
     private Deque<String> filter = null;
+    private List<BsonDocument> filterDocuments = null;
     private BsonDocument aggregationVars = null; // aggregation vars
     private Deque<String> keys = null;
     private Deque<String> sortBy = null;
@@ -817,6 +823,30 @@ public class MongoRequest extends BsonRequest {
         this.filter = filter;
     }
 
+    /**
+     * Adds a filter as a BsonDocument; it is combined in $and with the filter
+     * query parameters by getFiltersDocument() without being parsed. Used to
+     * add filters programmatically, e.g. by the ACL
+     *
+     * @param filter the filter to add
+     */
+    public void addFilter(BsonDocument filter) {
+        if (this.filterDocuments == null) {
+            this.filterDocuments = new ArrayList<>();
+        }
+
+        this.filterDocuments.add(filter);
+    }
+
+    /**
+     * @return the filters added with addFilter(BsonDocument)
+     */
+    public List<BsonDocument> getFilterDocuments() {
+        return filterDocuments == null
+                ? Collections.emptyList()
+                : Collections.unmodifiableList(filterDocuments);
+    }
+
     /**
      * @return the hint
      */
@@ -833,25 +863,33 @@ public class MongoRequest extends BsonRequest {
 
     /**
      *
-     * @return the $and composed filter qparam values
+     * @return the $and composed filter qparam values and filters added with
+     * addFilter(BsonDocument)
      */
     public BsonDocument getFiltersDocument() throws JsonParseException {
         final BsonDocument filterQuery = new BsonDocument();
 
-        if (filter != null) {
-            if (filter.size() > 1) {
-                BsonArray _filters = new BsonArray();
+        var qparams = filter == null ? 0 : filter.size();
+        var docs = filterDocuments == null ? 0 : filterDocuments.size();
+
+        if (qparams + docs > 1) {
+            BsonArray _filters = new BsonArray();
 
+            if (filter != null) {
                 filter.stream().forEach((String f) -> {
                     _filters.add(BsonDocument.parse(f));
                 });
+            }
 
-                filterQuery.put("$and", _filters);
-            } else if (filter.size() == 1) {
-                filterQuery.putAll(BsonDocument.parse(filter.getFirst()));  // this can throw JsonParseException for invalid filter parameters
-            } else {
-                return filterQuery;
+            if (filterDocuments != null) {
+                _filters.addAll(filterDocuments);
             }
+
+            filterQuery.put("$and", _filters);
+        } else if (qparams == 1) {
+            filterQuery.putAll(BsonDocument.parse(filter.getFirst()));  // this can throw JsonParseException for invalid filter parameters
+        } else if (docs == 1) {
+            filterQuery.putAll(filterDocuments.get(0));
         }
 
         return filterQuery;
@@ -1130,6 +1168,21 @@ public class MongoRequest extends BsonRequest {
         this.filePath = filePath;
     }
 
+    /**
+     * @return the stream of the file being uploaded, read from the request
+     * content, or null if the file has been saved to filePath
+     */
+    public InputStream getFileInputStream() {
+        return fileInputStream;
+    }
+
+    /**
+     * @param fileInputStream the stream of the file being uploaded
+     */
+    public void setFileInputStream(InputStream fileInputStream) {
+        this.fileInputStream = fileInputStream;
+    }
+
     /**
      * @return keys
      */
@@ -37,6 +37,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.stream.Stream;
 import org.bson.BsonArray;
 import org.bson.BsonDocument;
 import org.bson.BsonInt32;
@@ -68,6 +69,8 @@ public class MongoResponse extends BsonResponse {
 
     private long count = -1;
 
+    private Stream<BsonDocument> contentStream = null;
+
     protected MongoResponse(HttpServerExchange exchange) {
         super(exchange);
     }
@@ -88,9 +91,89 @@ public class MongoResponse extends BsonResponse {
         return _TYPE;
     }
 
+    /**
+     * If the content has been set as a stream via setContentStream() and not
+     * yet sent, it is read into a BsonArray that becomes the content.
+     *
+     * @return the content
+     */
+    @Override
+    public synchronized BsonValue getContent() {
+        if (this.contentStream != null) {
+            var data = new BsonArray();
+
+            try (var _contentStream = this.contentStream) {
+                this.contentStream = null;
+                _contentStream.forEachOrdered(data::add);
+            }
+
+            this.content = data;
+        }
+
+        return this.content;
+    }
+
+    /**
+     * Setting the content discards the content stream, if any.
+     *
+     * @param content
+     */
+    @Override
+    public synchronized void setContent(BsonValue content) {
+        discardContentStream();
+        this.content = content;
+    }
+
+    /**
+     * Sets the content as a lazy stream of documents, e.g. backed by a db
+     * cursor. The documents are read only when sent to the client, unless
+     * getContent() is invoked, in which case the stream is read into a
+     * BsonArray that becomes the content.
+     *
+     * The stream is closed after being consumed or when discarded. Note that
+     * RESPONSE_ASYNC interceptors run concurrently with the response sender and
+     * get null content if the stream has been already sent.
+     *
+     * @param contentStream the stream of documents that makes up the content
+     */
+    public synchronized void setContentStream(Stream<BsonDocument> contentStream) {
+        discardContentStream();
+        this.content = null;
+        this.contentStream = contentStream;
+    }
+
+    /**
+     * @return true if the content is a stream that has not been read yet
+     */
+    public synchronized boolean isContentStreamed() {
+        return this.contentStream != null;
+    }
+
+    /**
+     * Removes the content stream from the response, without closing it, so
+     * that the caller takes care of consuming and closing it. Use it also to
+     * transform the documents without reading them, e.g. with Stream.map(),
+     * setting back the result with setContentStream().
+     *
+     * @return the content stream or null
+     */
+    public synchronized Stream<BsonDocument> detachContentStream() {
+        var ret = this.contentStream;
+        this.contentStream = null;
+        return ret;
+    }
+
+    private void discardContentStream() {
+        if (this.contentStream != null) {
+            this.contentStream.close();
+            this.contentStream = null;
+        }
+    }
+
     @Override
     public String readContent() {
         var request = MongoRequest.of(wrapped);
+        var content = getContent();
         BsonValue tosend;
 
         if (!request.isGet() && (content == null || content.isDocument())) {
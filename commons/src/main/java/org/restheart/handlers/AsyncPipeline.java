@@ -0,0 +1,156 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-commons
+ * %%
+ * Copyright (C) 2019 - 2020 SoftInstigate
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.handlers;
+
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.AttachmentKey;
+import io.undertow.util.SameThreadExecutor;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import org.restheart.exchange.ByteArrayProxyResponse;
+import org.restheart.exchange.Exchange;
+import org.restheart.utils.HttpStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+/**
+ * Allows a handler of the pipeline to suspend the request processing while
+ * waiting for a non-blocking operation, releasing the worker thread, and to
+ * resume it from the thread that completes the operation.
+ *
+ * When a handler suspends the exchange, the PipelinedWrappingHandlers
+ * enclosing it register their remaining part of the pipeline as
+ * continuations while the stack unwinds; resume() executes the handler's
+ * continuation and then, in order, the registered ones on a worker thread.
+ *
+ * Only handlers that invoke the next handler as their last action (as all
+ * PipelinedHandlers do) can be on the stack of a suspending handler.
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class AsyncPipeline {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncPipeline.class);
+
+    private static final AttachmentKey<State> STATE_KEY = AttachmentKey.create(State.class);
+
+    private AsyncPipeline() {
+    }
+
+    /**
+     * Suspends the processing of the exchange. The asyncOperation is started
+     * only after the handlers' stack has unwound, so that it can safely
+     * resume the exchange even if it completes immediately.
+     *
+     * @param exchange
+     * @param asyncOperation starts the non-blocking operation that must
+     * eventually invoke resume()
+     */
+    public static void suspend(HttpServerExchange exchange, Runnable asyncOperation) {
+        state(exchange).suspended = true;
+        exchange.dispatch(SameThreadExecutor.INSTANCE, asyncOperation);
+    }
+
+    /**
+     *
+     * @param exchange
+     * @return true if the processing of the exchange has been suspended
+     */
+    public static boolean isSuspended(HttpServerExchange exchange) {
+        var state = exchange.getAttachment(STATE_KEY);
+        return state != null && state.suspended;
+    }
+
+    /**
+     * registers the handler to be executed, after the continuations already
+     * registered, when the suspended exchange is resumed
+     *
+     * @param exchange
+     * @param continuation
+     */
+    public static void addContinuation(HttpServerExchange exchange, HttpHandler continuation) {
+        state(exchange).continuations.addLast(continuation);
+    }
+
+    /**
+     * Resumes the processing of a suspended exchange on a worker thread,
+     * executing the continuation and then the ones registered by the
+     * enclosing handlers.
+     *
+     * @param exchange
+     * @param continuation
+     */
+    public static void resume(HttpServerExchange exchange, HttpHandler continuation) {
+        exchange.dispatch(exchange.getConnection().getWorker(), ex -> {
+            // MDC context is bound to the thread, restore it
+            var mdcCtx = ByteArrayProxyResponse.of(ex).getMDCContext();
+            if (mdcCtx != null) {
+                MDC.setContextMap(mdcCtx);
+            }
+
+            try {
+                var state = state(ex);
+                state.suspended = false;
+
+                var pending = new ArrayDeque<>(state.continuations);
+                state.continuations.clear();
+                pending.addFirst(continuation);
+
+                while (!pending.isEmpty()) {
+                    var next = pending.pollFirst();
+
+                    try {
+                        next.handleRequest(ex);
+                    } catch (Throwable t) {
+                        LOGGER.error("Error handling the request", t);
+                        Exchange.setInError(ex);
+                        ex.setStatusCode(HttpStatus.SC_INTERNAL_SERVER_ERROR);
+                    }
+
+                    if (state.suspended) {
+                        // suspended again, the continuations of the enclosing
+                        // handlers follow the newly registered ones
+                        state.continuations.addAll(pending);
+                        return;
+                    }
+                }
+            } finally {
+                MDC.clear();
+            }
+        });
+    }
+
+    private static State state(HttpServerExchange exchange) {
+        var state = exchange.getAttachment(STATE_KEY);
+
+        if (state == null) {
+            state = new State();
+            exchange.putAttachment(STATE_KEY, state);
+        }
+
+        return state;
+    }
+
+    private static class State {
+        boolean suspended = false;
+        final Deque<HttpHandler> continuations = new ArrayDeque<>();
+    }
+}
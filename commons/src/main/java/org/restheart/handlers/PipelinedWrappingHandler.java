@@ -120,7 +120,15 @@ public class PipelinedWrappingHandler extends PipelinedHandler {
         } else {
             wrapped.handleRequest(exchange);
 
-            if (!exchange.isResponseComplete()) {
+            if (AsyncPipeline.isSuspended(exchange)) {
+                // the wrapped handler is waiting for an async operation
+                // the rest of the pipeline is executed when it resumes
+                AsyncPipeline.addContinuation(exchange, ex -> {
+                    if (!ex.isResponseComplete()) {
+                        next(ex);
+                    }
+                });
+            } else if (!exchange.isResponseComplete()) {
                 next(exchange);
             }
         }
@@ -21,6 +21,7 @@ package org.restheart.plugins;
 
 import io.undertow.predicate.Predicate;
 import io.undertow.server.handlers.PathHandler;
+import java.util.List;
 import java.util.Set;
 import org.restheart.ConfigurationException;
 import org.restheart.exchange.PipelineInfo;
@@ -75,9 +76,43 @@ public interface PluginsRegistry {
     @SuppressWarnings("rawtypes")
     public Set<PluginRecord<Service>> getServices();
 
+    /**
+     *
+     * @param name the name of the service
+     * @return the service or null if no service with the given name is
+     * registered
+     */
+    @SuppressWarnings("rawtypes")
+    public default PluginRecord<Service> getService(String name) {
+        return getServices().stream()
+                .filter(srv -> srv.getName().equals(name))
+                .findFirst()
+                .orElse(null);
+    }
+
     @SuppressWarnings("rawtypes")
     public Set<PluginRecord<Interceptor>> getInterceptors();
 
+    /**
+     * Gets the enabled interceptors that can intercept a request at the given
+     * intercept point, in execution order.
+     *
+     * An interceptor can intercept requests handled by a Service when its
+     * request and response types are equal to the ones declared by the
+     * Service and requests handled by a Proxy when its request and response
+     * are ByteArrayProxyRequest and ByteArrayProxyResponse.
+     *
+     * The lists are computed once and not at every request; the caller
+     * only needs to check Interceptor.resolve()
+     *
+     * @param srv the service handling the request, null for proxied requests
+     * @param interceptPoint
+     * @return the interceptors candidate to intercept the request
+     */
+    @SuppressWarnings("rawtypes")
+    public List<Interceptor> getInterceptors(Service srv,
+            InterceptPoint interceptPoint);
+
     /**
      * global security predicates must all resolve to true to allow the request
      *
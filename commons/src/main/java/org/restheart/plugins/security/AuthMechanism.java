@@ -22,6 +22,7 @@ package org.restheart.plugins.security;
 import io.undertow.security.api.AuthenticationMechanism;
 import io.undertow.security.api.SecurityContext;
 import io.undertow.server.HttpServerExchange;
+import java.util.concurrent.CompletionStage;
 import org.restheart.plugins.ConfigurablePlugin;
 import org.restheart.utils.PluginUtils;
 
@@ -39,6 +40,20 @@ public interface AuthMechanism extends AuthenticationMechanism, ConfigurablePlug
     public ChallengeResult sendChallenge(final HttpServerExchange exchange,
             final SecurityContext securityContext);
 
+    /**
+     * Invoked before authenticate(), allows the mechanism to start the
+     * non-blocking operations needed to verify the credentials of the
+     * request. Until the returned stage completes, the processing of the
+     * request is suspended and the worker thread released.
+     *
+     * @param exchange
+     * @return the stage that completes when authenticate() can verify the
+     * credentials without blocking, or null if there is nothing to wait for
+     */
+    default CompletionStage<?> preAuthenticate(final HttpServerExchange exchange) {
+        return null;
+    }
+
     default String getMechanismName() {
         return PluginUtils.name(this);
     }
@@ -40,8 +40,8 @@ public class BuffersUtils {
 
     /**
      * @param srcs
-     * @return
-     * @throws IOException
+     * @return a ByteBuffer sized to the content, null if srcs is null
+     * @throws IOException if the content exceeds MAX_CONTENT_SIZE
      */
     public static ByteBuffer toByteBuffer(final PooledByteBuffer[] srcs)
             throws IOException {
@@ -49,46 +49,43 @@ public class BuffersUtils {
             return null;
         }
 
-        ByteBuffer dst = ByteBuffer.allocate(MAX_CONTENT_SIZE);
-
-        for (int i = 0; i < srcs.length; i++) {
-            PooledByteBuffer src = srcs[i];
-            if (src != null) {
-                final ByteBuffer srcBuffer = src.getBuffer();
-
-                if (srcBuffer.remaining() > dst.remaining()) {
-                    LOGGER.error("Request content exceeeded {} bytes limit",
-                            MAX_CONTENT_SIZE);
-                    throw new IOException("Request content exceeeded "
-                            + MAX_CONTENT_SIZE + " bytes limit");
-                }
-
-                if (srcBuffer.hasRemaining()) {
-                    Buffers.copy(dst, srcBuffer);
-
-                    // very important, I lost a day for this!
-                    srcBuffer.flip();
-                }
-            }
-        }
-
-        return dst.flip();
+        return ByteBuffer.wrap(toByteArray(srcs));
     }
 
+    /**
+     * @param srcs
+     * @return a copy of the content sized to it, null if srcs is null
+     * @throws IOException if the content exceeds MAX_CONTENT_SIZE
+     */
     public static byte[] toByteArray(final PooledByteBuffer[] srcs)
             throws IOException {
-        ByteBuffer content = toByteBuffer(srcs);
+        var view = view(srcs);
 
-        byte[] ret = new byte[content.limit()];
+        return view == null ? null : view.toByteArray();
+    }
 
-        content.get(ret);
+    public static String toString(final PooledByteBuffer[] srcs, Charset cs)
+            throws IOException {
+        var view = view(srcs);
 
-        return ret;
+        return view == null ? null : view.toString(cs);
     }
 
-    public static String toString(final PooledByteBuffer[] srcs, Charset cs)
+    /**
+     * @param srcs
+     * @return a read-only view over the content of the pooled buffers that
+     * does not copy it, null if srcs is null
+     * @throws IOException if the content exceeds MAX_CONTENT_SIZE
+     */
+    public static PooledBuffersView view(final PooledByteBuffer[] srcs)
             throws IOException {
-        return new String(toByteArray(srcs), cs);
+        try {
+            return PooledBuffersView.of(srcs);
+        } catch (IOException ioe) {
+            LOGGER.error("Request content exceeeded {} bytes limit",
+                    MAX_CONTENT_SIZE);
+            throw ioe;
+        }
     }
 
     public static String toString(final byte[] src, Charset cs)
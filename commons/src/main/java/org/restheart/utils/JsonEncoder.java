@@ -0,0 +1,819 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-commons
+ * %%
+ * Copyright (C) 2019 - 2020 SoftInstigate
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonDbPointer;
+import org.bson.BsonJavaScriptWithScope;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonValue;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonValueCodec;
+import org.bson.codecs.DecoderContext;
+import org.bson.io.ByteBufferBsonInput;
+import org.bson.json.JsonMode;
+import org.bson.json.JsonWriterSettings;
+import org.bson.json.StrictJsonWriter;
+
+/**
+ * Single pass BSON to JSON encoder.
+ *
+ * It produces the same compact json as BsonDocument.toJson() followed by
+ * JsonUtils.minify() but writes it directly to the destination (a String, an
+ * OutputStream or a ByteBuffer, the latters UTF-8 encoded) without building
+ * the intermediate indented representation and without the regular
+ * expressions needed to unwrap values other than documents.
+ *
+ * Values are formatted by the converters of the driver JsonWriterSettings,
+ * created once per JsonMode, so the output of all modes (relaxed, extended,
+ * strict and shell) is the one of the driver.
+ *
+ * RawBsonDocuments, e.g. read by the driver with RawBsonDocument as document
+ * class, are encoded straight from their bytes.
+ *
+ * Instances are not thread safe; the static methods are.
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class JsonEncoder {
+    private static final JsonWriterSettings DEFAULT_SETTINGS = JsonWriterSettings
+            .builder()
+            .indent(false)
+            .dateTimeConverter((Long t, StrictJsonWriter writer) -> {
+                writer.writeStartObject();
+                writer.writeNumber("$date", Long.toString(t));
+                writer.writeEndObject();
+            })
+            .build();
+
+    private static final Map<JsonMode, JsonWriterSettings> SETTINGS
+            = new EnumMap<>(JsonMode.class);
+
+    static {
+        for (var mode : JsonMode.values()) {
+            SETTINGS.put(mode, JsonWriterSettings.builder()
+                    .outputMode(mode)
+                    .indent(false)
+                    .build());
+        }
+    }
+
+    private static final int STREAM_BUFFER_SIZE = 8 * 1024;
+
+    private static final BsonValueCodec VALUE_CODEC = new BsonValueCodec();
+    private static final DecoderContext DECODER_CONTEXT = DecoderContext.builder().build();
+
+    private final JsonWriterSettings settings;
+    private final Sink sink;
+    private final CompactWriter writer;
+
+    private JsonEncoder(JsonMode mode, Sink sink) {
+        this.settings = settings(mode);
+        this.sink = sink;
+        this.writer = new CompactWriter(sink);
+    }
+
+    /**
+     * @param mode the json mode, null for the default representation (relaxed
+     * with dates as {"$date": <millis> })
+     * @return the cached JsonWriterSettings used to format values in mode
+     */
+    public static JsonWriterSettings settings(JsonMode mode) {
+        return mode == null ? DEFAULT_SETTINGS : SETTINGS.get(mode);
+    }
+
+    /**
+     * @param value
+     * @param mode the json mode, null for the default representation
+     * @return the compact json representation of value
+     */
+    public static String toJson(BsonValue value, JsonMode mode) {
+        if (value == null) {
+            return null;
+        }
+
+        var sb = new StringBuilder(256);
+
+        new JsonEncoder(mode, new StringBuilderSink(sb)).encode(value);
+
+        return sb.toString();
+    }
+
+    /**
+     * writes the compact json representation of value to out, UTF-8 encoded.
+     * out is neither flushed nor closed.
+     *
+     * @param value
+     * @param mode the json mode, null for the default representation
+     * @param out
+     * @throws IOException
+     */
+    public static void toJson(BsonValue value, JsonMode mode, OutputStream out)
+            throws IOException {
+        var encoder = of(out, mode);
+
+        try {
+            encoder.encode(value);
+        } catch (UncheckedIOException uioe) {
+            throw uioe.getCause();
+        }
+
+        encoder.flush();
+    }
+
+    /**
+     * writes the compact json representation of value to buffer, UTF-8
+     * encoded, starting from its current position.
+     *
+     * @param value
+     * @param mode the json mode, null for the default representation
+     * @param buffer
+     * @throws java.nio.BufferOverflowException if buffer has not enough
+     * remaining space
+     */
+    public static void toJson(BsonValue value, JsonMode mode, ByteBuffer buffer) {
+        var sink = new ByteBufferSink(buffer);
+
+        new JsonEncoder(mode, sink).encode(value);
+
+        sink.flushSurrogate();
+    }
+
+    /**
+     * Creates an encoder that writes to out through an internal buffer; useful
+     * to write several values (e.g. the elements of a json array read from a
+     * cursor) reusing the same buffer. Call flush() when done.
+     *
+     * @param out
+     * @param mode the json mode, null for the default representation
+     * @return the encoder
+     */
+    public static JsonEncoder of(OutputStream out, JsonMode mode) {
+        return new JsonEncoder(mode, new OutputStreamSink(out));
+    }
+
+    /**
+     * writes the compact json representation of value
+     *
+     * @param value
+     * @return this encoder
+     * @throws UncheckedIOException if the underlying stream fails
+     */
+    public JsonEncoder encode(BsonValue value) {
+        writer.reset();
+        encodeValue(value);
+        return this;
+    }
+
+    /**
+     * writes a character as is, e.g. the separators of a json array whose
+     * elements are written with encode()
+     *
+     * @param c
+     * @return this encoder
+     */
+    public JsonEncoder append(char c) {
+        sink.append(c);
+        return this;
+    }
+
+    /**
+     * writes buffered data to the underlying stream, if any
+     *
+     * @throws IOException
+     */
+    public void flush() throws IOException {
+        try {
+            sink.flush();
+        } catch (UncheckedIOException uioe) {
+            throw uioe.getCause();
+        }
+    }
+
+    private void encodeValue(BsonValue value) {
+        switch (value.getBsonType()) {
+            case DOCUMENT:
+                if (value instanceof RawBsonDocument) {
+                    encodeRaw((RawBsonDocument) value);
+                    break;
+                }
+
+                writer.writeStartObject();
+                for (var entry : value.asDocument().entrySet()) {
+                    writer.writeName(entry.getKey());
+                    encodeValue(entry.getValue());
+                }
+                writer.writeEndObject();
+                break;
+            case ARRAY:
+                writer.writeStartArray();
+                for (var element : value.asArray()) {
+                    encodeValue(element);
+                }
+                writer.writeEndArray();
+                break;
+            case DOUBLE:
+                settings.getDoubleConverter()
+                        .convert(value.asDouble().getValue(), writer);
+                break;
+            case STRING:
+                settings.getStringConverter()
+                        .convert(value.asString().getValue(), writer);
+                break;
+            case BINARY:
+                settings.getBinaryConverter()
+                        .convert(value.asBinary(), writer);
+                break;
+            case UNDEFINED:
+                settings.getUndefinedConverter().convert(null, writer);
+                break;
+            case OBJECT_ID:
+                settings.getObjectIdConverter()
+                        .convert(value.asObjectId().getValue(), writer);
+                break;
+            case BOOLEAN:
+                settings.getBooleanConverter()
+                        .convert(value.asBoolean().getValue(), writer);
+                break;
+            case DATE_TIME:
+                settings.getDateTimeConverter()
+                        .convert(value.asDateTime().getValue(), writer);
+                break;
+            case NULL:
+                settings.getNullConverter().convert(null, writer);
+                break;
+            case REGULAR_EXPRESSION:
+                settings.getRegularExpressionConverter()
+                        .convert(value.asRegularExpression(), writer);
+                break;
+            case DB_POINTER:
+                encodeDbPointer(value.asDBPointer());
+                break;
+            case JAVASCRIPT:
+                settings.getJavaScriptConverter()
+                        .convert(value.asJavaScript().getCode(), writer);
+                break;
+            case SYMBOL:
+                settings.getSymbolConverter()
+                        .convert(value.asSymbol().getSymbol(), writer);
+                break;
+            case JAVASCRIPT_WITH_SCOPE:
+                encodeJavaScriptWithScope(value.asJavaScriptWithScope());
+                break;
+            case INT32:
+                settings.getInt32Converter()
+                        .convert(value.asInt32().getValue(), writer);
+                break;
+            case TIMESTAMP:
+                settings.getTimestampConverter()
+                        .convert(value.asTimestamp(), writer);
+                break;
+            case INT64:
+                settings.getInt64Converter()
+                        .convert(value.asInt64().getValue(), writer);
+                break;
+            case DECIMAL128:
+                settings.getDecimal128Converter()
+                        .convert(value.asDecimal128().getValue(), writer);
+                break;
+            case MIN_KEY:
+                settings.getMinKeyConverter().convert(null, writer);
+                break;
+            case MAX_KEY:
+                settings.getMaxKeyConverter().convert(null, writer);
+                break;
+            default:
+                throw new IllegalArgumentException("unsupported bson type "
+                        + value.getBsonType());
+        }
+    }
+
+    /**
+     * encodes a RawBsonDocument reading its bytes, without decoding it to a
+     * BsonDocument first as RawBsonDocument.entrySet() would do
+     */
+    private void encodeRaw(RawBsonDocument document) {
+        try (var reader = new BsonBinaryReader(new ByteBufferBsonInput(document.getByteBuffer()))) {
+            encodeRawDocument(reader);
+        }
+    }
+
+    private void encodeRawDocument(BsonReader reader) {
+        reader.readStartDocument();
+        writer.writeStartObject();
+
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            writer.writeName(reader.readName());
+            encodeRawValue(reader);
+        }
+
+        reader.readEndDocument();
+        writer.writeEndObject();
+    }
+
+    private void encodeRawValue(BsonReader reader) {
+        switch (reader.getCurrentBsonType()) {
+            case DOCUMENT:
+                encodeRawDocument(reader);
+                break;
+            case ARRAY:
+                reader.readStartArray();
+                writer.writeStartArray();
+
+                while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                    encodeRawValue(reader);
+                }
+
+                reader.readEndArray();
+                writer.writeEndArray();
+                break;
+            default:
+                // scalars, including javascript with scope
+                encodeValue(VALUE_CODEC.decode(reader, DECODER_CONTEXT));
+        }
+    }
+
+    /**
+     * same representation of the driver JsonWriter
+     */
+    private void encodeDbPointer(BsonDbPointer value) {
+        var mode = settings.getOutputMode();
+        var wrapped = mode == JsonMode.EXTENDED || mode == JsonMode.RELAXED;
+
+        writer.writeStartObject();
+
+        if (wrapped) {
+            writer.writeStartObject("$dbPointer");
+        }
+
+        writer.writeString("$ref", value.getNamespace());
+        writer.writeName("$id");
+        writer.writeStartObject();
+        writer.writeString("$oid", value.getId().toHexString());
+        writer.writeEndObject();
+
+        if (wrapped) {
+            writer.writeEndObject();
+        }
+
+        writer.writeEndObject();
+    }
+
+    /**
+     * same representation of the driver JsonWriter
+     */
+    private void encodeJavaScriptWithScope(BsonJavaScriptWithScope value) {
+        writer.writeStartObject();
+        writer.writeString("$code", value.getCode());
+        writer.writeName("$scope");
+        encodeValue(value.getScope());
+        writer.writeEndObject();
+    }
+
+    /**
+     * StrictJsonWriter that writes compact json, i.e. without the spaces
+     * that the driver JsonWriter adds after colons and commas.
+     */
+    private static class CompactWriter implements StrictJsonWriter {
+        private final Sink sink;
+
+        // firsts[depth] is true until the first element of the current
+        // object or array is written
+        private boolean[] firsts = new boolean[16];
+        private int depth = 0;
+        private boolean afterName = false;
+
+        CompactWriter(Sink sink) {
+            this.sink = sink;
+        }
+
+        void reset() {
+            depth = 0;
+            afterName = false;
+        }
+
+        private void beforeValue() {
+            if (afterName) {
+                afterName = false;
+            } else {
+                separate();
+            }
+        }
+
+        private void separate() {
+            if (depth > 0) {
+                if (firsts[depth]) {
+                    firsts[depth] = false;
+                } else {
+                    sink.append(',');
+                }
+            }
+        }
+
+        private void push() {
+            if (++depth == firsts.length) {
+                firsts = Arrays.copyOf(firsts, depth * 2);
+            }
+
+            firsts[depth] = true;
+        }
+
+        @Override
+        public void writeStartObject() {
+            beforeValue();
+            sink.append('{');
+            push();
+        }
+
+        @Override
+        public void writeStartObject(String name) {
+            writeName(name);
+            writeStartObject();
+        }
+
+        @Override
+        public void writeStartArray() {
+            beforeValue();
+            sink.append('[');
+            push();
+        }
+
+        @Override
+        public void writeStartArray(String name) {
+            writeName(name);
+            writeStartArray();
+        }
+
+        @Override
+        public void writeEndObject() {
+            sink.append('}');
+            depth--;
+        }
+
+        @Override
+        public void writeEndArray() {
+            sink.append(']');
+            depth--;
+        }
+
+        @Override
+        public void writeName(String name) {
+            separate();
+            writeQuoted(name);
+            sink.append(':');
+            afterName = true;
+        }
+
+        @Override
+        public void writeBoolean(boolean value) {
+            beforeValue();
+            sink.append(value ? "true" : "false");
+        }
+
+        @Override
+        public void writeBoolean(String name, boolean value) {
+            writeName(name);
+            writeBoolean(value);
+        }
+
+        @Override
+        public void writeNumber(String value) {
+            beforeValue();
+            sink.append(value);
+        }
+
+        @Override
+        public void writeNumber(String name, String value) {
+            writeName(name);
+            writeNumber(value);
+        }
+
+        @Override
+        public void writeString(String value) {
+            beforeValue();
+            writeQuoted(value);
+        }
+
+        @Override
+        public void writeString(String name, String value) {
+            writeName(name);
+            writeString(value);
+        }
+
+        @Override
+        public void writeRaw(String value) {
+            beforeValue();
+            writeCompacted(value);
+        }
+
+        @Override
+        public void writeRaw(String name, String value) {
+            writeName(name);
+            writeRaw(value);
+        }
+
+        @Override
+        public void writeNull() {
+            beforeValue();
+            sink.append("null");
+        }
+
+        @Override
+        public void writeNull(String name) {
+            writeName(name);
+            writeNull();
+        }
+
+        public boolean isTruncated() {
+            return false;
+        }
+
+        /**
+         * escapes the string as the driver JsonWriter does
+         */
+        private void writeQuoted(String str) {
+            sink.append('"');
+
+            for (int i = 0; i < str.length(); i++) {
+                char c = str.charAt(i);
+                switch (c) {
+                    case '"':
+                        sink.append("\\\"");
+                        break;
+                    case '\\':
+                        sink.append("\\\\");
+                        break;
+                    case '\b':
+                        sink.append("\\b");
+                        break;
+                    case '\f':
+                        sink.append("\\f");
+                        break;
+                    case '\n':
+                        sink.append("\\n");
+                        break;
+                    case '\r':
+                        sink.append("\\r");
+                        break;
+                    case '\t':
+                        sink.append("\\t");
+                        break;
+                    default:
+                        if (c >= ' ' && c < 0x7f || isPrintable(c)) {
+                            sink.append(c);
+                        } else {
+                            sink.append("\\u");
+                            sink.append(HEX[(c >> 12) & 0xf]);
+                            sink.append(HEX[(c >> 8) & 0xf]);
+                            sink.append(HEX[(c >> 4) & 0xf]);
+                            sink.append(HEX[c & 0xf]);
+                        }
+                }
+            }
+
+            sink.append('"');
+        }
+
+        private static boolean isPrintable(char c) {
+            switch (Character.getType(c)) {
+                case Character.UPPERCASE_LETTER:
+                case Character.LOWERCASE_LETTER:
+                case Character.TITLECASE_LETTER:
+                case Character.OTHER_LETTER:
+                case Character.DECIMAL_DIGIT_NUMBER:
+                case Character.LETTER_NUMBER:
+                case Character.OTHER_NUMBER:
+                case Character.SPACE_SEPARATOR:
+                case Character.CONNECTOR_PUNCTUATION:
+                case Character.DASH_PUNCTUATION:
+                case Character.START_PUNCTUATION:
+                case Character.END_PUNCTUATION:
+                case Character.INITIAL_QUOTE_PUNCTUATION:
+                case Character.FINAL_QUOTE_PUNCTUATION:
+                case Character.OTHER_PUNCTUATION:
+                case Character.MATH_SYMBOL:
+                case Character.CURRENCY_SYMBOL:
+                case Character.MODIFIER_SYMBOL:
+                case Character.OTHER_SYMBOL:
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        /**
+         * writes raw values (e.g. ISODate("...") in shell mode) removing the
+         * spaces not between two alphanumeric characters, as Minify does;
+         * quoted strings and regular expression literals are written as is
+         */
+        private void writeCompacted(String raw) {
+            if (raw.indexOf(' ') < 0 || raw.startsWith("/")) {
+                sink.append(raw);
+                return;
+            }
+
+            char quote = 0;
+            char prev = 0;
+
+            for (int i = 0; i < raw.length(); i++) {
+                char c = raw.charAt(i);
+
+                if (quote != 0) {
+                    if (c == '\\' && i + 1 < raw.length()) {
+                        sink.append(c);
+                        c = raw.charAt(++i);
+                    } else if (c == quote) {
+                        quote = 0;
+                    }
+                } else if (c == '"' || c == '\'') {
+                    quote = c;
+                } else if (c == ' ') {
+                    if (!isAlphanum(prev)
+                            || i + 1 == raw.length()
+                            || !isAlphanum(raw.charAt(i + 1))) {
+                        continue;
+                    }
+                }
+
+                sink.append(c);
+                prev = c;
+            }
+        }
+
+        private static boolean isAlphanum(char c) {
+            return (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')
+                    || (c >= 'A' && c <= 'Z')
+                    || c == '_' || c == '$' || c == '\\' || c > 126;
+        }
+    }
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * destination of the encoded json
+     */
+    private interface Sink {
+        void append(char c);
+
+        void append(String s);
+
+        default void flush() {
+        }
+    }
+
+    private static class StringBuilderSink implements Sink {
+        private final StringBuilder sb;
+
+        StringBuilderSink(StringBuilder sb) {
+            this.sb = sb;
+        }
+
+        @Override
+        public void append(char c) {
+            sb.append(c);
+        }
+
+        @Override
+        public void append(String s) {
+            sb.append(s);
+        }
+    }
+
+    /**
+     * UTF-8 encoding sink; unpaired surrogates are replaced with '?' as
+     * String.getBytes(UTF_8) does
+     */
+    private static abstract class Utf8Sink implements Sink {
+        private char highSurrogate = 0;
+
+        abstract void put(byte b);
+
+        @Override
+        public void append(String s) {
+            for (int i = 0; i < s.length(); i++) {
+                append(s.charAt(i));
+            }
+        }
+
+        @Override
+        public void append(char c) {
+            if (c < 0x80 && highSurrogate == 0) {
+                put((byte) c);
+                return;
+            }
+
+            if (highSurrogate != 0) {
+                var high = highSurrogate;
+                highSurrogate = 0;
+
+                if (Character.isLowSurrogate(c)) {
+                    int cp = Character.toCodePoint(high, c);
+                    put((byte) (0xf0 | (cp >> 18)));
+                    put((byte) (0x80 | ((cp >> 12) & 0x3f)));
+                    put((byte) (0x80 | ((cp >> 6) & 0x3f)));
+                    put((byte) (0x80 | (cp & 0x3f)));
+                    return;
+                } else {
+                    put((byte) '?');
+                }
+            }
+
+            if (c < 0x80) {
+                put((byte) c);
+            } else if (c < 0x800) {
+                put((byte) (0xc0 | (c >> 6)));
+                put((byte) (0x80 | (c & 0x3f)));
+            } else if (Character.isHighSurrogate(c)) {
+                highSurrogate = c;
+            } else if (Character.isLowSurrogate(c)) {
+                put((byte) '?');
+            } else {
+                put((byte) (0xe0 | (c >> 12)));
+                put((byte) (0x80 | ((c >> 6) & 0x3f)));
+                put((byte) (0x80 | (c & 0x3f)));
+            }
+        }
+
+        void flushSurrogate() {
+            if (highSurrogate != 0) {
+                highSurrogate = 0;
+                put((byte) '?');
+            }
+        }
+    }
+
+    private static class ByteBufferSink extends Utf8Sink {
+        private final ByteBuffer buffer;
+
+        ByteBufferSink(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        void put(byte b) {
+            buffer.put(b);
+        }
+    }
+
+    private static class OutputStreamSink extends Utf8Sink {
+        private final OutputStream out;
+        private final byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+        private int count = 0;
+
+        OutputStreamSink(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        void put(byte b) {
+            if (count == buffer.length) {
+                drain();
+            }
+
+            buffer[count++] = b;
+        }
+
+        private void drain() {
+            try {
+                out.write(buffer, 0, count);
+                count = 0;
+            } catch (IOException ioe) {
+                throw new UncheckedIOException(ioe);
+            }
+        }
+
+        @Override
+        public void flush() {
+            flushSurrogate();
+
+            if (count > 0) {
+                drain();
+            }
+        }
+    }
+}
@@ -42,12 +42,9 @@ import org.bson.codecs.BsonArrayCodec;
 import org.bson.codecs.BsonValueCodecProvider;
 import org.bson.codecs.DecoderContext;
 import org.bson.codecs.configuration.CodecRegistries;
-import org.bson.json.Converter;
 import org.bson.json.JsonMode;
 import org.bson.json.JsonParseException;
 import org.bson.json.JsonReader;
-import org.bson.json.JsonWriterSettings;
-import org.bson.json.StrictJsonWriter;
 import org.bson.types.ObjectId;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -636,53 +633,7 @@ public class JsonUtils {
      * BsonArray
      */
     public static String toJson(BsonValue bson, JsonMode mode) {
-        if (bson == null) {
-            return null;
-        }
-
-        var settings = mode != null
-                ? JsonWriterSettings.builder()
-                        .outputMode(mode)
-                        .indent(false)
-                        .build()
-                : JsonWriterSettings.builder()
-                        .indent(false)
-                        .dateTimeConverter(new Converter<Long>() {
-                            @Override
-                            public void convert(Long t, StrictJsonWriter writer) {
-                                writer.writeRaw("{\"$date\": " + t + " }");
-                            }
-                        })
-                        .build();
-
-        if (bson.isDocument()) {
-            return minify(bson.asDocument().toJson(settings));
-        } else if (bson.isArray()) {
-            BsonArray _array = bson.asArray();
-
-            BsonDocument wrappedArray = new BsonDocument("wrapped", _array);
-
-            String json = wrappedArray.toJson(settings);
-
-            json = json.substring(0, json.length() - 1); // removes closing }
-            json = json.replaceFirst("\\{", "");
-            json = json.replaceFirst("\"wrapped\"", "");
-            json = json.replaceFirst(":", "");
-
-            return minify(json);
-        } else {
-            BsonDocument doc = new BsonDocument("x", bson);
-
-            String ret = doc.toJson(settings);
-
-            ret = ret.replaceFirst("\\{", "");
-            ret = ret.replaceFirst("\"x\"", "");
-            ret = ret.replaceFirst(":", "");
-            int index = ret.lastIndexOf('}');
-            ret = ret.substring(0, index);
-
-            return minify(ret);
-        }
+        return JsonEncoder.toJson(bson, mode);
     }
 
     /**
@@ -20,6 +20,7 @@
 package org.restheart.utils;
 
 import io.undertow.server.HttpServerExchange;
+import io.undertow.util.AttachmentKey;
 import java.lang.reflect.Type;
 import java.util.Map;
 import org.restheart.cache.Cache;
@@ -34,6 +35,7 @@ import org.restheart.plugins.Initializer;
 import org.restheart.plugins.InterceptPoint;
 import org.restheart.plugins.Interceptor;
 import org.restheart.plugins.Plugin;
+import org.restheart.plugins.PluginRecord;
 import org.restheart.plugins.PluginsRegistry;
 import org.restheart.plugins.RegisterPlugin;
 import org.restheart.plugins.Service;
@@ -179,6 +181,10 @@ public class PluginUtils {
         }
     }
 
+    @SuppressWarnings("rawtypes")
+    private static final AttachmentKey<PluginRecord> HANDLING_SERVICE_KEY
+            = AttachmentKey.create(PluginRecord.class);
+
     /**
      *
      * @param registry
@@ -189,22 +195,40 @@ public class PluginUtils {
     @SuppressWarnings("rawtypes")
     public static Service handlingService(PluginsRegistry registry,
             HttpServerExchange exchange) {
+        var srv = handlingServicePluginRecord(registry, exchange);
+
+        return srv == null ? null : srv.getInstance();
+    }
+
+    /**
+     * The service is looked up once per exchange and then cached as an
+     * exchange attachment
+     *
+     * @param registry
+     * @param exchange
+     * @return the PluginRecord of the service handling the exchange or null if
+     * the request is not handled by a service
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public static PluginRecord<Service> handlingServicePluginRecord(
+            PluginsRegistry registry,
+            HttpServerExchange exchange) {
+        var cached = exchange.getAttachment(HANDLING_SERVICE_KEY);
+
+        if (cached != null) {
+            return cached;
+        }
+
         var pi = pipelineInfo(exchange);
 
         if (pi != null && pi.getType() == SERVICE) {
-            var srvName = pi.getName();
-
-            if (srvName != null) {
-                var _s = registry.getServices()
-                        .stream()
-                        .filter(s -> srvName.equals(s.getName()))
-                        .map(s -> s.getInstance())
-                        .findAny();
-
-                if (_s.isPresent()) {
-                    return _s.get();
-                }
+            var srv = registry.getService(pi.getName());
+
+            if (srv != null) {
+                exchange.putAttachment(HANDLING_SERVICE_KEY, srv);
             }
+
+            return srv;
         }
 
         return null;
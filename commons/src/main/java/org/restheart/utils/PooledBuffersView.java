@@ -0,0 +1,237 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-commons
+ * %%
+ * Copyright (C) 2019 - 2020 SoftInstigate
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.utils;
+
+import io.undertow.connector.PooledByteBuffer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import static org.restheart.exchange.Exchange.MAX_CONTENT_SIZE;
+
+/**
+ * Read-only view over the content stored in pooled buffers, e.g. the content
+ * of a proxied request or response (see BufferedExchange.getBuffer())
+ *
+ * The view does not copy the content: it reads it through duplicates of the
+ * pooled buffers, so it does not change their positions and limits. The view
+ * is valid until the content of the pooled buffers is modified (e.g. by
+ * writeContent()) or the buffers are released.
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class PooledBuffersView {
+    private static final PooledBuffersView EMPTY = new PooledBuffersView(
+            new ByteBuffer[0], 0);
+
+    private final ByteBuffer[] buffers;
+    private final int size;
+
+    private PooledBuffersView(ByteBuffer[] buffers, int size) {
+        this.buffers = buffers;
+        this.size = size;
+    }
+
+    /**
+     * @param srcs
+     * @return the view over the content of srcs or null if srcs is null
+     * @throws IOException if the content exceeds MAX_CONTENT_SIZE
+     */
+    public static PooledBuffersView of(PooledByteBuffer[] srcs)
+            throws IOException {
+        if (srcs == null) {
+            return null;
+        }
+
+        var buffers = new ArrayList<ByteBuffer>(srcs.length);
+        int size = 0;
+
+        for (var src : srcs) {
+            if (src != null && src.getBuffer().hasRemaining()) {
+                var buffer = src.getBuffer().asReadOnlyBuffer();
+
+                size += buffer.remaining();
+
+                if (size > MAX_CONTENT_SIZE) {
+                    throw new IOException("Request content exceeeded "
+                            + MAX_CONTENT_SIZE + " bytes limit");
+                }
+
+                buffers.add(buffer);
+            }
+        }
+
+        return size == 0
+                ? EMPTY
+                : new PooledBuffersView(buffers.toArray(new ByteBuffer[buffers.size()]), size);
+    }
+
+    /**
+     * @return the size of the content in bytes
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return true if there is no content
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return an InputStream that reads the content directly from the pooled
+     * buffers
+     */
+    public InputStream inputStream() {
+        return new BuffersInputStream(buffers);
+    }
+
+    /**
+     * @param cs
+     * @return a Reader that decodes the content directly from the pooled
+     * buffers, e.g. to parse it with a streaming parser
+     */
+    public Reader reader(Charset cs) {
+        return new InputStreamReader(inputStream(), cs);
+    }
+
+    /**
+     * When the content is stored in a single buffer, returns a read-only
+     * duplicate of it without copying; otherwise the content is copied in a
+     * buffer sized to it.
+     *
+     * @return a read-only ByteBuffer with the content
+     */
+    public ByteBuffer asByteBuffer() {
+        if (buffers.length == 0) {
+            return ByteBuffer.allocate(0).asReadOnlyBuffer();
+        } else if (buffers.length == 1) {
+            return buffers[0].duplicate();
+        } else {
+            return ByteBuffer.wrap(toByteArray()).asReadOnlyBuffer();
+        }
+    }
+
+    /**
+     * @return a copy of the content
+     */
+    public byte[] toByteArray() {
+        var ret = new byte[size];
+        int pos = 0;
+
+        for (var buffer : buffers) {
+            var b = buffer.duplicate();
+            int len = b.remaining();
+            b.get(ret, pos, len);
+            pos += len;
+        }
+
+        return ret;
+    }
+
+    /**
+     * @param cs
+     * @return the content decoded as a CharSequence
+     */
+    public CharSequence toCharSequence(Charset cs) {
+        if (buffers.length == 1) {
+            return cs.decode(buffers[0].duplicate());
+        } else {
+            return toString(cs);
+        }
+    }
+
+    /**
+     * @param cs
+     * @return the content decoded as a String
+     */
+    public String toString(Charset cs) {
+        return new String(toByteArray(), cs);
+    }
+
+    private static class BuffersInputStream extends InputStream {
+        private final ByteBuffer[] buffers;
+        private int idx = 0;
+        private ByteBuffer current;
+
+        BuffersInputStream(ByteBuffer[] buffers) {
+            this.buffers = buffers;
+            this.current = buffers.length > 0 ? buffers[0].duplicate() : null;
+        }
+
+        private boolean advance() {
+            while (current != null && !current.hasRemaining()) {
+                idx++;
+                current = idx < buffers.length ? buffers[idx].duplicate() : null;
+            }
+
+            return current != null;
+        }
+
+        @Override
+        public int read() {
+            return advance() ? current.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+
+            if (!advance()) {
+                return -1;
+            }
+
+            int n = Math.min(len, current.remaining());
+            current.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public long skip(long n) {
+            long skipped = 0;
+
+            while (skipped < n && advance()) {
+                int s = (int) Math.min(n - skipped, current.remaining());
+                current.position(current.position() + s);
+                skipped += s;
+            }
+
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            int ret = current == null ? 0 : current.remaining();
+
+            for (int i = idx + 1; i < buffers.length; i++) {
+                ret += buffers[i].remaining();
+            }
+
+            return ret;
+        }
+    }
+}
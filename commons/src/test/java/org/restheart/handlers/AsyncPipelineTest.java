@@ -0,0 +1,336 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-commons
+ * %%
+ * Copyright (C) 2019 - 2020 SoftInstigate
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.handlers;
+
+import io.undertow.Undertow;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.handlers.BlockingHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import org.restheart.utils.HttpStatus;
+
+/**
+ * Checks the processing of suspended exchanges on an embedded Undertow
+ * server.
+ *
+ * The test sources of this module replace io.undertow.server.HttpServerExchange
+ * with a mock; the scenarios are executed by an isolated class loader that
+ * loads the classes of Undertow and of this module before the test classes,
+ * so that the server uses the actual HttpServerExchange.
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class AsyncPipelineTest {
+
+    @Test
+    public void testBlockingPipeline() throws Throwable {
+        run("blockingPipeline");
+    }
+
+    @Test
+    public void testSuspendedPipeline() throws Throwable {
+        run("suspendedPipeline");
+    }
+
+    @Test
+    public void testContinuationsOrder() throws Throwable {
+        run("continuationsOrder");
+    }
+
+    @Test
+    public void testSuspendAgain() throws Throwable {
+        run("suspendAgain");
+    }
+
+    @Test
+    public void testErrorOnResume() throws Throwable {
+        run("errorOnResume");
+    }
+
+    /**
+     * executes the scenario with the actual Undertow classes
+     */
+    private static void run(String scenario) throws Throwable {
+        try (var loader = new UndertowFirstClassLoader()) {
+            var scenarios = Class.forName(Scenarios.class.getName(), true, loader);
+
+            try {
+                scenarios.getMethod(scenario).invoke(null);
+            } catch (InvocationTargetException ite) {
+                throw ite.getCause();
+            }
+        }
+    }
+
+    /**
+     * loads the classes of Undertow and of this module, child first, from
+     * the Undertow jar, the main classes and the test classes, in this order
+     */
+    private static class UndertowFirstClassLoader extends URLClassLoader {
+        UndertowFirstClassLoader() {
+            super(new URL[]{
+                location(Undertow.class),
+                location(AsyncPipeline.class),
+                location(AsyncPipelineTest.class)
+            }, AsyncPipelineTest.class.getClassLoader());
+        }
+
+        private static URL location(Class<?> clazz) {
+            return clazz.getProtectionDomain().getCodeSource().getLocation();
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (!name.startsWith("io.undertow.") && !name.startsWith("org.restheart.")) {
+                return super.loadClass(name, resolve);
+            }
+
+            synchronized (getClassLoadingLock(name)) {
+                var clazz = findLoadedClass(name);
+
+                if (clazz == null) {
+                    try {
+                        clazz = findClass(name);
+                    } catch (ClassNotFoundException cnfe) {
+                        clazz = super.loadClass(name, false);
+                    }
+                }
+
+                if (resolve) {
+                    resolveClass(clazz);
+                }
+
+                return clazz;
+            }
+        }
+    }
+
+    /**
+     * the scenarios, executed by UndertowFirstClassLoader
+     */
+    public static class Scenarios {
+        private static final int WORKERS = 2;
+        private static final int REQUESTS = 20;
+        private static final long IO_MILLIS = 200;
+
+        /**
+         * the blocking pipeline serves at most WORKERS concurrent requests
+         */
+        public static void blockingPipeline() throws Exception {
+            var inFlight = new AtomicInteger(0);
+            var maxInFlight = new AtomicInteger(0);
+
+            load(pipeline(exchange -> {
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                Thread.sleep(IO_MILLIS);
+                inFlight.decrementAndGet();
+            }, null), REQUESTS, HttpStatus.SC_OK);
+
+            // each request holds a worker thread while waiting
+            assertTrue(maxInFlight.get() <= WORKERS);
+        }
+
+        /**
+         * all the REQUESTS to the suspending pipeline are suspended at the
+         * same time, that requires the worker threads to be released
+         */
+        public static void suspendedPipeline() throws Exception {
+            var io = Executors.newCachedThreadPool();
+            var allSuspended = new CountDownLatch(REQUESTS);
+            var released = new ConcurrentLinkedQueue<Boolean>();
+
+            try {
+                // the I/O of each request completes only when all requests
+                // are suspended
+                load(pipeline(exchange -> AsyncPipeline.suspend(exchange, () -> {
+                    allSuspended.countDown();
+
+                    io.execute(() -> {
+                        try {
+                            released.add(allSuspended.await(10, TimeUnit.SECONDS));
+                        } catch (InterruptedException ie) {
+                            released.add(false);
+                            Thread.currentThread().interrupt();
+                        }
+
+                        AsyncPipeline.resume(exchange, ex -> {
+                        });
+                    });
+                }), null), REQUESTS, HttpStatus.SC_OK);
+            } finally {
+                io.shutdownNow();
+            }
+
+            assertEquals(REQUESTS, released.size());
+            assertTrue(released.stream().allMatch(r -> r));
+        }
+
+        /**
+         * the continuation of the suspending handler is executed first, then
+         * the rest of the pipeline of each enclosing handler, innermost first
+         */
+        public static void continuationsOrder() throws Exception {
+            var io = Executors.newSingleThreadExecutor();
+            var events = new ConcurrentLinkedQueue<String>();
+
+            try {
+                load(pipeline(exchange -> {
+                    events.add("suspend");
+
+                    AsyncPipeline.suspend(exchange, () -> io.execute(()
+                            -> AsyncPipeline.resume(exchange, ex -> events.add("resume"))));
+                }, events), 1, HttpStatus.SC_OK);
+            } finally {
+                io.shutdownNow();
+            }
+
+            assertEquals(List.of("suspend", "resume", "inner", "outer", "end"), new ArrayList<>(events));
+        }
+
+        /**
+         * a continuation can suspend the exchange again; the continuations
+         * of the enclosing handlers follow the new one
+         */
+        public static void suspendAgain() throws Exception {
+            var io = Executors.newSingleThreadExecutor();
+            var events = new ConcurrentLinkedQueue<String>();
+
+            try {
+                load(pipeline(exchange -> {
+                    events.add("suspend");
+
+                    AsyncPipeline.suspend(exchange, () -> io.execute(()
+                            -> AsyncPipeline.resume(exchange, ex -> {
+                                events.add("resume");
+
+                                AsyncPipeline.suspend(ex, () -> io.execute(()
+                                        -> AsyncPipeline.resume(ex, ex2 -> events.add("resume again"))));
+                            })));
+                }, events), 1, HttpStatus.SC_OK);
+            } finally {
+                io.shutdownNow();
+            }
+
+            assertEquals(List.of("suspend", "resume", "resume again", "inner", "outer", "end"),
+                    new ArrayList<>(events));
+        }
+
+        /**
+         * an error of a continuation makes the response a 500
+         */
+        public static void errorOnResume() throws Exception {
+            var io = Executors.newSingleThreadExecutor();
+
+            try {
+                load(pipeline(exchange -> AsyncPipeline.suspend(exchange,
+                        () -> io.execute(() -> AsyncPipeline.resume(exchange, ex -> {
+                    throw new IllegalStateException("error resuming");
+                }))), null), REQUESTS, HttpStatus.SC_INTERNAL_SERVER_ERROR);
+            } finally {
+                io.shutdownNow();
+            }
+        }
+
+        /**
+         * @return a pipeline whose outer and inner PipelinedWrappingHandlers
+         * enclose the ioHandler; the handlers following them record their
+         * execution in events, if not null, and the last one ends the exchange
+         */
+        private static PipelinedHandler pipeline(HttpHandler ioHandler, ConcurrentLinkedQueue<String> events) {
+            var end = new PipelinedHandler() {
+                @Override
+                public void handleRequest(HttpServerExchange exchange) throws Exception {
+                    record(events, "end");
+                    exchange.endExchange();
+                }
+            };
+
+            var inner = PipelinedWrappingHandler.wrap(
+                    PipelinedWrappingHandler.wrap(ex -> record(events, "inner")),
+                    ioHandler);
+
+            return PipelinedWrappingHandler.wrap(end,
+                    PipelinedWrappingHandler.wrap(
+                            PipelinedWrappingHandler.wrap(ex -> record(events, "outer")),
+                            inner));
+        }
+
+        private static void record(ConcurrentLinkedQueue<String> events, String event) {
+            if (events != null) {
+                events.add(event);
+            }
+        }
+
+        /**
+         * executes concurrent requests to the pipeline on a server with
+         * WORKERS worker threads
+         */
+        private static void load(PipelinedHandler pipeline, int requests, int expectedStatus) throws Exception {
+            var server = Undertow.builder()
+                    .addHttpListener(0, "localhost")
+                    .setIoThreads(1)
+                    .setWorkerThreads(WORKERS)
+                    .setHandler(new BlockingHandler(pipeline))
+                    .build();
+
+            server.start();
+
+            try {
+                var port = ((InetSocketAddress) server.getListenerInfo().get(0).getAddress()).getPort();
+                var uri = URI.create("http://localhost:" + port + "/");
+
+                var client = HttpClient.newBuilder()
+                        .version(HttpClient.Version.HTTP_1_1)
+                        .build();
+
+                var responses = new ArrayList<CompletableFuture<HttpResponse<String>>>();
+
+                for (var r = 0; r < requests; r++) {
+                    responses.add(client.sendAsync(HttpRequest.newBuilder(uri).build(),
+                            HttpResponse.BodyHandlers.ofString()));
+                }
+
+                for (var response : responses) {
+                    assertEquals(expectedStatus, response.get(30, TimeUnit.SECONDS).statusCode());
+                }
+            } finally {
+                server.stop();
+            }
+        }
+    }
+}
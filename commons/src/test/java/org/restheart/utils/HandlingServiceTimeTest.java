@@ -0,0 +1,156 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-commons
+ * %%
+ * Copyright (C) 2019 - 2020 SoftInstigate
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.utils;
+
+import io.undertow.server.HttpServerExchange;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import org.junit.Ignore;
+import org.junit.Test;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+import org.restheart.exchange.ByteArrayProxyRequest;
+import org.restheart.exchange.JsonRequest;
+import org.restheart.exchange.JsonResponse;
+import org.restheart.exchange.PipelineInfo;
+import static org.restheart.exchange.PipelineInfo.PIPELINE_TYPE.SERVICE;
+import org.restheart.plugins.JsonService;
+import org.restheart.plugins.PluginRecord;
+import org.restheart.plugins.PluginsRegistry;
+import org.restheart.plugins.Service;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * compares the time spent resolving the service handling a request with 50
+ * registered services: linear scan of the registered services (as formerly
+ * done by PluginUtils.handlingService() and ResponseSender) vs
+ * PluginUtils.handlingService() that looks up the service by name once and
+ * caches it as an exchange attachment.
+ *
+ * Each request resolves the handling service 5 times, as the interceptors
+ * executors, RequestContentInjector and ResponseSender do.
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+@Ignore
+@SuppressWarnings({"rawtypes", "unchecked"})
+public class HandlingServiceTimeTest {
+
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(HandlingServiceTimeTest.class);
+
+    private static final int SERVICES = 50;
+    private static final int LOOKUPS_PER_REQUEST = 5;
+    private static final int WARMUP = 100_000;
+    private static final int N = 1_000_000;
+
+    private final Set<PluginRecord<Service>> services = new LinkedHashSet<>();
+    private final Map<String, PluginRecord<Service>> servicesByName = new HashMap<>();
+    private final PluginsRegistry registry;
+
+    public HandlingServiceTimeTest() {
+        for (int i = 0; i < SERVICES; i++) {
+            var name = "service" + i;
+            PluginRecord<Service> record = new PluginRecord(name, name, true,
+                    TestService.class.getName(), new TestService(), null);
+
+            services.add(record);
+            servicesByName.put(name, record);
+        }
+
+        registry = mock(PluginsRegistry.class, withSettings().stubOnly());
+
+        when(registry.getService(anyString())).thenAnswer(i
+                -> servicesByName.get((String) i.getArgument(0)));
+    }
+
+    @Test
+    public void testLinearLookup() {
+        run("linear scan", exchange -> {
+            var pi = PluginUtils.pipelineInfo(exchange);
+
+            return services.stream()
+                    .filter(s -> pi.getName().equals(s.getName()))
+                    .map(s -> s.getInstance())
+                    .findAny()
+                    .get();
+        });
+    }
+
+    @Test
+    public void testCachedLookup() {
+        run("by name, cached on exchange", exchange
+                -> PluginUtils.handlingService(registry, exchange));
+    }
+
+    private void run(String name, Lookup lookup) {
+        // requests to the last registered service, the worst case
+        // for the linear scan
+        var pi = new PipelineInfo(SERVICE, "/service", "service" + (SERVICES - 1));
+
+        long check = 0;
+
+        for (int i = 0; i < WARMUP; i++) {
+            check += request(pi, lookup);
+        }
+
+        long start = System.nanoTime();
+
+        for (int i = 0; i < N; i++) {
+            check += request(pi, lookup);
+        }
+
+        long end = System.nanoTime();
+
+        LOGGER.info("{}: {} ns per request (check {})",
+                name,
+                (end - start) / N,
+                check);
+    }
+
+    private long request(PipelineInfo pi, Lookup lookup) {
+        var exchange = new HttpServerExchange();
+        ByteArrayProxyRequest.of(exchange).setPipelineInfo(pi);
+
+        long check = 0;
+
+        for (int j = 0; j < LOOKUPS_PER_REQUEST; j++) {
+            check += lookup.handlingService(exchange).hashCode() & 1;
+        }
+
+        return check;
+    }
+
+    @FunctionalInterface
+    private interface Lookup {
+        Service handlingService(HttpServerExchange exchange);
+    }
+
+    private static class TestService implements JsonService {
+        @Override
+        public void handle(JsonRequest request, JsonResponse response) throws Exception {
+        }
+    }
+}
@@ -0,0 +1,271 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-commons
+ * %%
+ * Copyright (C) 2019 - 2020 SoftInstigate
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.util.stream.Collectors;
+import org.bson.BsonArray;
+import org.bson.BsonBinary;
+import org.bson.BsonBoolean;
+import org.bson.BsonDateTime;
+import org.bson.BsonDecimal128;
+import org.bson.BsonDocument;
+import org.bson.BsonDouble;
+import org.bson.BsonInt32;
+import org.bson.BsonInt64;
+import org.bson.BsonJavaScript;
+import org.bson.BsonMaxKey;
+import org.bson.BsonMinKey;
+import org.bson.BsonNull;
+import org.bson.BsonObjectId;
+import org.bson.BsonRegularExpression;
+import org.bson.BsonString;
+import org.bson.BsonSymbol;
+import org.bson.BsonTimestamp;
+import org.bson.BsonValue;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+import org.bson.json.Converter;
+import org.bson.json.JsonMode;
+import org.bson.json.JsonWriterSettings;
+import org.bson.json.StrictJsonWriter;
+import org.bson.types.Decimal128;
+import org.bson.types.ObjectId;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ * checks that JsonEncoder produces the same json of the driver JsonWriter
+ * followed by Minify
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class JsonEncoderTest {
+
+    static BsonDocument sample() {
+        var doc = new BsonDocument();
+        doc.put("_id", new BsonObjectId(new ObjectId("5d0b4e325beb2029a8d1bd5e")));
+        doc.put("string", new BsonString("a \"quoted\" string\nwith \\ escapes, àèì and \u0001"));
+        doc.put("int", new BsonInt32(-1));
+        doc.put("long", new BsonInt64(Long.MAX_VALUE));
+        doc.put("double", new BsonDouble(1.5));
+        doc.put("integral double", new BsonDouble(3));
+        doc.put("nan", new BsonDouble(Double.NaN));
+        doc.put("decimal", new BsonDecimal128(Decimal128.parse("123.45")));
+        doc.put("bool", BsonBoolean.TRUE);
+        doc.put("null", BsonNull.VALUE);
+        doc.put("date", new BsonDateTime(1593600000000l));
+        doc.put("old date", new BsonDateTime(-1000l));
+        doc.put("regex", new BsonRegularExpression("^a b/c$", "i"));
+        doc.put("binary", new BsonBinary(new byte[]{1, 2, 3}));
+        doc.put("timestamp", new BsonTimestamp(1, 2));
+        doc.put("code", new BsonJavaScript("function() { return 1; }"));
+        doc.put("symbol", new BsonSymbol("sym"));
+        doc.put("min", new BsonMinKey());
+        doc.put("max", new BsonMaxKey());
+        doc.put("empty doc", new BsonDocument());
+        doc.put("empty array", new BsonArray());
+
+        var array = new BsonArray();
+        array.add(new BsonInt32(1));
+        array.add(new BsonDocument("a", new BsonString("b")));
+        array.add(new BsonArray());
+        array.add(new BsonDateTime(0));
+        doc.put("array", array);
+
+        doc.put("nested", new BsonDocument("level1",
+                new BsonDocument("level2", array.clone())));
+
+        return doc;
+    }
+
+    /**
+     * JsonUtils.minify() decodes its output with the platform default charset:
+     * the expected values are decoded as UTF-8 to not depend on the locale
+     */
+    static String minify(String json) {
+        var out = new ByteArrayOutputStream();
+
+        try {
+            new Minify().minify(new ByteArrayInputStream(json.getBytes(UTF_8)), out);
+        } catch (Exception ex) {
+            throw new AssertionError("error minifying " + json, ex);
+        }
+
+        return new String(out.toByteArray(), UTF_8).trim();
+    }
+
+    /**
+     * the representation formerly produced by JsonUtils.toJson()
+     */
+    static String legacyToJson(BsonValue bson, JsonMode mode) {
+        var settings = mode != null
+                ? JsonWriterSettings.builder()
+                        .outputMode(mode)
+                        .indent(false)
+                        .build()
+                : JsonWriterSettings.builder()
+                        .indent(false)
+                        .dateTimeConverter(new Converter<Long>() {
+                            @Override
+                            public void convert(Long t, StrictJsonWriter writer) {
+                                writer.writeRaw("{\"$date\": " + t + " }");
+                            }
+                        })
+                        .build();
+
+        if (bson.isDocument()) {
+            return minify(bson.asDocument().toJson(settings));
+        } else if (bson.isArray()) {
+            var json = new BsonDocument("wrapped", bson).toJson(settings);
+
+            json = json.substring(0, json.length() - 1);
+            json = json.replaceFirst("\\{", "");
+            json = json.replaceFirst("\"wrapped\"", "");
+            json = json.replaceFirst(":", "");
+
+            return minify(json);
+        } else {
+            var ret = new BsonDocument("x", bson).toJson(settings);
+
+            ret = ret.replaceFirst("\\{", "");
+            ret = ret.replaceFirst("\"x\"", "");
+            ret = ret.replaceFirst(":", "");
+            ret = ret.substring(0, ret.lastIndexOf('}'));
+
+            return minify(ret);
+        }
+    }
+
+    @Test
+    public void testDocumentAllModes() {
+        var doc = sample();
+
+        assertEquals(legacyToJson(doc, null), JsonEncoder.toJson(doc, null));
+
+        for (var mode : JsonMode.values()) {
+            assertEquals(mode.name(),
+                    legacyToJson(doc, mode),
+                    JsonEncoder.toJson(doc, mode));
+        }
+    }
+
+    @Test
+    public void testArrayAndScalars() {
+        var doc = sample();
+        var array = new BsonArray();
+        doc.values().forEach(array::add);
+
+        assertEquals(legacyToJson(array, null), JsonEncoder.toJson(array, null));
+        assertEquals(legacyToJson(array, JsonMode.STRICT),
+                JsonEncoder.toJson(array, JsonMode.STRICT));
+
+        for (var value : doc.values()) {
+            assertEquals(value.toString(),
+                    legacyToJson(value, null),
+                    JsonEncoder.toJson(value, null));
+        }
+    }
+
+    @Test
+    public void testRawDocument() {
+        var doc = sample();
+        doc.put("nested", new BsonDocument("array", new BsonArray(doc.values().stream()
+                .filter(v -> !v.isDocument())
+                .collect(Collectors.toList()))));
+
+        var raw = new RawBsonDocument(doc, new BsonDocumentCodec());
+
+        assertEquals(JsonEncoder.toJson(doc, null), JsonEncoder.toJson(raw, null));
+
+        for (var mode : JsonMode.values()) {
+            assertEquals(mode.name(),
+                    JsonEncoder.toJson(doc, mode),
+                    JsonEncoder.toJson(raw, mode));
+        }
+
+        // a raw document embedded in a non raw one
+        var wrapper = new BsonDocument("raw", raw);
+
+        assertEquals(JsonEncoder.toJson(new BsonDocument("raw", doc), JsonMode.RELAXED),
+                JsonEncoder.toJson(wrapper, JsonMode.RELAXED));
+    }
+
+    @Test
+    public void testUtf8Outputs() throws Exception {
+        var doc = new BsonDocument("s", new BsonString("àèì € 😀"));
+        doc.put("n", new BsonInt32(1));
+
+        var expected = JsonEncoder.toJson(doc, JsonMode.RELAXED);
+
+        var out = new ByteArrayOutputStream();
+        JsonEncoder.toJson(doc, JsonMode.RELAXED, out);
+        assertEquals(expected, new String(out.toByteArray(), UTF_8));
+
+        var buffer = ByteBuffer.allocate(256);
+        JsonEncoder.toJson(doc, JsonMode.RELAXED, buffer);
+        buffer.flip();
+        assertEquals(expected, UTF_8.decode(buffer).toString());
+    }
+
+    @Test
+    public void testUnpairedSurrogates() throws Exception {
+        // unpaired surrogates in strings are escaped
+        var doc = new BsonDocument("s", new BsonString("a\ud83d"));
+        doc.put("t", new BsonString("\ude00b"));
+
+        var expected = "{\"s\":\"a\\ud83d\",\"t\":\"\\ude00b\"}";
+
+        assertEquals(expected, JsonEncoder.toJson(doc, JsonMode.RELAXED));
+
+        var out = new ByteArrayOutputStream();
+        JsonEncoder.toJson(doc, JsonMode.RELAXED, out);
+        assertEquals(expected, new String(out.toByteArray(), UTF_8));
+
+        var buffer = ByteBuffer.allocate(256);
+        JsonEncoder.toJson(doc, JsonMode.RELAXED, buffer);
+        buffer.flip();
+        assertEquals(expected, UTF_8.decode(buffer).toString());
+
+        // a high surrogate appended last is flushed as '?', as
+        // String.getBytes(UTF_8) does
+        out.reset();
+        JsonEncoder.of(out, null).append('a').append('\ud83d').flush();
+        assertEquals(new String("a\ud83d".getBytes(UTF_8), UTF_8), new String(out.toByteArray(), UTF_8));
+    }
+
+    @Test
+    public void testEncoderReuse() throws Exception {
+        var out = new ByteArrayOutputStream();
+        var encoder = JsonEncoder.of(out, null);
+
+        encoder.append('[')
+                .encode(new BsonDocument("a", new BsonInt32(1)))
+                .append(',')
+                .encode(new BsonDocument("b", new BsonArray()))
+                .append(']')
+                .flush();
+
+        assertEquals("[{\"a\":1},{\"b\":[]}]", new String(out.toByteArray(), UTF_8));
+    }
+}
@@ -0,0 +1,138 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-commons
+ * %%
+ * Copyright (C) 2019 - 2020 SoftInstigate
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import org.bson.BsonArray;
+import org.bson.BsonInt32;
+import org.bson.json.JsonMode;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * compares the time spent encoding a page of documents by JsonEncoder and by
+ * the former driver toJson() + Minify path
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+@Ignore
+public class JsonEncoderTimeTest {
+
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(JsonEncoderTimeTest.class);
+
+    private static final int WARMUP = 2000;
+    private static final int N = 10000;
+    private static final int PAGESIZE = 100;
+
+    private static final BsonArray PAGE = new BsonArray();
+
+    static {
+        for (int i = 0; i < PAGESIZE; i++) {
+            var doc = JsonEncoderTest.sample();
+            doc.put("n", new BsonInt32(i));
+            PAGE.add(doc);
+        }
+    }
+
+    @Test
+    public void testLegacyToJson() {
+        for (var mode : new JsonMode[]{null, JsonMode.RELAXED}) {
+            run("legacy " + mode, () -> {
+                long size = 0;
+
+                for (var doc : PAGE) {
+                    size += JsonEncoderTest.legacyToJson(doc, mode).length();
+                }
+
+                return size;
+            });
+        }
+    }
+
+    @Test
+    public void testEncoderToJson() {
+        for (var mode : new JsonMode[]{null, JsonMode.RELAXED}) {
+            run("encoder " + mode, () -> {
+                long size = 0;
+
+                for (var doc : PAGE) {
+                    size += JsonEncoder.toJson(doc, mode).length();
+                }
+
+                return size;
+            });
+        }
+    }
+
+    @Test
+    public void testEncoderToStream() {
+        var out = new ByteArrayOutputStream(64 * 1024);
+
+        for (var mode : new JsonMode[]{null, JsonMode.RELAXED}) {
+            run("encoder stream " + mode, () -> {
+                out.reset();
+                var encoder = JsonEncoder.of(out, mode);
+
+                for (var doc : PAGE) {
+                    encoder.encode(doc);
+                }
+
+                try {
+                    encoder.flush();
+                } catch (IOException ioe) {
+                    throw new RuntimeException(ioe);
+                }
+
+                return out.size();
+            });
+        }
+    }
+
+    private void run(String name, Task task) {
+        long check = 0;
+
+        for (int i = 0; i < WARMUP; i++) {
+            check += task.run();
+        }
+
+        long start = System.nanoTime();
+
+        for (int i = 0; i < N; i++) {
+            check += task.run();
+        }
+
+        long end = System.nanoTime();
+
+        LOGGER.info("{}: {} µs per page of {} documents (check {})",
+                name,
+                (end - start) / N / 1000,
+                PAGESIZE,
+                check);
+    }
+
+    @FunctionalInterface
+    private interface Task {
+        long run();
+    }
+}
@@ -19,17 +19,31 @@
  */
 package org.restheart.utils;
 
+import io.undertow.server.HttpServerExchange;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import org.junit.Test;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.restheart.exchange.ByteArrayProxyRequest;
 import org.restheart.exchange.JsonRequest;
 import org.restheart.exchange.JsonResponse;
+import org.restheart.exchange.PipelineInfo;
+import static org.restheart.exchange.PipelineInfo.PIPELINE_TYPE.PROXY;
+import static org.restheart.exchange.PipelineInfo.PIPELINE_TYPE.SERVICE;
 import org.restheart.plugins.InitPoint;
 import org.restheart.plugins.Initializer;
 import org.restheart.plugins.InterceptPoint;
 import org.restheart.plugins.JsonInterceptor;
 import org.restheart.plugins.JsonService;
+import org.restheart.plugins.PluginRecord;
+import org.restheart.plugins.PluginsRegistry;
 import org.restheart.plugins.RegisterPlugin;
+import org.restheart.plugins.Service;
 
 /**
  *
@@ -120,6 +134,39 @@ public class PluginUtilsTest {
                 PluginUtils.requiresContent(plugin));
     }
 
+    @Test
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public void testHandlingServiceIsResolvedOnce() {
+        var plugin = new TestPlugin();
+        PluginRecord<Service> record = new PluginRecord("testPlugin",
+                "test description", true, TestPlugin.class.getName(),
+                plugin, null);
+
+        var registry = mock(PluginsRegistry.class);
+        when(registry.getService("testPlugin")).thenReturn(record);
+
+        var exchange = new HttpServerExchange();
+        ByteArrayProxyRequest.of(exchange).setPipelineInfo(
+                new PipelineInfo(SERVICE, "/test", "testPlugin"));
+
+        assertSame(plugin, PluginUtils.handlingService(registry, exchange));
+        assertSame(plugin, PluginUtils.handlingService(registry, exchange));
+        assertSame(record, PluginUtils.handlingServicePluginRecord(registry, exchange));
+
+        verify(registry, times(1)).getService("testPlugin");
+    }
+
+    @Test
+    public void testHandlingServiceProxy() {
+        var registry = mock(PluginsRegistry.class);
+
+        var exchange = new HttpServerExchange();
+        ByteArrayProxyRequest.of(exchange).setPipelineInfo(
+                new PipelineInfo(PROXY, "/proxy", "proxy"));
+
+        assertNull(PluginUtils.handlingService(registry, exchange));
+    }
+
     @RegisterPlugin(name = "testPlugin",
             description = "test description",
             defaultURI = "/test",
@@ -0,0 +1,121 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-commons
+ * %%
+ * Copyright (C) 2019 - 2020 SoftInstigate
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.utils;
+
+import io.undertow.connector.PooledByteBuffer;
+import java.io.BufferedReader;
+import java.nio.ByteBuffer;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class PooledBuffersViewTest {
+    private static final String CONTENT = "{\"a\":\"àèìòù\",\"b\":[1,2,3]}";
+
+    /**
+     * splits the content in pooled buffers of 4 bytes, the last slot empty
+     */
+    private static PooledByteBuffer[] pooled(byte[] content) {
+        var ret = new PooledByteBuffer[content.length / 4 + 2];
+
+        for (int i = 0; i * 4 < content.length; i++) {
+            var buffer = ByteBuffer.allocate(8);
+            buffer.put(content, i * 4, Math.min(4, content.length - i * 4));
+            buffer.flip();
+            ret[i] = new TestPooledByteBuffer(buffer);
+        }
+
+        return ret;
+    }
+
+    @Test
+    public void testViews() throws Exception {
+        var bytes = CONTENT.getBytes(UTF_8);
+        var pooled = pooled(bytes);
+
+        var view = PooledBuffersView.of(pooled);
+
+        assertEquals(bytes.length, view.size());
+        assertArrayEquals(bytes, view.toByteArray());
+        assertArrayEquals(bytes, view.inputStream().readAllBytes());
+        assertEquals(CONTENT, view.toString(UTF_8));
+        assertEquals(CONTENT, view.toCharSequence(UTF_8).toString());
+        assertEquals(CONTENT, new BufferedReader(view.reader(UTF_8)).readLine());
+
+        var bb = view.asByteBuffer();
+        assertTrue(bb.isReadOnly());
+        assertEquals(bytes.length, bb.remaining());
+
+        // reading the view does not change the pooled buffers
+        assertEquals(0, pooled[0].getBuffer().position());
+        assertEquals(4, pooled[0].getBuffer().limit());
+        assertArrayEquals(bytes, BuffersUtils.toByteArray(pooled));
+    }
+
+    @Test
+    public void testSkipAndAvailable() throws Exception {
+        var bytes = CONTENT.getBytes(UTF_8);
+        var is = PooledBuffersView.of(pooled(bytes)).inputStream();
+
+        assertEquals(bytes.length, is.available());
+        assertEquals(6, is.skip(6));
+        assertEquals(bytes.length - 6, is.available());
+        assertEquals(bytes[6] & 0xff, is.read());
+    }
+
+    @Test
+    public void testEmptyAndNull() throws Exception {
+        assertNull(PooledBuffersView.of(null));
+
+        var view = PooledBuffersView.of(new PooledByteBuffer[3]);
+        assertTrue(view.isEmpty());
+        assertEquals(-1, view.inputStream().read());
+        assertEquals("", view.toString(UTF_8));
+    }
+
+    private static class TestPooledByteBuffer implements PooledByteBuffer {
+        private final ByteBuffer buffer;
+
+        TestPooledByteBuffer(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public ByteBuffer getBuffer() {
+            return buffer;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+    }
+}
@@ -34,9 +34,6 @@ import org.restheart.plugins.PluginsRegistryImpl;
 import org.restheart.plugins.Service;
 import org.restheart.utils.LambdaUtils;
 import org.restheart.utils.PluginUtils;
-import static org.restheart.utils.PluginUtils.cachedRequestType;
-import static org.restheart.utils.PluginUtils.cachedResponseType;
-import static org.restheart.utils.PluginUtils.interceptPoint;
 import static org.restheart.utils.PluginUtils.requiresContent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -118,22 +115,8 @@ public class ResponseInterceptorsExecutor
 
         Exchange.setResponseInterceptorsExecuted(exchange);
         PluginsRegistryImpl.getInstance()
-                .getInterceptors()
+                .getInterceptors(handlingService, InterceptPoint.RESPONSE)
                 .stream()
-                .filter(i -> interceptPoint(i.getInstance())
-                == InterceptPoint.RESPONSE)
-                .filter(ri -> ri.isEnabled())
-                .map(ri -> ri.getInstance())
-                // IMPORTANT: An interceptor can intercept 
-                // - requests handled by a Service when its request and response 
-                //   types are equal to the ones declared by the Service
-                // - request handled by a Proxy when its request and response 
-                //   are ByteArrayProxyRequest and ByteArrayProxyResponse
-                .filter(ri -> (handlingService == null
-                && cachedRequestType(ri).equals(ByteArrayProxyRequest.type())
-                && cachedResponseType(ri).equals(ByteArrayProxyResponse.type()))
-                || (handlingService != null && cachedRequestType(ri).equals(cachedRequestType(handlingService))
-                && cachedResponseType(ri).equals(cachedResponseType(handlingService))))
                 .filter(ri -> !this.filterRequiringContent || !requiresContent(ri))
                 .filter(ri -> {
                     try {
@@ -185,22 +168,8 @@ public class ResponseInterceptorsExecutor
 
         Exchange.setResponseInterceptorsExecuted(exchange);
         PluginsRegistryImpl.getInstance()
-                .getInterceptors()
+                .getInterceptors(handlingService, InterceptPoint.RESPONSE_ASYNC)
                 .stream()
-                .filter(i -> interceptPoint(
-                i.getInstance()) == InterceptPoint.RESPONSE_ASYNC)
-                .filter(ri -> ri.isEnabled())
-                .map(ri -> ri.getInstance())
-                // IMPORTANT: An interceptor can intercept 
-                // - requests handled by a Service when its request and response 
-                //   types are equal to the ones declared by the Service
-                // - request handled by a Proxy when its request and response 
-                //   are ByteArrayProxyRequest and ByteArrayProxyResponse
-                .filter(ri -> (handlingService == null
-                && cachedRequestType(ri).equals(ByteArrayProxyRequest.type())
-                && cachedResponseType(ri).equals(ByteArrayProxyResponse.type()))
-                || (handlingService != null && cachedRequestType(ri).equals(cachedRequestType(handlingService))
-                && ri.responseType().equals(cachedResponseType(handlingService))))
                 .filter(ri -> !this.filterRequiringContent || !requiresContent(ri))
                 .filter(ri -> {
                     try {
@@ -26,6 +26,7 @@ import org.restheart.exchange.ByteArrayProxyResponse;
 import org.restheart.exchange.PipelineInfo;
 import org.restheart.exchange.ServiceResponse;
 import org.restheart.plugins.PluginsRegistryImpl;
+import org.restheart.utils.PluginUtils;
 
 /**
  *
@@ -58,18 +59,25 @@ public class ResponseSender extends PipelinedHandler {
     @SuppressWarnings({"unchecked","rawtypes"})
     public void handleRequest(HttpServerExchange exchange) throws Exception {
         var registry = PluginsRegistryImpl.getInstance();
-        var path = exchange.getRequestPath();
 
-        var pi = registry.getPipelineInfo(path);
+        // the PipelineInfo is missing if the error occurred before
+        // PipelineInfoInjector, see ErrorHandler
+        var pi = PluginUtils.pipelineInfo(exchange);
+
+        if (pi == null) {
+            pi = registry.getPipelineInfo(exchange.getRequestPath());
+        }
 
         if (pi.getType() == PipelineInfo.PIPELINE_TYPE.SERVICE) {
-            var srv = registry.getServices().stream()
-                    .filter(s -> s.getName().equals(pi.getName()))
-                    .findAny();
+            var srv = PluginUtils.handlingService(registry, exchange);
+
+            if (srv == null) {
+                var _srv = registry.getService(pi.getName());
+                srv = _srv == null ? null : _srv.getInstance();
+            }
 
-            if (srv.isPresent()) {
-                var response = (ServiceResponse) srv.get().getInstance()
-                        .response().apply(exchange);
+            if (srv != null) {
+                var response = (ServiceResponse) srv.response().apply(exchange);
 
                 if (response.getStatusCode() > 0) {
                     exchange.setStatusCode(response.getStatusCode());
@@ -25,16 +25,17 @@ import io.undertow.util.AttachmentKey;
 import io.undertow.util.ConduitFactory;
 import io.undertow.util.HeaderMap;
 import io.undertow.util.Headers;
+import java.util.Arrays;
+import java.util.stream.Stream;
 import org.restheart.exchange.ByteArrayProxyRequest;
 import org.restheart.exchange.ByteArrayProxyResponse;
 import org.restheart.handlers.ContentStreamSinkConduit;
 import org.restheart.handlers.ModifiableContentSinkConduit;
 import org.restheart.handlers.PipelinedHandler;
+import org.restheart.plugins.InterceptPoint;
 import static org.restheart.plugins.InterceptPoint.RESPONSE;
 import static org.restheart.plugins.InterceptPoint.RESPONSE_ASYNC;
 import org.restheart.plugins.PluginsRegistryImpl;
-import static org.restheart.utils.PluginUtils.cachedRequestType;
-import static org.restheart.utils.PluginUtils.cachedResponseType;
 import static org.restheart.utils.PluginUtils.interceptPoint;
 import static org.restheart.utils.PluginUtils.requiresContent;
 import org.slf4j.Logger;
@@ -88,16 +89,10 @@ public class ConduitInjector extends PipelinedHandler {
     private static void forceIdentityEncodingForInterceptors(
             HttpServerExchange exchange) {
 
-        if (PluginsRegistryImpl.getInstance()
-                .getInterceptors()
-                .stream()
-                .filter(ri -> ri.isEnabled())
-                .map(ri -> ri.getInstance())
-                // IMPORTANT: An interceptor can intercept
-                // - request handled by a Proxy when its request and response
-                //   are ByteArrayProxyRequest and ByteArrayProxyResponse
-                .filter(ri -> cachedRequestType(ri).equals(ByteArrayProxyRequest.type())
-                        && cachedResponseType(ri).equals(ByteArrayProxyResponse.type()))
+        var registry = PluginsRegistryImpl.getInstance();
+
+        if (Arrays.stream(InterceptPoint.values())
+                .flatMap(ip -> registry.getInterceptors(null, ip).stream())
                 .filter(ri -> {
                     try {
                         return ri.resolve(
@@ -156,18 +151,11 @@ public class ConduitInjector extends PipelinedHandler {
                 MDC.setContextMap(mdcCtx);
             }
 
-            if (PluginsRegistryImpl.getInstance()
-                    .getInterceptors()
-                    .stream()
-                    .filter(ri -> ri.isEnabled())
-                    .map(ri -> ri.getInstance())
-                    .filter(ri -> interceptPoint(ri) == RESPONSE
-                    || interceptPoint(ri) == RESPONSE_ASYNC)
-                    // IMPORTANT: An interceptor can intercept
-                    // - request handled by a Proxy when its request and response
-                    //   are ByteArrayProxyRequest and ByteArrayProxyResponse
-                    .filter(ri -> cachedRequestType(ri).equals(ByteArrayProxyRequest.type())
-                    && cachedResponseType(ri).equals(ByteArrayProxyResponse.type()))
+            var registry = PluginsRegistryImpl.getInstance();
+
+            if (Stream.concat(
+                    registry.getInterceptors(null, RESPONSE).stream(),
+                    registry.getInterceptors(null, RESPONSE_ASYNC).stream())
                     .filter(ri -> {
                         try {
                             return ri.resolve(
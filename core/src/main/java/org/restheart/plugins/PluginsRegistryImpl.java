@@ -22,15 +22,23 @@ package org.restheart.plugins;
 
 import static io.undertow.Handlers.path;
 
+import java.lang.reflect.Type;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 import com.mongodb.MongoClient;
 
 import org.restheart.Configuration;
 import org.restheart.ConfigurationException;
+import org.restheart.exchange.ByteArrayProxyRequest;
+import org.restheart.exchange.ByteArrayProxyResponse;
 import org.restheart.exchange.PipelineInfo;
 import org.restheart.handlers.CORSHandler;
 import org.restheart.handlers.ConfigurableEncodingHandler;
@@ -56,6 +64,9 @@ import static org.restheart.plugins.InterceptPoint.REQUEST_AFTER_AUTH;
 import static org.restheart.plugins.InterceptPoint.REQUEST_BEFORE_AUTH;
 import static org.restheart.exchange.PipelineInfo.PIPELINE_TYPE.SERVICE;
 import static org.restheart.handlers.PipelinedHandler.pipe;
+import static org.restheart.utils.PluginUtils.cachedRequestType;
+import static org.restheart.utils.PluginUtils.cachedResponseType;
+import static org.restheart.utils.PluginUtils.interceptPoint;
 
 import io.undertow.predicate.Predicate;
 import io.undertow.server.handlers.PathHandler;
@@ -93,11 +104,24 @@ public class PluginsRegistryImpl implements PluginsRegistry {
     // before actual scannit. this is used for intance by PolyglotDeployer
     private boolean servicesInitialized = false;
 
+    // services indexed by name, see getService()
+    @SuppressWarnings("rawtypes")
+    private final Map<String, PluginRecord<Service>> servicesByName = new ConcurrentHashMap<>();
+
     private Set<PluginRecord<Initializer>> initializers;
 
     @SuppressWarnings("rawtypes")
     private Set<PluginRecord<Interceptor>> interceptors;
 
+    // the interceptors candidate to intercept requests handled by each service
+    // (and by proxies) for each intercept point, see getInterceptors(srv, ip)
+    @SuppressWarnings("rawtypes")
+    private final Map<Service, Map<InterceptPoint, List<Interceptor>>> interceptorsChains
+            = new ConcurrentHashMap<>();
+
+    @SuppressWarnings("rawtypes")
+    private volatile Map<InterceptPoint, List<Interceptor>> proxyInterceptorsChains = null;
+
     private final Set<Predicate> globalSecurityPredicates = new LinkedHashSet<>();
 
     private PluginsRegistryImpl() {
@@ -211,7 +235,59 @@ public class PluginsRegistryImpl implements PluginsRegistry {
             this.interceptors.addAll(PluginsFactory.getInstance().interceptors());
         }
 
-        return this.interceptors;
+        return Collections.unmodifiableSet(this.interceptors);
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public List<Interceptor> getInterceptors(Service srv,
+            InterceptPoint interceptPoint) {
+        if (srv == null) {
+            var chains = this.proxyInterceptorsChains;
+
+            if (chains == null) {
+                chains = interceptorsChains(
+                        ByteArrayProxyRequest.type(),
+                        ByteArrayProxyResponse.type());
+                this.proxyInterceptorsChains = chains;
+            }
+
+            return chains.get(interceptPoint);
+        } else {
+            return this.interceptorsChains
+                    .computeIfAbsent(srv, s -> interceptorsChains(
+                            cachedRequestType(s),
+                            cachedResponseType(s)))
+                    .get(interceptPoint);
+        }
+    }
+
+    /**
+     * @param requestType
+     * @param responseType
+     * @return the enabled interceptors with the given request and response
+     * types, grouped by intercept point
+     */
+    @SuppressWarnings("rawtypes")
+    private Map<InterceptPoint, List<Interceptor>> interceptorsChains(
+            Type requestType,
+            Type responseType) {
+        var candidates = getInterceptors().stream()
+                .filter(ri -> ri.isEnabled())
+                .map(ri -> ri.getInstance())
+                .filter(ri -> cachedRequestType(ri).equals(requestType)
+                && cachedResponseType(ri).equals(responseType))
+                .collect(Collectors.toList());
+
+        var ret = new EnumMap<InterceptPoint, List<Interceptor>>(InterceptPoint.class);
+
+        for (var ip : InterceptPoint.values()) {
+            ret.put(ip, candidates.stream()
+                    .filter(ri -> interceptPoint(ri) == ip)
+                    .collect(Collectors.toUnmodifiableList()));
+        }
+
+        return Collections.unmodifiableMap(ret);
     }
 
     /**
@@ -221,13 +297,37 @@ public class PluginsRegistryImpl implements PluginsRegistry {
     @SuppressWarnings("rawtypes")
     public Set<PluginRecord<Service>> getServices() {
         if (!servicesInitialized) {
-            this.services.addAll(PluginsFactory.getInstance().services());
+            PluginsFactory.getInstance().services().forEach(s -> addService(s));
             this.servicesInitialized = true;
         }
 
         return Collections.unmodifiableSet(this.services);
     }
 
+    /**
+     * @param name the name of the service
+     * @return the service or null if no service with the given name is
+     * registered
+     */
+    @Override
+    @SuppressWarnings("rawtypes")
+    public PluginRecord<Service> getService(String name) {
+        if (!servicesInitialized) {
+            getServices();
+        }
+
+        return name == null ? null : this.servicesByName.get(name);
+    }
+
+    @SuppressWarnings("rawtypes")
+    private void addService(PluginRecord<Service> srv) {
+        this.services.add(srv);
+
+        if (srv.getName() != null) {
+            this.servicesByName.put(srv.getName(), srv);
+        }
+    }
+
     /**
      * global security predicates must all resolve to true to allow the request
      *
@@ -324,9 +424,13 @@ public class PluginsRegistryImpl implements PluginsRegistry {
                     new ResponseSender()
             );
 
+            // compute the interceptors chains before the service gets requests
+            this.interceptorsChains.remove(srv.getInstance());
+            getInterceptors(srv.getInstance(), REQUEST_BEFORE_AUTH);
+
             plugPipeline(uri, _srv, new PipelineInfo(SERVICE, uri, mp, srv.getName()));
 
-            this.services.add(srv);
+            addService(srv);
     }
 
     /**
@@ -338,7 +442,15 @@ public class PluginsRegistryImpl implements PluginsRegistry {
     public void unplug(String uri, MATCH_POLICY mp) {
         var pi = getPipelineInfo(uri);
 
-        this.services.removeIf(s -> s.getName().equals(pi.getName()));
+        this.services.removeIf(s -> {
+            if (s.getName().equals(pi.getName())) {
+                this.interceptorsChains.remove(s.getInstance());
+                this.servicesByName.remove(s.getName());
+                return true;
+            } else {
+                return false;
+            }
+        });
 
         if (mp == MATCH_POLICY.PREFIX) {
             ROOT_PATH_HANDLER.removePrefixPath(uri);
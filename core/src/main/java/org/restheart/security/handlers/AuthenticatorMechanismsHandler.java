@@ -22,7 +22,11 @@ package org.restheart.security.handlers;
 
 import io.undertow.security.api.SecurityContext;
 import io.undertow.server.HttpServerExchange;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import org.restheart.handlers.AsyncPipeline;
 import org.restheart.handlers.PipelinedHandler;
 import org.restheart.plugins.PluginRecord;
 import org.restheart.plugins.security.AuthMechanism;
@@ -32,6 +36,10 @@ import org.restheart.plugins.security.AuthMechanism;
  * io.undertow.security.handlers.AuthenticationMechanismsHandler that adds one
  * or more authenticator mechanisms to the security context
  *
+ * If the mechanisms need to wait for non-blocking operations before
+ * authenticating the request (see AuthMechanism.preAuthenticate()) the
+ * request is suspended until they complete.
+ *
  * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
  */
 public class AuthenticatorMechanismsHandler extends PipelinedHandler {
@@ -52,6 +60,12 @@ public class AuthenticatorMechanismsHandler extends PipelinedHandler {
     @Override
     @SuppressWarnings("deprecation")
     public void handleRequest(HttpServerExchange exchange) throws Exception {
+        // mechanisms might block preparing the authentication
+        if (exchange.isInIoThread()) {
+            exchange.dispatch(this);
+            return;
+        }
+
         final SecurityContext sc = exchange.getSecurityContext();
 
         if (sc != null) {
@@ -60,6 +74,21 @@ public class AuthenticatorMechanismsHandler extends PipelinedHandler {
                         new AuthenticatorMechanismWrapper(
                                 mechanism.getInstance()));
             });
+
+            var pending = authenticatorMechanisms.stream()
+                    .map(mechanism -> mechanism.getInstance().preAuthenticate(exchange))
+                    .filter(Objects::nonNull)
+                    .map(CompletionStage::toCompletableFuture)
+                    .filter(stage -> !stage.isDone())
+                    .toArray(CompletableFuture<?>[]::new);
+
+            if (pending.length > 0) {
+                // the worker thread is released while waiting
+                AsyncPipeline.suspend(exchange, () -> CompletableFuture
+                        .allOf(pending)
+                        .whenComplete((r, t) -> AsyncPipeline.resume(exchange, this::next)));
+                return;
+            }
         }
 
         next(exchange);
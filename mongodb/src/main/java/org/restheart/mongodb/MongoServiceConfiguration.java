@@ -93,6 +93,16 @@ public class MongoServiceConfiguration {
     private final int defaultPagesize;
     private final int maxPagesize;
     private final METRICS_GATHERING_LEVEL metricsGatheringLevel;
+    private final long txnsStateCacheTtl;
+    private final boolean txnsStateCacheEnabled;
+    private final boolean gridfsStreamingUpload;
+    private final OVERFLOW_POLICY changeStreamsOverflowPolicy;
+    private final int changeStreamsQueueSize;
+    private final boolean localCacheWatchEnabled;
+    private final boolean collectionStreamingEnabled;
+    private final boolean asyncReadsEnabled;
+    private final boolean countCacheEnabled;
+    private final long countCacheTtl;
 
     public static MongoServiceConfiguration get() {
         return INSTANCE;
@@ -304,6 +314,38 @@ public class MongoServiceConfiguration {
 
         maxPagesize = getAsIntegerOrDefault(conf, MAX_PAGESIZE_KEY, DEFAULT_MAX_PAGESIZE);
 
+        txnsStateCacheTtl = getAsLongOrDefault(conf, TXNS_STATE_CACHE_TTL_KEY, (long) 10_000);
+
+        txnsStateCacheEnabled = getAsBooleanOrDefault(conf, TXNS_STATE_CACHE_ENABLED_KEY, false);
+
+        gridfsStreamingUpload = getAsBooleanOrDefault(conf, GRIDFS_STREAMING_UPLOAD_KEY, false);
+
+        {
+            OVERFLOW_POLICY policy;
+            try {
+                String value = getAsStringOrDefault(conf, CHANGE_STREAMS_OVERFLOW_POLICY_KEY, "DROP_OLDEST");
+                policy = OVERFLOW_POLICY.valueOf(value.toUpperCase(Locale.getDefault()));
+            } catch (IllegalArgumentException iae) {
+                LOGGER.warn("wrong value for {}. allowed values are {}; setting it to {}",
+                        CHANGE_STREAMS_OVERFLOW_POLICY_KEY,
+                        Arrays.toString(OVERFLOW_POLICY.values()),
+                        OVERFLOW_POLICY.DROP_OLDEST);
+                policy = OVERFLOW_POLICY.DROP_OLDEST;
+            }
+            changeStreamsOverflowPolicy = policy;
+        }
+
+        changeStreamsQueueSize = getAsIntegerOrDefault(conf, CHANGE_STREAMS_QUEUE_SIZE_KEY, 100);
+
+        localCacheWatchEnabled = getAsBooleanOrDefault(conf, LOCAL_CACHE_WATCH_ENABLED_KEY, false);
+
+        collectionStreamingEnabled = getAsBooleanOrDefault(conf, COLLECTION_STREAMING_ENABLED_KEY, false);
+
+        asyncReadsEnabled = getAsBooleanOrDefault(conf, ASYNC_READS_ENABLED_KEY, false);
+
+        countCacheEnabled = getAsBooleanOrDefault(conf, COUNT_CACHE_ENABLED_KEY, false);
+        countCacheTtl = getAsLongOrDefault(conf, COUNT_CACHE_TTL_KEY, (long) 1000);
+
         {
             METRICS_GATHERING_LEVEL mglevel;
             try {
@@ -331,7 +373,17 @@ public class MongoServiceConfiguration {
                 + docEtagCheckPolicy + ", connectionOptions=" + connectionOptions + ", queryTimeLimit=" + queryTimeLimit
                 + ", aggregationTimeLimit=" + aggregationTimeLimit + ", aggregationCheckOperators="
                 + aggregationCheckOperators + ", cursorBatchSize=" + cursorBatchSize + ", defaultPagesize="
-                + defaultPagesize + ", maxPagesize=" + maxPagesize + ", configurationFileMap=" + configurationFileMap
+                + defaultPagesize + ", maxPagesize=" + maxPagesize + ", collectionStreamingEnabled=" + collectionStreamingEnabled
+                + ", asyncReadsEnabled=" + asyncReadsEnabled
+                + ", countCacheEnabled=" + countCacheEnabled
+                + ", countCacheTtl=" + countCacheTtl
+                + ", localCacheWatchEnabled=" + localCacheWatchEnabled
+                + ", changeStreamsQueueSize=" + changeStreamsQueueSize
+                + ", changeStreamsOverflowPolicy=" + changeStreamsOverflowPolicy
+                + ", gridfsStreamingUpload=" + gridfsStreamingUpload
+                + ", txnsStateCacheEnabled=" + txnsStateCacheEnabled
+                + ", txnsStateCacheTtl=" + txnsStateCacheTtl
+                + ", configurationFileMap=" + configurationFileMap
                 + '}';
     }
 
@@ -908,6 +960,76 @@ public class MongoServiceConfiguration {
         return defaultPagesize;
     }
 
+    /**
+     * @return the txnsStateCacheTtl
+     */
+    public long getTxnsStateCacheTtl() {
+        return txnsStateCacheTtl;
+    }
+
+    /**
+     * @return the txnsStateCacheEnabled
+     */
+    public boolean isTxnsStateCacheEnabled() {
+        return txnsStateCacheEnabled;
+    }
+
+    /**
+     * @return the gridfsStreamingUpload
+     */
+    public boolean isGridfsStreamingUpload() {
+        return gridfsStreamingUpload;
+    }
+
+    /**
+     * @return the changeStreamsOverflowPolicy
+     */
+    public OVERFLOW_POLICY getChangeStreamsOverflowPolicy() {
+        return changeStreamsOverflowPolicy;
+    }
+
+    /**
+     * @return the changeStreamsQueueSize
+     */
+    public int getChangeStreamsQueueSize() {
+        return changeStreamsQueueSize;
+    }
+
+    /**
+     * @return the localCacheWatchEnabled
+     */
+    public boolean isLocalCacheWatchEnabled() {
+        return localCacheWatchEnabled;
+    }
+
+    /**
+     * @return the collectionStreamingEnabled
+     */
+    public boolean isCollectionStreamingEnabled() {
+        return collectionStreamingEnabled;
+    }
+
+    /**
+     * @return the asyncReadsEnabled
+     */
+    public boolean isAsyncReadsEnabled() {
+        return asyncReadsEnabled;
+    }
+
+    /**
+     * @return the countCacheEnabled
+     */
+    public boolean isCountCacheEnabled() {
+        return countCacheEnabled;
+    }
+
+    /**
+     * @return the countCacheTtl
+     */
+    public long getCountCacheTtl() {
+        return countCacheTtl;
+    }
+
     /**
      *
      * @return
@@ -948,4 +1070,24 @@ public class MongoServiceConfiguration {
          */
         COLLECTION
     }
+
+    /**
+     * what to do when the queue of change stream notifications of a
+     * websocket session is full
+     */
+    public enum OVERFLOW_POLICY {
+        /**
+         * drop the oldest queued notification
+         */
+        DROP_OLDEST,
+        /**
+         * replace the queued notification with the same documentKey, or drop
+         * the oldest one
+         */
+        COALESCE,
+        /**
+         * close the websocket
+         */
+        DISCONNECT
+    }
 }
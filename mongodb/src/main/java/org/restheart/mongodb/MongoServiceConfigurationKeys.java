@@ -238,4 +238,54 @@ public interface MongoServiceConfigurationKeys {
      * The key for specifying the cursor batch size
      */
     public static final String CURSOR_BATCH_SIZE_KEY = "cursor-batch-size";
+
+    /**
+     * The key for enabling streaming the documents of collection GET requests from the db cursor to the client
+     */
+    public static final String COLLECTION_STREAMING_ENABLED_KEY = "collection-streaming-enabled";
+
+    /**
+     * The key for enabling the non-blocking execution of document, collection and aggregation GET requests
+     */
+    public static final String ASYNC_READS_ENABLED_KEY = "async-reads-enabled";
+
+    /**
+     * The key for enabling the cache of the number of documents returned by ?count requests
+     */
+    public static final String COUNT_CACHE_ENABLED_KEY = "count-cache-enabled";
+
+    /**
+     * The key for specifying the TTL in milliseconds of the count cache entries
+     */
+    public static final String COUNT_CACHE_TTL_KEY = "count-cache-ttl";
+
+    /**
+     * The key for enabling the invalidation of the local cache entries driven by change streams
+     */
+    public static final String LOCAL_CACHE_WATCH_ENABLED_KEY = "local-cache-watch-enabled";
+
+    /**
+     * The key for specifying the max number of change stream notifications queued for a websocket session
+     */
+    public static final String CHANGE_STREAMS_QUEUE_SIZE_KEY = "change-streams-queue-size";
+
+    /**
+     * The key for specifying what to do when the queue of change stream notifications of a websocket session is full
+     */
+    public static final String CHANGE_STREAMS_OVERFLOW_POLICY_KEY = "change-streams-overflow-policy";
+
+    /**
+     * the key for the gridfs-streaming-upload property.
+     */
+    public static final String GRIDFS_STREAMING_UPLOAD_KEY = "gridfs-streaming-upload";
+
+    /**
+     * The key for enabling the local table of the state of the transactions
+     */
+    public static final String TXNS_STATE_CACHE_ENABLED_KEY = "txns-state-cache-enabled";
+
+    /**
+     * The key for specifying the TTL in milliseconds of the transactions state entries
+     */
+    public static final String TXNS_STATE_CACHE_TTL_KEY = "txns-state-cache-ttl";
 }
@@ -23,6 +23,7 @@ package org.restheart.mongodb;
 import java.util.Map;
 import static org.restheart.mongodb.MongoServiceConfigurationKeys.PLUGINS_ARGS_KEY;
 import org.restheart.mongodb.db.MongoClientSingleton;
+import org.restheart.mongodb.db.MongoReactiveClientSingleton;
 import org.restheart.mongodb.interceptors.MetadataCachesSingleton;
 import org.restheart.plugins.ConfigurationScope;
 import org.restheart.plugins.InitPoint;
@@ -71,6 +72,15 @@ public class MongoServiceInitializer implements Initializer {
 
         // force first connection to MongoDb
         MongoClientSingleton.getInstance();
+
+        if (MongoServiceConfiguration.get().isAsyncReadsEnabled()) {
+            // the reactive client executes the GET requests in async mode
+            MongoReactiveClientSingleton.init(MongoServiceConfiguration.get()
+                    .getMongoUri());
+
+            // force setup
+            MongoReactiveClientSingleton.getInstance();
+        }
     }
 
     private boolean isMongoEnabled(Map<String, Object> confArgs) {
@@ -0,0 +1,208 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-mongodb
+ * %%
+ * Copyright (C) 2014 - 2020 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.mongodb.db;
+
+import com.mongodb.reactivestreams.client.MongoCollection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.conversions.Bson;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.restheart.mongodb.MongoServiceConfiguration;
+import static org.restheart.mongodb.MongoServiceConfigurationKeys.DEFAULT_CURSOR_BATCH_SIZE;
+
+/**
+ * Executes the read operations of GET requests with the reactive MongoDB
+ * client, returning CompletableFutures completed by the driver threads.
+ *
+ * Differently from CollectionDAO, it does not use the CursorPool and does not
+ * support client sessions.
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class AsyncReadsDAO {
+    private static final int BATCH_SIZE = MongoServiceConfiguration
+            .get() != null
+                    ? MongoServiceConfiguration.get().getCursorBatchSize()
+                    : DEFAULT_CURSOR_BATCH_SIZE;
+
+    /**
+     *
+     * @param dbName
+     * @param collName
+     * @return the reactive MongoCollection
+     */
+    public MongoCollection<BsonDocument> getCollection(
+            final String dbName,
+            final String collName) {
+        return MongoReactiveClientSingleton.getInstance().getClient()
+                .getDatabase(dbName)
+                .getCollection(collName, BsonDocument.class);
+    }
+
+    /**
+     *
+     * @param dbName
+     * @param collName
+     * @param query
+     * @param keys the keys to return (projection)
+     * @return the first document matching the query or null
+     */
+    public CompletableFuture<BsonDocument> findOne(
+            final String dbName,
+            final String collName,
+            final Bson query,
+            final BsonDocument keys) {
+        return collect(getCollection(dbName, collName)
+                .find(query)
+                .projection(keys)
+                .first())
+                .thenApply(docs -> docs.isEmpty() ? null : docs.get(0));
+    }
+
+    /**
+     *
+     * @param dbName
+     * @param collName
+     * @param filters
+     * @return the number of documents matching the filters, from the
+     * CountCache if enabled
+     */
+    public CompletableFuture<Long> getCollectionSize(
+            final String dbName,
+            final String collName,
+            final BsonDocument filters) {
+        var coll = getCollection(dbName, collName);
+        var countCache = CountCache.getInstance();
+
+        if (countCache.isEnabled()) {
+            var cached = countCache.get(coll.getNamespace(), filters);
+
+            if (cached.isPresent()) {
+                return CompletableFuture.completedFuture(cached.get());
+            }
+        }
+
+        return collect(coll.countDocuments(filters))
+                .thenApply(counts -> {
+                    var size = counts.isEmpty() ? 0L : counts.get(0);
+                    countCache.put(coll.getNamespace(), filters, size);
+                    return size;
+                });
+    }
+
+    /**
+     *
+     * @param dbName
+     * @param collName
+     * @param page
+     * @param pagesize
+     * @param sortBy
+     * @param filters
+     * @param hint
+     * @param keys
+     * @return the documents of the requested page
+     */
+    public CompletableFuture<BsonArray> getCollectionData(
+            final String dbName,
+            final String collName,
+            final int page,
+            final int pagesize,
+            final BsonDocument sortBy,
+            final BsonDocument filters,
+            final BsonDocument hint,
+            final BsonDocument keys) {
+        return collect(getCollection(dbName, collName)
+                .find(filters)
+                .projection(keys)
+                .sort(sortBy)
+                .hint(hint)
+                .skip(pagesize * (page - 1))
+                .limit(pagesize)
+                .batchSize(BATCH_SIZE)
+                .maxTime(MongoServiceConfiguration.get()
+                        .getQueryTimeLimit(), TimeUnit.MILLISECONDS))
+                .thenApply(BsonArray::new);
+    }
+
+    /**
+     *
+     * @param dbName
+     * @param collName
+     * @param stages
+     * @param allowDiskUse
+     * @return the documents resulting from the aggregation pipeline
+     */
+    public CompletableFuture<BsonArray> aggregate(
+            final String dbName,
+            final String collName,
+            final List<BsonDocument> stages,
+            final boolean allowDiskUse) {
+        return collect(getCollection(dbName, collName)
+                .aggregate(stages)
+                .maxTime(MongoServiceConfiguration.get()
+                        .getAggregationTimeLimit(), TimeUnit.MILLISECONDS)
+                .allowDiskUse(allowDiskUse))
+                .thenApply(BsonArray::new);
+    }
+
+    /**
+     * subscribes to the publisher requesting all its items
+     *
+     * @param <T>
+     * @param publisher
+     * @return a CompletableFuture completed with all the items
+     */
+    private static <T> CompletableFuture<List<T>> collect(Publisher<T> publisher) {
+        var ret = new CompletableFuture<List<T>>();
+
+        publisher.subscribe(new Subscriber<T>() {
+            private final List<T> items = new ArrayList<>();
+
+            @Override
+            public void onSubscribe(Subscription s) {
+                s.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(T item) {
+                items.add(item);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                ret.completeExceptionally(t);
+            }
+
+            @Override
+            public void onComplete() {
+                ret.complete(items);
+            }
+        });
+
+        return ret;
+    }
+}
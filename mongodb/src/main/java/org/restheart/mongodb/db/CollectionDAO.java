@@ -20,6 +20,7 @@
  */
 package org.restheart.mongodb.db;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.mongodb.MongoClient;
 import com.mongodb.MongoCommandException;
 import com.mongodb.client.ClientSession;
@@ -28,7 +29,14 @@ import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoCursor;
 import static com.mongodb.client.model.Filters.eq;
 import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import org.bson.BsonArray;
 import org.bson.BsonDocument;
 import org.bson.BsonInt32;
@@ -66,6 +74,17 @@ class CollectionDAO {
                     : DEFAULT_CURSOR_BATCH_SIZE;
 
     private static final Logger LOGGER = LoggerFactory.getLogger(CollectionDAO.class);
+
+    private static final ThreadPoolExecutor COUNT_EXECUTOR
+            = new ThreadPoolExecutor(
+                    0, 16,
+                    1, TimeUnit.MINUTES,
+                    new SynchronousQueue<>(),
+                    new ThreadFactoryBuilder()
+                            .setDaemon(true)
+                            .setNameFormat("count-executor-%d")
+                            .build(),
+                    new ThreadPoolExecutor.CallerRunsPolicy());
     private static final BsonDocument FIELDS_TO_RETURN;
 
     static {
@@ -133,6 +152,58 @@ class CollectionDAO {
                 : coll.countDocuments(cs, filters);
     }
 
+    /**
+     * Executes getCollectionSize() in a thread of the count executor, so that
+     * the caller can read the requested page in parallel. If all threads are
+     * busy, the count is executed by the calling thread.
+     *
+     * Counts within a client session are executed by the calling thread, since
+     * ClientSession is not thread safe.
+     *
+     * Used for ?count requests: if the CountCache is enabled, the count can be
+     * served from it, except within a client session.
+     *
+     * @param cs the session id, can be null
+     * @param coll the mongodb DBCollection object.
+     * @param filters the filters to apply.
+     * @return the future number of documents in the given collection
+     */
+    public CompletableFuture<Long> getCollectionSizeAsync(
+            final ClientSession cs,
+            final MongoCollection<BsonDocument> coll,
+            final BsonDocument filters) {
+        return getCollectionSizeAsync(cs, coll, filters, CountCache.getInstance());
+    }
+
+    CompletableFuture<Long> getCollectionSizeAsync(
+            final ClientSession cs,
+            final MongoCollection<BsonDocument> coll,
+            final BsonDocument filters,
+            final CountCache countCache) {
+        if (cs != null) {
+            return CompletableFuture.completedFuture(
+                    getCollectionSize(cs, coll, filters));
+        }
+
+        if (!countCache.isEnabled()) {
+            return CompletableFuture.supplyAsync(
+                    () -> getCollectionSize(null, coll, filters),
+                    COUNT_EXECUTOR);
+        }
+
+        var cached = countCache.get(coll.getNamespace(), filters);
+
+        if (cached.isPresent()) {
+            return CompletableFuture.completedFuture(cached.get());
+        }
+
+        return CompletableFuture.supplyAsync(() -> {
+            var size = getCollectionSize(null, coll, filters);
+            countCache.put(coll.getNamespace(), filters, size);
+            return size;
+        }, COUNT_EXECUTOR);
+    }
+
     /**
      * Returs the FindIterable<BsonDocument> of the collection applying sorting,
      * filtering and projection.
@@ -179,6 +250,38 @@ class CollectionDAO {
 
         var ret = new BsonArray();
 
+        try (var data = getCollectionDataStream(cs, coll, page, pagesize,
+                sortBy, filters, hint, keys, eager)) {
+            data.forEachOrdered(ret::add);
+        }
+
+        return ret;
+    }
+
+    /**
+     * Returns the documents of the requested page as a lazy stream backed by
+     * the db cursor; the documents are read from the db as the stream is
+     * consumed. The cursor is positioned on the page (i.e. the query executed)
+     * before returning, so that query errors are thrown by this method.
+     *
+     * The stream must be closed after use; closing it releases the db cursor
+     * and populates the cursor pool according to the eager policy.
+     *
+     * @return the stream of the documents of the requested page
+     * @throws JsonParseException
+     */
+    Stream<BsonDocument> getCollectionDataStream(
+            final ClientSession cs,
+            final MongoCollection<BsonDocument> coll,
+            final int page,
+            final int pagesize,
+            final BsonDocument sortBy,
+            final BsonDocument filters,
+            final BsonDocument hint,
+            final BsonDocument keys,
+            final EAGER_CURSOR_ALLOCATION_POLICY eager)
+            throws JsonParseException {
+
         int toskip = pagesize * (page - 1);
 
         SkippedFindIterable _cursor = null;
@@ -191,8 +294,8 @@ class CollectionDAO {
                             coll,
                             sortBy,
                             filters,
-                            hint,
                             keys,
+                            hint,
                             toskip,
                             0),
                     eager);
@@ -200,16 +303,13 @@ class CollectionDAO {
 
         // in case there is not cursor in the pool to reuse
         FindIterable<BsonDocument> cursor;
+        MongoCursor<BsonDocument> mc;
 
         if (_cursor == null) {
             cursor = getFindIterable(cs, coll, sortBy, filters, hint, keys);
             cursor.skip(toskip).limit(pagesize);
 
-            MongoCursor<BsonDocument> mc = cursor.iterator();
-
-            while (mc.hasNext()) {
-                ret.add(mc.next());
-            }
+            mc = cursor.iterator();
         } else {
             int alreadySkipped;
 
@@ -228,7 +328,7 @@ class CollectionDAO {
                     alreadySkipped,
                     toskip);
 
-            MongoCursor<BsonDocument> mc = cursor.iterator();
+            mc = cursor.iterator();
 
             while (toskip > alreadySkipped && mc.hasNext()) {
                 mc.next();
@@ -240,19 +340,23 @@ class CollectionDAO {
                         toskip - cursorSkips,
                         System.currentTimeMillis() - startSkipping);
             }
-
-            for (int cont = pagesize; cont > 0 && mc.hasNext(); cont--) {
-                ret.add(mc.next());
-            }
         }
 
-        // the pool is populated here because, skipping with cursor.next() is heavy operation
-        // and we want to minimize the chances that pool cursors are allocated in parallel
-        CursorPool.getInstance().populateCache(
-                new CursorPoolEntryKey(cs, coll, sortBy, filters, hint, keys, toskip, 0),
-                eager);
-
-        return ret;
+        final var _mc = mc;
+
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(mc, Spliterator.ORDERED),
+                false)
+                .limit(pagesize)
+                .onClose(() -> {
+                    _mc.close();
+
+                    // the pool is populated here because, skipping with cursor.next() is heavy operation
+                    // and we want to minimize the chances that pool cursors are allocated in parallel
+                    CursorPool.getInstance().populateCache(
+                            new CursorPoolEntryKey(cs, coll, sortBy, filters, keys, hint, toskip, 0),
+                            eager);
+                });
     }
 
     /**
@@ -0,0 +1,155 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-mongodb
+ * %%
+ * Copyright (C) 2014 - 2020 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.mongodb.db;
+
+import com.mongodb.MongoNamespace;
+import java.util.Objects;
+import java.util.Optional;
+import org.bson.BsonDocument;
+import org.restheart.cache.Cache;
+import org.restheart.cache.CacheFactory;
+import org.restheart.mongodb.MongoServiceConfiguration;
+
+/**
+ * Caches the number of documents of a collection matching a filter, to serve
+ * ?count requests without executing countDocuments on each request.
+ *
+ * Enabled by the count-cache-enabled configuration option; counts within
+ * client sessions must not be cached.
+ *
+ * Only the counts of ?count requests go through the cache, i.e.
+ * CollectionDAO.getCollectionSizeAsync() and AsyncReadsDAO.getCollectionSize();
+ * Database.getCollectionSize() always executes the count, since its callers
+ * might need an exact count.
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+class CountCache {
+    private static final long MAX_CACHE_SIZE = 1_000;
+
+    /**
+     *
+     * @return
+     */
+    static CountCache getInstance() {
+        return CountCacheHolder.INSTANCE;
+    }
+
+    private final Cache<Key, Long> cache;
+
+    private CountCache() {
+        var conf = MongoServiceConfiguration.get();
+
+        if (conf != null && conf.isCountCacheEnabled()) {
+            this.cache = createCache(conf.getCountCacheTtl());
+        } else {
+            this.cache = null;
+        }
+    }
+
+    /**
+     * creates an enabled cache, regardless of the configuration
+     *
+     * @param ttl the entries ttl in milliseconds
+     */
+    CountCache(long ttl) {
+        this.cache = createCache(ttl);
+    }
+
+    private static Cache<Key, Long> createCache(long ttl) {
+        return CacheFactory.createLocalCache(MAX_CACHE_SIZE,
+                Cache.EXPIRE_POLICY.AFTER_WRITE,
+                ttl);
+    }
+
+    /**
+     * @return true if the cache is enabled
+     */
+    boolean isEnabled() {
+        return cache != null;
+    }
+
+    /**
+     *
+     * @param namespace
+     * @param filters
+     * @return the cached count or empty
+     */
+    Optional<Long> get(MongoNamespace namespace, BsonDocument filters) {
+        if (cache == null) {
+            return Optional.empty();
+        }
+
+        var cached = cache.get(new Key(namespace, filters));
+
+        return cached == null ? Optional.empty() : cached;
+    }
+
+    /**
+     *
+     * @param namespace
+     * @param filters
+     * @param count
+     */
+    void put(MongoNamespace namespace, BsonDocument filters, long count) {
+        if (cache != null) {
+            cache.put(new Key(namespace, filters), count);
+        }
+    }
+
+    private static class Key {
+        private final MongoNamespace namespace;
+        private final BsonDocument filters;
+
+        Key(MongoNamespace namespace, BsonDocument filters) {
+            this.namespace = namespace;
+            this.filters = filters;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+
+            if (!(o instanceof Key)) {
+                return false;
+            }
+
+            var other = (Key) o;
+
+            return Objects.equals(namespace, other.namespace)
+                    && Objects.equals(filters, other.filters);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(namespace, filters);
+        }
+    }
+
+    private static class CountCacheHolder {
+        private static final CountCache INSTANCE = new CountCache();
+
+        private CountCacheHolder() {
+        }
+    }
+}
@@ -20,19 +20,26 @@
  */
 package org.restheart.mongodb.db;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.mongodb.client.FindIterable;
 import static java.lang.Thread.MIN_PRIORITY;
 import java.util.Comparator;
+import java.util.Map;
+import java.util.NavigableSet;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.TreeMap;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.Executors;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
-import java.util.function.Predicate;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import org.bson.BsonDocument;
 import static org.fusesource.jansi.Ansi.Color.GREEN;
@@ -44,10 +51,18 @@ import org.restheart.cache.CacheFactory;
 import org.restheart.cache.LoadingCache;
 import org.restheart.exchange.ExchangeKeys.EAGER_CURSOR_ALLOCATION_POLICY;
 import org.restheart.mongodb.MongoServiceConfiguration;
+import org.restheart.mongodb.handlers.metrics.SharedMetricRegistryProxy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
+ * Pool of cursors that already skipped a number of documents.
+ *
+ * Cursors are indexed by query shape (namespace, filter, sort, keys and hint);
+ * for each shape the pooled cursors are kept ordered by skips, so that the
+ * best cursor for a request is found with a single floor lookup. A cursor is
+ * taken out of the pool atomically removing it from the underlying cache,
+ * thus no global lock is needed.
  *
  * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
  */
@@ -82,6 +97,12 @@ public class CursorPool {
                             .build()
             );
 
+    private static final Comparator<CursorPoolEntryKey> BY_SKIPS
+            = Comparator.comparingInt(CursorPoolEntryKey::getSkipped)
+                    .thenComparingLong(CursorPoolEntryKey::getCursorId);
+
+    private static final AtomicLong CURSOR_IDS = new AtomicLong(0);
+
     /**
      *
      * @return
@@ -108,15 +129,22 @@ public class CursorPool {
             = MongoServiceConfiguration.get().getEagerRndMaxCursors();
 
     private final Cache<CursorPoolEntryKey, FindIterable<BsonDocument>> cache;
+    private final Map<QueryShape, NavigableSet<CursorPoolEntryKey>> index
+            = new ConcurrentHashMap<>();
     private final LoadingCache<CursorPoolEntryKey, Long> collSizes;
 
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter skipsSaved;
+
     private CursorPool(DatabaseImpl dbsDAO) {
         this.dbsDAO = dbsDAO;
 
         cache = CacheFactory.createLocalCache(
                 POOL_SIZE,
                 Cache.EXPIRE_POLICY.AFTER_READ,
-                TTL);
+                TTL,
+                entry -> unindex(entry.getKey()));
 
         collSizes = CacheFactory.createLocalLoadingCache(100,
                 org.restheart.cache.Cache.EXPIRE_POLICY.AFTER_WRITE,
@@ -129,6 +157,14 @@ public class CursorPool {
                 }
         );
 
+        MetricRegistry registry = new SharedMetricRegistryProxy().registry();
+
+        hits = registry.counter("cursor-pool.hits");
+        misses = registry.counter("cursor-pool.misses");
+        skipsSaved = registry.counter("cursor-pool.skips-saved");
+        registry.gauge("cursor-pool.size",
+                () -> (Gauge<Integer>) () -> cache.asMap().size());
+
         if (LOGGER.isDebugEnabled()) {
             // print stats every 1 minute
             Executors.newSingleThreadScheduledExecutor()
@@ -145,12 +181,16 @@ public class CursorPool {
     }
 
     /**
+     * Takes from the pool the cursor with the most skips that is usable for the
+     * request, i.e. with skips &lt;= the requested skips and within
+     * MIN_SKIP_DISTANCE_PERCENTAGE of them. The returned cursor is removed from
+     * the pool, so it is never handed to two requests.
      *
      * @param key
      * @param allocationPolicy
-     * @return
+     * @return the cursor or null if no cursor in the pool can be reused
      */
-    public synchronized SkippedFindIterable get(
+    public SkippedFindIterable get(
             CursorPoolEntryKey key,
             EAGER_CURSOR_ALLOCATION_POLICY allocationPolicy) {
         if (key.getSkipped() < SKIP_SLICE_LINEAR_WIDTH) {
@@ -161,43 +201,53 @@ public class CursorPool {
             return null;
         }
 
-        // return the dbcursor with the closest skips to the request
-        Optional<CursorPoolEntryKey> _bestKey = cache.asMap().keySet().stream()
-                .filter(cursorsPoolFilterGte(key))
-                .sorted(Comparator.comparingInt(CursorPoolEntryKey::getSkipped).reversed())
-                .findFirst();
-
-        SkippedFindIterable ret;
-
-        if (_bestKey.isPresent()) {
-            Optional<FindIterable<BsonDocument>> _dbcur
-                    = cache.get(_bestKey.get());
-
-            if (_dbcur != null && _dbcur.isPresent()) {
-                ret = new SkippedFindIterable(
-                        _dbcur.get(),
-                        _bestKey.get().getSkipped());
-                cache.invalidate(_bestKey.get());
-
-                LOGGER.debug("{} cursor in pool. id {}, saving {} skips",
-                        ansi().fg(GREEN).bold().a("found").reset().toString(),
-                        _bestKey.get().getCursorId(),
-                        key.getSkipped(),
-                        _bestKey.get().getSkipped());
-            } else {
-                ret = null;
-
-                LOGGER.debug("{} cursor in pool.",
-                        ansi().fg(RED).bold().a("no").reset().toString());
-            }
-        } else {
-            ret = null;
+        var slices = index.get(new QueryShape(key));
+
+        if (slices != null) {
+            // the probe sorts after any pooled cursor with the same skips
+            var candidate = slices.floor(new CursorPoolEntryKey(
+                    key.getSession(),
+                    key.getCollection(),
+                    key.getSort(),
+                    key.getFilter(),
+                    key.getKeys(),
+                    key.getHint(),
+                    key.getSkipped(),
+                    Long.MAX_VALUE));
+
+            while (candidate != null && isCloseEnough(candidate, key)) {
+                // removing the entry from the cache is the atomic take:
+                // only one thread gets a non null value
+                Optional<FindIterable<BsonDocument>> _dbcur
+                        = cache.asMap().remove(candidate);
+
+                if (_dbcur != null && _dbcur.isPresent()) {
+                    // the removal listener also unindexes it
+                    slices.remove(candidate);
+
+                    hits.inc();
+                    skipsSaved.inc(candidate.getSkipped());
+
+                    LOGGER.debug("{} cursor in pool. id {}, saving {} skips",
+                            ansi().fg(GREEN).bold().a("found").reset().toString(),
+                            candidate.getCursorId(),
+                            candidate.getSkipped());
+
+                    return new SkippedFindIterable(
+                            _dbcur.get(),
+                            candidate.getSkipped());
+                }
 
-            LOGGER.debug(ansi().fg(RED).bold().a("no").reset().toString()
-                    + " cursor in pool.");
+                candidate = slices.lower(candidate);
+            }
         }
 
-        return ret;
+        misses.inc();
+
+        LOGGER.debug(ansi().fg(RED).bold().a("no").reset().toString()
+                + " cursor in pool.");
+
+        return null;
     }
 
     void populateCache(
@@ -226,18 +276,7 @@ public class CursorPool {
                             = slice * SKIP_SLICE_LINEAR_WIDTH
                             - SKIP_SLICE_LINEAR_DELTA;
 
-                    CursorPoolEntryKey sliceKey
-                            = new CursorPoolEntryKey(
-                                    key.getSession(),
-                                    key.getCollection(),
-                                    key.getSort(),
-                                    key.getFilter(),
-                                    key.getKeys(),
-                                    key.getHint(),
-                                    sliceSkips,
-                                    -1);
-
-                    long existing = getSliceHeight(sliceKey);
+                    long existing = getSliceHeight(key, sliceSkips);
 
                     long tocreate = tohave - existing;
 
@@ -257,17 +296,7 @@ public class CursorPool {
 
                         cursor.iterator(); // this forces the actual skipping
 
-                        CursorPoolEntryKey newkey = new CursorPoolEntryKey(
-                                key.getSession(),
-                                key.getCollection(),
-                                key.getSort(),
-                                key.getFilter(),
-                                key.getHint(),
-                                key.getKeys(),
-                                sliceSkips,
-                                System.nanoTime());
-
-                        cache.put(newkey, cursor);
+                        CursorPoolEntryKey newkey = put(key, sliceSkips, cursor);
 
                         LOGGER.debug("{} cursor in pool: {}",
                                 ansi().fg(YELLOW).bold().a("new").reset()
@@ -307,14 +336,7 @@ public class CursorPool {
                 for (int slice = 1; slice < slices; slice++) {
                     int sliceSkips = slice * sliceWidht;
 
-                    CursorPoolEntryKey sliceKey = new CursorPoolEntryKey(key);
-
-                    LOGGER.debug("{} cursor in pool: {}",
-                            ansi().fg(YELLOW).bold().a("new").reset()
-                                    .toString(),
-                            sliceKey);
-
-                    long existing = getSliceHeight(sliceKey);
+                    long existing = getSliceHeight(key, sliceSkips);
 
                     if (existing == 0) {
                         FindIterable<BsonDocument> cursor = dbsDAO
@@ -329,21 +351,12 @@ public class CursorPool {
 
                         cursor.iterator(); // this forces the actual skipping
 
-                        CursorPoolEntryKey newkey = new CursorPoolEntryKey(
-                                key.getSession(),
-                                key.getCollection(),
-                                key.getSort(),
-                                key.getFilter(),
-                                key.getHint(),
-                                key.getKeys(),
-                                sliceSkips,
-                                System.nanoTime());
-                        cache.put(newkey, cursor);
-
-                        LOGGER.debug("{} cursor in pool (copied): {}",
+                        CursorPoolEntryKey newkey = put(key, sliceSkips, cursor);
+
+                        LOGGER.debug("{} cursor in pool: {}",
                                 ansi().fg(YELLOW).bold().a("new").reset()
                                         .toString(),
-                                sliceKey);
+                                newkey);
                     }
                 }
             });
@@ -354,46 +367,68 @@ public class CursorPool {
 
     }
 
-    private long getSliceHeight(CursorPoolEntryKey key) {
-        long ret = cache.asMap().keySet().stream()
-                .filter(cursorsPoolFilterEq(key))
-                .count();
+    private CursorPoolEntryKey put(CursorPoolEntryKey key,
+            int skips,
+            FindIterable<BsonDocument> cursor) {
+        var newkey = new CursorPoolEntryKey(
+                key.getSession(),
+                key.getCollection(),
+                key.getSort(),
+                key.getFilter(),
+                key.getKeys(),
+                key.getHint(),
+                skips,
+                CURSOR_IDS.incrementAndGet());
+
+        // index before caching: the removal listener unindexes the key, so
+        // an entry evicted right after being cached cannot leave a stale
+        // key in the index. get() skips a key indexed but not yet cached
+        index.compute(new QueryShape(newkey), (shape, slices) -> {
+            var ret = slices == null
+                    ? new ConcurrentSkipListSet<>(BY_SKIPS)
+                    : slices;
+            ret.add(newkey);
+            return ret;
+        });
+
+        cache.put(newkey, cursor);
+
+        return newkey;
+    }
+
+    private void unindex(CursorPoolEntryKey key) {
+        index.computeIfPresent(new QueryShape(key), (shape, slices) -> {
+            slices.remove(key);
+            return slices.isEmpty() ? null : slices;
+        });
+    }
+
+    private long getSliceHeight(CursorPoolEntryKey key, int skips) {
+        var slices = index.get(new QueryShape(key));
+
+        long ret = slices == null
+                ? 0
+                : slices.subSet(
+                        new CursorPoolEntryKey(key.getSession(),
+                                key.getCollection(), null, null, null, null,
+                                skips, Long.MIN_VALUE), true,
+                        new CursorPoolEntryKey(key.getSession(),
+                                key.getCollection(), null, null, null, null,
+                                skips, Long.MAX_VALUE), true)
+                        .size();
 
         LOGGER.trace(
                 "cursor in pool with skips {} are {}",
-                key.getSkipped(),
+                skips,
                 ret);
 
         return ret;
     }
 
-    private Predicate<? super CursorPoolEntryKey> cursorsPoolFilterEq(
+    private static boolean isCloseEnough(
+            CursorPoolEntryKey poolCursor,
             CursorPoolEntryKey requestCursor) {
-        return poolCursor
-                -> Objects.equals(poolCursor.getCollection()
-                        .getNamespace(),
-                        requestCursor.getCollection().getNamespace())
-                && Objects.equals(poolCursor.getFilter(),
-                        requestCursor.getFilter())
-                && Objects.equals(poolCursor.getSort(),
-                        requestCursor.getSort())
-                && Objects.equals(poolCursor.getKeys(),
-                        requestCursor.getKeys())
-                && poolCursor.getSkipped() == requestCursor.getSkipped();
-    }
-
-    private Predicate<? super CursorPoolEntryKey> cursorsPoolFilterGte(
-            CursorPoolEntryKey requestCursor) {
-        return poolCursor
-                -> Objects.equals(poolCursor.getCollection().getNamespace(),
-                        requestCursor.getCollection().getNamespace())
-                && Objects.equals(poolCursor.getFilter(),
-                        requestCursor.getFilter())
-                && Objects.equals(poolCursor.getSort(),
-                        requestCursor.getSort())
-                && Objects.equals(poolCursor.getKeys(),
-                        requestCursor.getKeys())
-                && poolCursor.getSkipped() <= requestCursor.getSkipped()
+        return poolCursor.getSkipped() <= requestCursor.getSkipped()
                 && requestCursor.getSkipped() - poolCursor.getSkipped()
                 <= MIN_SKIP_DISTANCE_PERCENTAGE
                 * requestCursor.getSkipped();
@@ -408,6 +443,50 @@ public class CursorPool {
                         Collectors.counting())));
     }
 
+    /**
+     * The part of the key that identifies the query of a pooled cursor,
+     * i.e. everything but the skips and the cursor id.
+     */
+    private static class QueryShape {
+        private final String namespace;
+        private final BsonDocument filter;
+        private final BsonDocument sort;
+        private final BsonDocument keys;
+        private final BsonDocument hint;
+        private final int hash;
+
+        QueryShape(CursorPoolEntryKey key) {
+            this.namespace = key.getCollection().getNamespace().getFullName();
+            this.filter = key.getFilter();
+            this.sort = key.getSort();
+            this.keys = key.getKeys();
+            this.hint = key.getHint();
+            this.hash = Objects.hash(namespace, filter, sort, keys, hint);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+            final QueryShape other = (QueryShape) obj;
+
+            return Objects.equals(this.namespace, other.namespace)
+                    && Objects.equals(this.filter, other.filter)
+                    && Objects.equals(this.sort, other.sort)
+                    && Objects.equals(this.keys, other.keys)
+                    && Objects.equals(this.hint, other.hint);
+        }
+    }
+
     private static class DBCursorPoolSingletonHolder {
 
         private static final CursorPool INSTANCE
@@ -25,6 +25,8 @@ import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 import org.bson.BsonArray;
 import org.bson.BsonDocument;
 import org.bson.BsonObjectId;
@@ -126,6 +128,32 @@ public interface Database {
             final BsonDocument keys,
             final EAGER_CURSOR_ALLOCATION_POLICY cursorAllocationPolicy);
 
+    /**
+     * Returns the documents of the requested page as a lazy stream backed by
+     * the db cursor. The stream must be closed after use.
+     *
+     * @param cs the client session
+     * @param collection
+     * @param page
+     * @param pagesize
+     * @param sortBy
+     * @param filter
+     * @param hint
+     * @param keys
+     * @param cursorAllocationPolicy
+     * @return Collection Data as a Stream of BsonDocument
+     */
+    Stream<BsonDocument> getCollectionDataStream(
+            final ClientSession cs,
+            final MongoCollection<BsonDocument> collection,
+            final int page,
+            final int pagesize,
+            final BsonDocument sortBy,
+            final BsonDocument filter,
+            final BsonDocument hint,
+            final BsonDocument keys,
+            final EAGER_CURSOR_ALLOCATION_POLICY cursorAllocationPolicy);
+
     /**
      *
      * @param cs the client session
@@ -151,6 +179,21 @@ public interface Database {
             final MongoCollection<BsonDocument> collection,
             final BsonDocument filters);
 
+    /**
+     * Counts the documents in a separate thread, allowing to read the data in
+     * parallel; counts within a client session are executed synchronously
+     *
+     * @param cs the client session
+     * @param collection
+     * @param filters
+     * @return the future number of documents in the given collection (taking
+     * into account the filters in case)
+     */
+    CompletableFuture<Long> getCollectionSizeAsync(
+            final ClientSession cs,
+            final MongoCollection<BsonDocument> collection,
+            final BsonDocument filters);
+
     /**
      *
      * @param dbName
@@ -29,7 +29,9 @@ import static com.mongodb.client.model.Filters.eq;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.bson.BsonArray;
 import org.bson.BsonDocument;
 import org.bson.BsonObjectId;
@@ -574,6 +576,21 @@ public class DatabaseImpl implements Database {
         return collectionDAO.getCollectionSize(cs, coll, filters);
     }
 
+    /**
+     *
+     * @param cs the client session
+     * @param coll
+     * @param filters
+     * @return
+     */
+    @Override
+    public CompletableFuture<Long> getCollectionSizeAsync(
+            final ClientSession cs,
+            final MongoCollection<BsonDocument> coll,
+            final BsonDocument filters) {
+        return collectionDAO.getCollectionSizeAsync(cs, coll, filters);
+    }
+
     /**
      *
      * @param cs the client session
@@ -610,6 +627,42 @@ public class DatabaseImpl implements Database {
                 cursorAllocationPolicy);
     }
 
+    /**
+     *
+     * @param cs the client session
+     * @param coll
+     * @param page
+     * @param pagesize
+     * @param sortBy
+     * @param filter
+     * @param hint
+     * @param keys
+     * @param cursorAllocationPolicy
+     * @return
+     */
+    @Override
+    public Stream<BsonDocument> getCollectionDataStream(
+            final ClientSession cs,
+            final MongoCollection<BsonDocument> coll,
+            final int page,
+            final int pagesize,
+            final BsonDocument sortBy,
+            final BsonDocument filter,
+            final BsonDocument hint,
+            final BsonDocument keys,
+            final EAGER_CURSOR_ALLOCATION_POLICY cursorAllocationPolicy) {
+        return collectionDAO.getCollectionDataStream(
+                cs,
+                coll,
+                page,
+                pagesize,
+                sortBy,
+                filter,
+                hint,
+                keys,
+                cursorAllocationPolicy);
+    }
+
     /**
      *
      * @param cs the client session
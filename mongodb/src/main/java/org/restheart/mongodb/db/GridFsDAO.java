@@ -22,11 +22,15 @@ package org.restheart.mongodb.db;
 import com.mongodb.DuplicateKeyException;
 import com.mongodb.MongoClient;
 import com.mongodb.MongoGridFSException;
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
 import com.mongodb.client.gridfs.GridFSBucket;
 import com.mongodb.client.gridfs.GridFSBuckets;
 import com.mongodb.client.gridfs.model.GridFSFile;
 import com.mongodb.client.gridfs.model.GridFSUploadOptions;
 import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Updates.set;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -66,8 +70,16 @@ public class GridFsDAO implements GridFsRepository {
      *
      */
     public GridFsDAO() {
-        client = MongoClientSingleton.getInstance().getClient();
-        collectionDAO = new CollectionDAO(client);
+        this(MongoClientSingleton.getInstance().getClient());
+    }
+
+    GridFsDAO(MongoClient client) {
+        this.client = client;
+        this.collectionDAO = new CollectionDAO(client);
+    }
+
+    GridFSBucket bucket(final MongoDatabase mdb, final String bucket) {
+        return GridFSBuckets.create(mdb, bucket);
     }
 
     /**
@@ -89,49 +101,73 @@ public class GridFsDAO implements GridFsRepository {
             final BsonDocument metadata,
             final Path filePath)
             throws IOException, DuplicateKeyException {
+        try (InputStream sourceStream = new FileInputStream(filePath.toFile())) {
+            return createFile(db, dbName, bucketName, metadata, sourceStream);
+        }
+    }
 
-        final String bucket = extractBucketName(bucketName);
-
-        GridFSBucket gridFSBucket = GridFSBuckets.create(
-                db.getDatabase(dbName),
-                bucket);
+    /**
+     *
+     * @param db
+     * @param dbName
+     * @param bucketName
+     * @param metadata
+     * @param sourceStream the content of the file, read in chunks and
+     * uploaded as it is read
+     * @return the OperationResult
+     * @throws IOException
+     * @throws DuplicateKeyException
+     */
+    @Override
+    public OperationResult createFile(
+            final Database db,
+            final String dbName,
+            final String bucketName,
+            final BsonDocument metadata,
+            final InputStream sourceStream)
+            throws IOException, DuplicateKeyException {
+        return createFile(bucket(db.getDatabase(dbName), extractBucketName(bucketName)),
+                metadata,
+                sourceStream);
+    }
 
+    private OperationResult createFile(
+            final GridFSBucket gridFSBucket,
+            final BsonDocument metadata,
+            final InputStream sourceStream) {
         String filename = extractFilenameFromProperties(metadata);
 
         //add etag to metadata
         ObjectId etag = new ObjectId();
         metadata.put("_etag", new BsonObjectId(etag));
 
-        try (InputStream sourceStream = new FileInputStream(filePath.toFile())) {
-
-            if (metadata.get("_id") == null) {
-                GridFSUploadOptions options = new GridFSUploadOptions()
-                        .metadata(Document.parse(metadata.toJson()));
+        if (metadata.get("_id") == null) {
+            GridFSUploadOptions options = new GridFSUploadOptions()
+                    .metadata(Document.parse(metadata.toJson()));
 
-                ObjectId _id = gridFSBucket.uploadFromStream(
-                        filename,
-                        sourceStream,
-                        options);
+            ObjectId _id = gridFSBucket.uploadFromStream(
+                    filename,
+                    sourceStream,
+                    options);
 
-                return new OperationResult(SC_CREATED,
-                        new BsonObjectId(etag),
-                        new BsonObjectId(_id));
-            } else {
-                BsonValue _id = metadata.remove("_id");
+            return new OperationResult(SC_CREATED,
+                    new BsonObjectId(etag),
+                    new BsonObjectId(_id));
+        } else {
+            BsonValue _id = metadata.remove("_id");
 
-                GridFSUploadOptions options = new GridFSUploadOptions()
-                        .metadata(Document.parse(metadata.toJson()));
+            GridFSUploadOptions options = new GridFSUploadOptions()
+                    .metadata(Document.parse(metadata.toJson()));
 
-                gridFSBucket.uploadFromStream(
-                        _id,
-                        filename,
-                        sourceStream,
-                        options);
+            gridFSBucket.uploadFromStream(
+                    _id,
+                    filename,
+                    sourceStream,
+                    options);
 
-                return new OperationResult(SC_CREATED,
-                        new BsonObjectId(etag),
-                        _id);
-            }
+            return new OperationResult(SC_CREATED,
+                    new BsonObjectId(etag),
+                    _id);
         }
     }
 
@@ -157,33 +193,236 @@ public class GridFsDAO implements GridFsRepository {
             final BsonValue fileId,
             final String requestEtag,
             final boolean checkEtag) throws IOException {
+        try (InputStream sourceStream = new FileInputStream(filePath.toFile())) {
+            return upsertFile(db, dbName, bucketName, metadata, sourceStream,
+                    fileId, requestEtag, checkEtag);
+        }
+    }
+
+    /**
+     *
+     * @param db
+     * @param dbName
+     * @param bucketName
+     * @param metadata
+     * @param sourceStream the content of the file
+     * @param fileId
+     * @param requestEtag
+     * @param checkEtag
+     * @return
+     * @throws IOException
+     */
+    @Override
+    public OperationResult upsertFile(final Database db,
+            final String dbName,
+            final String bucketName,
+            final BsonDocument metadata,
+            final InputStream sourceStream,
+            final BsonValue fileId,
+            final String requestEtag,
+            final boolean checkEtag) throws IOException {
 
-        OperationResult deletionResult = deleteFile(db, dbName, bucketName, fileId, requestEtag, checkEtag);
+        final String bucket = extractBucketName(bucketName);
+        final MongoDatabase mdb = db.getDatabase(dbName);
+        final GridFSBucket gridFSBucket = bucket(mdb, bucket);
+
+        // fail fast, the etag is checked again when replacing the file
+        OperationResult etagCheck = checkEtag(getFileForId(gridFSBucket, fileId), requestEtag, checkEtag);
+
+        if (etagCheck != null) {
+            return etagCheck;
+        }
 
-        //https://www.w3.org/Protocols/rfc2616/rfc2616-sec9.html#sec9.7
-        final boolean deleteOperationWasSuccessful = deletionResult.getHttpCode() == SC_NO_CONTENT || deletionResult.getHttpCode() == SC_OK;
-        final boolean fileDidntExist = deletionResult.getHttpCode() == SC_NOT_FOUND;
-        final boolean fileExisted = !fileDidntExist;
+        // the content is uploaded with a temporary id and the existing file
+        // is replaced only when the upload succeeds: a failed or interrupted
+        // upload, e.g. of a streamed request, leaves it untouched
+        final BsonObjectId tmpId = new BsonObjectId();
+        final BsonDocument _metadata = metadata.clone();
+        _metadata.put("_id", tmpId);
 
-        if (deleteOperationWasSuccessful || fileDidntExist) {
-            OperationResult creationResult = createFile(db, dbName, bucketName, metadata, filePath);
+        OperationResult creationResult = createFile(gridFSBucket, _metadata, sourceStream);
+
+        deleteLock.lock();
+        try {
+            GridFSFile file = getFileForId(gridFSBucket, fileId);
 
-            //https://www.w3.org/Protocols/rfc2616/rfc2616-sec9.html#sec9.5
-            final boolean creationOperationWasSuccessful = SC_CREATED == creationResult.getHttpCode() || SC_OK == creationResult.getHttpCode();
-            if (creationOperationWasSuccessful) {
+            etagCheck = checkEtag(file, requestEtag, checkEtag);
 
-                //https://www.w3.org/Protocols/rfc2616/rfc2616-sec9.html#sec9.6
-                if (fileExisted) {
-                    return new OperationResult(SC_OK, creationResult.getEtag(), creationResult.getOldData(), creationResult.getNewData());
+            if (etagCheck != null) {
+                // the file was modified during the upload
+                gridFSBucket.delete(tmpId);
+                return etagCheck;
+            }
+
+            try {
+                if (file == null) {
+                    rename(null, mdb, bucket, tmpId, fileId);
                 } else {
-                    return new OperationResult(SC_CREATED, creationResult.getEtag(), creationResult.getNewId());
+                    replace(mdb, gridFSBucket, bucket, tmpId, fileId);
+                }
+            } catch (RuntimeException re) {
+                try {
+                    purge(null, mdb, bucket, tmpId);
+                } catch (RuntimeException pre) {
+                    LOGGER.warn("Error deleting the uploaded file {}", tmpId, pre);
                 }
+
+                throw re;
+            }
+
+            //https://www.w3.org/Protocols/rfc2616/rfc2616-sec9.html#sec9.6
+            if (file != null) {
+                return new OperationResult(SC_OK, creationResult.getEtag(), creationResult.getOldData(), creationResult.getNewData());
             } else {
-                return creationResult;
+                return new OperationResult(SC_CREATED, creationResult.getEtag(), fileId);
+            }
+        } finally {
+            deleteLock.unlock();
+        }
+    }
+
+    /**
+     * replaces the file with the uploaded one.
+     *
+     * With transactions, the old file is deleted and the uploaded one renamed
+     * atomically. Otherwise the old file is first renamed to a backup id and
+     * deleted only after the uploaded one took its id; if the rename fails,
+     * the old file is restored.
+     */
+    private void replace(final MongoDatabase mdb,
+            final GridFSBucket gridFSBucket,
+            final String bucket,
+            final BsonValue tmpId,
+            final BsonValue fileId) {
+        if (supportsTransactions()) {
+            try (ClientSession session = client.startSession()) {
+                session.withTransaction(() -> {
+                    purge(session, mdb, bucket, fileId);
+                    rename(session, mdb, bucket, tmpId, fileId);
+                    return null;
+                });
             }
+
+            return;
+        }
+
+        final BsonObjectId backupId = new BsonObjectId();
+
+        rename(null, mdb, bucket, fileId, backupId);
+
+        try {
+            rename(null, mdb, bucket, tmpId, fileId);
+        } catch (RuntimeException re) {
+            rename(null, mdb, bucket, backupId, fileId);
+            throw re;
+        }
+
+        try {
+            gridFSBucket.delete(backupId);
+        } catch (RuntimeException re) {
+            LOGGER.warn("Error deleting the replaced file {}, renamed to {}",
+                    fileId, backupId, re);
+        }
+    }
+
+    /**
+     * @return true if the updates of the replace can be executed in a
+     * transaction
+     */
+    boolean supportsTransactions() {
+        return MongoClientSingleton.isInitialized()
+                && MongoClientSingleton.getInstance().isReplicaSet();
+    }
+
+    /**
+     * moves a file to another id; _id is immutable, so the files document is
+     * reinserted and the chunks are moved. Without a session, a failed rename
+     * is undone, leaving the file with its id
+     *
+     * @param session the client session, can be null
+     */
+    private void rename(final ClientSession session,
+            final MongoDatabase mdb,
+            final String bucket,
+            final BsonValue fromId,
+            final BsonValue toId) {
+        MongoCollection<BsonDocument> files = mdb.getCollection(bucket.concat(".files"), BsonDocument.class);
+        MongoCollection<BsonDocument> chunks = mdb.getCollection(bucket.concat(".chunks"), BsonDocument.class);
+
+        if (session != null) {
+            BsonDocument file = files.find(session, eq("_id", fromId)).first();
+            file.put("_id", toId);
+
+            files.insertOne(session, file);
+            chunks.updateMany(session, eq("files_id", fromId), set("files_id", toId));
+            files.deleteOne(session, eq("_id", fromId));
+            return;
+        }
+
+        BsonDocument file = files.find(eq("_id", fromId)).first();
+        file.put("_id", toId);
+
+        files.insertOne(file);
+
+        try {
+            chunks.updateMany(eq("files_id", fromId), set("files_id", toId));
+            files.deleteOne(eq("_id", fromId));
+        } catch (RuntimeException re) {
+            chunks.updateMany(eq("files_id", toId), set("files_id", fromId));
+            files.deleteOne(eq("_id", toId));
+            throw re;
+        }
+    }
+
+    /**
+     * deletes the files document and the chunks with the id, if any, as
+     * left by a failed rename
+     *
+     * @param session the client session, can be null
+     */
+    private void purge(final ClientSession session,
+            final MongoDatabase mdb,
+            final String bucket,
+            final BsonValue id) {
+        MongoCollection<BsonDocument> files = mdb.getCollection(bucket.concat(".files"), BsonDocument.class);
+        MongoCollection<BsonDocument> chunks = mdb.getCollection(bucket.concat(".chunks"), BsonDocument.class);
+
+        if (session == null) {
+            files.deleteOne(eq("_id", id));
+            chunks.deleteMany(eq("files_id", id));
         } else {
-            return deletionResult;
+            files.deleteOne(session, eq("_id", id));
+            chunks.deleteMany(session, eq("files_id", id));
+        }
+    }
+
+    /**
+     * @return the result of a failed etag check, null if the file can be
+     * modified
+     */
+    private OperationResult checkEtag(final GridFSFile file,
+            final String requestEtag,
+            final boolean checkEtag) {
+        if (file == null || !checkEtag) {
+            return null;
+        }
+
+        Document metadata = file.getMetadata();
+
+        if (metadata != null) {
+            Object oldEtag = metadata.get("_etag");
+
+            if (oldEtag != null) {
+                if (requestEtag == null) {
+                    return new OperationResult(SC_CONFLICT, oldEtag);
+                } else if (!Objects.equals(oldEtag.toString(), requestEtag)) {
+                    return new OperationResult(
+                            SC_PRECONDITION_FAILED, oldEtag);
+                }
+            }
         }
+
+        return null;
     }
 
     private String extractFilenameFromProperties(
@@ -224,11 +463,8 @@ public class GridFsDAO implements GridFsRepository {
             final String requestEtag,
             final boolean checkEtag) {
 
-        final String bucket = extractBucketName(bucketName);
-
-        GridFSBucket gridFSBucket = GridFSBuckets.create(
-                db.getDatabase(dbName),
-                bucket);
+        GridFSBucket gridFSBucket = bucket(db.getDatabase(dbName),
+                extractBucketName(bucketName));
 
         // try to avoid concurrent deletions of the same file as much as possible
         // Note: this won't help much if RESTHeart is clustered, as the lock is local
@@ -240,20 +476,10 @@ public class GridFsDAO implements GridFsRepository {
                 return new OperationResult(SC_NOT_FOUND);
             }
 
-            if (checkEtag) {
-                Document metadata = file.getMetadata();
-                if (metadata != null) {
-                    Object oldEtag = metadata.get("_etag");
-
-                    if (oldEtag != null) {
-                        if (requestEtag == null) {
-                            return new OperationResult(SC_CONFLICT, oldEtag);
-                        } else if (!Objects.equals(oldEtag.toString(), requestEtag)) {
-                            return new OperationResult(
-                                    SC_PRECONDITION_FAILED, oldEtag);
-                        }
-                    }
-                }
+            OperationResult etagCheck = checkEtag(file, requestEtag, checkEtag);
+
+            if (etagCheck != null) {
+                return etagCheck;
             }
 
             try {
@@ -102,6 +102,17 @@ public class TxnClientSessionFactory extends ClientSessionFactory {
                 }
             }
 
+            // the server aborts the txn on some errors, e.g. write conflicts
+            if (TxnsStateCache.getInstance().isEnabled()) {
+                exchange.addExchangeCompleteListener((ex, nextListener) -> {
+                    if (ex.getStatusCode() >= 400) {
+                        TxnsStateCache.getInstance().invalidate(sid);
+                    }
+
+                    nextListener.proceed();
+                });
+            }
+
             return cs;
         } else {
             LOGGER.debug("Request is executed in session {}", _sid);
@@ -113,13 +124,14 @@ public class TxnClientSessionFactory extends ClientSessionFactory {
 
     /**
      *
-     * Warn: requires a round trip to the server
+     * Warn: requires a round trip to the server, unless the txn status is
+     * cached by TxnsStateCache
      *
      * @param sid
      * @return
      */
     public TxnClientSessionImpl getTxnClientSession(UUID sid) {
-        return getTxnClientSession(sid, TxnsUtils.getTxnServerStatus(sid));
+        return getTxnClientSession(sid, TxnsUtils.getTxnStatus(sid));
     }
 
     /**
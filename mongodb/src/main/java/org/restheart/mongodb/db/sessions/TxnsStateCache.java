@@ -0,0 +1,125 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-mongodb
+ * %%
+ * Copyright (C) 2014 - 2020 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.mongodb.db.sessions;
+
+import java.util.Optional;
+import java.util.UUID;
+import org.restheart.cache.Cache;
+import org.restheart.cache.CacheFactory;
+import org.restheart.mongodb.MongoServiceConfiguration;
+
+/**
+ * Keeps, per session id, the state of the last transaction started,
+ * committed or aborted by this instance, so that TxnsUtils.getTxnStatus()
+ * does not need to query the server for it.
+ *
+ * Enabled by the txns-state-cache-enabled configuration option; entries
+ * expire after txns-state-cache-ttl milliseconds and are invalidated when a
+ * request in the session fails, since the server might have aborted the
+ * transaction.
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class TxnsStateCache {
+    private static final long MAX_CACHE_SIZE = 10_000;
+
+    /**
+     *
+     * @return
+     */
+    public static TxnsStateCache getInstance() {
+        return TxnsStateCacheHolder.INSTANCE;
+    }
+
+    private final Cache<UUID, Txn> cache;
+
+    private TxnsStateCache() {
+        var conf = MongoServiceConfiguration.get();
+
+        if (conf != null && conf.isTxnsStateCacheEnabled()) {
+            this.cache = createCache(conf.getTxnsStateCacheTtl());
+        } else {
+            this.cache = null;
+        }
+    }
+
+    /**
+     * creates an enabled cache, regardless of the configuration
+     *
+     * @param ttl the entries ttl in milliseconds
+     */
+    TxnsStateCache(long ttl) {
+        this.cache = createCache(ttl);
+    }
+
+    private static Cache<UUID, Txn> createCache(long ttl) {
+        return CacheFactory.createLocalCache(MAX_CACHE_SIZE,
+                Cache.EXPIRE_POLICY.AFTER_WRITE,
+                ttl);
+    }
+
+    /**
+     * @return true if the cache is enabled
+     */
+    public boolean isEnabled() {
+        return cache != null;
+    }
+
+    /**
+     *
+     * @param sid
+     * @return the cached txn state or empty
+     */
+    public Optional<Txn> get(UUID sid) {
+        if (cache == null) {
+            return Optional.empty();
+        }
+
+        var cached = cache.get(sid);
+
+        return cached == null ? Optional.empty() : cached;
+    }
+
+    /**
+     *
+     * @param sid
+     * @param txn
+     */
+    public void put(UUID sid, Txn txn) {
+        if (cache != null) {
+            cache.put(sid, txn);
+        }
+    }
+
+    /**
+     *
+     * @param sid
+     */
+    public void invalidate(UUID sid) {
+        if (cache != null) {
+            cache.invalidate(sid);
+        }
+    }
+
+    private static class TxnsStateCacheHolder {
+        private static final TxnsStateCache INSTANCE = new TxnsStateCache();
+    }
+}
@@ -40,6 +40,30 @@ public class TxnsUtils {
     private static final MongoClient MCLIENT = MongoClientSingleton
             .getInstance().getClient();
     
+    /**
+     * Returns the txn status from TxnsStateCache, if enabled and known;
+     * otherwise gets it from the server and caches it
+     *
+     * Warn: might require two round trips to server
+     *
+     * @param sid
+     * @return the txn status
+     */
+    public static Txn getTxnStatus(UUID sid) {
+        var cached = TxnsStateCache.getInstance().get(sid);
+
+        if (cached.isPresent()) {
+            LOGGER.trace("txn status of session {} from cache: {}", sid, cached.get());
+            return cached.get();
+        }
+
+        var txn = getTxnServerStatus(sid);
+
+        TxnsStateCache.getInstance().put(sid, txn);
+
+        return txn;
+    }
+
     /**
      * Warn: requires two round trips to server
      *
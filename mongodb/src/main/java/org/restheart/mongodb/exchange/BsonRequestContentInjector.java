@@ -26,11 +26,16 @@ import io.undertow.server.handlers.form.FormDataParser;
 import io.undertow.server.handlers.form.FormParserFactory;
 import io.undertow.util.HeaderValues;
 import io.undertow.util.Headers;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.SequenceInputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
 import org.apache.tika.Tika;
 import org.bson.BsonArray;
 import org.bson.BsonDocument;
@@ -49,6 +54,7 @@ import static org.restheart.exchange.ExchangeKeys.TRUE_KEY_ID;
 import static org.restheart.exchange.ExchangeKeys._ID;
 import org.restheart.exchange.MongoRequest;
 import org.restheart.exchange.MongoResponse;
+import org.restheart.mongodb.MongoServiceConfiguration;
 import org.restheart.utils.ChannelReader;
 import org.restheart.utils.HttpStatus;
 import org.restheart.utils.JsonUtils;
@@ -172,21 +178,34 @@ public class BsonRequestContentInjector {
     protected static BsonDocument extractMetadata(
             final FormData formData)
             throws JsonParseException {
-        BsonDocument metadata = new BsonDocument();
-
-        final String metadataString;
-
-        metadataString = formData.getFirst(FILE_METADATA) != null
+        return parseMetadata(formData.getFirst(FILE_METADATA) != null
                 ? formData.getFirst(FILE_METADATA).getValue()
                 : formData.getFirst(PROPERTIES) != null
                 ? formData.getFirst(PROPERTIES).getValue()
-                : null;
+                : null);
+    }
 
-        if (metadataString != null) {
-            metadata = BsonDocument.parse(metadataString);
-        }
+    /**
+     * Search the fields for a field named 'metadata' (or 'properties') which
+     * must contain valid JSON
+     *
+     * @param fields
+     * @return the parsed BsonDocument from the fields or an empty
+     * BsonDocument
+     */
+    protected static BsonDocument extractMetadata(
+            final Map<String, String> fields)
+            throws JsonParseException {
+        return parseMetadata(fields.get(FILE_METADATA) != null
+                ? fields.get(FILE_METADATA)
+                : fields.get(PROPERTIES));
+    }
 
-        return metadata;
+    private static BsonDocument parseMetadata(String metadataString)
+            throws JsonParseException {
+        return metadataString == null
+                ? new BsonDocument()
+                : BsonDocument.parse(metadataString);
     }
 
     /**
@@ -214,12 +233,115 @@ public class BsonRequestContentInjector {
      * @throws IOException
      */
     public static String detectMediaType(File file) throws IOException {
-        return new Tika().detect(file);
+        return TIKA.detect(file);
     }
 
+    /**
+     * Detect the mediatype of a file from its first bytes
+     *
+     * @param prefix the first bytes of the file, at most SNIFF_SIZE bytes are
+     * used
+     * @param filename the name of the file, can be null
+     * @return the content-type as a String
+     */
+    public static String detectMediaType(byte[] prefix, String filename) {
+        return TIKA.detect(prefix, filename);
+    }
+
+    /**
+     * Tika is thread safe, and loading its mime types is expensive
+     */
+    private static final Tika TIKA = new Tika();
+
+    /**
+     * the number of bytes used to detect the media type of streamed uploads
+     */
+    static final int SNIFF_SIZE = 8 * 1024;
+
     private static final FormParserFactory FORM_PARSER
             = FormParserFactory.builder().build();
 
+    private static boolean isStreamingUpload() {
+        var conf = MongoServiceConfiguration.get();
+        return conf != null && conf.isGridfsStreamingUpload();
+    }
+
+    /**
+     * Parses the form fields preceding the file and sets the file stream of
+     * the request; the media type is detected from the first SNIFF_SIZE bytes
+     * of the file, that are then read again from the stream.
+     *
+     * @return the metadata, or null if the request is in error
+     */
+    private static BsonDocument injectUploadStream(
+            final MongoRequest request,
+            final MongoResponse response,
+            final MultipartUploadStream upload) {
+        try {
+            if (!upload.readFields()) {
+                response.setInError(
+                        HttpStatus.SC_NOT_ACCEPTABLE,
+                        "This request does not contain any binary file");
+                return null;
+            }
+        } catch (IOException ioe) {
+            response.setInError(
+                    HttpStatus.SC_NOT_ACCEPTABLE,
+                    "Error parsing the multipart form: data could not be read",
+                    ioe);
+            return null;
+        }
+
+        BsonDocument metadata;
+
+        try {
+            metadata = extractMetadata(upload.getFields());
+        } catch (JsonParseException | IllegalArgumentException ex) {
+            response.setInError(
+                    HttpStatus.SC_NOT_ACCEPTABLE,
+                    "Invalid data: 'properties' field is not a valid JSON",
+                    ex);
+            return null;
+        }
+
+        // the metadata is stored when the upload starts
+        upload.setLeadingFields(Set.of(FILE_METADATA, PROPERTIES));
+
+        var fileStream = upload.getFileInputStream();
+        var prefix = new byte[SNIFF_SIZE];
+        int length = 0;
+
+        try {
+            int read;
+
+            while (length < prefix.length
+                    && (read = fileStream.read(prefix, length, prefix.length - length)) >= 0) {
+                length += read;
+            }
+        } catch (IOException ioe) {
+            response.setInError(
+                    HttpStatus.SC_NOT_ACCEPTABLE,
+                    "Error parsing the multipart form: data could not be read",
+                    ioe);
+            return null;
+        }
+
+        if (metadata.get(CONTENT_TYPE) == null) {
+            var contentType = detectMediaType(Arrays.copyOf(prefix, length),
+                    upload.getFileName());
+
+            if (contentType != null) {
+                metadata.append(CONTENT_TYPE, new BsonString(contentType));
+            }
+        }
+
+        request.setFileInputStream(new SequenceInputStream(
+                new ByteArrayInputStream(prefix, 0, length),
+                fileStream));
+
+        return metadata;
+    }
+
     /**
      * Creates a new instance of BodyInjectorHandler
      *
@@ -256,69 +378,82 @@ public class BsonRequestContentInjector {
                         ERROR_INVALID_CONTENTTYPE_FILE);
                 return;
             }
-            FormDataParser parser = FORM_PARSER.createParser(exchange);
+            var upload = isStreamingUpload()
+                    ? MultipartUploadStream.of(exchange)
+                    : null;
 
-            if (parser == null) {
-                String errMsg = "There is no form parser registered "
-                        + "for the request content type";
+            if (upload != null) {
+                content = injectUploadStream(request, response, upload);
 
-                response.setInError(
-                        HttpStatus.SC_NOT_ACCEPTABLE,
-                        errMsg);
-                return;
-            }
+                if (content == null) {
+                    // an error occurred
+                    return;
+                }
+            } else {
+                FormDataParser parser = FORM_PARSER.createParser(exchange);
 
-            FormData formData;
+                if (parser == null) {
+                    String errMsg = "There is no form parser registered "
+                            + "for the request content type";
 
-            try {
-                formData = parser.parseBlocking();
-            } catch (IOException ioe) {
-                String errMsg = "Error parsing the multipart form: "
-                        + "data could not be read";
+                    response.setInError(
+                            HttpStatus.SC_NOT_ACCEPTABLE,
+                            errMsg);
+                    return;
+                }
 
-                response.setInError(
-                        HttpStatus.SC_NOT_ACCEPTABLE,
-                        errMsg,
-                        ioe);
-                return;
-            }
+                FormData formData;
 
-            try {
-                content = extractMetadata(formData);
-            } catch (JsonParseException | IllegalArgumentException ex) {
-                String errMsg = "Invalid data: "
-                        + "'properties' field is not a valid JSON";
+                try {
+                    formData = parser.parseBlocking();
+                } catch (IOException ioe) {
+                    String errMsg = "Error parsing the multipart form: "
+                            + "data could not be read";
 
-                response.setInError(
-                        HttpStatus.SC_NOT_ACCEPTABLE,
-                        errMsg,
-                        ex);
-                return;
-            }
+                    response.setInError(
+                            HttpStatus.SC_NOT_ACCEPTABLE,
+                            errMsg,
+                            ioe);
+                    return;
+                }
 
-            final String fileField = extractFileField(formData);
+                try {
+                    content = extractMetadata(formData);
+                } catch (JsonParseException | IllegalArgumentException ex) {
+                    String errMsg = "Invalid data: "
+                            + "'properties' field is not a valid JSON";
 
-            if (fileField == null) {
-                String errMsg = "This request does not contain any binary file";
+                    response.setInError(
+                            HttpStatus.SC_NOT_ACCEPTABLE,
+                            errMsg,
+                            ex);
+                    return;
+                }
 
-                response.setInError(
-                        HttpStatus.SC_NOT_ACCEPTABLE,
-                        errMsg);
-                return;
-            }
+                final String fileField = extractFileField(formData);
 
-            final Path path = formData.getFirst(fileField).getFileItem().getFile();
+                if (fileField == null) {
+                    String errMsg = "This request does not contain any binary file";
 
-            request.setFilePath(path);
+                    response.setInError(
+                            HttpStatus.SC_NOT_ACCEPTABLE,
+                            errMsg);
+                    return;
+                }
 
-            try {
-                injectContentTypeFromFile(content.asDocument(), path.toFile());
-            } catch (IOException ioe) {
-                response.addWarning("error detecting content type");
+                final Path path = formData.getFirst(fileField).getFileItem().getFile();
 
-                LOGGER.warn("error detecting content type of file", ioe);
+                request.setFilePath(path);
 
-                return;
+                try {
+                    injectContentTypeFromFile(content.asDocument(), path.toFile());
+                } catch (IOException ioe) {
+                    response.addWarning("error detecting content type");
+
+                    LOGGER.warn("error detecting content type of file", ioe);
+
+                    return;
+                }
             }
         } else {
             if (isHalOrJson(contentType)) {
@@ -0,0 +1,356 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-mongodb
+ * %%
+ * Copyright (C) 2014 - 2020 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.mongodb.exchange;
+
+import io.undertow.connector.ByteBufferPool;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.HeaderMap;
+import io.undertow.util.Headers;
+import io.undertow.util.MultipartParser;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads a multipart/form-data request content as a stream, without spooling
+ * the file to disk as FormDataParser does.
+ *
+ * readFields() parses the form fields that precede the file part, then the
+ * file content is read from the stream returned by getFileInputStream() as
+ * it is received. When the file part ends, the rest of the content is parsed;
+ * the fields that follow the file are available via getTrailingFields().
+ *
+ * The memory used is bounded by the read buffer, the file data of a single
+ * read and MAX_FIELDS_SIZE for the fields.
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class MultipartUploadStream implements MultipartParser.PartHandler {
+
+    /**
+     * the maximum size of all form fields
+     */
+    static final int MAX_FIELDS_SIZE = 1024 * 1024;
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private final InputStream in;
+    private final MultipartParser.ParseState parser;
+    private final byte[] readBuffer = new byte[BUFFER_SIZE];
+
+    private final Map<String, String> fields = new LinkedHashMap<>();
+    private final Map<String, String> trailingFields = new LinkedHashMap<>();
+    private int fieldsSize = 0;
+    private Set<String> leadingFields = Set.of();
+
+    // the part being parsed
+    private String partName = null;
+    private ByteArrayOutputStream partValue = null;
+    private Charset partCharset = null;
+
+    // the charset of the fields without a charset parameter
+    private final Charset charset;
+    private boolean inFile = false;
+    private boolean skipping = false;
+
+    private String fileField = null;
+    private String fileName = null;
+    private boolean fileEnded = false;
+
+    // file data parsed but not yet read
+    private final ArrayDeque<ByteBuffer> pending = new ArrayDeque<>();
+
+    private final InputStream fileInputStream = new FileStream();
+
+    /**
+     * @param exchange
+     * @return the stream, or null if the request is not multipart/form-data
+     * or has no boundary
+     */
+    public static MultipartUploadStream of(HttpServerExchange exchange) {
+        var contentType = exchange.getRequestHeaders().getFirst(Headers.CONTENT_TYPE);
+
+        if (contentType == null || !contentType.startsWith("multipart/form-data")) {
+            return null;
+        }
+
+        var boundary = Headers.extractQuotedValueFromHeader(contentType, "boundary");
+
+        if (boundary == null) {
+            return null;
+        }
+
+        if (!exchange.isBlocking()) {
+            exchange.startBlocking();
+        }
+
+        return new MultipartUploadStream(exchange, boundary);
+    }
+
+    private MultipartUploadStream(HttpServerExchange exchange, String boundary) {
+        this(exchange.getInputStream(),
+                exchange.getConnection().getByteBufferPool(),
+                boundary,
+                exchange.getRequestCharset());
+    }
+
+    /**
+     *
+     * @param in the request content
+     * @param bufferPool
+     * @param boundary
+     * @param charset the request charset, null for UTF-8
+     */
+    MultipartUploadStream(InputStream in, ByteBufferPool bufferPool, String boundary, String charset) {
+        this.in = in;
+        this.charset = charset(charset, StandardCharsets.UTF_8);
+
+        this.parser = MultipartParser.beginParse(
+                bufferPool,
+                this,
+                boundary.getBytes(StandardCharsets.US_ASCII),
+                this.charset.name());
+    }
+
+    /**
+     * @return the charset with the name, or defaultCharset if name is null or
+     * not a supported charset
+     */
+    private static Charset charset(String name, Charset defaultCharset) {
+        if (name == null) {
+            return defaultCharset;
+        }
+
+        try {
+            return Charset.forName(name);
+        } catch (IllegalArgumentException iae) {
+            return defaultCharset;
+        }
+    }
+
+    /**
+     * parses the content up to the beginning of the file part
+     *
+     * @return true if the content has a file part
+     * @throws IOException
+     */
+    public boolean readFields() throws IOException {
+        while (fileField == null && !parser.isComplete()) {
+            feed();
+        }
+
+        return fileField != null;
+    }
+
+    /**
+     * Sets the fields that must precede the file part: if one follows it,
+     * reading the file stream fails at its end instead of returning -1, so
+     * that the consumer of the stream (e.g. the GridFS upload) is aborted.
+     *
+     * @param leadingFields
+     */
+    public void setLeadingFields(Set<String> leadingFields) {
+        this.leadingFields = leadingFields;
+    }
+
+    /**
+     * @return the fields that precede the file part
+     */
+    public Map<String, String> getFields() {
+        return fields;
+    }
+
+    /**
+     * @return the fields that follow the file part, available when the file
+     * stream has been read to its end
+     */
+    public Map<String, String> getTrailingFields() {
+        return trailingFields;
+    }
+
+    /**
+     * @return the name of the file field
+     */
+    public String getFileField() {
+        return fileField;
+    }
+
+    /**
+     * @return the filename of the file part, can be null
+     */
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * @return the stream of the content of the file
+     */
+    public InputStream getFileInputStream() {
+        return fileInputStream;
+    }
+
+    private void feed() throws IOException {
+        var read = in.read(readBuffer);
+
+        if (read < 0) {
+            if (!parser.isComplete()) {
+                throw new IOException("Unexpected end of multipart content");
+            }
+        } else if (read > 0) {
+            parser.parse(ByteBuffer.wrap(readBuffer, 0, read));
+        }
+    }
+
+    @Override
+    public void beginPart(HeaderMap headers) {
+        var disposition = headers.getFirst(Headers.CONTENT_DISPOSITION);
+
+        this.partName = disposition == null
+                ? null
+                : Headers.extractQuotedValueFromHeader(disposition, "name");
+
+        var _fileName = disposition == null
+                ? null
+                : Headers.extractQuotedValueFromHeaderWithEncoding(disposition, "filename");
+
+        if (_fileName != null) {
+            if (this.fileField == null) {
+                this.fileField = this.partName;
+                this.fileName = _fileName;
+                this.inFile = true;
+            } else {
+                // only the first file is stored, as with FormDataParser
+                this.skipping = true;
+            }
+        } else {
+            this.partValue = new ByteArrayOutputStream();
+
+            // as FormDataParser, a field value is decoded with the charset
+            // of its Content-Type header, if any
+            var contentType = headers.getFirst(Headers.CONTENT_TYPE);
+
+            this.partCharset = contentType == null
+                    ? this.charset
+                    : charset(Headers.extractQuotedValueFromHeader(contentType, "charset"), this.charset);
+        }
+    }
+
+    @Override
+    public void data(ByteBuffer buffer) throws IOException {
+        if (inFile) {
+            // the buffer is a view of the read buffer, that gets reused
+            var copy = ByteBuffer.allocate(buffer.remaining());
+            copy.put(buffer).flip();
+            pending.add(copy);
+        } else if (skipping) {
+            buffer.position(buffer.limit());
+        } else {
+            fieldsSize += buffer.remaining();
+
+            if (fieldsSize > MAX_FIELDS_SIZE) {
+                throw new IOException("Form fields exceed " + MAX_FIELDS_SIZE + " bytes");
+            }
+
+            while (buffer.hasRemaining()) {
+                partValue.write(buffer.get());
+            }
+        }
+    }
+
+    @Override
+    public void endPart() {
+        if (inFile) {
+            inFile = false;
+            fileEnded = true;
+        } else if (skipping) {
+            skipping = false;
+        } else if (partName != null) {
+            var value = new String(partValue.toByteArray(), partCharset);
+
+            if (fileField == null) {
+                fields.put(partName, value);
+            } else {
+                trailingFields.put(partName, value);
+            }
+        }
+
+        partName = null;
+        partValue = null;
+        partCharset = null;
+    }
+
+    private class FileStream extends InputStream {
+        @Override
+        public int read() throws IOException {
+            var b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+
+            while (pending.isEmpty() && !fileEnded) {
+                if (parser.isComplete()) {
+                    throw new IOException("Unexpected end of multipart content");
+                }
+
+                feed();
+            }
+
+            if (pending.isEmpty()) {
+                // the file ended, parse the trailing fields
+                while (!parser.isComplete()) {
+                    feed();
+                }
+
+                for (var field : leadingFields) {
+                    if (trailingFields.containsKey(field)) {
+                        throw new IOException("Form field '" + field
+                                + "' must precede the file");
+                    }
+                }
+
+                return -1;
+            }
+
+            var next = pending.peek();
+            var count = Math.min(len, next.remaining());
+
+            next.get(b, off, count);
+
+            if (!next.hasRemaining()) {
+                pending.poll();
+            }
+
+            return count;
+        }
+    }
+}
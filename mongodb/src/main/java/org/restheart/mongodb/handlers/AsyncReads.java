@@ -0,0 +1,111 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-mongodb
+ * %%
+ * Copyright (C) 2014 - 2020 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.mongodb.handlers;
+
+import io.undertow.server.HttpServerExchange;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+import org.restheart.exchange.MongoRequest;
+import org.restheart.handlers.AsyncPipeline;
+import org.restheart.mongodb.MongoServiceConfiguration;
+import org.restheart.mongodb.db.MongoReactiveClientSingleton;
+
+/**
+ * Helper for handlers executing read operations with the reactive client
+ * when async-reads-enabled is true.
+ *
+ * The exchange is suspended, releasing the worker thread, until the operation
+ * completes; the result is then handled on a worker thread, with the errors
+ * mapped to responses by ErrorHandler.
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class AsyncReads {
+
+    private AsyncReads() {
+    }
+
+    /**
+     *
+     * @param request
+     * @return true if the request can be executed asynchronously
+     */
+    public static boolean isEnabled(MongoRequest request) {
+        return MongoServiceConfiguration.get() != null
+                && MongoServiceConfiguration.get().isAsyncReadsEnabled()
+                && MongoReactiveClientSingleton.isInitialized()
+                // client sessions are bound to the sync client
+                && request.getClientSession() == null;
+    }
+
+    /**
+     * Suspends the exchange and executes the operation; when it completes,
+     * resumes the exchange passing the result to the resultHandler
+     *
+     * @param <T>
+     * @param exchange
+     * @param operation
+     * @param resultHandler
+     */
+    public static <T> void execute(HttpServerExchange exchange,
+            Supplier<CompletableFuture<T>> operation,
+            ResultHandler<T> resultHandler) {
+        AsyncPipeline.suspend(exchange, () -> {
+            CompletableFuture<T> result;
+
+            try {
+                result = operation.get();
+            } catch (Throwable t) {
+                result = CompletableFuture.failedFuture(t);
+            }
+
+            result.whenComplete((value, error)
+                    -> AsyncPipeline.resume(exchange, new ErrorHandler(ex -> {
+                        if (error != null) {
+                            throw asException(error);
+                        }
+
+                        resultHandler.handle(ex, value);
+                    })));
+        });
+    }
+
+    private static Exception asException(Throwable t) {
+        var cause = t instanceof CompletionException && t.getCause() != null
+                ? t.getCause()
+                : t;
+
+        return cause instanceof Exception
+                ? (Exception) cause
+                : new Exception(cause);
+    }
+
+    /**
+     * handles the result of the async operation
+     *
+     * @param <T>
+     */
+    @FunctionalInterface
+    public interface ResultHandler<T> {
+        void handle(HttpServerExchange exchange, T result) throws Exception;
+    }
+}
@@ -56,9 +56,20 @@ public class AggregationTransformer extends PipelinedHandler {
     @Override
     public void handleRequest(HttpServerExchange exchange) throws Exception {
         var request = MongoRequest.of(exchange);
+        var response = MongoResponse.of(exchange);
+
+        if (!phase && response.isContentStreamed()) {
+            // transform the documents as they are streamed to the client
+            response.setContentStream(response.detachContentStream()
+                    .peek(doc -> transform(request, doc)));
+
+            next(exchange);
+            return;
+        }
+
         var contentToTransform = phase
                 ? MongoRequest.of(exchange).getContent()
-                : MongoResponse.of(exchange).getContent();
+                : response.getContent();
 
         if (contentToTransform != null && contentToTransform.isDocument()) {
             transform(request, contentToTransform.asDocument());
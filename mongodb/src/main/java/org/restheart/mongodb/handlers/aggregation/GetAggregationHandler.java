@@ -38,7 +38,9 @@ import org.restheart.exchange.MongoResponse;
 import org.restheart.exchange.QueryVariableNotBoundException;
 import org.restheart.handlers.PipelinedHandler;
 import org.restheart.mongodb.MongoServiceConfiguration;
+import org.restheart.mongodb.db.AsyncReadsDAO;
 import org.restheart.mongodb.db.DatabaseImpl;
+import org.restheart.mongodb.handlers.AsyncReads;
 import org.restheart.utils.HttpStatus;
 
 /**
@@ -47,6 +49,7 @@ import org.restheart.utils.HttpStatus;
  */
 public class GetAggregationHandler extends PipelinedHandler {
     private final DatabaseImpl dbsDAO = new DatabaseImpl();
+    private final AsyncReadsDAO asyncDAO = new AsyncReadsDAO();
 
     /**
      * Default ctor
@@ -156,11 +159,23 @@ public class GetAggregationHandler extends PipelinedHandler {
                     AggregateIterable<BsonDocument> agrOutput;
                     AggregationPipeline pipeline = (AggregationPipeline) query;
                     try {
+                        var stages = pipeline.getResolvedStagesAsList(avars);
+
+                        if (AsyncReads.isEnabled(request)) {
+                            AsyncReads.execute(exchange,
+                                    () -> asyncDAO.aggregate(
+                                            request.getDBName(),
+                                            request.getCollectionName(),
+                                            stages,
+                                            pipeline.getAllowDiskUse().getValue()),
+                                    this::sendData);
+                            return;
+                        }
+
                         agrOutput = dbsDAO.getCollection(
                                         request.getDBName(),
                                         request.getCollectionName())
-                                .aggregate(
-                                        pipeline.getResolvedStagesAsList(avars))
+                                .aggregate(stages)
                                 .maxTime(MongoServiceConfiguration.get()
                                         .getAggregationTimeLimit(),
                                         TimeUnit.MILLISECONDS)
@@ -199,11 +214,18 @@ public class GetAggregationHandler extends PipelinedHandler {
             return;
         }
 
-        try {
-            var data = new BsonArray();
-            
-            _data.stream().forEachOrdered(data::add);
+        var data = new BsonArray();
 
+        _data.stream().forEachOrdered(data::add);
+
+        sendData(exchange, data);
+    }
+
+    private void sendData(HttpServerExchange exchange, BsonArray data)
+            throws Exception {
+        var response = MongoResponse.of(exchange);
+
+        try {
             response.setContent(data);
             response.setCount(data.size());
             
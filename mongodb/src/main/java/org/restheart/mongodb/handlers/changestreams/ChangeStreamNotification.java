@@ -20,6 +20,8 @@
  */
 package org.restheart.mongodb.handlers.changestreams;
 
+import org.bson.BsonDocument;
+
 /**
  *
  * @author omartrasatti
@@ -28,10 +30,16 @@ public class ChangeStreamNotification {
     
     private final SessionKey sessionKey;
     private final String notificationMessage;
+    private final BsonDocument documentKey;
     
     public ChangeStreamNotification(SessionKey sessionKey, String notificationMessage) {
+        this(sessionKey, notificationMessage, null);
+    }
+
+    public ChangeStreamNotification(SessionKey sessionKey, String notificationMessage, BsonDocument documentKey) {
         this.sessionKey = sessionKey;
         this.notificationMessage = notificationMessage;
+        this.documentKey = documentKey;
     }
     
     public SessionKey getSessionKey() {
@@ -41,4 +49,12 @@ public class ChangeStreamNotification {
     public String getNotificationMessage() {
         return this.notificationMessage;
     }
+
+    /**
+     * @return the key of the changed document, null for events not related
+     * to a document
+     */
+    public BsonDocument getDocumentKey() {
+        return this.documentKey;
+    }
 }
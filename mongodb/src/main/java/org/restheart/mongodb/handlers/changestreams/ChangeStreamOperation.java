@@ -20,10 +20,13 @@
  */
 package org.restheart.mongodb.handlers.changestreams;
 
+import com.mongodb.client.model.changestream.FullDocument;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Stream;
 import org.bson.BsonArray;
 import org.bson.BsonDocument;
+import org.bson.BsonInt32;
 import org.bson.BsonValue;
 import org.restheart.exchange.InvalidMetadataException;
 import org.restheart.exchange.QueryVariableNotBoundException;
@@ -39,6 +42,8 @@ public class ChangeStreamOperation {
     public static final String STREAM_ELEMENT_NAME = "streams";
     public static final String URI_ELEMENT_NAME = "uri";
     public static final String STAGES_ELEMENT_NAME = "stages";
+    public static final String FULL_DOCUMENT_ELEMENT_NAME = "fullDocument";
+    public static final String PROJECTION_ELEMENT_NAME = "projection";
 
     /**
      *
@@ -115,6 +120,8 @@ public class ChangeStreamOperation {
 
     private final String uri;
     private final BsonArray stages;
+    private final FullDocument fullDocument;
+    private final BsonDocument projection;
 
     /**
      *
@@ -152,6 +159,78 @@ public class ChangeStreamOperation {
 
         this.stages = _stages.asArray();
 
+        // fullDocument is optional, default is updateLookup
+        BsonValue _fullDocument = properties.get(FULL_DOCUMENT_ELEMENT_NAME);
+
+        if (_fullDocument == null) {
+            this.fullDocument = FullDocument.UPDATE_LOOKUP;
+        } else if (!_fullDocument.isString()) {
+            throw new InvalidMetadataException("query /" + this.uri
+                    + " has invalid '" + FULL_DOCUMENT_ELEMENT_NAME
+                    + "': " + _fullDocument
+                    + "; must be 'default' or 'updateLookup'");
+        } else {
+            try {
+                this.fullDocument = FullDocument.fromString(_fullDocument
+                        .asString().getValue());
+            } catch (IllegalArgumentException iae) {
+                throw new InvalidMetadataException("query /" + this.uri
+                        + " has invalid '" + FULL_DOCUMENT_ELEMENT_NAME
+                        + "': " + _fullDocument
+                        + "; must be 'default' or 'updateLookup'");
+            }
+        }
+
+        // projection is optional, an array of the fields to notify
+        BsonValue _projection = properties.get(PROJECTION_ELEMENT_NAME);
+
+        if (_projection == null) {
+            this.projection = null;
+        } else if (!_projection.isArray()
+                || _projection.asArray().isEmpty()
+                || _projection.asArray().stream().anyMatch(f -> !f.isString()
+                || !isFieldPath(f.asString().getValue()))) {
+            throw new InvalidMetadataException("query /" + this.uri
+                    + " has invalid '" + PROJECTION_ELEMENT_NAME
+                    + "': " + _projection
+                    + "; must be an array of field names, "
+                    + "e.g. [\"updateDescription\", \"fullDocument.name\"]");
+        } else {
+            // the resume token _id is required by the change stream,
+            // operationType and documentKey by the notification
+            var project = new BsonDocument("_id", new BsonInt32(1))
+                    .append("operationType", new BsonInt32(1))
+                    .append("documentKey", new BsonInt32(1));
+
+            for (var f : _projection.asArray()) {
+                var field = f.asString().getValue();
+
+                // $project fails on a path and its subpath, e.g. a and a.b
+                var collision = project.keySet().stream()
+                        .filter(k -> k.startsWith(field + ".") || field.startsWith(k + "."))
+                        .findFirst();
+
+                if (collision.isPresent()) {
+                    throw new InvalidMetadataException("query /" + this.uri
+                            + " has invalid '" + PROJECTION_ELEMENT_NAME
+                            + "': " + field + " collides with " + collision.get()
+                            + "; _id, operationType and documentKey are always included");
+                }
+
+                project.put(field, new BsonInt32(1));
+            }
+
+            this.projection = project;
+        }
+    }
+
+    /**
+     * @return true if field is a valid path, e.g. a or a.b, without empty
+     * or $ prefixed parts
+     */
+    private static boolean isFieldPath(String field) {
+        return Stream.of(field.split("\\.", -1))
+                .noneMatch(part -> part.isEmpty() || part.startsWith("$"));
     }
 
     /**
@@ -168,9 +247,26 @@ public class ChangeStreamOperation {
         return stages;
     }
 
+    /**
+     * @return the fullDocument policy of the change stream; with
+     * UPDATE_LOOKUP every update event requires a read of the document
+     */
+    public FullDocument getFullDocument() {
+        return fullDocument;
+    }
+
+    /**
+     * @return the $project stage specification appended to the stages, or
+     * null if the stream does not specify a projection
+     */
+    public BsonDocument getProjection() {
+        return projection;
+    }
+
     /**
      * @param vars RequestContext.getAggregationVars()
-     * @return the stages, with unescaped operators and bound variables
+     * @return the stages, with unescaped operators and bound variables,
+     * followed by the $project stage of the projection, if any
      * @throws org.restheart.exchange.InvalidMetadataException
      * @throws org.restheart.exchange.QueryVariableNotBoundException
      */
@@ -187,6 +283,10 @@ public class ChangeStreamOperation {
                     ret.add(stage.asDocument());
                 });
 
+        if (projection != null) {
+            ret.add(new BsonDocument("$project", projection.clone()));
+        }
+
         return ret;
     }
 
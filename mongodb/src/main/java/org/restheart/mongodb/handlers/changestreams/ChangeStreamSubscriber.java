@@ -20,135 +20,232 @@
  */
 package org.restheart.mongodb.handlers.changestreams;
 
-import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.google.common.collect.ConcurrentHashMultiset;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import org.bson.BsonArray;
 import org.bson.BsonDocument;
 import org.bson.BsonNull;
-import org.bson.BsonString;
-import org.bson.BsonValue;
-import org.bson.Document;
-import org.bson.codecs.DocumentCodec;
-import org.bson.codecs.configuration.CodecRegistries;
-import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.RawBsonDocument;
+import org.bson.json.JsonMode;
 import org.reactivestreams.Subscriber;
 import org.reactivestreams.Subscription;
+import org.restheart.mongodb.MongoServiceConfiguration;
+import org.restheart.mongodb.MongoServiceConfiguration.METRICS_GATHERING_LEVEL;
+import org.restheart.mongodb.handlers.metrics.SharedMetricRegistryProxy;
 import org.restheart.utils.JsonUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
+ * Subscribes a MongoDB change stream shared by all the websocket sessions
+ * watching it, whatever json mode they use. Each event is rendered once per
+ * json mode that has subscribers.
+ *
+ * Events are read as RawBsonDocument and rendered from their bytes.
+ *
+ * With metrics gathered at collection level, the events per second and the
+ * size of the events of the stream are measured in the collection registry
+ * as change-streams.events.&lt;stream&gt; and change-streams.bytes.&lt;stream&gt;
+ * (rendered by MetricsHandler as restheart_meters_change_streams_events_... and
+ * restheart_histograms_change_streams_bytes_... in the prometheus format)
+ *
+ * The subscriber tracks the sessions watching the stream; the change stream
+ * is closed when the last one leaves, see GetChangeStreamHandler.release().
+ * If the stream fails or completes, the sessions are closed: the clients
+ * reconnecting open a new stream.
  *
  * @author omartrasatti
  */
-@SuppressWarnings("rawtypes")
-public class ChangeStreamSubscriber implements Subscriber<ChangeStreamDocument> {
+public class ChangeStreamSubscriber implements Subscriber<RawBsonDocument> {
 
     private static final Logger LOGGER
             = LoggerFactory.getLogger(ChangeStreamSubscriber.class);
 
-    private final SessionKey sessionKey;
-    private Subscription sub;
+    private final StreamKey streamKey;
+
+    // the sessions watching the stream
+    private final Set<ChangeStreamWebSocketSession> sessions
+            = ConcurrentHashMap.newKeySet();
+
+    // the keys of the sessions watching the stream, counted
+    private final ConcurrentHashMultiset<SessionKey> sessionKeys
+            = ConcurrentHashMultiset.create();
+
+    private volatile Subscription sub = null;
+    private volatile boolean stopped = false;
 
-    public ChangeStreamSubscriber(SessionKey sessionKey) {
+    // null if metrics are not gathered at collection level
+    private final Meter events;
+    private final Histogram eventSize;
+
+    public ChangeStreamSubscriber(StreamKey streamKey) {
         super();
-        this.sessionKey = sessionKey;
+        this.streamKey = streamKey;
+
+        var conf = MongoServiceConfiguration.get();
+
+        if (conf != null && conf.gatheringAboveOrEqualToLevel(METRICS_GATHERING_LEVEL.COLLECTION)) {
+            var registry = new SharedMetricRegistryProxy()
+                    .registry(streamKey.getDbName(), streamKey.getCollectionName());
+
+            // the second segment must not be a http method, see MetricsHandler
+            this.events = registry.meter("change-streams.events." + streamKey.getName());
+            this.eventSize = registry.histogram("change-streams.bytes." + streamKey.getName());
+        } else {
+            this.events = null;
+            this.eventSize = null;
+        }
     }
 
     @Override
     public void onSubscribe(final Subscription s) {
-        s.request(Long.MAX_VALUE);
         this.sub = s;
+
+        if (this.stopped) {
+            s.cancel();
+        } else {
+            s.request(Long.MAX_VALUE);
+        }
     }
 
     @Override
-    public void onNext(ChangeStreamDocument notification) {
-        if (!GuavaHashMultimapSingleton.get(sessionKey).isEmpty()) {
-            LOGGER.trace("[clients watching]: "
-                    + GuavaHashMultimapSingleton.get(sessionKey).size());
+    public void onNext(RawBsonDocument notification) {
+        if (this.events != null) {
+            this.events.mark();
+            this.eventSize.update(notification.getByteBuffer().remaining());
+        }
+
+        BsonDocument document = null;
+        var rendered = new HashMap<JsonMode, String>();
+
+        for (var sessionKey : this.sessionKeys.elementSet()) {
+            if (GuavaHashMultimapSingleton.get(sessionKey).isEmpty()) {
+                continue;
+            }
 
             LOGGER.debug("Change stream notification for sessionKey={}: {}",
                     sessionKey,
                     notification);
 
+            if (document == null) {
+                document = getDocument(notification);
+            }
+
+            final var _document = document;
+
+            var message = rendered.computeIfAbsent(sessionKey.getJsonMode(),
+                    mode -> JsonUtils.toJson(_document, mode));
+
             ChangeStreamWebsocketCallback.NOTIFICATION_PUBLISHER.submit(
                     new ChangeStreamNotification(sessionKey,
-                            JsonUtils.toJson(
-                                    getDocument(notification),
-                                    sessionKey.getJsonMode())));
-        } else {
-            this.stop();
-            LOGGER.debug("Closing unwatched stream, sessionKey=" + sessionKey);
-            GetChangeStreamHandler.OPENED_STREAMS.remove(sessionKey);
+                            message,
+                            notification.getDocument("documentKey", null)));
         }
     }
-    
 
     @Override
     public void onError(final Throwable t) {
-        LOGGER.warn("Error from stream: " + t.getMessage());
+        LOGGER.warn("Error from stream {}: {}", streamKey, t.getMessage());
+        terminated();
     }
 
     @Override
     public void onComplete() {
-        LOGGER.debug("Stream completed, sessionKey=" + sessionKey);
+        LOGGER.debug("Stream completed, streamKey={}", streamKey);
+        terminated();
+    }
+
+    /**
+     * removes the stream from the opened ones, so that the next session opens
+     * a new stream, and closes the sessions watching it. Sessions are added
+     * in OPENED_STREAMS.compute(), thus all the ones added to this
+     * subscriber are visible after its removal
+     */
+    private void terminated() {
+        this.stopped = true;
+
+        GetChangeStreamHandler.OPENED_STREAMS.remove(streamKey, this);
+
+        for (var session : this.sessions) {
+            session.close();
+        }
+    }
+
+    /**
+     * adds a session watching the stream
+     *
+     * @param session
+     */
+    void add(ChangeStreamWebSocketSession session) {
+        this.sessions.add(session);
+        this.sessionKeys.add(session.getSessionKey());
+    }
+
+    /**
+     * removes a session watching the stream
+     *
+     * @param session
+     * @return the number of sessions still watching the stream
+     */
+    int remove(ChangeStreamWebSocketSession session) {
+        if (this.sessions.remove(session)) {
+            this.sessionKeys.remove(session.getSessionKey());
+        }
+
+        return this.sessions.size();
     }
 
     public void stop() {
-        this.sub.cancel();
+        this.stopped = true;
+
+        var s = this.sub;
+
+        if (s != null) {
+            s.cancel();
+        }
     }
-    
-    private BsonDocument getDocument(ChangeStreamDocument notification) {
+
+    /**
+     * The notification is built from the fields of the raw change event;
+     * its values are slices of the event bytes, rendered by JsonEncoder
+     * without being decoded.
+     *
+     * @param event the change event, as read by the driver
+     * @return the notification document
+     */
+    static BsonDocument getDocument(RawBsonDocument event) {
         var doc = new BsonDocument();
 
-        if (notification == null) {
+        if (event == null) {
             return doc;
         }
-        
-        doc.put("fullDocument", toBson((Document) notification.getFullDocument()));
-        
-        doc.put("documentKey", notification.getDocumentKey());
 
-        if (notification.getUpdateDescription() != null) {
-            var updateDescription = new BsonDocument();
-            
-            var updatedFields = notification.getUpdateDescription()
-                    .getUpdatedFields();
-
-            if (updatedFields != null) {
-                updateDescription.put("updatedFields", updatedFields);
-            } else {
-                updateDescription.put("updatedFields", BsonNull.VALUE);
-            }
+        doc.put("fullDocument", event.get("fullDocument", BsonNull.VALUE));
 
-            var removedFields = notification.getUpdateDescription()
-                    .getRemovedFields();
+        doc.put("documentKey", event.get("documentKey", BsonNull.VALUE));
 
-            if (removedFields == null) {
-                updateDescription.put("updatedFields", new BsonArray());
-            } else {
-                var _removedFields = new BsonArray();
-                removedFields.forEach(rf -> _removedFields
-                        .add(new BsonString(rf)));
+        var _updateDescription = event.get("updateDescription");
 
-                updateDescription.put("removedFields", _removedFields);
-            }
+        if (_updateDescription != null && _updateDescription.isDocument()) {
+            var updateDescription = new BsonDocument();
+
+            updateDescription.put("updatedFields", _updateDescription.asDocument()
+                    .get("updatedFields", BsonNull.VALUE));
+
+            updateDescription.put("removedFields", _updateDescription.asDocument()
+                    .get("removedFields", new BsonArray()));
 
             doc.put("updateDescription", updateDescription);
         } else {
             doc.put("updateDescription", BsonNull.VALUE);
         }
 
-        doc.put("operationType", new BsonString(notification.getOperationType().getValue()));
+        doc.put("operationType", event.get("operationType", BsonNull.VALUE));
 
         return doc;
     }
-    
-    private static final CodecRegistry REGISTRY = CodecRegistries
-            .fromCodecs(new DocumentCodec());
-
-    private static BsonValue toBson(Document document) {
-        return document == null
-                ? BsonNull.VALUE
-                : document.toBsonDocument(BsonDocument.class, REGISTRY);
-    }
 }
@@ -20,14 +20,43 @@
  */
 package org.restheart.mongodb.handlers.changestreams;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
 import io.undertow.server.session.SecureRandomSessionIdGenerator;
 import io.undertow.websockets.core.AbstractReceiveListener;
 import io.undertow.websockets.core.StreamSourceFrameChannel;
+import io.undertow.websockets.core.WebSocketCallback;
 import io.undertow.websockets.core.WebSocketChannel;
+import io.undertow.websockets.core.WebSockets;
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.restheart.mongodb.MongoServiceConfiguration;
+import org.restheart.mongodb.MongoServiceConfiguration.METRICS_GATHERING_LEVEL;
+import org.restheart.mongodb.MongoServiceConfiguration.OVERFLOW_POLICY;
+import org.restheart.mongodb.handlers.metrics.SharedMetricRegistryProxy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 /**
+ * A websocket session receiving change stream notifications.
+ *
+ * Notifications are queued and sent one at a time, the next one being sent
+ * when the previous has been written to the channel; a slow client only
+ * makes its own queue grow, up to change-streams-queue-size notifications,
+ * then change-streams-overflow-policy applies.
+ *
+ * With metrics gathered at collection level, the sessions of a stream mark
+ * the meters change-streams.sent.&lt;stream&gt;,
+ * change-streams.dropped.&lt;stream&gt; and change-streams.coalesced.&lt;stream&gt;
+ * and update the histogram change-streams.lag.&lt;stream&gt; with the number of
+ * queued notifications, in the collection registry.
+ *
+ * Each session also registers the gauges
+ * change-streams.session.&lt;stream&gt;.&lt;session id&gt;.lag, .sent, .dropped
+ * and .coalesced, removed from the registry when the session is closed.
  *
  * @author Omar Trasatti {@literal <omar@softinstigate.com>}
  */
@@ -40,13 +69,295 @@ public class ChangeStreamWebSocketSession {
     private final SessionKey sessionKey;
     private final WebSocketChannel webSocketChannel;
 
-    public ChangeStreamWebSocketSession(WebSocketChannel channel, SessionKey sessionKey) {
+    private final int queueSize;
+    private final OVERFLOW_POLICY overflowPolicy;
+
+    // guarded by this.queue
+    private final ArrayDeque<ChangeStreamNotification> queue = new ArrayDeque<>();
+    private boolean sending = false;
+    private boolean closed = false;
+
+    private final AtomicLong sent = new AtomicLong(0);
+    private final AtomicLong dropped = new AtomicLong(0);
+    private final AtomicLong coalesced = new AtomicLong(0);
+
+    // null if metrics are not gathered at collection level
+    private final Meter sentMeter;
+    private final Meter droppedMeter;
+    private final Meter coalescedMeter;
+    private final Histogram lagHistogram;
+
+    private final MetricRegistry registry;
+    private final List<String> sessionGauges;
+
+    public ChangeStreamWebSocketSession(WebSocketChannel channel, SessionKey sessionKey, StreamKey streamKey) {
+        this(channel, sessionKey, streamKey,
+                queueSize(MongoServiceConfiguration.get()),
+                overflowPolicy(MongoServiceConfiguration.get()),
+                registry(MongoServiceConfiguration.get(), streamKey));
+    }
+
+    /**
+     *
+     * @param channel
+     * @param sessionKey
+     * @param streamKey
+     * @param queueSize the max number of queued notifications
+     * @param overflowPolicy applied when the queue is full
+     * @param registry the registry of the metrics, null to not gather them
+     */
+    ChangeStreamWebSocketSession(WebSocketChannel channel,
+            SessionKey sessionKey,
+            StreamKey streamKey,
+            int queueSize,
+            OVERFLOW_POLICY overflowPolicy,
+            MetricRegistry registry) {
         this.sessionId = new SecureRandomSessionIdGenerator().createSessionId();
         this.webSocketChannel = channel;
         this.sessionKey = sessionKey;
+        this.queueSize = Math.max(1, queueSize);
+        this.overflowPolicy = overflowPolicy;
+
+        if (registry != null) {
+            // the second segment must not be a http method, see MetricsHandler
+            this.sentMeter = registry.meter("change-streams.sent." + streamKey.getName());
+            this.droppedMeter = registry.meter("change-streams.dropped." + streamKey.getName());
+            this.coalescedMeter = registry.meter("change-streams.coalesced." + streamKey.getName());
+            this.lagHistogram = registry.histogram("change-streams.lag." + streamKey.getName());
+
+            var prefix = "change-streams.session." + streamKey.getName() + "." + this.sessionId + ".";
+            registry.register(prefix + "lag", (Gauge<Integer>) this::getLag);
+            registry.register(prefix + "sent", (Gauge<Long>) this::getSent);
+            registry.register(prefix + "dropped", (Gauge<Long>) this::getDropped);
+            registry.register(prefix + "coalesced", (Gauge<Long>) this::getCoalesced);
+            this.sessionGauges = List.of(prefix + "lag", prefix + "sent", prefix + "dropped", prefix + "coalesced");
+        } else {
+            this.sentMeter = null;
+            this.droppedMeter = null;
+            this.coalescedMeter = null;
+            this.lagHistogram = null;
+            this.sessionGauges = List.of();
+        }
+
+        this.registry = registry;
+
         initChannelReceiveListener(webSocketChannel);
     }
 
+    private static int queueSize(MongoServiceConfiguration conf) {
+        return conf == null ? 100 : conf.getChangeStreamsQueueSize();
+    }
+
+    private static OVERFLOW_POLICY overflowPolicy(MongoServiceConfiguration conf) {
+        return conf == null ? OVERFLOW_POLICY.DROP_OLDEST : conf.getChangeStreamsOverflowPolicy();
+    }
+
+    private static MetricRegistry registry(MongoServiceConfiguration conf, StreamKey streamKey) {
+        return conf != null && conf.gatheringAboveOrEqualToLevel(METRICS_GATHERING_LEVEL.COLLECTION)
+                ? new SharedMetricRegistryProxy().registry(streamKey.getDbName(), streamKey.getCollectionName())
+                : null;
+    }
+
+    /**
+     * queues the notification to be sent; never blocks
+     *
+     * @param notification
+     */
+    public void send(ChangeStreamNotification notification) {
+        var disconnect = false;
+        var start = false;
+
+        synchronized (this.queue) {
+            if (this.closed) {
+                return;
+            }
+
+            if (this.queue.size() < this.queueSize) {
+                this.queue.add(notification);
+            } else if (!overflow(notification)) {
+                this.closed = true;
+                this.queue.clear();
+                disconnect = true;
+            }
+
+            if (!this.closed && !this.sending) {
+                this.sending = true;
+                start = true;
+            }
+
+            if (this.lagHistogram != null) {
+                this.lagHistogram.update(this.queue.size());
+            }
+        }
+
+        if (disconnect) {
+            close();
+        } else if (start) {
+            sendNext();
+        }
+    }
+
+    /**
+     * applies the overflow policy, called when the queue is full
+     *
+     * @return false if the session must be closed
+     */
+    private boolean overflow(ChangeStreamNotification notification) {
+        switch (this.overflowPolicy) {
+            case DISCONNECT:
+                LOGGER.debug("Closing slow websocket session {}, {} notifications queued",
+                        this.sessionId, this.queue.size());
+                mark(this.dropped, this.droppedMeter);
+                return false;
+            case COALESCE:
+                if (!coalesce(notification)) {
+                    // no notification of the same document, drop the oldest
+                    dropOldest(notification);
+                }
+                return true;
+            case DROP_OLDEST:
+            default:
+                dropOldest(notification);
+                return true;
+        }
+    }
+
+    /**
+     * replaces the queued notification of the same document, if any
+     *
+     * @return true if a queued notification has been replaced
+     */
+    private boolean coalesce(ChangeStreamNotification notification) {
+        if (notification.getDocumentKey() == null) {
+            return false;
+        }
+
+        for (var it = this.queue.iterator(); it.hasNext();) {
+            if (notification.getDocumentKey().equals(it.next().getDocumentKey())) {
+                // the queued notification is superseded
+                it.remove();
+                mark(this.coalesced, this.coalescedMeter);
+                this.queue.add(notification);
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void dropOldest(ChangeStreamNotification notification) {
+        this.queue.poll();
+        mark(this.dropped, this.droppedMeter);
+        LOGGER.trace("Dropped notification for slow websocket session {}", this.sessionId);
+        this.queue.add(notification);
+    }
+
+    private static void mark(AtomicLong counter, Meter meter) {
+        counter.incrementAndGet();
+
+        if (meter != null) {
+            meter.mark();
+        }
+    }
+
+    private void sendNext() {
+        ChangeStreamNotification next;
+
+        synchronized (this.queue) {
+            next = this.closed ? null : this.queue.poll();
+
+            if (next == null) {
+                this.sending = false;
+                return;
+            }
+        }
+
+        sendText(next.getNotificationMessage(), new WebSocketCallback<Void>() {
+            @Override
+            public void complete(final WebSocketChannel channel, Void context) {
+                mark(sent, sentMeter);
+                // the callback can be invoked by sendText(), dispatching
+                // avoids a recursion as deep as the queue
+                channel.getIoThread().execute(() -> sendNext());
+            }
+
+            @Override
+            public void onError(final WebSocketChannel channel, Void context, Throwable throwable) {
+                LOGGER.debug("Error sending notification to websocket session {}: {}",
+                        sessionId, throwable.getMessage());
+
+                synchronized (queue) {
+                    closed = true;
+                    sending = false;
+                    queue.clear();
+                }
+
+                close();
+            }
+        });
+    }
+
+    /**
+     * writes the message to the channel
+     *
+     * @param message
+     * @param callback invoked when the message has been written
+     */
+    void sendText(String message, WebSocketCallback<Void> callback) {
+        WebSockets.sendText(message, this.webSocketChannel, callback);
+    }
+
+    /**
+     * closes the session, when its stream is terminated or cannot keep up
+     */
+    void close() {
+        GuavaHashMultimapSingleton.remove(this.sessionKey, this);
+        unregisterMetrics();
+
+        try {
+            this.webSocketChannel.close();
+        } catch (IOException ioe) {
+            LOGGER.debug("Error closing websocket session {}", this.sessionId, ioe);
+        }
+    }
+
+    /**
+     * @return the number of notifications waiting to be sent
+     */
+    public int getLag() {
+        synchronized (this.queue) {
+            return this.queue.size();
+        }
+    }
+
+    /**
+     * @return the number of notifications sent
+     */
+    public long getSent() {
+        return this.sent.get();
+    }
+
+    /**
+     * @return the number of notifications dropped by the overflow policy
+     */
+    public long getDropped() {
+        return this.dropped.get();
+    }
+
+    /**
+     * @return the number of notifications replaced by a newer notification
+     * of the same document
+     */
+    public long getCoalesced() {
+        return this.coalesced.get();
+    }
+
+    private void unregisterMetrics() {
+        if (this.registry != null) {
+            this.sessionGauges.forEach(this.registry::remove);
+        }
+    }
+
     private void initChannelReceiveListener(WebSocketChannel channel) {
         channel.getReceiveSetter().set(
                 new ChangeStreamReceiveListener(this));
@@ -75,8 +386,16 @@ public class ChangeStreamWebSocketSession {
         }
         @Override
         protected void onClose(WebSocketChannel webSocketChannel, StreamSourceFrameChannel channel) throws IOException {
-            LOGGER.debug("Stream connection closed, sessionkey={}", sessionKey);
+            LOGGER.debug("Stream connection closed, sessionkey={}, sent={}, dropped={}, coalesced={}",
+                    sessionKey, sent.get(), dropped.get(), coalesced.get());
+
+            synchronized (queue) {
+                closed = true;
+                queue.clear();
+            }
+
             GuavaHashMultimapSingleton.remove(this.session.getSessionKey(), session);
+            unregisterMetrics();
             webSocketChannel.close();
         }
     }
@@ -46,18 +46,27 @@ public class ChangeStreamWebsocketCallback implements WebSocketConnectionCallbac
     @Override
     public void onConnect(WebSocketHttpExchange exchange, WebSocketChannel channel) {
         var sessionKey = new SessionKey(exchange);
+        var streamKey = exchange.getAttachment(GetChangeStreamHandler.STREAM_KEY_ATTACHMENT_KEY);
         
         ChangeStreamWebSocketSession newSession
-                = createSession(channel, sessionKey);
+                = createSession(channel, sessionKey, streamKey);
 
         LOGGER.debug("New stream connection, sessionkey={}", sessionKey);
         
         GuavaHashMultimapSingleton.add(sessionKey, newSession);
+
+        var subscriber = GetChangeStreamHandler.acquire(streamKey, newSession);
+
+        // the close task is executed however the channel gets closed
+        channel.addCloseTask(ch -> {
+            GuavaHashMultimapSingleton.remove(sessionKey, newSession);
+            GetChangeStreamHandler.release(streamKey, newSession, subscriber);
+        });
     }
     
-    private ChangeStreamWebSocketSession createSession(WebSocketChannel channel, SessionKey sessionKey) {
+    private ChangeStreamWebSocketSession createSession(WebSocketChannel channel, SessionKey sessionKey, StreamKey streamKey) {
         ChangeStreamWebSocketSession newSession = new ChangeStreamWebSocketSession(
-                channel, sessionKey);
+                channel, sessionKey, streamKey);
 
         return newSession;
     }
@@ -20,17 +20,16 @@
  */
 package org.restheart.mongodb.handlers.changestreams;
 
-import com.mongodb.client.model.changestream.FullDocument;
 import io.undertow.Handlers;
 import io.undertow.server.HttpHandler;
 import io.undertow.server.HttpServerExchange;
 import io.undertow.util.AttachmentKey;
-import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
-import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 import org.bson.BsonDocument;
+import org.bson.RawBsonDocument;
 import org.bson.json.JsonMode;
 import org.restheart.exchange.InvalidMetadataException;
 import org.restheart.exchange.MongoRequest;
@@ -55,13 +54,18 @@ public class GetChangeStreamHandler extends PipelinedHandler {
     private final String UPGRADE_HEADER_KEY = "upgrade";
     private final String UPGRADE_HEADER_VALUE = "websocket";
 
-    public static final Set<SessionKey> OPENED_STREAMS = Collections.newSetFromMap(new ConcurrentHashMap<SessionKey, Boolean>());
+    /**
+     * the opened change streams; a stream is shared by all the sessions
+     * watching the same collection with the same resolved stages
+     */
+    public static final ConcurrentHashMap<StreamKey, ChangeStreamSubscriber> OPENED_STREAMS = new ConcurrentHashMap<>();
     private static final Logger LOGGER = LoggerFactory.getLogger(GetChangeStreamHandler.class);
     private static final HttpHandler WEBSOCKET_HANDSHAKE_HANDLER
             = Handlers.websocket(new ChangeStreamWebsocketCallback());
 
     public static final AttachmentKey<BsonDocument> AVARS_ATTACHMENT_KEY = AttachmentKey.create(BsonDocument.class);
     public static final AttachmentKey<JsonMode> JSON_MODE_ATTACHMENT_KEY = AttachmentKey.create(JsonMode.class);
+    public static final AttachmentKey<StreamKey> STREAM_KEY_ATTACHMENT_KEY = AttachmentKey.create(StreamKey.class);
 
     @Override
     public void handleRequest(HttpServerExchange exchange)
@@ -79,7 +83,7 @@ public class GetChangeStreamHandler extends PipelinedHandler {
                 exchange.putAttachment(JSON_MODE_ATTACHMENT_KEY, request.getJsonMode());
                 exchange.putAttachment(AVARS_ATTACHMENT_KEY, request.getAggreationVars());
 
-                startStream(exchange);
+                exchange.putAttachment(STREAM_KEY_ATTACHMENT_KEY, getStreamKey(request));
 
                 WEBSOCKET_HANDSHAKE_HANDLER.handleRequest(exchange);
             } else {
@@ -135,9 +139,8 @@ public class GetChangeStreamHandler extends PipelinedHandler {
                         .equals(UPGRADE_HEADER_VALUE);
     }
 
-    private List<BsonDocument> getResolvedStagesAsList(MongoRequest request)
+    private ChangeStreamOperation getChangeStreamOperation(MongoRequest request)
             throws InvalidMetadataException,
-            QueryVariableNotBoundException,
             QueryNotFoundException {
         String changesStreamOperation = request.getChangeStreamOperation();
 
@@ -155,35 +158,93 @@ public class GetChangeStreamHandler extends PipelinedHandler {
                     + "  does not exist");
         }
 
-        ChangeStreamOperation pipeline = _query.get();
-
-        List<BsonDocument> resolvedStages = pipeline
-                .getResolvedStagesAsList(request.getAggreationVars());
-        return resolvedStages;
+        return _query.get();
     }
 
-    private boolean startStream(HttpServerExchange exchange)
+    private StreamKey getStreamKey(MongoRequest request)
             throws QueryVariableNotBoundException,
             QueryNotFoundException,
             InvalidMetadataException {
-        SessionKey streamKey = new SessionKey(exchange);
-        var request = MongoRequest.of(exchange);
+        var operation = getChangeStreamOperation(request);
+
+        return new StreamKey(request.getDBName(),
+                request.getCollectionName(),
+                operation.getResolvedStagesAsList(request.getAggreationVars()),
+                operation.getFullDocument(),
+                operation.getUri());
+    }
+
+    /**
+     * adds a session watching the stream, opening the change stream
+     * if the session is the first one
+     *
+     * @param streamKey
+     * @param session
+     * @return the subscriber of the stream, to be passed to release()
+     */
+    static ChangeStreamSubscriber acquire(StreamKey streamKey, ChangeStreamWebSocketSession session) {
+        return acquire(streamKey, session, subscriber -> MongoReactiveClientSingleton
+                .getInstance()
+                .getClient()
+                .getDatabase(streamKey.getDbName())
+                .getCollection(streamKey.getCollectionName())
+                .watch(streamKey.getResolvedStages())
+                .fullDocument(streamKey.getFullDocument())
+                .withDocumentClass(RawBsonDocument.class)
+                .subscribe(subscriber));
+    }
+
+    /**
+     * @param streamKey
+     * @param session
+     * @param watch subscribes the change stream
+     * @return the subscriber of the stream
+     */
+    static ChangeStreamSubscriber acquire(StreamKey streamKey,
+            ChangeStreamWebSocketSession session,
+            Consumer<ChangeStreamSubscriber> watch) {
+        var opened = new ChangeStreamSubscriber[1];
+
+        var acquired = OPENED_STREAMS.compute(streamKey, (key, subscriber) -> {
+            if (subscriber == null) {
+                subscriber = new ChangeStreamSubscriber(key);
+                opened[0] = subscriber;
+            }
 
-        List<BsonDocument> resolvedStages = getResolvedStagesAsList(request);
-
-        if (OPENED_STREAMS.add(streamKey)) {
-            MongoReactiveClientSingleton
-                    .getInstance()
-                    .getClient()
-                    .getDatabase(request.getDBName())
-                    .getCollection(request.getCollectionName())
-                    .watch(resolvedStages)
-                    .fullDocument(FullDocument.UPDATE_LOOKUP)
-                    .subscribe(new ChangeStreamSubscriber(streamKey));
-
-            return true;
-        } else {
-            return false;
+            subscriber.add(session);
+
+            return subscriber;
+        });
+
+        // subscribe out of compute(), the subscriber can update OPENED_STREAMS
+        if (opened[0] != null) {
+            LOGGER.debug("Opening change stream {}", streamKey);
+            watch.accept(opened[0]);
         }
+
+        return acquired;
+    }
+
+    /**
+     * removes a session from the stream it acquired, closing the change
+     * stream if the session was the last one. If the acquired stream
+     * terminated, a newer stream with the same key is left unchanged
+     *
+     * @param streamKey
+     * @param session
+     * @param acquired the subscriber returned by acquire()
+     */
+    static void release(StreamKey streamKey,
+            ChangeStreamWebSocketSession session,
+            ChangeStreamSubscriber acquired) {
+        OPENED_STREAMS.compute(streamKey, (key, subscriber) -> {
+            if (acquired.remove(session) > 0 || subscriber != acquired) {
+                return subscriber;
+            } else {
+                LOGGER.debug("Closing unwatched change stream {}", key);
+                acquired.stop();
+                return null;
+            }
+        });
     }
 }
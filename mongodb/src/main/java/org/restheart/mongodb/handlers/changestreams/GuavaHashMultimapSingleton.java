@@ -21,6 +21,7 @@
 package org.restheart.mongodb.handlers.changestreams;
 
 import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Multimaps;
 import com.google.common.collect.SetMultimap;
 import java.util.Set;
@@ -43,6 +44,19 @@ public class GuavaHashMultimapSingleton {
     public static Set<ChangeStreamWebSocketSession> get(SessionKey key) {
         return GuavaHashMultimapSingleton.getInstance().MULTIMAP.get(key);
     }
+
+    /**
+     * @param key
+     * @return a copy of the sessions of the key, that can be iterated
+     * while sessions are added or removed
+     */
+    public static Set<ChangeStreamWebSocketSession> getCopy(SessionKey key) {
+        var multimap = GuavaHashMultimapSingleton.getInstance().MULTIMAP;
+
+        synchronized (multimap) {
+            return ImmutableSet.copyOf(multimap.get(key));
+        }
+    }
     
     
     public static boolean add(SessionKey key, ChangeStreamWebSocketSession session) {
@@ -0,0 +1,129 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-mongodb
+ * %%
+ * Copyright (C) 2014 - 2020 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.mongodb.handlers.changestreams;
+
+import com.mongodb.client.model.changestream.FullDocument;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.restheart.utils.JsonUtils;
+
+/**
+ * Identifies a MongoDB change stream by its collection and resolved stages.
+ *
+ * Differently from SessionKey it does not depend on the json mode nor on the
+ * stream uri: websocket sessions watching the same collection with the same
+ * resolved pipeline and fullDocument policy share a single change stream.
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class StreamKey {
+    private final String dbName;
+    private final String collectionName;
+    private final BsonArray resolvedStages;
+    private final FullDocument fullDocument;
+    private final String name;
+
+    /**
+     * @param dbName
+     * @param collectionName
+     * @param resolvedStages
+     * @param fullDocument
+     * @param name the uri of the stream, used to name its metrics; not part
+     * of the key, streams with same pipeline and different uris are shared
+     */
+    public StreamKey(String dbName, String collectionName,
+            List<BsonDocument> resolvedStages,
+            FullDocument fullDocument,
+            String name) {
+        this.dbName = dbName;
+        this.collectionName = collectionName;
+        this.resolvedStages = new BsonArray(resolvedStages);
+        this.fullDocument = fullDocument;
+        this.name = name;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(dbName, collectionName, resolvedStages, fullDocument);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        } else if (!(obj instanceof StreamKey)) {
+            return false;
+        } else {
+            var other = (StreamKey) obj;
+
+            return Objects.equals(dbName, other.dbName)
+                    && Objects.equals(collectionName, other.collectionName)
+                    && Objects.equals(resolvedStages, other.resolvedStages)
+                    && Objects.equals(fullDocument, other.fullDocument);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return dbName + "." + collectionName + " " + JsonUtils.toJson(resolvedStages)
+                + " fullDocument=" + fullDocument;
+    }
+
+    /**
+     * @return the dbName
+     */
+    public String getDbName() {
+        return dbName;
+    }
+
+    /**
+     * @return the collectionName
+     */
+    public String getCollectionName() {
+        return collectionName;
+    }
+
+    /**
+     * @return the fullDocument policy
+     */
+    public FullDocument getFullDocument() {
+        return fullDocument;
+    }
+
+    /**
+     * @return the uri of the stream
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the resolved stages
+     */
+    public List<BsonDocument> getResolvedStages() {
+        return resolvedStages.stream()
+                .map(s -> s.asDocument())
+                .collect(Collectors.toList());
+    }
+}
@@ -20,12 +20,6 @@
  */
 package org.restheart.mongodb.handlers.changestreams;
 
-import io.undertow.websockets.core.WebSocketCallback;
-import io.undertow.websockets.core.WebSocketChannel;
-import io.undertow.websockets.core.WebSockets;
-import java.util.Collections;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Flow.Subscriber;
 import java.util.concurrent.Flow.Subscription;
 import org.slf4j.Logger;
@@ -54,19 +48,10 @@ public class WebSocketNotificationSubscriber implements Subscriber<ChangeStreamN
 
     @Override
     public void onNext(ChangeStreamNotification notification) {
-        Set<ChangeStreamWebSocketSession> sessions
-                = GuavaHashMultimapSingleton.get(notification.getSessionKey());
-
-        Set<ChangeStreamWebSocketSession> sessionsInError = Collections
-                .newSetFromMap(new ConcurrentHashMap<>());
-
-        sessions.stream().forEach(session -> {
-            this.sendNotification(session, notification.getNotificationMessage(), sessionsInError);
-        });
-
-        sessionsInError.parallelStream().forEach(sessionInError -> {
-            GuavaHashMultimapSingleton.remove(notification.getSessionKey(), sessionInError);
-        });
+        // each session queues the notification and sends it asynchronously,
+        // a slow session does not delay the others
+        GuavaHashMultimapSingleton.getCopy(notification.getSessionKey())
+                .forEach(session -> session.send(notification));
     }
 
     @Override
@@ -82,19 +67,4 @@ public class WebSocketNotificationSubscriber implements Subscriber<ChangeStreamN
     public void stop() {
         this.sub.cancel();
     }
-
-    private synchronized void sendNotification(ChangeStreamWebSocketSession session, String notificationMessage, Set<ChangeStreamWebSocketSession> sessionsInError) {
-        WebSockets.sendText(notificationMessage, session.getChannel(), new WebSocketCallback<Void>() {
-
-            @Override
-            public void complete(final WebSocketChannel channel, Void context) {
-
-            }
-
-            @Override
-            public void onError(final WebSocketChannel channel, Void context, Throwable throwable) {
-                sessionsInError.add(session);
-            }
-        });
-    }
 }
@@ -23,14 +23,22 @@ package org.restheart.mongodb.handlers.collection;
 import com.google.common.annotations.VisibleForTesting;
 import com.mongodb.MongoException;
 import io.undertow.server.HttpServerExchange;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Stream;
 import org.bson.BsonArray;
+import org.bson.BsonDocument;
 import org.bson.json.JsonParseException;
 import org.restheart.exchange.IllegalQueryParamenterException;
 import org.restheart.exchange.MongoRequest;
 import org.restheart.exchange.MongoResponse;
 import org.restheart.handlers.PipelinedHandler;
+import org.restheart.mongodb.MongoServiceConfiguration;
+import org.restheart.mongodb.db.AsyncReadsDAO;
 import org.restheart.mongodb.db.Database;
 import org.restheart.mongodb.db.DatabaseImpl;
+import org.restheart.mongodb.handlers.AsyncReads;
+import org.restheart.mongodb.utils.ContentStreamSender;
 import org.restheart.mongodb.utils.ResponseHelper;
 import org.restheart.utils.HttpStatus;
 import org.slf4j.Logger;
@@ -42,6 +50,7 @@ import org.slf4j.LoggerFactory;
  */
 public class GetCollectionHandler extends PipelinedHandler {
     private Database dbsDAO = new DatabaseImpl();
+    private final AsyncReadsDAO asyncDAO = new AsyncReadsDAO();
 
     private static final Logger LOGGER = LoggerFactory
             .getLogger(GetCollectionHandler.class);
@@ -80,40 +89,59 @@ public class GetCollectionHandler extends PipelinedHandler {
     @Override
     public void handleRequest(HttpServerExchange exchange) throws Exception {
         var request = MongoRequest.of(exchange);
-        var response = MongoResponse.of(exchange);
 
         if (request.isInError()) {
             next(exchange);
             return;
         }
 
+        if (AsyncReads.isEnabled(request)) {
+            handleRequestAsync(exchange);
+            return;
+        }
+
         var coll = dbsDAO.getCollection(request.getDBName(), 
                 request.getCollectionName());
 
-        long size = -1;
+        // the count is executed in parallel with reading the data
+        CompletableFuture<Long> size = null;
 
         if (request.isCount()) {
             size = dbsDAO
-                    .getCollectionSize(request.getClientSession(),
+                    .getCollectionSizeAsync(request.getClientSession(),
                             coll, request.getFiltersDocument());
         }
 
         // ***** get data
         BsonArray data = null;
+        Stream<BsonDocument> dataStream = null;
 
         if (request.getPagesize() > 0) {
 
             try {
-                data = dbsDAO.getCollectionData(
-                        request.getClientSession(),
-                        coll,
-                        request.getPage(),
-                        request.getPagesize(),
-                        request.getSortByDocument(),
-                        request.getFiltersDocument(),
-                        request.getHintDocument(),
-                        request.getProjectionDocument(),
-                        request.getCursorAllocationPolicy());
+                if (MongoServiceConfiguration.get().isCollectionStreamingEnabled()) {
+                    dataStream = dbsDAO.getCollectionDataStream(
+                            request.getClientSession(),
+                            coll,
+                            request.getPage(),
+                            request.getPagesize(),
+                            request.getSortByDocument(),
+                            request.getFiltersDocument(),
+                            request.getHintDocument(),
+                            request.getProjectionDocument(),
+                            request.getCursorAllocationPolicy());
+                } else {
+                    data = dbsDAO.getCollectionData(
+                            request.getClientSession(),
+                            coll,
+                            request.getPage(),
+                            request.getPagesize(),
+                            request.getSortByDocument(),
+                            request.getFiltersDocument(),
+                            request.getHintDocument(),
+                            request.getProjectionDocument(),
+                            request.getCursorAllocationPolicy());
+                }
             } catch (JsonParseException jpe) {
                 // the filter expression is not a valid json string
                 LOGGER.debug("invalid filter expression {}",
@@ -149,8 +177,94 @@ public class GetCollectionHandler extends PipelinedHandler {
             return;
         }
 
+        sendData(exchange, data, dataStream, size == null ? -1 : join(size));
+    }
+
+    /**
+     * waits for the count, rethrowing its exception if it failed
+     */
+    private static long join(CompletableFuture<Long> size) {
         try {
-            response.setContent(data);
+            return size.join();
+        } catch (CompletionException ce) {
+            if (ce.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ce.getCause();
+            } else {
+                throw ce;
+            }
+        }
+    }
+
+    /**
+     * executes the count and the find operations concurrently with the
+     * reactive client, suspending the exchange until both complete
+     *
+     * @param exchange
+     * @throws Exception
+     */
+    private void handleRequestAsync(HttpServerExchange exchange) throws Exception {
+        var request = MongoRequest.of(exchange);
+
+        final BsonDocument sortBy, filters, hint, keys;
+
+        try {
+            sortBy = request.getSortByDocument();
+            filters = request.getFiltersDocument();
+            hint = request.getHintDocument();
+            keys = request.getProjectionDocument();
+        } catch (JsonParseException jpe) {
+            // the filter expression is not a valid json string
+            LOGGER.debug("invalid filter expression {}",
+                    request.getFilter(), jpe);
+            MongoResponse.of(exchange).setInError(
+                    HttpStatus.SC_BAD_REQUEST,
+                    "wrong request, filter expression is invalid",
+                    jpe);
+            next(exchange);
+            return;
+        }
+
+        var dbName = request.getDBName();
+        var collName = request.getCollectionName();
+
+        var size = request.isCount()
+                ? asyncDAO.getCollectionSize(dbName, collName, filters)
+                : CompletableFuture.completedFuture(-1L);
+
+        var data = request.getPagesize() > 0
+                ? asyncDAO.getCollectionData(dbName, collName,
+                        request.getPage(), request.getPagesize(),
+                        sortBy, filters, hint, keys)
+                : CompletableFuture.completedFuture((BsonArray) null);
+
+        AsyncReads.execute(exchange,
+                () -> CompletableFuture.allOf(size, data),
+                (ex, v) -> sendData(ex, data.join(), null, size.join()));
+    }
+
+    private void sendData(HttpServerExchange exchange,
+            BsonArray data,
+            Stream<BsonDocument> dataStream,
+            long size) throws Exception {
+        var request = MongoRequest.of(exchange);
+        var response = MongoResponse.of(exchange);
+
+        try {
+            if (dataStream != null) {
+                // the documents are sent by ContentStreamSender as they are
+                // read from the cursor, unless an interceptor reads the content
+                final var _dataStream = dataStream;
+                exchange.addExchangeCompleteListener((ex, nextListener) -> {
+                    _dataStream.close();
+                    nextListener.proceed();
+                });
+
+                response.setContentStream(dataStream);
+                response.setCustomerSender(new ContentStreamSender(exchange));
+            } else {
+                response.setContent(data);
+            }
+
             response.setCount(size);
 
             response.setContentTypeAsJson();
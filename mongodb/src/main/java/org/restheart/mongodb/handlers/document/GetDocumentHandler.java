@@ -37,7 +37,9 @@ import org.restheart.exchange.ExchangeKeys.TYPE;
 import org.restheart.exchange.MongoRequest;
 import org.restheart.exchange.MongoResponse;
 import org.restheart.handlers.PipelinedHandler;
+import org.restheart.mongodb.db.AsyncReadsDAO;
 import org.restheart.mongodb.db.DatabaseImpl;
+import org.restheart.mongodb.handlers.AsyncReads;
 import org.restheart.mongodb.utils.RequestHelper;
 import org.restheart.mongodb.utils.ResponseHelper;
 import org.restheart.utils.HttpStatus;
@@ -49,6 +51,7 @@ import org.restheart.utils.JsonUtils;
  */
 public class GetDocumentHandler extends PipelinedHandler {
     private final DatabaseImpl dbsDAO = new DatabaseImpl();
+    private final AsyncReadsDAO asyncDAO = new AsyncReadsDAO();
 
     /**
      * Default ctor
@@ -74,8 +77,7 @@ public class GetDocumentHandler extends PipelinedHandler {
     @Override
     public void handleRequest(HttpServerExchange exchange) throws Exception {
         var request = MongoRequest.of(exchange);
-        var response = MongoResponse.of(exchange);
-        
+
         if (request.isInError()) {
             next(exchange);
             return;
@@ -133,6 +135,15 @@ public class GetDocumentHandler extends PipelinedHandler {
             });
         }
 
+        if (AsyncReads.isEnabled(request)) {
+            final var _query = query;
+            AsyncReads.execute(exchange,
+                    () -> asyncDAO.findOne(request.getDBName(), collName,
+                            _query, fieldsToReturn),
+                    this::handleDocument);
+            return;
+        }
+
         var cs = request.getClientSession();
         var coll = dbsDAO.getCollection(
                 request.getDBName(),
@@ -148,6 +159,14 @@ public class GetDocumentHandler extends PipelinedHandler {
                         .projection(fieldsToReturn)
                         .first();
 
+        handleDocument(exchange, document);
+    }
+
+    private void handleDocument(HttpServerExchange exchange,
+            BsonDocument document) throws Exception {
+        var request = MongoRequest.of(exchange);
+        var response = MongoResponse.of(exchange);
+
         if (document == null) {
             String errMsg = request.getDocumentId() == null
                     ? " does not exist"
@@ -0,0 +1,133 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-mongodb
+ * %%
+ * Copyright (C) 2014 - 2020 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.mongodb.handlers.files;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parses the Range request header, see RFC 7233 section 2.1
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+class ByteRanges {
+
+    /**
+     * requests with more ranges are served as if they had no Range header,
+     * many small ranges would cost more than the whole content
+     */
+    static final int MAX_RANGES = 16;
+
+    private static final String BYTES_UNIT = "bytes=";
+
+    /**
+     * A range of bytes, first and last inclusive
+     */
+    static class Range {
+        final long first;
+        final long last;
+
+        Range(long first, long last) {
+            this.first = first;
+            this.last = last;
+        }
+
+        long length() {
+            return last - first + 1;
+        }
+
+        /**
+         * @param total the length of the content
+         * @return the value of the Content-Range header
+         */
+        String contentRange(long total) {
+            return "bytes " + first + "-" + last + "/" + total;
+        }
+
+        @Override
+        public String toString() {
+            return first + "-" + last;
+        }
+    }
+
+    private ByteRanges() {
+    }
+
+    /**
+     * @param header the value of the Range header
+     * @param length the length of the content
+     * @return the ranges, limited to the content; null if the header is not
+     * valid, does not use the bytes unit or specifies more than MAX_RANGES
+     * ranges, in which case it must be ignored; empty if no range is
+     * satisfiable
+     */
+    static List<Range> parse(String header, long length) {
+        if (header == null || !header.regionMatches(true, 0, BYTES_UNIT, 0, BYTES_UNIT.length())) {
+            return null;
+        }
+
+        var specs = header.substring(BYTES_UNIT.length()).split(",");
+
+        if (specs.length > MAX_RANGES) {
+            return null;
+        }
+
+        var ret = new ArrayList<Range>(specs.length);
+
+        for (var _spec : specs) {
+            var spec = _spec.trim();
+            var dash = spec.indexOf('-');
+
+            if (dash < 0) {
+                return null;
+            }
+
+            var _first = spec.substring(0, dash).trim();
+            var _last = spec.substring(dash + 1).trim();
+
+            try {
+                if (_first.isEmpty()) {
+                    // suffix-byte-range-spec, the last n bytes
+                    var suffix = Long.parseLong(_last);
+
+                    if (suffix < 0 || _last.startsWith("+")) {
+                        return null;
+                    } else if (suffix > 0 && length > 0) {
+                        ret.add(new Range(Math.max(0, length - suffix), length - 1));
+                    }
+                } else {
+                    var first = Long.parseLong(_first);
+                    var last = _last.isEmpty() ? Long.MAX_VALUE : Long.parseLong(_last);
+
+                    if (first < 0 || last < first || _first.startsWith("+") || _last.startsWith("+")) {
+                        return null;
+                    } else if (first < length) {
+                        ret.add(new Range(first, Math.min(last, length - 1)));
+                    }
+                }
+            } catch (NumberFormatException nfe) {
+                return null;
+            }
+        }
+
+        return ret;
+    }
+}
@@ -106,7 +106,8 @@ public class FileMetadataHandler extends PipelinedHandler {
             return;
         }
 
-        if (request.getFilePath() != null) {
+        if (request.getFilePath() != null
+                || request.getFileInputStream() != null) {
             // PUT request with non null data will be dealt with by previous handler (PutFileHandler)
             if (request.isPatch()) {
                 response.setInError(
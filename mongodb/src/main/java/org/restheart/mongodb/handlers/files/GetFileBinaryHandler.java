@@ -27,12 +27,17 @@ import static com.mongodb.client.model.Filters.eq;
 import io.undertow.server.HttpServerExchange;
 import io.undertow.util.Headers;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.bson.BsonDocument;
 import org.bson.BsonObjectId;
 import org.bson.types.ObjectId;
 import org.restheart.exchange.MongoRequest;
 import org.restheart.exchange.MongoResponse;
 import org.restheart.handlers.PipelinedHandler;
 import org.restheart.mongodb.db.MongoClientSingleton;
+import org.restheart.mongodb.handlers.files.ByteRanges.Range;
 import org.restheart.mongodb.utils.RequestHelper;
 import org.restheart.mongodb.utils.ResponseHelper;
 import org.restheart.utils.HttpStatus;
@@ -110,7 +115,7 @@ public class GetFileBinaryHandler extends PipelinedHandler {
         if (dbsfile == null) {
             fileNotFound(request, exchange);
         } else if (!checkEtag(exchange, dbsfile)) {
-            sendBinaryContent(request, response, gridFSBucket, dbsfile, exchange);
+            sendBinaryContent(request, response, dbsfile, exchange);
         }
 
         next(exchange);
@@ -160,55 +165,136 @@ public class GetFileBinaryHandler extends PipelinedHandler {
     private void sendBinaryContent(
             final MongoRequest request,
             final MongoResponse response,
-            final GridFSBucket gridFSBucket,
             final GridFSFile file,
             final HttpServerExchange exchange)
             throws IOException {
         LOGGER.trace("Filename = {}", file.getFilename());
         LOGGER.trace("Content length = {}", file.getLength());
 
+        String contentType;
+
         if (file.getMetadata() != null
                 && file.getMetadata().get("contentType") != null) {
-            response.getHeaders().put(Headers.CONTENT_TYPE,
-                    file.getMetadata().get("contentType").toString());
-        } else if (file.getMetadata() != null
-                && file.getMetadata().get("contentType") != null) {
-            response.getHeaders().put(Headers.CONTENT_TYPE,
-                    file.getMetadata().get("contentType").toString());
+            contentType = file.getMetadata().get("contentType").toString();
         } else {
-            response.getHeaders().put(
-                    Headers.CONTENT_TYPE,
-                    APPLICATION_OCTET_STREAM);
+            contentType = APPLICATION_OCTET_STREAM;
         }
 
-        response.getHeaders().put(Headers.CONTENT_LENGTH, file.getLength());
-
         response.getHeaders().put(
                 Headers.CONTENT_DISPOSITION,
                 String.format("inline; filename=\"%s\"",
                         extractFilename(file)));
 
-            response.getHeaders().put(
+        response.getHeaders().put(
                 Headers.CONTENT_TRANSFER_ENCODING,
                 CONTENT_TRANSFER_ENCODING_BINARY);
 
+        response.getHeaders().put(Headers.ACCEPT_RANGES, "bytes");
+
         ResponseHelper.injectEtagHeader(exchange, file.getMetadata());
 
-        response.setStatusCode(HttpStatus.SC_OK);
+        var length = file.getLength();
 
-        response.setCustomerSender(() -> {
-            LOGGER.debug("*************** used a custom sender");
-            if (request.getClientSession() != null) {
-                gridFSBucket.downloadToStream(
-                        request.getClientSession(),
-                        file.getId(),
-                        exchange.getOutputStream());
-            } else {
-                gridFSBucket.downloadToStream(
-                        file.getId(),
-                        exchange.getOutputStream());
+        var ranges = checkIfRange(exchange, file)
+                ? ByteRanges.parse(exchange.getRequestHeaders().getFirst(Headers.RANGE), length)
+                : null;
+
+        var chunks = MongoClientSingleton.getInstance().getClient()
+                .getDatabase(request.getDBName())
+                .getCollection(extractBucketName(request.getCollectionName())
+                        .concat(".chunks"), BsonDocument.class);
+
+        final List<GridFsChunksSender.Part> parts = new ArrayList<>();
+        byte[] trailer = null;
+
+        if (ranges == null) {
+            // whole content
+            response.getHeaders().put(Headers.CONTENT_TYPE, contentType);
+            response.getHeaders().put(Headers.CONTENT_LENGTH, length);
+            response.setStatusCode(HttpStatus.SC_OK);
+
+            if (length > 0) {
+                parts.add(new GridFsChunksSender.Part(new Range(0, length - 1), null));
+            }
+        } else if (ranges.isEmpty()) {
+            response.getHeaders().put(Headers.CONTENT_RANGE, "bytes */" + length);
+            response.setInError(HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE,
+                    "Requested range not satisfiable");
+            return;
+        } else if (ranges.size() == 1) {
+            var range = ranges.get(0);
+
+            response.getHeaders().put(Headers.CONTENT_TYPE, contentType);
+            response.getHeaders().put(Headers.CONTENT_RANGE, range.contentRange(length));
+            response.getHeaders().put(Headers.CONTENT_LENGTH, range.length());
+            response.setStatusCode(HttpStatus.SC_PARTIAL_CONTENT);
+
+            parts.add(new GridFsChunksSender.Part(range, null));
+        } else {
+            // multipart/byteranges, see RFC 7233 appendix A
+            var boundary = new ObjectId().toHexString();
+            long contentLength = 0;
+
+            for (var range : ranges) {
+                var header = (parts.isEmpty() ? "" : "\r\n")
+                        + "--" + boundary + "\r\n"
+                        + Headers.CONTENT_TYPE_STRING + ": " + contentType + "\r\n"
+                        + Headers.CONTENT_RANGE_STRING + ": " + range.contentRange(length) + "\r\n"
+                        + "\r\n";
+
+                var _header = header.getBytes(StandardCharsets.ISO_8859_1);
+
+                parts.add(new GridFsChunksSender.Part(range, _header));
+                contentLength += _header.length + range.length();
             }
-        });
+
+            trailer = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.ISO_8859_1);
+            contentLength += trailer.length;
+
+            response.getHeaders().put(Headers.CONTENT_TYPE,
+                    "multipart/byteranges; boundary=" + boundary);
+            response.getHeaders().put(Headers.CONTENT_LENGTH, contentLength);
+            response.setStatusCode(HttpStatus.SC_PARTIAL_CONTENT);
+        }
+
+        response.setCustomerSender(new GridFsChunksSender(exchange,
+                request.getClientSession(),
+                chunks,
+                file,
+                parts,
+                trailer));
+    }
+
+    /**
+     * The Range header applies if there is no If-Range header or if it
+     * matches the etag of the file; If-Range with a date never matches since
+     * no Last-Modified header is sent, see RFC 7233 section 3.2
+     *
+     * @return true if the Range header, if any, must be processed
+     */
+    private boolean checkIfRange(HttpServerExchange exchange, GridFSFile file) {
+        var ifRange = exchange.getRequestHeaders().getFirst(Headers.IF_RANGE);
+
+        if (ifRange == null) {
+            return true;
+        }
+
+        var etag = file.getMetadata() == null
+                ? null
+                : file.getMetadata().get("_etag");
+
+        if (etag == null) {
+            return false;
+        }
+
+        var _ifRange = ifRange.trim();
+
+        // the etag header is not quoted, accept both
+        if (_ifRange.length() > 1 && _ifRange.startsWith("\"") && _ifRange.endsWith("\"")) {
+            _ifRange = _ifRange.substring(1, _ifRange.length() - 1);
+        }
+
+        return _ifRange.equals(etag.toString());
     }
 
     private String extractFilename(final GridFSFile dbsfile) {
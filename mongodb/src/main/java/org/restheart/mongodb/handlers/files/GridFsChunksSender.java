@@ -0,0 +1,320 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-mongodb
+ * %%
+ * Copyright (C) 2014 - 2020 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.mongodb.handlers.files;
+
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import static com.mongodb.client.model.Filters.and;
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.gte;
+import static com.mongodb.client.model.Filters.lte;
+import static com.mongodb.client.model.Projections.include;
+import static com.mongodb.client.model.Sorts.ascending;
+import com.mongodb.client.gridfs.model.GridFSFile;
+import io.undertow.server.HttpServerExchange;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import org.bson.BsonDocument;
+import org.restheart.mongodb.handlers.files.ByteRanges.Range;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xnio.ChannelListener;
+import org.xnio.ChannelListeners;
+import org.xnio.IoUtils;
+import org.xnio.channels.StreamSinkChannel;
+
+/**
+ * Custom response sender that writes ranges of a GridFS file reading only the
+ * fs.chunks documents that contain them: the chunk of the byte at offset is
+ * the one with n = offset / chunkSize.
+ *
+ * Each chunk is read by a worker thread and written to the non-blocking
+ * response channel, bypassing the blocking Sender of the exchange. When the
+ * channel cannot accept more data, the worker is released and a write listener
+ * completes the write on the IO thread; the next chunk is read when the write
+ * completes, so no thread is blocked while the client receives the data.
+ *
+ * A part can be preceded by a header, and the parts followed by a trailer,
+ * as required by multipart/byteranges responses.
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+class GridFsChunksSender implements Runnable, ChannelListener<StreamSinkChannel> {
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(GridFsChunksSender.class);
+
+    /**
+     * A range of the file to send, with its optional part header
+     */
+    static class Part {
+        final Range range;
+        final byte[] header;
+
+        Part(Range range, byte[] header) {
+            this.range = range;
+            this.header = header;
+        }
+    }
+
+    private final HttpServerExchange exchange;
+    private final ClientSession session;
+    private final MongoCollection<BsonDocument> chunks;
+    private final GridFSFile file;
+    private final List<Part> parts;
+    private final byte[] trailer;
+
+    // the state, accessed by one thread at a time
+    private int part = 0;
+    private boolean headerSent = false;
+    private boolean trailerSent = false;
+    private volatile MongoCursor<BsonDocument> cursor = null;
+    private int expectedChunk;
+    private StreamSinkChannel channel = null;
+    private volatile ByteBuffer pending = null;
+
+    /**
+     * @param exchange
+     * @param session the client session, can be null
+     * @param chunks the chunks collection of the bucket
+     * @param file
+     * @param parts
+     * @param trailer written after the parts, can be null
+     */
+    GridFsChunksSender(HttpServerExchange exchange,
+            ClientSession session,
+            MongoCollection<BsonDocument> chunks,
+            GridFSFile file,
+            List<Part> parts,
+            byte[] trailer) {
+        this.exchange = exchange;
+        this.session = session;
+        this.chunks = chunks;
+        this.file = file;
+        this.parts = parts;
+        this.trailer = trailer;
+    }
+
+    @Override
+    public void run() {
+        exchange.addExchangeCompleteListener((ex, nextListener) -> {
+            closeCursor();
+            nextListener.proceed();
+        });
+
+        // executed by a worker thread when the current handler returns
+        dispatch(this::sendNext);
+    }
+
+    /**
+     * Invoked by the IO thread when the channel is writable again: completes
+     * the pending write and dispatches the reading of the next chunk.
+     *
+     * @param channel
+     */
+    @Override
+    public void handleEvent(StreamSinkChannel channel) {
+        try {
+            var _pending = this.pending;
+
+            while (_pending.hasRemaining()) {
+                if (channel.write(_pending) == 0) {
+                    // still not writable, wait for the next event
+                    return;
+                }
+            }
+
+            channel.suspendWrites();
+            this.pending = null;
+
+            // reading the next chunk is blocking and must not run in the IO thread
+            dispatch(this::sendNext);
+        } catch (IOException ex) {
+            onException(ex);
+        }
+    }
+
+    /**
+     * Reads and writes the chunks until the channel cannot accept more data;
+     * then the worker is released and the write is completed by
+     * handleEvent()
+     */
+    void sendNext() {
+        try {
+            if (channel == null) {
+                channel = responseChannel();
+            }
+
+            ByteBuffer next;
+
+            while ((next = next()) != null) {
+                if (!write(next)) {
+                    return;
+                }
+            }
+
+            channel.shutdownWrites();
+
+            if (channel.flush()) {
+                exchange.endExchange();
+            } else {
+                channel.getWriteSetter().set(ChannelListeners.flushingChannelListener(
+                        ch -> exchange.endExchange(),
+                        (ch, ex) -> onException(ex)));
+                channel.resumeWrites();
+            }
+        } catch (IOException ex) {
+            onException(ex);
+        } catch (RuntimeException ex) {
+            LOGGER.error("Error reading chunks of file {}", file.getId(), ex);
+            closeCursor();
+            // the response is already started: the connection is closed
+            // to make the client aware that the content is truncated
+            IoUtils.safeClose(exchange.getConnection());
+        }
+    }
+
+    /**
+     * @return true if the buffer was fully written, false if the write is
+     * pending and will be completed by handleEvent()
+     */
+    private boolean write(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.write(buffer) == 0) {
+                this.pending = buffer;
+                channel.getWriteSetter().set(this);
+                channel.resumeWrites();
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private void onException(IOException exception) {
+        LOGGER.debug("Error sending file {} to client", file.getId(), exception);
+        closeCursor();
+        IoUtils.safeClose(exchange.getConnection());
+    }
+
+    /**
+     * @return the non-blocking response channel of the exchange
+     */
+    StreamSinkChannel responseChannel() {
+        return exchange.getResponseChannel();
+    }
+
+    /**
+     * Executes the task in a worker thread
+     *
+     * @param task
+     */
+    void dispatch(Runnable task) {
+        exchange.dispatch(exchange.getConnection().getWorker(), task);
+    }
+
+    /**
+     * @return the next buffer to write, or null when done
+     */
+    private ByteBuffer next() {
+        while (part < parts.size()) {
+            var current = parts.get(part);
+
+            if (!headerSent) {
+                headerSent = true;
+
+                if (current.header != null) {
+                    return ByteBuffer.wrap(current.header);
+                }
+            }
+
+            var range = current.range;
+            var chunkSize = file.getChunkSize();
+
+            if (cursor == null) {
+                expectedChunk = (int) (range.first / chunkSize);
+
+                var filter = and(eq("files_id", file.getId()),
+                        gte("n", expectedChunk),
+                        lte("n", (int) (range.last / chunkSize)));
+
+                var find = session == null
+                        ? chunks.find(filter)
+                        : chunks.find(session, filter);
+
+                cursor = find.projection(include("n", "data"))
+                        .sort(ascending("n"))
+                        .iterator();
+            }
+
+            if (cursor.hasNext()) {
+                var chunk = cursor.next();
+                var n = chunk.getNumber("n").intValue();
+
+                if (n != expectedChunk) {
+                    throw new IllegalStateException("missing chunk " + expectedChunk
+                            + " of file " + file.getId());
+                }
+
+                expectedChunk++;
+
+                var data = chunk.getBinary("data").getData();
+                var chunkStart = (long) n * chunkSize;
+
+                var from = (int) (Math.max(range.first, chunkStart) - chunkStart);
+                var to = (int) (Math.min(range.last, chunkStart + data.length - 1) - chunkStart);
+
+                return ByteBuffer.wrap(data, from, to - from + 1);
+            } else {
+                if (expectedChunk <= range.last / chunkSize) {
+                    throw new IllegalStateException("missing chunk " + expectedChunk
+                            + " of file " + file.getId());
+                }
+
+                closeCursor();
+                part++;
+                headerSent = false;
+            }
+        }
+
+        if (trailer != null && !trailerSent) {
+            trailerSent = true;
+            return ByteBuffer.wrap(trailer);
+        }
+
+        return null;
+    }
+
+    private void closeCursor() {
+        var _cursor = this.cursor;
+
+        if (_cursor != null) {
+            this.cursor = null;
+
+            try {
+                _cursor.close();
+            } catch (Throwable t) {
+                LOGGER.trace("Error closing chunks cursor", t);
+            }
+        }
+    }
+}
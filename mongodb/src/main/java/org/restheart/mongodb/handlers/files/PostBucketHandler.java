@@ -21,6 +21,7 @@
 package org.restheart.mongodb.handlers.files;
 
 import com.mongodb.DuplicateKeyException;
+import com.mongodb.MongoGridFSException;
 import io.undertow.server.HttpServerExchange;
 import io.undertow.util.HttpString;
 import org.bson.BsonDocument;
@@ -113,6 +114,13 @@ public class PostBucketHandler extends PipelinedHandler {
                                 request.getCollectionName(),
                                 metadata,
                                 request.getFilePath());
+            } else if (request.getFileInputStream() != null) {
+                result = gridFsDAO
+                        .createFile(dbsDAO,
+                                request.getDBName(),
+                                request.getCollectionName(),
+                                metadata,
+                                request.getFileInputStream());
             } else {
                 response.setInError(
                         HttpStatus.SC_BAD_REQUEST,
@@ -120,6 +128,16 @@ public class PostBucketHandler extends PipelinedHandler {
                 next(exchange);
                 return;
             }
+        } catch (MongoGridFSException gfe) {
+            // the streamed upload failed and has been aborted
+            response.setInError(
+                    HttpStatus.SC_BAD_REQUEST,
+                    "Error uploading the file: "
+                    + (gfe.getCause() != null
+                    ? gfe.getCause().getMessage()
+                    : gfe.getMessage()));
+            next(exchange);
+            return;
         } catch (DuplicateKeyException t) {
             // update not supported
             String errMsg = "file resource update is not yet implemented";
@@ -21,6 +21,7 @@
 package org.restheart.mongodb.handlers.files;
 
 import com.mongodb.MongoException;
+import com.mongodb.MongoGridFSException;
 import com.mongodb.MongoWriteException;
 import io.undertow.server.HttpServerExchange;
 import org.bson.BsonDocument;
@@ -124,12 +125,32 @@ public class PutFileHandler extends PipelinedHandler {
                                 id,
                                 request.getETag(),
                                 request.isETagCheckRequired());
+            } else if (request.getFileInputStream() != null) {
+                result = gridFsDAO
+                        .upsertFile(dbsDAO,
+                                request.getDBName(),
+                                request.getCollectionName(),
+                                metadata,
+                                request.getFileInputStream(),
+                                id,
+                                request.getETag(),
+                                request.isETagCheckRequired());
             } else {
                 // throw new RuntimeException("error. file data is null");
                 // try to pass to next handler in order to PUT new metadata on existing file.
                 next(exchange);
                 return;
             }
+        } catch (MongoGridFSException gfe) {
+            // the streamed upload failed and has been aborted
+            response.setInError(
+                    HttpStatus.SC_BAD_REQUEST,
+                    "Error uploading the file: "
+                    + (gfe.getCause() != null
+                    ? gfe.getCause().getMessage()
+                    : gfe.getMessage()));
+            next(exchange);
+            return;
         } catch (MongoWriteException t) {
             if (((MongoException) t).getCode() == 11000) {
 
@@ -39,6 +39,7 @@ import org.bson.BsonValue;
 import org.bson.json.JsonMode;
 import org.bson.json.JsonWriterSettings;
 import org.restheart.exchange.ByteArrayProxyResponse;
+import org.restheart.exchange.ExchangeKeys.METHOD;
 import org.restheart.exchange.ExchangeKeys.REPRESENTATION_FORMAT;
 import static org.restheart.exchange.ExchangeKeys.REPRESENTATION_FORMAT_KEY;
 import static org.restheart.exchange.ExchangeKeys._METRICS;
@@ -287,6 +288,13 @@ public class MetricsHandler extends PipelinedHandler {
                 root.forEach((groupKey, groupContent)
                         -> groupContent.asDocument().forEach((metricKey, metricContent) -> {
                             final String[] split = metricKey.split("\\.");
+
+                            // not a <type>.<method>[.<code>] response metric, e.g. cursor-pool.hits
+                            if (split.length < 2 || !isMethod(split[1])) {
+                                sb.append(generateOtherMetric(groupKey, metricKey, metricContent.asDocument(), databaseName, collectionName, timestamp));
+                                return;
+                            }
+
                             final String type = split[0];
                             final String method = split[1];
                             final String responseCode = split.length >= 3 ? split[2] : null;
@@ -322,6 +330,40 @@ public class MetricsHandler extends PipelinedHandler {
                 return sb.toString();
             }
 
+            private boolean isMethod(String s) {
+                return Arrays.stream(METHOD.values()).anyMatch(m -> m.name().equals(s));
+            }
+
+            private String generateOtherMetric(String groupKey, String metricKey, BsonDocument metricContent, String databaseName, String collectionName, long timestamp) {
+                final String name = "restheart_" + groupKey + "_" + metricKey.replaceAll("[^a-zA-Z0-9_]", "_");
+
+                final StringBuilder labels = new StringBuilder();
+                if (databaseName != null) {
+                    labels.append("database=\"").append(escapePrometheusLabelValue(databaseName)).append("\"");
+                }
+                if (collectionName != null) {
+                    labels.append(labels.length() > 0 ? "," : "").append("collection=\"").append(escapePrometheusLabelValue(collectionName)).append("\"");
+                }
+
+                final StringBuilder sb = new StringBuilder();
+                metricContent.forEach((metricType, value) -> {
+                    if (value.isNumber()) {
+                        sb.append(name).append("_").append(metricType);
+                        if (labels.length() > 0) {
+                            sb.append("{").append(labels).append("}");
+                        }
+                        sb.append(" ");
+                        sb.append(valueAsString(value));
+                        sb.append(" ");
+                        sb.append(timestamp);
+                        sb.append("\n");
+                    }
+                });
+
+                sb.append("\n");
+                return sb.toString();
+            }
+
             // see description for 'label_value' at https://prometheus.io/docs/instrumenting/exposition_formats/#comments-help-text-and-type-information
             // quote and backslash get escaped and line feed gets converted to text '\n'
             private String escapePrometheusLabelValue(String input) {
@@ -0,0 +1,194 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-mongodb
+ * %%
+ * Copyright (C) 2014 - 2020 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.mongodb.handlers.schema;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.everit.json.schema.Schema;
+import org.everit.json.schema.ValidationException;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Validates BsonDocuments against the compiled everit Schema cached by
+ * JsonSchemaCacheSingleton.
+ *
+ * The documents are converted walking the BsonValues into the org.json
+ * objects that the validator visits, without rendering them to a json string
+ * and parsing it back. The result is the same: values that have no plain
+ * json representation (ObjectId, dates, decimals, etc.) are converted as
+ * their relaxed extended json, as BsonDocument.toJson() would do; the
+ * uncommon ones are rendered and parsed back.
+ *
+ * Large arrays are validated in parallel, in contiguous batches, on a pool of
+ * as many threads as cores; the results are returned in the order of the
+ * documents.
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class JsonSchemaValidator {
+
+    /**
+     * arrays with more documents are validated in parallel
+     */
+    static final int PARALLEL_THRESHOLD = 1000;
+
+    private static final long LAST_MS_OF_YEAR_9999 = 253402300799999l;
+
+    private static final int THREADS = Runtime.getRuntime().availableProcessors();
+
+    private static final ExecutorService POOL = Executors.newFixedThreadPool(THREADS,
+            new ThreadFactoryBuilder()
+                    .setDaemon(true)
+                    .setNameFormat("json-schema-validator-%d")
+                    .build());
+
+    private JsonSchemaValidator() {
+    }
+
+    /**
+     * @param schema
+     * @param documents
+     * @return the ValidationException of each document, null for valid
+     * documents, in the order of documents
+     */
+    public static List<ValidationException> validate(Schema schema, List<BsonDocument> documents) {
+        var size = documents.size();
+        var results = new ValidationException[size];
+
+        if (size < PARALLEL_THRESHOLD || THREADS < 2) {
+            validate(schema, documents, results, 0, size);
+        } else {
+            var batches = Math.min(THREADS, size / (PARALLEL_THRESHOLD / 2));
+            var batchSize = (size + batches - 1) / batches;
+            var futures = new ArrayList<CompletableFuture<Void>>(batches);
+
+            // the first batch is validated by the calling thread
+            for (int from = batchSize; from < size; from += batchSize) {
+                final int _from = from;
+                final int _to = Math.min(from + batchSize, size);
+
+                futures.add(CompletableFuture.runAsync(() -> validate(schema, documents, results, _from, _to), POOL));
+            }
+
+            validate(schema, documents, results, 0, Math.min(batchSize, size));
+
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()])).join();
+        }
+
+        return Arrays.asList(results);
+    }
+
+    private static void validate(Schema schema, List<BsonDocument> documents,
+            ValidationException[] results, int from, int to) {
+        for (int i = from; i < to; i++) {
+            try {
+                schema.validate(toJson(documents.get(i)));
+            } catch (ValidationException ve) {
+                results[i] = ve;
+            }
+        }
+    }
+
+    /**
+     * @param document
+     * @return the JSONObject equal to new JSONObject(document.toJson())
+     */
+    public static JSONObject toJson(BsonDocument document) {
+        var ret = new JSONObject();
+
+        document.forEach((key, value) -> ret.put(key, toJsonValue(value)));
+
+        return ret;
+    }
+
+    private static Object toJsonValue(BsonValue value) {
+        switch (value.getBsonType()) {
+            case DOCUMENT:
+                return toJson(value.asDocument());
+            case ARRAY:
+                var array = new JSONArray();
+                value.asArray().forEach(v -> array.put(toJsonValue(v)));
+                return array;
+            case STRING:
+                return value.asString().getValue();
+            case BOOLEAN:
+                return value.asBoolean().getValue();
+            case NULL:
+                return JSONObject.NULL;
+            case INT32:
+                return value.asInt32().getValue();
+            case INT64:
+                // relaxed json renders int64 as a plain number
+                return JSONObject.stringToValue(Long.toString(value.asInt64().getValue()));
+            case DOUBLE:
+                var d = value.asDouble().getValue();
+
+                if (Double.isNaN(d) || Double.isInfinite(d)) {
+                    // NaN and infinity are rendered as {"$numberDouble": ...}
+                    return toJsonViaString(value);
+                } else {
+                    // same number type org.json parses from the relaxed json
+                    return JSONObject.stringToValue(Double.toString(d));
+                }
+            case OBJECT_ID:
+                return new JSONObject().put("$oid", value.asObjectId().getValue().toHexString());
+            case DATE_TIME:
+                return new JSONObject().put("$date", toJsonDate(value.asDateTime().getValue()));
+            case DECIMAL128:
+                return new JSONObject().put("$numberDecimal", value.asDecimal128().getValue().toString());
+            default:
+                return toJsonViaString(value);
+        }
+    }
+
+    /**
+     * @return the value of $date in relaxed extended json: an ISO-8601 string
+     * for the dates from 1970 to 9999, otherwise {"$numberLong": ...}
+     */
+    private static Object toJsonDate(long millis) {
+        if (millis < 0 || millis > LAST_MS_OF_YEAR_9999) {
+            return new JSONObject().put("$numberLong", Long.toString(millis));
+        } else {
+            return DateTimeFormatter.ISO_OFFSET_DATE_TIME.format(
+                    ZonedDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC));
+        }
+    }
+
+    /**
+     * converts the values without a plain json representation via their
+     * relaxed extended json, e.g. {"$timestamp": {...}}
+     */
+    private static Object toJsonViaString(BsonValue value) {
+        return new JSONObject(new BsonDocument("v", value).toJson()).get("v");
+    }
+}
@@ -28,6 +28,7 @@ import org.restheart.handlers.PipelinedHandler;
 import org.restheart.mongodb.db.sessions.Txn;
 import org.restheart.mongodb.db.sessions.TxnClientSessionFactory;
 import org.restheart.mongodb.db.sessions.TxnClientSessionImpl;
+import org.restheart.mongodb.db.sessions.TxnsStateCache;
 import org.restheart.utils.HttpStatus;
 
 /**
@@ -71,7 +72,16 @@ public class DeleteTxnHandler extends PipelinedHandler {
                     "The given transaction is not in-progress");
         } else {
             cs.setMessageSentInCurrentTransaction(true);
-            cs.abortTransaction();
+
+            try {
+                cs.abortTransaction();
+            } catch (Throwable t) {
+                TxnsStateCache.getInstance().invalidate(sid);
+                throw t;
+            }
+
+            TxnsStateCache.getInstance().put(sid,
+                    new Txn(request.getTxnId(), Txn.TransactionStatus.ABORTED));
             
             response.setContentTypeAsJson();
             response.setStatusCode(HttpStatus.SC_NO_CONTENT);
@@ -27,6 +27,7 @@ import org.restheart.exchange.MongoResponse;
 import org.restheart.handlers.PipelinedHandler;
 import org.restheart.mongodb.db.sessions.Txn;
 import org.restheart.mongodb.db.sessions.TxnClientSessionFactory;
+import org.restheart.mongodb.db.sessions.TxnsStateCache;
 import org.restheart.utils.HttpStatus;
 
 /**
@@ -77,7 +78,15 @@ public class PatchTxnHandler extends PipelinedHandler {
             cs.startTransaction();
         }
 
-        cs.commitTransaction();
+        try {
+            cs.commitTransaction();
+        } catch (Throwable t) {
+            TxnsStateCache.getInstance().invalidate(sid);
+            throw t;
+        }
+
+        TxnsStateCache.getInstance().put(sid,
+                new Txn(txnId, Txn.TransactionStatus.COMMITTED));
         
         response.setContentTypeAsJson();
         response.setStatusCode(HttpStatus.SC_OK);
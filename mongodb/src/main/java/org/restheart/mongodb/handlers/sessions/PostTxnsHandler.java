@@ -30,8 +30,10 @@ import org.restheart.handlers.PipelinedHandler;
 import org.restheart.mongodb.db.sessions.Txn;
 import static org.restheart.mongodb.db.sessions.Txn.TransactionStatus.ABORTED;
 import static org.restheart.mongodb.db.sessions.Txn.TransactionStatus.COMMITTED;
+import static org.restheart.mongodb.db.sessions.Txn.TransactionStatus.IN;
 import static org.restheart.mongodb.db.sessions.Txn.TransactionStatus.NONE;
 import org.restheart.mongodb.db.sessions.TxnClientSessionFactory;
+import org.restheart.mongodb.db.sessions.TxnsStateCache;
 import org.restheart.mongodb.db.sessions.TxnsUtils;
 import org.restheart.utils.HttpStatus;
 import org.restheart.utils.RepresentationUtils;
@@ -72,7 +74,7 @@ public class PostTxnsHandler extends PipelinedHandler {
             return;
         }
 
-        var txn = TxnsUtils.getTxnServerStatus(sid);
+        var txn = TxnsUtils.getTxnStatus(sid);
 
         if (txn.getStatus() == ABORTED
                 || txn.getStatus() == COMMITTED
@@ -91,7 +93,14 @@ public class PostTxnsHandler extends PipelinedHandler {
             }
 
             // propagate the transaction
-            TxnsUtils.propagateSession(cs);
+            try {
+                TxnsUtils.propagateSession(cs);
+            } catch (Throwable t) {
+                TxnsStateCache.getInstance().invalidate(sid);
+                throw t;
+            }
+
+            TxnsStateCache.getInstance().put(sid, new Txn(nextTxnId, IN));
 
             response.getHeaders()
                     .add(HttpString.tryFromString("Location"),
@@ -23,7 +23,6 @@ package org.restheart.mongodb.interceptors;
 import java.util.ArrayList;
 import java.util.List;
 import org.bson.BsonDocument;
-import org.json.JSONObject;
 import org.restheart.exchange.MongoRequest;
 import org.restheart.exchange.MongoResponse;
 import org.restheart.mongodb.db.MongoClientSingleton;
@@ -83,14 +82,14 @@ public class JsonSchemaAfterWriteChecker extends JsonSchemaBeforeWriteChecker {
     }
 
     @Override
-    List<JSONObject> documentsToCheck(MongoRequest request, MongoResponse response) {
-        var ret = new ArrayList<JSONObject>();
+    List<BsonDocument> documentsToCheck(MongoRequest request, MongoResponse response) {
+        var ret = new ArrayList<BsonDocument>();
 
         var content = response.getDbOperationResult().getNewData() == null
                 ? new BsonDocument()
                 : response.getDbOperationResult().getNewData();
 
-        ret.add(new JSONObject(content.asDocument().toJson()));
+        ret.add(content.asDocument());
 
         return ret;
     }
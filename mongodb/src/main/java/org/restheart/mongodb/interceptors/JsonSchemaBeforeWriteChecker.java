@@ -27,13 +27,13 @@ import org.bson.BsonDocument;
 import org.bson.BsonValue;
 import org.everit.json.schema.Schema;
 import org.everit.json.schema.ValidationException;
-import org.json.JSONObject;
 import static org.restheart.exchange.ExchangeKeys._SCHEMAS;
 import org.restheart.exchange.MongoRequest;
 import org.restheart.exchange.MongoResponse;
 import org.restheart.exchange.UnsupportedDocumentIdException;
 import org.restheart.mongodb.handlers.schema.JsonSchemaCacheSingleton;
 import org.restheart.mongodb.handlers.schema.JsonSchemaNotFoundException;
+import org.restheart.mongodb.handlers.schema.JsonSchemaValidator;
 import org.restheart.mongodb.utils.URLUtils;
 import org.restheart.plugins.InterceptPoint;
 import org.restheart.plugins.MongoInterceptor;
@@ -172,59 +172,54 @@ public class JsonSchemaBeforeWriteChecker implements MongoInterceptor {
             return;
         }
 
-        documentsToCheck(request, response)
+        JsonSchemaValidator.validate(theschema, documentsToCheck(request, response))
                 .stream()
-                .forEachOrdered(doc -> {
+                .filter(Objects::nonNull)
+                .forEachOrdered(ve -> {
+                    var errors = new ArrayList<String>();
 
-                    try {
-                        theschema.validate(doc);
-                    } catch (ValidationException ve) {
-                        var errors = new ArrayList<String>();
+                    errors.add(ve.getMessage().replaceAll("#: ", ""));
 
-                        errors.add(ve.getMessage().replaceAll("#: ", ""));
+                    ve.getCausingExceptions().stream()
+                            .map(ValidationException::getMessage)
+                            .forEach(errors::add);
 
-                        ve.getCausingExceptions().stream()
-                                .map(ValidationException::getMessage)
-                                .forEach(errors::add);
+                    var errMsgBuilder = new StringBuilder();
 
-                        var errMsgBuilder = new StringBuilder();
+                    errors.stream()
+                            .map(e -> e.replaceAll("#: ", ""))
+                            .forEachOrdered(e -> errMsgBuilder.append(e).append(", "));
 
-                        errors.stream()
-                                .map(e -> e.replaceAll("#: ", ""))
-                                .forEachOrdered(e -> errMsgBuilder.append(e).append(", "));
+                    var errMsg = errMsgBuilder.toString();
 
-                        var errMsg = errMsgBuilder.toString();
+                    if (errMsg.length() > 2
+                            && ", ".equals(errMsg.substring(errMsg.length() - 2, errMsg.length()))) {
+                        errMsg = errMsg.substring(0, errMsg.length() - 2);
 
-                        if (errMsg.length() > 2
-                                && ", ".equals(errMsg.substring(errMsg.length() - 2, errMsg.length()))) {
-                            errMsg = errMsg.substring(0, errMsg.length() - 2);
-
-                        }
-
-                        response.setInError(HttpStatus.SC_BAD_REQUEST,
-                                "Request content violates schema "
-                                + JsonUtils.getIdAsString(schemaId, true)
-                                + ": "
-                                + errMsg);
                     }
+
+                    response.setInError(HttpStatus.SC_BAD_REQUEST,
+                            "Request content violates schema "
+                            + JsonUtils.getIdAsString(schemaId, true)
+                            + ": "
+                            + errMsg);
                 });
     }
 
-    List<JSONObject> documentsToCheck(MongoRequest request, MongoResponse response) {
-        var ret = new ArrayList<JSONObject>();
+    List<BsonDocument> documentsToCheck(MongoRequest request, MongoResponse response) {
+        var ret = new ArrayList<BsonDocument>();
 
         var content = request.getContent() == null
                 ? new BsonDocument()
                 : request.getContent();
 
         if (content.isDocument()) {
-            ret.add(new JSONObject(content.asDocument().toJson()));
+            ret.add(content.asDocument());
         } else if (content.isArray()) {
             content.asArray()
                     .stream()
                     .filter(doc -> doc.isDocument())
-                    .map(doc -> doc.asDocument().toJson())
-                    .map(doc -> new JSONObject(doc))
+                    .map(doc -> doc.asDocument())
                     .forEachOrdered(ret::add);
         }
 
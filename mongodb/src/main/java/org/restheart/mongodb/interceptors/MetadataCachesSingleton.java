@@ -202,6 +202,16 @@ public class MetadataCachesSingleton {
         }
     }
 
+    /**
+     * invalidates all cached db and collection properties
+     */
+    public void invalidateAll() {
+        if (enabled && dbPropsCache != null) {
+            dbPropsCache.asMap().keySet().forEach(k -> dbPropsCache.invalidate(k));
+            collectionPropsCache.asMap().keySet().forEach(k -> collectionPropsCache.invalidate(k));
+        }
+    }
+
     private static class LocalCachesSingletonHolder {
 
         private static final MetadataCachesSingleton INSTANCE = new MetadataCachesSingleton(new DatabaseImpl());
@@ -0,0 +1,241 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-mongodb
+ * %%
+ * Copyright (C) 2014 - 2020 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.mongodb.interceptors;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.bson.BsonDocument;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import static org.restheart.exchange.ExchangeKeys.COLL_META_DOCID_PREFIX;
+import static org.restheart.exchange.ExchangeKeys.DB_META_DOCID;
+import static org.restheart.exchange.ExchangeKeys.META_COLLNAME;
+import org.restheart.mongodb.MongoServiceConfiguration;
+import org.restheart.mongodb.db.MongoClientSingleton;
+import org.restheart.mongodb.db.MongoReactiveClientSingleton;
+import org.restheart.mongodb.utils.LogUtils;
+import org.restheart.plugins.Initializer;
+import org.restheart.plugins.RegisterPlugin;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Watches, via a deployment wide change stream, the _properties collections
+ * and the drops of dbs and collections, invalidating the affected entries of
+ * the MetadataCachesSingleton.
+ *
+ * Since every node watches the changes, the cached properties are
+ * invalidated on all nodes, allowing to use a long local-cache-ttl.
+ *
+ * Enabled by the local-cache-watch-enabled configuration option; requires a
+ * Replica Set.
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+@RegisterPlugin(name = "metadataCachesWatcher",
+        description = "invalidates the cached db and collection properties watching their changes",
+        priority = Integer.MIN_VALUE + 2)
+public class MetadataCachesWatcher implements Initializer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MetadataCachesWatcher.class);
+
+    private static final long RESTART_DELAY = 1_000;
+
+    private static final BsonDocument MATCH_STAGE = BsonDocument.parse("{'$match': {'$or': ["
+            + "{'ns.coll': '" + META_COLLNAME + "'},"
+            + "{'operationType': {'$in': ['drop', 'rename', 'dropDatabase']}}"
+            + "]}}");
+
+    private final ScheduledExecutorService restarter = Executors
+            .newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                    .setDaemon(true)
+                    .setNameFormat("metadata-caches-watcher-%d")
+                    .build());
+
+    private volatile BsonDocument resumeToken = null;
+
+    @Override
+    public void init() {
+        var conf = MongoServiceConfiguration.get();
+
+        if (conf == null
+                || !conf.isLocalCacheEnabled()
+                || !conf.isLocalCacheWatchEnabled()
+                || !MongoClientSingleton.isInitialized()) {
+            return;
+        }
+
+        if (!MongoClientSingleton.getInstance().isReplicaSet()) {
+            LogUtils.boxedWarn(LOGGER,
+                    "MongoDB is a standalone instance.",
+                    "",
+                    "local-cache-watch-enabled requires a Replica Set.");
+            return;
+        }
+
+        try {
+            if (!MongoReactiveClientSingleton.isInitialized()) {
+                MongoReactiveClientSingleton.init(conf.getMongoUri());
+            }
+
+            watch();
+        } catch (Throwable t) {
+            LOGGER.error("Error watching the db and collection properties, "
+                    + "the local cache is only invalidated by its TTL", t);
+        }
+    }
+
+    private void watch() {
+        watch(null);
+    }
+
+    /**
+     *
+     * @param token if not null, resumes watching after the change with this
+     * resume token
+     */
+    private void watch(BsonDocument token) {
+        var publisher = MongoReactiveClientSingleton.getInstance()
+                .getClient()
+                .watch(List.of(MATCH_STAGE), BsonDocument.class);
+
+        if (token != null) {
+            publisher = publisher.resumeAfter(token);
+        }
+
+        publisher.subscribe(new Subscriber<ChangeStreamDocument<BsonDocument>>() {
+            private volatile boolean received = false;
+
+            @Override
+            public void onSubscribe(Subscription s) {
+                s.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(ChangeStreamDocument<BsonDocument> event) {
+                received = true;
+                resumeToken = event.getResumeToken();
+
+                try {
+                    invalidate(event);
+                } catch (Throwable t) {
+                    LOGGER.warn("Error invalidating the metadata caches for change event {}", event, t);
+                    MetadataCachesSingleton.getInstance().invalidateAll();
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                LOGGER.warn("Error watching the db and collection properties, restarting: {}", t.getMessage());
+
+                if (token != null && !received) {
+                    // resuming failed, e.g. the token is no more in the oplog
+                    resumeToken = null;
+                }
+
+                restart();
+            }
+
+            @Override
+            public void onComplete() {
+                LOGGER.debug("Stream of db and collection properties completed, restarting");
+                restart();
+            }
+        });
+
+        LOGGER.debug("Watching the db and collection properties");
+    }
+
+    /**
+     * restarts watching after the last change received; without it, all
+     * entries are invalidated, since changes might have been missed
+     */
+    private void restart() {
+        var token = resumeToken;
+
+        restarter.schedule(() -> {
+            if (token == null) {
+                MetadataCachesSingleton.getInstance().invalidateAll();
+            }
+
+            try {
+                watch(token);
+            } catch (Throwable t) {
+                LOGGER.warn("Error restarting watching the db and collection properties", t);
+                resumeToken = null;
+                restart();
+            }
+        }, RESTART_DELAY, TimeUnit.MILLISECONDS);
+    }
+
+    private static void invalidate(ChangeStreamDocument<BsonDocument> event) {
+        var cache = MetadataCachesSingleton.getInstance();
+        var ns = event.getNamespaceDocument();
+
+        if (ns == null || !ns.isString("db")) {
+            return;
+        }
+
+        var db = ns.getString("db").getValue();
+        var coll = ns.isString("coll") ? ns.getString("coll").getValue() : null;
+
+        switch (event.getOperationType()) {
+            case DROP_DATABASE:
+                cache.invalidateDb(db);
+                break;
+            case DROP:
+            case RENAME:
+                if (META_COLLNAME.equals(coll)) {
+                    cache.invalidateDb(db);
+                } else if (coll != null) {
+                    cache.invalidateCollection(db, coll);
+                }
+                break;
+            default:
+                if (!META_COLLNAME.equals(coll)) {
+                    return;
+                }
+
+                // change to a document of the _properties collection
+                var key = event.getDocumentKey();
+                var id = key == null ? null : key.get("_id");
+
+                if (id == null || !id.isString()) {
+                    return;
+                }
+
+                var _id = id.asString().getValue();
+
+                if (DB_META_DOCID.equals(_id)) {
+                    cache.invalidateDb(db);
+                } else if (_id.startsWith(COLL_META_DOCID_PREFIX)) {
+                    cache.invalidateCollection(db,
+                            _id.substring(COLL_META_DOCID_PREFIX.length()));
+                }
+        }
+
+        LOGGER.debug("Invalidated the metadata caches for {} of {}",
+                event.getOperationType(), ns.toJson());
+    }
+}
@@ -0,0 +1,111 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-mongodb
+ * %%
+ * Copyright (C) 2014 - 2020 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.mongodb.utils;
+
+import io.undertow.server.HttpServerExchange;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import org.restheart.exchange.MongoRequest;
+import org.restheart.exchange.MongoResponse;
+import org.restheart.utils.JsonEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xnio.IoUtils;
+
+/**
+ * Custom response sender that writes the content stream of a MongoResponse
+ * (see MongoResponse.setContentStream()) as a json array, encoding one
+ * document at a time from the db cursor into the response output stream
+ * with JsonEncoder.
+ *
+ * The output stream of the exchange buffers the data in pooled buffers and
+ * writes them through the response conduits, thus the memory used is constant
+ * regardless of the number of documents.
+ *
+ * If the content has been read in the meantime (e.g. by an interceptor) or the
+ * exchange is not in blocking mode, the content is sent as usual.
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class ContentStreamSender implements Runnable {
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(ContentStreamSender.class);
+
+    private final HttpServerExchange exchange;
+
+    /**
+     * @param exchange
+     */
+    public ContentStreamSender(HttpServerExchange exchange) {
+        this.exchange = exchange;
+    }
+
+    @Override
+    public void run() {
+        var request = MongoRequest.of(exchange);
+        var response = MongoResponse.of(exchange);
+
+        if (!response.isContentStreamed()
+                || exchange.isInIoThread()
+                || exchange.isResponseStarted()) {
+            var content = response.readContent();
+
+            if (content != null) {
+                exchange.getResponseSender().send(content);
+            }
+
+            return;
+        }
+
+        if (!exchange.isBlocking()) {
+            exchange.startBlocking();
+        }
+
+        var jsonMode = request.getJsonMode();
+
+        try (var docs = response.detachContentStream();
+                var out = exchange.getOutputStream()) {
+            var encoder = JsonEncoder.of(out, jsonMode);
+
+            encoder.append('[');
+
+            var it = docs.iterator();
+
+            while (it.hasNext()) {
+                encoder.encode(it.next());
+
+                if (it.hasNext()) {
+                    encoder.append(',');
+                }
+            }
+
+            encoder.append(']').flush();
+        } catch (IOException | UncheckedIOException ioe) {
+            LOGGER.debug("Error streaming response content to client", ioe);
+            // the response is already started: the connection is closed
+            // to make the client aware that the content is truncated
+            IoUtils.safeClose(exchange.getConnection());
+        } catch (RuntimeException ex) {
+            LOGGER.error("Error reading response content from db", ex);
+            IoUtils.safeClose(exchange.getConnection());
+        }
+    }
+}
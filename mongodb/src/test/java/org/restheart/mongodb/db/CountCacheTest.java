@@ -0,0 +1,126 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-mongodb
+ * %%
+ * Copyright (C) 2014 - 2020 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.mongodb.db;
+
+import com.mongodb.MongoClient;
+import com.mongodb.MongoNamespace;
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.MongoCollection;
+import org.bson.BsonDocument;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class CountCacheTest {
+    private static final MongoNamespace NS = new MongoNamespace("db", "coll");
+    private static final BsonDocument FILTER_A = BsonDocument.parse("{\"a\": 1}");
+    private static final BsonDocument FILTER_B = BsonDocument.parse("{\"b\": 1}");
+
+    private MongoCollection<BsonDocument> coll;
+    private final CollectionDAO dao = new CollectionDAO(mock(MongoClient.class));
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        coll = mock(MongoCollection.class);
+        when(coll.getNamespace()).thenReturn(NS);
+        when(coll.countDocuments(eq(FILTER_A))).thenReturn(10L);
+        when(coll.countDocuments(eq(FILTER_B))).thenReturn(20L);
+    }
+
+    @Test
+    public void testKey() {
+        var cache = new CountCache(60_000);
+
+        assertFalse(cache.get(NS, FILTER_A).isPresent());
+
+        cache.put(NS, FILTER_A, 10);
+
+        assertEquals(10L, (long) cache.get(NS, FILTER_A).get());
+        assertEquals("equal filters give the same key",
+                10L, (long) cache.get(NS, BsonDocument.parse("{\"a\": 1}")).get());
+        assertFalse("different filter", cache.get(NS, FILTER_B).isPresent());
+        assertFalse("different collection",
+                cache.get(new MongoNamespace("db", "other"), FILTER_A).isPresent());
+    }
+
+    @Test
+    public void testHit() {
+        var cache = new CountCache(60_000);
+
+        assertEquals(10L, (long) dao.getCollectionSizeAsync(null, coll, FILTER_A, cache).join());
+        assertEquals(10L, (long) dao.getCollectionSizeAsync(null, coll, FILTER_A, cache).join());
+
+        verify(coll, times(1)).countDocuments(eq(FILTER_A));
+    }
+
+    @Test
+    public void testDifferentFilter() {
+        var cache = new CountCache(60_000);
+
+        assertEquals(10L, (long) dao.getCollectionSizeAsync(null, coll, FILTER_A, cache).join());
+        assertEquals(20L, (long) dao.getCollectionSizeAsync(null, coll, FILTER_B, cache).join());
+        assertEquals(20L, (long) dao.getCollectionSizeAsync(null, coll, FILTER_B, cache).join());
+
+        verify(coll, times(1)).countDocuments(eq(FILTER_A));
+        verify(coll, times(1)).countDocuments(eq(FILTER_B));
+    }
+
+    @Test
+    public void testExpiry() throws Exception {
+        var cache = new CountCache(100);
+
+        assertEquals(10L, (long) dao.getCollectionSizeAsync(null, coll, FILTER_A, cache).join());
+        assertTrue(cache.get(NS, FILTER_A).isPresent());
+
+        Thread.sleep(200);
+
+        assertFalse("expired entry", cache.get(NS, FILTER_A).isPresent());
+
+        when(coll.countDocuments(eq(FILTER_A))).thenReturn(11L);
+
+        assertEquals(11L, (long) dao.getCollectionSizeAsync(null, coll, FILTER_A, cache).join());
+        verify(coll, times(2)).countDocuments(eq(FILTER_A));
+    }
+
+    @Test
+    public void testNotCachedInSession() {
+        var cache = new CountCache(60_000);
+        var cs = mock(ClientSession.class);
+
+        when(coll.countDocuments(any(ClientSession.class), eq(FILTER_A))).thenReturn(10L);
+
+        assertEquals(10L, (long) dao.getCollectionSizeAsync(cs, coll, FILTER_A, cache).join());
+        assertFalse(cache.get(NS, FILTER_A).isPresent());
+    }
+}
@@ -20,14 +20,50 @@
  */
 package org.restheart.mongodb.db;
 
+import com.mongodb.MongoGridFSException;
+import com.mongodb.MongoWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.WriteError;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.gridfs.GridFSBucket;
+import com.mongodb.client.gridfs.model.GridFSFile;
+import com.mongodb.client.gridfs.model.GridFSUploadOptions;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Date;
 import org.apache.tika.Tika;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
 import static org.junit.Assert.*;
+import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TestRule;
 import org.junit.rules.TestWatcher;
 import org.junit.runner.Description;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import org.mockito.InOrder;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static org.restheart.utils.HttpStatus.SC_OK;
+import static org.restheart.utils.HttpStatus.SC_PRECONDITION_FAILED;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -71,4 +107,190 @@ public class GridFsDAOTest {
         Tika tika = new Tika();
         assertEquals("application/pdf", tika.detect(is));
     }
+
+    private static final BsonValue FILE_ID = new BsonString("file");
+
+    private Database db;
+    private GridFSBucket bucket;
+    private MongoCollection<BsonDocument> files;
+    private MongoCollection<BsonDocument> chunks;
+    private GridFsDAO dao;
+
+    /**
+     *
+     */
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        var mdb = mock(MongoDatabase.class);
+        db = mock(Database.class);
+        when(db.getDatabase("db")).thenReturn(mdb);
+
+        files = mock(MongoCollection.class);
+        chunks = mock(MongoCollection.class);
+        when(mdb.getCollection("fs.files", BsonDocument.class)).thenReturn(files);
+        when(mdb.getCollection("fs.chunks", BsonDocument.class)).thenReturn(chunks);
+
+        FindIterable<BsonDocument> uploaded = mock(FindIterable.class);
+        when(files.find(any(Bson.class))).thenReturn(uploaded);
+        when(uploaded.first()).thenAnswer(i -> new BsonDocument("_id", new BsonString("tmp")));
+
+        bucket = mock(GridFSBucket.class, RETURNS_DEEP_STUBS);
+
+        dao = new GridFsDAO(null) {
+            @Override
+            GridFSBucket bucket(MongoDatabase _mdb, String _bucket) {
+                return bucket;
+            }
+        };
+    }
+
+    private static GridFSFile file(String etag) {
+        return new GridFSFile(FILE_ID, "file.txt", 3, 255, new Date(), new Document("_etag", new ObjectId(etag)));
+    }
+
+    private void existing(GridFSFile file, GridFSFile... next) {
+        when(bucket.find(any(Bson.class)).limit(1).iterator().tryNext()).thenReturn(file, next);
+    }
+
+    /**
+     * uploads reading the whole stream, as GridFSBucket does
+     */
+    private void upload() {
+        doAnswer(i -> {
+            try {
+                i.getArgument(2, InputStream.class).readAllBytes();
+            } catch (IOException ioe) {
+                throw new MongoGridFSException("IOException when reading from the InputStream", ioe);
+            }
+            return null;
+        }).when(bucket).uploadFromStream(any(BsonValue.class), anyString(), any(InputStream.class), any(GridFSUploadOptions.class));
+    }
+
+    /**
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testFailedStreamedPutKeepsOldFile() throws Exception {
+        existing(file("5f8c1a2b3c4d5e6f7a8b9c0d"));
+        upload();
+
+        // the request content ends before the file
+        var broken = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("Unexpected end of multipart content");
+            }
+        };
+
+        try {
+            dao.upsertFile(db, "db", "fs.files", new BsonDocument(), broken, FILE_ID, null, false);
+            fail("the upload must fail");
+        } catch (MongoGridFSException e) {
+            // expected
+        }
+
+        verify(bucket, never()).delete(any(BsonValue.class));
+        verifyNoInteractions(files, chunks);
+    }
+
+    /**
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testPutReplacesOldFileAfterUpload() throws Exception {
+        existing(file("5f8c1a2b3c4d5e6f7a8b9c0d"));
+        upload();
+
+        var metadata = new BsonDocument("filename", new BsonString("file.txt"));
+
+        var result = dao.upsertFile(db, "db", "fs.files", metadata,
+                new ByteArrayInputStream("new".getBytes()), FILE_ID, null, false);
+
+        assertEquals(SC_OK, result.getHttpCode());
+
+        // the metadata of the caller is not modified
+        assertEquals(new BsonDocument("filename", new BsonString("file.txt")), metadata);
+
+        // the old file is renamed to a backup id and deleted
+        // only after the uploaded file took its id
+        InOrder order = inOrder(bucket, chunks, files);
+        order.verify(bucket).uploadFromStream(argThat((BsonValue id) -> !FILE_ID.equals(id)), anyString(), any(InputStream.class), any(GridFSUploadOptions.class));
+        order.verify(files).insertOne(argThat(doc -> !FILE_ID.equals(doc.get("_id"))));
+        order.verify(chunks).updateMany(any(Bson.class), any(Bson.class));
+        order.verify(files).deleteOne(any(Bson.class));
+        order.verify(files).insertOne(argThat(doc -> FILE_ID.equals(doc.get("_id"))));
+        order.verify(chunks).updateMany(any(Bson.class), any(Bson.class));
+        order.verify(files).deleteOne(any(Bson.class));
+        order.verify(bucket).delete(argThat((BsonValue id) -> !FILE_ID.equals(id)));
+        verify(bucket, never()).delete(FILE_ID);
+    }
+
+    /**
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testFailedReplaceRestoresOldFile() throws Exception {
+        existing(file("5f8c1a2b3c4d5e6f7a8b9c0d"));
+        upload();
+
+        var inserted = new ArrayList<BsonValue>();
+
+        // the insert of the uploaded file with the file id fails
+        doAnswer(i -> {
+            var id = i.getArgument(0, BsonDocument.class).get("_id");
+            var first = FILE_ID.equals(id) && !inserted.contains(FILE_ID);
+
+            inserted.add(id);
+
+            if (first) {
+                throw new MongoWriteException(new WriteError(11000, "duplicate key", new BsonDocument()), new ServerAddress());
+            }
+
+            return null;
+        }).when(files).insertOne(any(BsonDocument.class));
+
+        try {
+            dao.upsertFile(db, "db", "fs.files", new BsonDocument(),
+                    new ByteArrayInputStream("new".getBytes()), FILE_ID, null, false);
+            fail("the replace must fail");
+        } catch (MongoWriteException e) {
+            // expected
+        }
+
+        // backup, failed rename of the upload, restore of the backup
+        assertEquals(3, inserted.size());
+        var backupId = inserted.get(0);
+        assertEquals(FILE_ID, inserted.get(1));
+        assertEquals(FILE_ID, inserted.get(2));
+
+        // the old file is restored and never deleted, the upload is deleted
+        verify(bucket, never()).delete(any(BsonValue.class));
+        verify(files).deleteOne(argThat((Bson filter) -> filter.toString().contains(backupId.toString())));
+        verify(chunks).deleteMany(any(Bson.class));
+    }
+
+    /**
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testPutOfFileModifiedDuringUpload() throws Exception {
+        var etag = "5f8c1a2b3c4d5e6f7a8b9c0d";
+        existing(file(etag), file("5f8c1a2b3c4d5e6f7a8b9c0e"));
+        upload();
+
+        var result = dao.upsertFile(db, "db", "fs.files", new BsonDocument(),
+                new ByteArrayInputStream("new".getBytes()), FILE_ID, etag, true);
+
+        assertEquals(SC_PRECONDITION_FAILED, result.getHttpCode());
+
+        // the upload is removed, the file is kept
+        verify(bucket).delete(argThat((BsonValue id) -> !FILE_ID.equals(id)));
+        verify(bucket, never()).delete(eq(FILE_ID));
+        verifyNoInteractions(chunks);
+    }
 }
@@ -0,0 +1,116 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-mongodb
+ * %%
+ * Copyright (C) 2014 - 2020 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.mongodb.db.sessions;
+
+import java.util.UUID;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import static org.restheart.mongodb.db.sessions.Txn.TransactionStatus.ABORTED;
+import static org.restheart.mongodb.db.sessions.Txn.TransactionStatus.COMMITTED;
+import static org.restheart.mongodb.db.sessions.Txn.TransactionStatus.IN;
+
+/**
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class TxnsStateCacheTest {
+    @Test
+    public void testHitAndMiss() {
+        var cache = new TxnsStateCache(60_000);
+        var sid = UUID.randomUUID();
+
+        assertTrue(cache.isEnabled());
+        assertFalse("unknown session", cache.get(sid).isPresent());
+
+        cache.put(sid, new Txn(1, IN));
+
+        var cached = cache.get(sid);
+        assertTrue(cached.isPresent());
+        assertEquals(1, cached.get().getTxnId());
+        assertEquals(IN, cached.get().getStatus());
+
+        assertFalse("other session", cache.get(UUID.randomUUID()).isPresent());
+    }
+
+    @Test
+    public void testCommit() {
+        var cache = new TxnsStateCache(60_000);
+        var sid = UUID.randomUUID();
+
+        cache.put(sid, new Txn(1, IN));
+
+        // as PatchTxnHandler does on successful commit
+        cache.put(sid, new Txn(1, COMMITTED));
+        assertEquals(COMMITTED, cache.get(sid).get().getStatus());
+
+        // a failed commit invalidates the session state
+        cache.put(sid, new Txn(2, IN));
+        cache.invalidate(sid);
+        assertFalse(cache.get(sid).isPresent());
+    }
+
+    @Test
+    public void testAbort() {
+        var cache = new TxnsStateCache(60_000);
+        var sid = UUID.randomUUID();
+
+        cache.put(sid, new Txn(1, IN));
+
+        // as DeleteTxnHandler does on successful abort
+        cache.put(sid, new Txn(1, ABORTED));
+        assertEquals(ABORTED, cache.get(sid).get().getStatus());
+
+        // a failed abort invalidates the session state
+        cache.put(sid, new Txn(2, IN));
+        cache.invalidate(sid);
+        assertFalse(cache.get(sid).isPresent());
+    }
+
+    @Test
+    public void testInvalidateOnlyTheSession() {
+        var cache = new TxnsStateCache(60_000);
+        var sid = UUID.randomUUID();
+        var other = UUID.randomUUID();
+
+        cache.put(sid, new Txn(1, IN));
+        cache.put(other, new Txn(1, IN));
+
+        cache.invalidate(sid);
+
+        assertFalse(cache.get(sid).isPresent());
+        assertTrue(cache.get(other).isPresent());
+    }
+
+    @Test
+    public void testExpiry() throws Exception {
+        var cache = new TxnsStateCache(100);
+        var sid = UUID.randomUUID();
+
+        cache.put(sid, new Txn(1, IN));
+        assertTrue(cache.get(sid).isPresent());
+
+        Thread.sleep(200);
+
+        assertFalse("expired entry", cache.get(sid).isPresent());
+    }
+}
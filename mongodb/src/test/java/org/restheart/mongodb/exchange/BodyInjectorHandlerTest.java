@@ -21,6 +21,7 @@
 package org.restheart.mongodb.exchange;
 
 import io.undertow.server.handlers.form.FormData;
+import java.util.Map;
 import org.bson.BsonDocument;
 import static org.junit.Assert.assertEquals;
 import org.junit.Test;
@@ -56,4 +57,28 @@ public class BodyInjectorHandlerTest {
         assertEquals(expected, result);
     }
 
+    /**
+     * Streamed uploads read the metadata from the fields preceding the file
+     */
+    @Test
+    public void test_extractPropertiesFromFields() {
+        final String jsonString
+                = "{\"key1\": \"value1\", \"key2\": \"value2\"}";
+
+        BsonDocument result = BsonRequestContentInjector.extractMetadata(Map.of("metadata", jsonString));
+        assertEquals(BsonDocument.parse(jsonString), result);
+
+        assertEquals(new BsonDocument(), BsonRequestContentInjector.extractMetadata(Map.<String, String>of()));
+    }
+
+    /**
+     * The media type of streamed uploads is detected from the first bytes
+     */
+    @Test
+    public void test_detectMediaTypeFromPrefix() {
+        final byte[] png = new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n', 0, 0, 0, 0x0d};
+
+        assertEquals("image/png", BsonRequestContentInjector.detectMediaType(png, null));
+        assertEquals("text/plain", BsonRequestContentInjector.detectMediaType("hello".getBytes(), "hello.txt"));
+    }
 }
@@ -0,0 +1,200 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-mongodb
+ * %%
+ * Copyright (C) 2014 - 2020 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.mongodb.exchange;
+
+import io.undertow.server.DefaultByteBufferPool;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class MultipartUploadStreamTest {
+    private static final String BOUNDARY = "----boundary1234";
+
+    private static final String PROPERTIES = "{\"filename\": \"test.txt\"}";
+
+    private static String field(String name, String value) {
+        return "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"" + name + "\"\r\n"
+                + "\r\n"
+                + value + "\r\n";
+    }
+
+    private static String file(String data) {
+        return "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"test.txt\"\r\n"
+                + "Content-Type: text/plain\r\n"
+                + "\r\n"
+                + data + "\r\n";
+    }
+
+    private static final String END = "--" + BOUNDARY + "--\r\n";
+
+    /**
+     * a stream returning at most chunkSize bytes per read, as a request
+     * content received in more packets
+     */
+    private static InputStream content(String content, int chunkSize) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, chunkSize));
+            }
+        };
+    }
+
+    private static MultipartUploadStream stream(String content, int chunkSize) {
+        return new MultipartUploadStream(content(content, chunkSize),
+                new DefaultByteBufferPool(false, 1024),
+                BOUNDARY,
+                null);
+    }
+
+    private static String readFile(MultipartUploadStream stream) throws IOException {
+        var out = new ByteArrayOutputStream();
+        stream.getFileInputStream().transferTo(out);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testBoundarySplitAcrossReads() throws IOException {
+        var data = "some data of the file";
+        var content = field("properties", PROPERTIES) + file(data) + END;
+
+        // every chunk size splits a boundary somewhere
+        for (var chunkSize = 1; chunkSize <= BOUNDARY.length() + 4; chunkSize++) {
+            var stream = stream(content, chunkSize);
+
+            assertTrue(stream.readFields());
+            assertEquals("chunk size " + chunkSize, Map.of("properties", PROPERTIES), stream.getFields());
+            assertEquals("chunk size " + chunkSize, data, readFile(stream));
+        }
+    }
+
+    @Test
+    public void testCRLFInData() throws IOException {
+        // also a line similar to the boundary
+        var data = "line 1\r\nline 2\r\n\r\n--" + BOUNDARY.substring(0, 8) + "\r\nline 3\r\n";
+
+        for (var chunkSize : new int[]{3, 1024}) {
+            var stream = stream(file(data) + END, chunkSize);
+
+            assertTrue(stream.readFields());
+            assertEquals(data, readFile(stream));
+        }
+    }
+
+    @Test
+    public void testMissingClosingBoundary() throws IOException {
+        var stream = stream(field("properties", PROPERTIES) + "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"test.txt\"\r\n"
+                + "\r\n"
+                + "truncated data", 1024);
+
+        assertTrue(stream.readFields());
+
+        try {
+            readFile(stream);
+            fail("reading a truncated file must fail");
+        } catch (IOException ioe) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testMetadataBeforeFile() throws IOException {
+        var stream = stream(field("properties", PROPERTIES) + file("data") + END, 1024);
+
+        stream.setLeadingFields(Set.of("properties"));
+
+        assertTrue(stream.readFields());
+        assertEquals("file", stream.getFileField());
+        assertEquals("test.txt", stream.getFileName());
+        assertEquals(Map.of("properties", PROPERTIES), stream.getFields());
+        assertEquals("data", readFile(stream));
+        assertTrue(stream.getTrailingFields().isEmpty());
+    }
+
+    @Test
+    public void testMetadataAfterFile() throws IOException {
+        var content = file("data") + field("properties", PROPERTIES) + END;
+
+        var stream = stream(content, 1024);
+
+        assertTrue(stream.readFields());
+        assertTrue(stream.getFields().isEmpty());
+        assertEquals("data", readFile(stream));
+        assertEquals(Map.of("properties", PROPERTIES), stream.getTrailingFields());
+
+        // a field that must precede the file follows it
+        var strict = stream(content, 1024);
+        strict.setLeadingFields(Set.of("properties"));
+
+        assertTrue(strict.readFields());
+
+        try {
+            readFile(strict);
+            fail("a leading field after the file must fail the file stream");
+        } catch (IOException ioe) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testNoFile() throws IOException {
+        var stream = stream(field("properties", PROPERTIES) + END, 1024);
+
+        assertEquals(false, stream.readFields());
+        assertEquals(Map.of("properties", PROPERTIES), stream.getFields());
+    }
+
+    @Test
+    public void testFieldCharset() throws IOException {
+        var content = new ByteArrayOutputStream();
+
+        content.write(("--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"latin\"\r\n"
+                + "Content-Type: text/plain; charset=ISO-8859-1\r\n"
+                + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        content.write("àèì".getBytes(StandardCharsets.ISO_8859_1));
+        content.write(("\r\n" + field("utf8", "àèì") + END).getBytes(StandardCharsets.UTF_8));
+
+        var stream = new MultipartUploadStream(new ByteArrayInputStream(content.toByteArray()),
+                new DefaultByteBufferPool(false, 1024),
+                BOUNDARY,
+                null);
+
+        assertEquals(false, stream.readFields());
+        // the field without charset is decoded with the request charset
+        assertEquals(Map.of("latin", "àèì", "utf8", "àèì"), stream.getFields());
+    }
+}
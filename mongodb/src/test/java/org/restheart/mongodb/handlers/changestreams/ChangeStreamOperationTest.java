@@ -0,0 +1,86 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-mongodb
+ * %%
+ * Copyright (C) 2014 - 2020 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.mongodb.handlers.changestreams;
+
+import com.mongodb.client.model.changestream.FullDocument;
+import org.bson.BsonDocument;
+import org.restheart.exchange.InvalidMetadataException;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import org.junit.Test;
+
+/**
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class ChangeStreamOperationTest {
+
+    @Test
+    public void testDefaults() throws Exception {
+        var op = new ChangeStreamOperation(BsonDocument.parse("{'uri': 'all', 'stages': []}"));
+
+        assertEquals(FullDocument.UPDATE_LOOKUP, op.getFullDocument());
+        assertNull(op.getProjection());
+        assertEquals(0, op.getResolvedStagesAsList(null).size());
+    }
+
+    @Test
+    public void testFullDocumentAndProjection() throws Exception {
+        var op = new ChangeStreamOperation(BsonDocument.parse("{'uri': 'updates', "
+                + "'stages': [{'_$match': {'operationType': 'update'}}], "
+                + "'fullDocument': 'default', "
+                + "'projection': ['updateDescription', 'fullDocument.name']}"));
+
+        assertEquals(FullDocument.DEFAULT, op.getFullDocument());
+
+        var stages = op.getResolvedStagesAsList(null);
+
+        assertEquals(2, stages.size());
+        assertEquals(BsonDocument.parse("{'$match': {'operationType': 'update'}}"), stages.get(0));
+        assertEquals(BsonDocument.parse("{'$project': {'_id': 1, 'operationType': 1, 'documentKey': 1, "
+                + "'updateDescription': 1, 'fullDocument.name': 1}}"), stages.get(1));
+    }
+
+    @Test(expected = InvalidMetadataException.class)
+    public void testInvalidFullDocument() throws Exception {
+        new ChangeStreamOperation(BsonDocument.parse("{'uri': 'all', 'stages': [], 'fullDocument': 'always'}"));
+    }
+
+    @Test(expected = InvalidMetadataException.class)
+    public void testInvalidProjection() throws Exception {
+        new ChangeStreamOperation(BsonDocument.parse("{'uri': 'all', 'stages': [], 'projection': ['$where']}"));
+    }
+
+    @Test(expected = InvalidMetadataException.class)
+    public void testInvalidProjectionPath() throws Exception {
+        new ChangeStreamOperation(BsonDocument.parse("{'uri': 'all', 'stages': [], 'projection': ['fullDocument..name']}"));
+    }
+
+    @Test(expected = InvalidMetadataException.class)
+    public void testOverlappingProjection() throws Exception {
+        new ChangeStreamOperation(BsonDocument.parse("{'uri': 'all', 'stages': [], 'projection': ['fullDocument', 'fullDocument.name']}"));
+    }
+
+    @Test(expected = InvalidMetadataException.class)
+    public void testProjectionOverlappingDocumentKey() throws Exception {
+        new ChangeStreamOperation(BsonDocument.parse("{'uri': 'all', 'stages': [], 'projection': ['documentKey._id']}"));
+    }
+}
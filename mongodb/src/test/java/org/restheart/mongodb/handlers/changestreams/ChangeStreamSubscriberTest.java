@@ -0,0 +1,196 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-mongodb
+ * %%
+ * Copyright (C) 2014 - 2020 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.mongodb.handlers.changestreams;
+
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import io.undertow.websockets.core.WebSocketChannel;
+import java.io.IOException;
+import java.util.List;
+import org.bson.BsonArray;
+import org.bson.BsonDateTime;
+import org.bson.BsonDecimal128;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonInt32;
+import org.bson.BsonNull;
+import org.bson.BsonObjectId;
+import org.bson.BsonString;
+import org.bson.BsonTimestamp;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.DocumentCodec;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.json.JsonMode;
+import org.bson.types.Decimal128;
+import org.bson.types.ObjectId;
+import org.restheart.mongodb.MongoServiceConfiguration.OVERFLOW_POLICY;
+import org.restheart.utils.JsonUtils;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import org.junit.Test;
+import org.reactivestreams.Subscription;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class ChangeStreamSubscriberTest {
+
+    static RawBsonDocument sampleEvent(int n) {
+        var id = new BsonObjectId(new ObjectId("5d0b4e325beb2029a8d1bd5e"));
+
+        var fullDocument = new BsonDocument("_id", id);
+        fullDocument.put("n", new BsonInt32(n));
+        fullDocument.put("name", new BsonString("a \"quoted\" name, àèì"));
+        fullDocument.put("price", new BsonDecimal128(Decimal128.parse("12.50")));
+        fullDocument.put("date", new BsonDateTime(1593600000000l));
+        fullDocument.put("tags", new BsonArray());
+        fullDocument.getArray("tags").add(new BsonString("a"));
+        fullDocument.getArray("tags").add(new BsonDocument("b", new BsonInt32(1)));
+        fullDocument.put("nested", new BsonDocument("a", new BsonDocument("b", BsonNull.VALUE)));
+
+        var event = new BsonDocument("_id", new BsonDocument("_data", new BsonString("825F0C5B2E000000012B022C0100296E5A1004")));
+        event.put("operationType", new BsonString("update"));
+        event.put("clusterTime", new BsonTimestamp(1594645294, 1));
+        event.put("ns", new BsonDocument("db", new BsonString("test")).append("coll", new BsonString("coll")));
+        event.put("documentKey", new BsonDocument("_id", id));
+        event.put("updateDescription", new BsonDocument("updatedFields",
+                new BsonDocument("n", new BsonInt32(n)))
+                .append("removedFields", new BsonArray()));
+        event.getDocument("updateDescription").getArray("removedFields").add(new BsonString("old"));
+        event.put("fullDocument", fullDocument);
+
+        return new RawBsonDocument(event, new BsonDocumentCodec());
+    }
+
+    private static final CodecRegistry REGISTRY = CodecRegistries
+            .fromCodecs(new DocumentCodec());
+
+    private static final Codec<ChangeStreamDocument<Document>> LEGACY_CODEC
+            = ChangeStreamDocument.createCodec(Document.class, MongoClientSettings.getDefaultCodecRegistry());
+
+    /**
+     * the former rendering: the driver decodes the event to
+     * ChangeStreamDocument&lt;Document&gt;, fullDocument is encoded back to
+     * BsonDocument and then rendered
+     */
+    static String legacyToJson(RawBsonDocument event, JsonMode mode) {
+        var notification = LEGACY_CODEC.decode(new BsonDocumentReader(event), DecoderContext.builder().build());
+
+        var doc = new BsonDocument();
+
+        var fullDocument = notification.getFullDocument();
+        doc.put("fullDocument", fullDocument == null
+                ? BsonNull.VALUE
+                : fullDocument.toBsonDocument(BsonDocument.class, REGISTRY));
+
+        doc.put("documentKey", notification.getDocumentKey());
+
+        var updateDescription = new BsonDocument();
+        updateDescription.put("updatedFields", notification.getUpdateDescription().getUpdatedFields());
+
+        var removedFields = new BsonArray();
+        notification.getUpdateDescription().getRemovedFields()
+                .forEach(rf -> removedFields.add(new BsonString(rf)));
+        updateDescription.put("removedFields", removedFields);
+
+        doc.put("updateDescription", updateDescription);
+        doc.put("operationType", new BsonString(notification.getOperationType().getValue()));
+
+        return JsonUtils.toJson(doc, mode);
+    }
+
+    @Test
+    public void testSameAsLegacy() {
+        var event = sampleEvent(1);
+
+        for (var mode : new JsonMode[]{null, JsonMode.RELAXED, JsonMode.EXTENDED, JsonMode.STRICT}) {
+            assertEquals("" + mode,
+                    legacyToJson(event, mode),
+                    JsonUtils.toJson(ChangeStreamSubscriber.getDocument(event), mode));
+        }
+    }
+
+    @Test
+    public void testMissingFields() {
+        var event = new RawBsonDocument(new BsonDocument("operationType", new BsonString("drop")),
+                new BsonDocumentCodec());
+
+        BsonValue expected = BsonDocument.parse("{'fullDocument': null, 'documentKey': null, "
+                + "'updateDescription': null, 'operationType': 'drop'}");
+
+        assertEquals(expected, ChangeStreamSubscriber.getDocument(event));
+    }
+
+    @Test
+    public void testErrorReopenRelease() throws IOException {
+        var streamKey = new StreamKey("db", "coll", List.of(), FullDocument.DEFAULT, "all");
+        var sessionKey = new SessionKey("/db/coll/_streams/all", new BsonDocument(), JsonMode.RELAXED);
+
+        var oldChannel = mock(WebSocketChannel.class, RETURNS_DEEP_STUBS);
+        var oldSession = new ChangeStreamWebSocketSession(oldChannel, sessionKey, streamKey, 2, OVERFLOW_POLICY.DROP_OLDEST, null);
+        var newSession = new ChangeStreamWebSocketSession(mock(WebSocketChannel.class, RETURNS_DEEP_STUBS), sessionKey, streamKey, 2, OVERFLOW_POLICY.DROP_OLDEST, null);
+
+        var newSubscription = mock(Subscription.class);
+
+        try {
+            var oldSubscriber = GetChangeStreamHandler.acquire(streamKey, oldSession, s -> s.onSubscribe(mock(Subscription.class)));
+
+            // the stream fails: it is removed and its sessions are closed
+            oldSubscriber.onError(new RuntimeException("stream error"));
+
+            assertFalse(GetChangeStreamHandler.OPENED_STREAMS.containsKey(streamKey));
+            verify(oldChannel).close();
+
+            // a new session reopens the stream
+            var newSubscriber = GetChangeStreamHandler.acquire(streamKey, newSession, s -> s.onSubscribe(newSubscription));
+
+            assertNotSame(oldSubscriber, newSubscriber);
+
+            // the close task of the old session releases the old stream
+            GetChangeStreamHandler.release(streamKey, oldSession, oldSubscriber);
+
+            assertSame(newSubscriber, GetChangeStreamHandler.OPENED_STREAMS.get(streamKey));
+            verify(newSubscription, never()).cancel();
+
+            // the last session of the new stream closes it
+            GetChangeStreamHandler.release(streamKey, newSession, newSubscriber);
+
+            assertFalse(GetChangeStreamHandler.OPENED_STREAMS.containsKey(streamKey));
+            verify(newSubscription).cancel();
+        } finally {
+            GetChangeStreamHandler.OPENED_STREAMS.remove(streamKey);
+        }
+    }
+}
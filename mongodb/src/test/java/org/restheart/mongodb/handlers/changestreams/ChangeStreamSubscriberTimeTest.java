@@ -0,0 +1,96 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-mongodb
+ * %%
+ * Copyright (C) 2014 - 2020 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.mongodb.handlers.changestreams;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.bson.RawBsonDocument;
+import org.bson.json.JsonMode;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.restheart.utils.JsonUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * compares the change event notifications rendered per second, on a single
+ * thread, by the raw path and by the former ChangeStreamDocument&lt;Document&gt;
+ * path
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+@Ignore
+public class ChangeStreamSubscriberTimeTest {
+
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(ChangeStreamSubscriberTimeTest.class);
+
+    private static final int WARMUP = 200_000;
+    private static final int N = 1_000_000;
+
+    private static final List<RawBsonDocument> EVENTS = new ArrayList<>();
+
+    static {
+        for (int i = 0; i < 100; i++) {
+            EVENTS.add(ChangeStreamSubscriberTest.sampleEvent(i));
+        }
+    }
+
+    @Test
+    public void testLegacy() {
+        run("legacy", event -> ChangeStreamSubscriberTest
+                .legacyToJson(event, JsonMode.RELAXED)
+                .length());
+    }
+
+    @Test
+    public void testRaw() {
+        run("raw", event -> JsonUtils
+                .toJson(ChangeStreamSubscriber.getDocument(event), JsonMode.RELAXED)
+                .length());
+    }
+
+    private void run(String name, Task task) {
+        long check = 0;
+
+        for (int i = 0; i < WARMUP; i++) {
+            check += task.run(EVENTS.get(i % EVENTS.size()));
+        }
+
+        long start = System.nanoTime();
+
+        for (int i = 0; i < N; i++) {
+            check += task.run(EVENTS.get(i % EVENTS.size()));
+        }
+
+        long end = System.nanoTime();
+
+        LOGGER.info("{}: {} notifications per second (check {})",
+                name,
+                N * 1_000_000_000l / (end - start),
+                check);
+    }
+
+    @FunctionalInterface
+    private interface Task {
+        long run(RawBsonDocument event);
+    }
+}
@@ -0,0 +1,203 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-mongodb
+ * %%
+ * Copyright (C) 2014 - 2020 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.mongodb.handlers.changestreams;
+
+import com.codahale.metrics.MetricRegistry;
+import com.mongodb.client.model.changestream.FullDocument;
+import io.undertow.websockets.core.WebSocketCallback;
+import io.undertow.websockets.core.WebSocketChannel;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.json.JsonMode;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+import org.restheart.mongodb.MongoServiceConfiguration.OVERFLOW_POLICY;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class ChangeStreamWebSocketSessionTest {
+
+    private static final SessionKey SESSION_KEY = new SessionKey("/db/coll/_streams/all", new BsonDocument(), JsonMode.RELAXED);
+    private static final StreamKey STREAM_KEY = new StreamKey("db", "coll", List.of(), FullDocument.DEFAULT, "all");
+
+    private static final int QUEUE_SIZE = 2;
+
+    /**
+     * a session whose writes complete only when complete() is invoked
+     */
+    static class TestSession extends ChangeStreamWebSocketSession {
+        final List<String> written = new ArrayList<>();
+        final Deque<WebSocketCallback<Void>> pending = new ArrayDeque<>();
+
+        TestSession(WebSocketChannel channel, OVERFLOW_POLICY overflowPolicy, MetricRegistry registry) {
+            super(channel, SESSION_KEY, STREAM_KEY, QUEUE_SIZE, overflowPolicy, registry);
+        }
+
+        @Override
+        void sendText(String message, WebSocketCallback<Void> callback) {
+            written.add(message);
+            pending.add(callback);
+        }
+
+        void complete() {
+            pending.poll().complete(getChannel(), null);
+        }
+    }
+
+    WebSocketChannel channel;
+    MetricRegistry registry;
+
+    @Before
+    public void setUp() {
+        channel = mock(WebSocketChannel.class, RETURNS_DEEP_STUBS);
+        registry = new MetricRegistry();
+    }
+
+    private static ChangeStreamNotification notification(String message, int id) {
+        return new ChangeStreamNotification(SESSION_KEY, message, new BsonDocument("_id", new BsonInt32(id)));
+    }
+
+    /**
+     * a is being written, b and c fill the queue
+     */
+    private TestSession fill(OVERFLOW_POLICY overflowPolicy) {
+        var session = new TestSession(channel, overflowPolicy, registry);
+
+        session.send(notification("a", 1));
+        session.send(notification("b", 2));
+        session.send(notification("c", 3));
+
+        assertEquals(List.of("a"), session.written);
+        assertEquals(QUEUE_SIZE, session.getLag());
+
+        return session;
+    }
+
+    @Test
+    public void testSent() {
+        var session = fill(OVERFLOW_POLICY.DROP_OLDEST);
+
+        session.complete();
+
+        assertEquals(1, session.getSent());
+        assertEquals(1, registry.meter("change-streams.sent.all").getCount());
+        assertEquals(3, registry.histogram("change-streams.lag.all").getCount());
+        assertEquals(QUEUE_SIZE, registry.histogram("change-streams.lag.all").getSnapshot().getMax());
+    }
+
+    @Test
+    public void testDropOldest() throws IOException {
+        var session = fill(OVERFLOW_POLICY.DROP_OLDEST);
+
+        // same document of b, dropped anyway
+        session.send(notification("d", 2));
+
+        assertEquals(QUEUE_SIZE, session.getLag());
+        assertEquals(1, session.getDropped());
+        assertEquals(0, session.getCoalesced());
+        assertEquals(1, registry.meter("change-streams.dropped.all").getCount());
+        verify(channel, never()).close();
+    }
+
+    @Test
+    public void testCoalesce() throws IOException {
+        var session = fill(OVERFLOW_POLICY.COALESCE);
+
+        // supersedes b
+        session.send(notification("d", 2));
+
+        assertEquals(QUEUE_SIZE, session.getLag());
+        assertEquals(0, session.getDropped());
+        assertEquals(1, session.getCoalesced());
+        assertEquals(1, registry.meter("change-streams.coalesced.all").getCount());
+
+        // no queued notification of the same document, c is dropped
+        session.send(notification("e", 4));
+
+        assertEquals(QUEUE_SIZE, session.getLag());
+        assertEquals(1, session.getDropped());
+        assertEquals(1, session.getCoalesced());
+        assertEquals(1, registry.meter("change-streams.dropped.all").getCount());
+        verify(channel, never()).close();
+    }
+
+    @Test
+    public void testSessionGauges() {
+        var session = fill(OVERFLOW_POLICY.COALESCE);
+
+        // no queued notification of the same document, b is dropped
+        session.send(notification("d", 4));
+        session.complete();
+
+        var prefix = "change-streams.session.all." + session.getId() + ".";
+
+        assertEquals(QUEUE_SIZE, registry.getGauges().get(prefix + "lag").getValue());
+        assertEquals(1L, registry.getGauges().get(prefix + "sent").getValue());
+        assertEquals(1L, registry.getGauges().get(prefix + "dropped").getValue());
+        assertEquals(0L, registry.getGauges().get(prefix + "coalesced").getValue());
+
+        session.close();
+
+        assertTrue(registry.getGauges().isEmpty());
+        assertEquals(1, registry.meter("change-streams.dropped.all").getCount());
+    }
+
+    @Test
+    public void testDisconnect() throws IOException {
+        var session = fill(OVERFLOW_POLICY.DISCONNECT);
+
+        session.send(notification("d", 4));
+
+        assertEquals(0, session.getLag());
+        assertEquals(1, session.getDropped());
+        assertEquals(1, registry.meter("change-streams.dropped.all").getCount());
+        verify(channel).close();
+
+        // ignored after closing
+        session.send(notification("e", 5));
+
+        assertEquals(0, session.getLag());
+        assertEquals(List.of("a"), session.written);
+    }
+
+    @Test
+    public void testNoMetrics() {
+        var session = new TestSession(channel, OVERFLOW_POLICY.DROP_OLDEST, null);
+
+        session.send(notification("a", 1));
+        session.complete();
+
+        assertEquals(1, session.getSent());
+    }
+}
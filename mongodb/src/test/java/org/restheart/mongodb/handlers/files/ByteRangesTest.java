@@ -0,0 +1,85 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-mongodb
+ * %%
+ * Copyright (C) 2014 - 2020 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.mongodb.handlers.files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class ByteRangesTest {
+
+    @Test
+    public void testSingleRange() {
+        var ranges = ByteRanges.parse("bytes=0-499", 1000);
+
+        assertEquals(1, ranges.size());
+        assertEquals(0, ranges.get(0).first);
+        assertEquals(499, ranges.get(0).last);
+        assertEquals(500, ranges.get(0).length());
+        assertEquals("bytes 0-499/1000", ranges.get(0).contentRange(1000));
+    }
+
+    @Test
+    public void testOpenAndSuffixRanges() {
+        var ranges = ByteRanges.parse("bytes=900-, -100, 950-2000", 1000);
+
+        assertEquals(3, ranges.size());
+        assertEquals("900-999", ranges.get(0).toString());
+        assertEquals("900-999", ranges.get(1).toString());
+        assertEquals("950-999", ranges.get(2).toString());
+
+        // suffix longer than the content
+        assertEquals("0-999", ByteRanges.parse("bytes=-5000", 1000).get(0).toString());
+    }
+
+    @Test
+    public void testUnsatisfiable() {
+        assertTrue(ByteRanges.parse("bytes=1000-1100", 1000).isEmpty());
+        assertTrue(ByteRanges.parse("bytes=-0", 1000).isEmpty());
+        assertTrue(ByteRanges.parse("bytes=0-10", 0).isEmpty());
+
+        // satisfiable ranges are kept
+        assertEquals(1, ByteRanges.parse("bytes=1000-1100,0-0", 1000).size());
+    }
+
+    @Test
+    public void testIgnored() {
+        assertNull(ByteRanges.parse(null, 1000));
+        assertNull(ByteRanges.parse("items=0-10", 1000));
+        assertNull(ByteRanges.parse("bytes=10-5", 1000));
+        assertNull(ByteRanges.parse("bytes=a-b", 1000));
+        assertNull(ByteRanges.parse("bytes=10", 1000));
+        assertNull(ByteRanges.parse("bytes=--10", 1000));
+
+        var many = new StringBuilder("bytes=0-0");
+
+        for (int i = 1; i <= ByteRanges.MAX_RANGES; i++) {
+            many.append(',').append(i).append('-').append(i);
+        }
+
+        assertNull(ByteRanges.parse(many.toString(), 1000));
+    }
+}
@@ -0,0 +1,178 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-mongodb
+ * %%
+ * Copyright (C) 2014 - 2020 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.mongodb.handlers.files;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.gridfs.model.GridFSFile;
+import io.undertow.server.HttpServerExchange;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import org.bson.BsonBinary;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonObjectId;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import org.junit.Before;
+import org.junit.Test;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.restheart.mongodb.handlers.files.ByteRanges.Range;
+import org.xnio.ChannelListener;
+import org.xnio.channels.StreamSinkChannel;
+
+/**
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class GridFsChunksSenderTest {
+    private static final ObjectId FILE_ID = new ObjectId();
+
+    private HttpServerExchange exchange;
+    private StreamSinkChannel channel;
+    private ChannelListener.Setter<StreamSinkChannel> writeSetter;
+    private MongoCollection<BsonDocument> chunks;
+
+    private final List<Runnable> dispatched = new ArrayList<>();
+    private final List<byte[]> written = new ArrayList<>();
+    private boolean writable = true;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception {
+        exchange = mock(HttpServerExchange.class);
+        channel = mock(StreamSinkChannel.class);
+        writeSetter = mock(ChannelListener.Setter.class);
+        chunks = mock(MongoCollection.class, RETURNS_DEEP_STUBS);
+
+        when(channel.getWriteSetter()).then(i -> writeSetter);
+        when(channel.flush()).thenReturn(true);
+        when(channel.write(any(ByteBuffer.class))).then(i -> {
+            if (!writable) {
+                return 0;
+            }
+
+            ByteBuffer buffer = i.getArgument(0);
+            var data = new byte[buffer.remaining()];
+            buffer.get(data);
+            written.add(data);
+            return data.length;
+        });
+
+        MongoCursor<BsonDocument> cursor = mock(MongoCursor.class);
+        when(cursor.hasNext()).thenReturn(true, true, false);
+        when(cursor.next()).thenReturn(chunk(0, "abc"), chunk(1, "def"));
+
+        when(chunks.find(any(Bson.class)).projection(any()).sort(any()).iterator()).thenReturn(cursor);
+    }
+
+    @Test
+    public void testChunksWritten() throws Exception {
+        var sender = sender();
+
+        sender.sendNext();
+
+        assertEquals(2, written.size());
+        assertArrayEquals("abc".getBytes(), written.get(0));
+        assertArrayEquals("def".getBytes(), written.get(1));
+        verify(channel).shutdownWrites();
+        verify(exchange).endExchange();
+    }
+
+    @Test
+    public void testWorkerReleasedWhileWritePending() throws Exception {
+        var sender = sender();
+
+        writable = false;
+
+        // the worker returns without waiting for the client
+        sender.sendNext();
+
+        assertEquals(0, written.size());
+        verify(writeSetter).set(sender);
+        verify(channel).resumeWrites();
+        verify(exchange, never()).endExchange();
+        assertEquals(0, dispatched.size());
+
+        // the channel is writable again: the IO thread completes the write
+        // and dispatches the reading of the next chunk to a worker
+        writable = true;
+        sender.handleEvent(channel);
+
+        assertEquals(1, written.size());
+        assertArrayEquals("abc".getBytes(), written.get(0));
+        verify(channel).suspendWrites();
+        assertEquals(1, dispatched.size());
+        verify(exchange, never()).endExchange();
+
+        dispatched.get(0).run();
+
+        assertEquals(2, written.size());
+        assertArrayEquals("def".getBytes(), written.get(1));
+        verify(exchange).endExchange();
+    }
+
+    @Test
+    public void testPendingFlush() throws Exception {
+        var sender = sender();
+
+        when(channel.flush()).thenReturn(false);
+
+        sender.sendNext();
+
+        assertEquals(2, written.size());
+        verify(channel).shutdownWrites();
+        verify(channel).resumeWrites();
+        // the exchange is ended by the flushing listener
+        verify(exchange, never()).endExchange();
+    }
+
+    private GridFsChunksSender sender() {
+        var file = new GridFSFile(new BsonObjectId(FILE_ID), "file.txt", 6, 3, new Date(), null);
+        var parts = List.of(new GridFsChunksSender.Part(new Range(0, 5), null));
+
+        return new GridFsChunksSender(exchange, null, chunks, file, parts, null) {
+            @Override
+            StreamSinkChannel responseChannel() {
+                return channel;
+            }
+
+            @Override
+            void dispatch(Runnable task) {
+                dispatched.add(task);
+            }
+        };
+    }
+
+    private static BsonDocument chunk(int n, String data) {
+        return new BsonDocument("n", new BsonInt32(n))
+                .append("data", new BsonBinary(data.getBytes()));
+    }
+}
@@ -27,6 +27,8 @@ import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import org.junit.Before;
 import org.junit.Test;
 import static org.restheart.mongodb.MongoServiceConfiguration.METRICS_GATHERING_LEVEL.COLLECTION;
@@ -214,6 +216,20 @@ public class MetricsHandlerResponseTypePrometheusTest {
         assertMetrics(expectedMetrics, MetricsHandler.ResponseType.PROMETHEUS.generateResponse(ROOT, collectionRegistry));
     }
 
+    @Test
+    public void testOtherMetricsForCollection() throws IOException {
+        collectionRegistry.counter("cursor-pool.hits").inc(3);
+        collectionRegistry.counter("change-streams.events./coll/_streams/all").inc(2);
+
+        String metrics = MetricsHandler.ResponseType.PROMETHEUS.generateResponse(COLLECTION, collectionRegistry);
+
+        assertTrue(metrics.contains("restheart_counters_cursor_pool_hits_count 3 "));
+        assertTrue(metrics.contains("restheart_counters_change_streams_events__coll__streams_all_count 2 "));
+        assertFalse(metrics.contains("type=\"cursor-pool\""));
+        assertFalse(metrics.contains("type=\"change-streams\""));
+        assertTrue(metrics.contains("http_response_timers_count{type=\"requests\",method=\"GET\",code=\"2xx\"} 1 "));
+    }
+
     private void assertMetrics(String expectedMetrics, String metrics) {
         assertEquals(expectedMetrics, replaceDynamicValues(metrics));
     }
@@ -0,0 +1,115 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-mongodb
+ * %%
+ * Copyright (C) 2014 - 2020 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.mongodb.handlers.schema;
+
+import java.util.ArrayList;
+import org.bson.BsonArray;
+import org.bson.BsonBinary;
+import org.bson.BsonBoolean;
+import org.bson.BsonDateTime;
+import org.bson.BsonDecimal128;
+import org.bson.BsonDocument;
+import org.bson.BsonDouble;
+import org.bson.BsonInt32;
+import org.bson.BsonInt64;
+import org.bson.BsonNull;
+import org.bson.BsonObjectId;
+import org.bson.BsonString;
+import org.bson.BsonTimestamp;
+import org.bson.types.Decimal128;
+import org.everit.json.schema.loader.SchemaLoader;
+import org.json.JSONObject;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class JsonSchemaValidatorTest {
+
+    @Test
+    public void testToJson() {
+        var doc = new BsonDocument()
+                .append("string", new BsonString("foo"))
+                .append("true", BsonBoolean.TRUE)
+                .append("null", BsonNull.VALUE)
+                .append("int32", new BsonInt32(-1))
+                .append("int64", new BsonInt64(1))
+                .append("bigInt64", new BsonInt64(Long.MAX_VALUE))
+                .append("double", new BsonDouble(1))
+                .append("fraction", new BsonDouble(0.1))
+                .append("huge", new BsonDouble(1.5e300))
+                .append("nan", new BsonDouble(Double.NaN))
+                .append("infinity", new BsonDouble(Double.NEGATIVE_INFINITY))
+                .append("decimal", new BsonDecimal128(Decimal128.parse("1.10")))
+                .append("oid", new BsonObjectId())
+                .append("date", new BsonDateTime(1_600_000_000_000l))
+                .append("dateMillis", new BsonDateTime(1_600_000_000_123l))
+                .append("oldDate", new BsonDateTime(-1000l))
+                .append("farDate", new BsonDateTime(253402300800000l))
+                .append("timestamp", new BsonTimestamp(1, 2))
+                .append("binary", new BsonBinary(new byte[]{1, 2, 3}))
+                .append("array", new BsonArray())
+                .append("nested", new BsonDocument("a", new BsonArray()));
+
+        doc.getArray("array").add(new BsonInt32(1));
+        doc.getArray("array").add(new BsonDocument("b", new BsonDouble(2)));
+        doc.getDocument("nested").getArray("a").add(new BsonObjectId());
+
+        var expected = new JSONObject(doc.toJson());
+        var actual = JsonSchemaValidator.toJson(doc);
+
+        assertTrue(expected.toString() + " != " + actual.toString(),
+                expected.similar(actual));
+        assertEquals(expected.toString(), actual.toString());
+    }
+
+    @Test
+    public void testValidateInOrder() {
+        var schema = SchemaLoader.load(
+                new JSONObject("{\"type\": \"object\", \"required\": [\"a\"]}"));
+
+        var docs = new ArrayList<BsonDocument>();
+        int size = JsonSchemaValidator.PARALLEL_THRESHOLD * 5 + 3;
+
+        for (int i = 0; i < size; i++) {
+            docs.add(i % 7 == 0
+                    ? new BsonDocument("b", new BsonInt32(i))
+                    : new BsonDocument("a", new BsonInt32(i)));
+        }
+
+        var results = JsonSchemaValidator.validate(schema, docs);
+
+        assertEquals(size, results.size());
+
+        for (int i = 0; i < size; i++) {
+            if (i % 7 == 0) {
+                assertNotNull("document " + i + " should be invalid", results.get(i));
+            } else {
+                assertNull("document " + i + " should be valid", results.get(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-mongodb
+ * %%
+ * Copyright (C) 2014 - 2020 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.mongodb.handlers.schema;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.bson.BsonArray;
+import org.bson.BsonDateTime;
+import org.bson.BsonDocument;
+import org.bson.BsonDouble;
+import org.bson.BsonInt32;
+import org.bson.BsonObjectId;
+import org.bson.BsonString;
+import org.everit.json.schema.Schema;
+import org.everit.json.schema.ValidationException;
+import org.everit.json.schema.loader.SchemaLoader;
+import org.json.JSONObject;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * compares the documents validated per second, on a single thread, by
+ * converting them with JsonSchemaValidator.toJson() and by the former
+ * round-trip through the json string
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+@Ignore
+public class JsonSchemaValidatorTimeTest {
+
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(JsonSchemaValidatorTimeTest.class);
+
+    private static final int WARMUP = 100_000;
+    private static final int N = 500_000;
+
+    private static final Schema SCHEMA = SchemaLoader.load(new JSONObject("{"
+            + "\"type\": \"object\","
+            + "\"required\": [\"name\", \"n\"],"
+            + "\"properties\": {"
+            + "\"name\": {\"type\": \"string\"},"
+            + "\"n\": {\"type\": \"integer\"},"
+            + "\"price\": {\"type\": \"number\"},"
+            + "\"tags\": {\"type\": \"array\", \"items\": {\"type\": \"string\"}}"
+            + "}}"));
+
+    private static final List<BsonDocument> DOCUMENTS = new ArrayList<>();
+
+    static {
+        for (int i = 0; i < 100; i++) {
+            var tags = new BsonArray();
+            tags.add(new BsonString("a"));
+            tags.add(new BsonString("b" + i));
+
+            DOCUMENTS.add(new BsonDocument("_id", new BsonObjectId())
+                    .append("name", new BsonString("name " + i))
+                    .append("n", new BsonInt32(i))
+                    .append("price", new BsonDouble(i * 1.5))
+                    .append("date", new BsonDateTime(1_600_000_000_000l + i))
+                    .append("tags", tags)
+                    .append("nested", new BsonDocument("a", new BsonInt32(i))));
+        }
+    }
+
+    @Test
+    public void testLegacy() {
+        run("legacy", document -> validate(new JSONObject(document.toJson())));
+    }
+
+    @Test
+    public void testDirect() {
+        run("direct", document -> validate(JsonSchemaValidator.toJson(document)));
+    }
+
+    private static int validate(JSONObject json) {
+        try {
+            SCHEMA.validate(json);
+            return 1;
+        } catch (ValidationException ve) {
+            return 0;
+        }
+    }
+
+    private void run(String name, Task task) {
+        long check = 0;
+
+        for (int i = 0; i < WARMUP; i++) {
+            check += task.run(DOCUMENTS.get(i % DOCUMENTS.size()));
+        }
+
+        long start = System.nanoTime();
+
+        for (int i = 0; i < N; i++) {
+            check += task.run(DOCUMENTS.get(i % DOCUMENTS.size()));
+        }
+
+        long end = System.nanoTime();
+
+        LOGGER.info("{}: {} documents validated per second (check {})",
+                name,
+                N * 1_000_000_000l / (end - start),
+                check);
+    }
+
+    @FunctionalInterface
+    private interface Task {
+        int run(BsonDocument document);
+    }
+}
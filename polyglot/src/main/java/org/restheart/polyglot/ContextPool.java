@@ -0,0 +1,281 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-security
+ * %%
+ * Copyright (C) 2018 - 2020 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.polyglot;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.SharedMetricRegistries;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Value;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A bounded pool of initialized contexts of a JavaScriptService.
+ *
+ * Contexts are created on demand up to the pool size; a context is used by
+ * one thread at a time, between checkout() and checkin(). When all contexts
+ * are in use, checkout() waits for one to be checked in.
+ *
+ * The pool statistics are registered as gauges in the root metrics registry
+ * as js-contexts.&lt;statistic&gt;.&lt;service&gt; and removed when the pool is
+ * closed, i.e. when the service is undeployed.
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+class ContextPool {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ContextPool.class);
+
+    private static final long CHECKOUT_TIMEOUT_SECS = 30;
+
+    // the root registry, see SharedMetricRegistryProxy
+    private static final String METRICS_REGISTRY = "default";
+
+    /**
+     * a context with the evaluated handle function of the script
+     */
+    static class PooledContext {
+        final Context context;
+        final Value handle;
+
+        PooledContext(Context context, Value handle) {
+            this.context = context;
+            this.handle = handle;
+        }
+    }
+
+    private final String name;
+    private final int size;
+    private final Supplier<PooledContext> factory;
+    private final Runnable onDrained;
+
+    private final BlockingQueue<PooledContext> idle;
+    private final AtomicInteger created = new AtomicInteger(0);
+    private final AtomicBoolean drained = new AtomicBoolean(false);
+    private volatile boolean closed = false;
+
+    private final LongAdder checkouts = new LongAdder();
+    private final LongAdder waits = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+
+    private final Map<String, Gauge<?>> gauges = new HashMap<>();
+
+    /**
+     *
+     * @param name the name of the service
+     * @param size the max number of contexts
+     * @param factory creates and initializes a context
+     * @param onDrained executed when the pool is closed and all its contexts
+     * have been closed
+     */
+    ContextPool(String name, int size, Supplier<PooledContext> factory, Runnable onDrained) {
+        if (size < 1) {
+            throw new IllegalArgumentException("the size of the pool must be > 0");
+        }
+
+        this.name = name;
+        this.size = size;
+        this.factory = factory;
+        this.onDrained = onDrained;
+        this.idle = new ArrayBlockingQueue<>(size);
+
+        registerMetrics();
+    }
+
+    private void registerMetrics() {
+        gauges.put("size", (Gauge<Integer>) this::getSize);
+        gauges.put("created", (Gauge<Integer>) this::getCreated);
+        gauges.put("idle", (Gauge<Integer>) this::getIdle);
+        gauges.put("checkouts", (Gauge<Long>) this::getCheckouts);
+        gauges.put("waits", (Gauge<Long>) this::getWaits);
+        gauges.put("average-wait-millis", (Gauge<Double>) this::getAverageWaitMillis);
+
+        var registry = SharedMetricRegistries.getOrCreate(METRICS_REGISTRY);
+
+        gauges.forEach((statistic, gauge) -> {
+            var metricName = "js-contexts." + statistic + "." + name;
+            // replaces the gauges of a previous pool of the service not closed yet
+            registry.remove(metricName);
+            registry.register(metricName, gauge);
+        });
+    }
+
+    private void removeMetrics() {
+        SharedMetricRegistries.getOrCreate(METRICS_REGISTRY)
+                .removeMatching((metricName, metric) -> gauges.containsValue(metric));
+    }
+
+    /**
+     * takes an idle context, creates a new one if the pool is not full, or
+     * waits for one to be checked in
+     *
+     * @return the context, to be checked in after use
+     * @throws InterruptedException
+     */
+    PooledContext checkout() throws InterruptedException {
+        if (closed) {
+            throw new IllegalStateException("service " + name + " has been undeployed");
+        }
+
+        checkouts.increment();
+
+        var ctx = idle.poll();
+
+        if (ctx != null) {
+            return ctx;
+        }
+
+        for (var c = created.get(); c < size; c = created.get()) {
+            if (created.compareAndSet(c, c + 1)) {
+                try {
+                    LOGGER.debug("creating js context {} of {} for service {}", c + 1, size, name);
+                    return factory.get();
+                } catch (Throwable t) {
+                    created.decrementAndGet();
+                    throw t;
+                }
+            }
+        }
+
+        waits.increment();
+        var start = System.nanoTime();
+
+        ctx = idle.poll(CHECKOUT_TIMEOUT_SECS, TimeUnit.SECONDS);
+
+        waitNanos.add(System.nanoTime() - start);
+
+        if (ctx == null) {
+            throw new IllegalStateException("timeout waiting for a js context of service " + name);
+        }
+
+        LOGGER.trace("js contexts pool of service {}: {}", name, this);
+
+        return ctx;
+    }
+
+    /**
+     * returns the context to the pool
+     *
+     * @param ctx
+     * @param reusable false if the context cannot be used anymore, e.g. after
+     * the script was cancelled or exited
+     */
+    void checkin(PooledContext ctx, boolean reusable) {
+        if (closed || !reusable || !idle.offer(ctx)) {
+            discard(ctx);
+        } else if (closed) {
+            // closed while checking in
+            drain();
+        }
+    }
+
+    /**
+     * closes the idle contexts; the contexts in use are closed when checked
+     * in
+     */
+    void close() {
+        closed = true;
+        removeMetrics();
+        drain();
+
+        if (created.get() == 0 && drained.compareAndSet(false, true)) {
+            onDrained.run();
+        }
+    }
+
+    private void drain() {
+        PooledContext ctx;
+
+        while ((ctx = idle.poll()) != null) {
+            discard(ctx);
+        }
+    }
+
+    private void discard(PooledContext ctx) {
+        try {
+            ctx.context.close();
+        } catch (Throwable t) {
+            LOGGER.warn("error closing js context of service {}", name, t);
+        }
+
+        if (created.decrementAndGet() == 0 && closed && drained.compareAndSet(false, true)) {
+            onDrained.run();
+        }
+    }
+
+    /**
+     * @return the max number of contexts
+     */
+    int getSize() {
+        return size;
+    }
+
+    /**
+     * @return the number of contexts created and not closed
+     */
+    int getCreated() {
+        return created.get();
+    }
+
+    /**
+     * @return the number of idle contexts
+     */
+    int getIdle() {
+        return idle.size();
+    }
+
+    /**
+     * @return the total number of checkouts
+     */
+    long getCheckouts() {
+        return checkouts.sum();
+    }
+
+    /**
+     * @return the number of checkouts that waited for a context
+     */
+    long getWaits() {
+        return waits.sum();
+    }
+
+    /**
+     * @return the average time in msecs that checkouts waited for a context
+     */
+    double getAverageWaitMillis() {
+        var _waits = waits.sum();
+        return _waits == 0 ? 0 : waitNanos.sum() / _waits / 1_000_000d;
+    }
+
+    @Override
+    public String toString() {
+        return "ContextPool{" + "name=" + name + ", size=" + size + ", created=" + getCreated()
+                + ", idle=" + getIdle() + ", checkouts=" + getCheckouts() + ", waits=" + getWaits()
+                + ", averageWaitMillis=" + getAverageWaitMillis() + '}';
+    }
+}
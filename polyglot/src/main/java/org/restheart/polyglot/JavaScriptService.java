@@ -27,6 +27,7 @@ import java.util.Map;
 import com.mongodb.MongoClient;
 import org.graalvm.polyglot.Context;
 import org.graalvm.polyglot.Engine;
+import org.graalvm.polyglot.PolyglotException;
 import org.graalvm.polyglot.Source;
 import org.graalvm.polyglot.Value;
 import org.restheart.exchange.StringRequest;
@@ -47,13 +48,15 @@ public class JavaScriptService extends AbstractJavaScriptService {
     private Engine engine = Engine.create();
     private Source source;
 
+    private final ContextPool contextPool;
+
     private final String modulesReplacements;
 
     private MongoClient mclient;
 
     private static final String errorHint = "hint: the last statement in the script should be:\n({\n\toptions: {..},\n\thandle: (request, response) => {}\n})";
 
-    JavaScriptService(Path scriptPath, Path requireCdw, MongoClient mclient) throws IOException {
+    JavaScriptService(Path scriptPath, Path requireCdw, MongoClient mclient, int contextsPoolSize) throws IOException {
         this.mclient = mclient;
 
         OPTS.put("js.commonjs-require", "true");
@@ -174,6 +177,43 @@ public class JavaScriptService extends AbstractJavaScriptService {
                 throw new IllegalArgumentException("wrong js plugin, member 'handle' is not a function, " + errorHint);
             }
         }
+
+        if (getModulesReplacements() != null) {
+            LOGGER.debug("modules-replacements: {} ", getModulesReplacements());
+            OPTS.put("js.commonjs-core-modules-replacements", getModulesReplacements());
+        }
+
+        this.contextPool = new ContextPool(this.name, contextsPoolSize, this::newContext, engine::close);
+
+        // initialize the first context at deploy time
+        try {
+            this.contextPool.checkin(this.contextPool.checkout(), true);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * creates a context evaluating the script
+     *
+     * @return the context with the evaluated handle function
+     */
+    private ContextPool.PooledContext newContext() {
+        var ctx = Context.newBuilder().engine(engine).allowAllAccess(true).allowHostClassLookup(className -> true)
+                .allowIO(true).allowExperimentalOptions(true).options(OPTS).build();
+
+        try {
+            ctx.getBindings("js").putMember("LOGGER", LOGGER);
+
+            if (this.mclient != null) {
+                ctx.getBindings("js").putMember("mclient", this.mclient);
+            }
+
+            return new ContextPool.PooledContext(ctx, ctx.eval(source).getMember("handle"));
+        } catch (Throwable t) {
+            ctx.close();
+            throw t;
+        }
     }
 
     public String getModulesReplacements() {
@@ -184,23 +224,40 @@ public class JavaScriptService extends AbstractJavaScriptService {
      *
      */
     public void handle(StringRequest request, StringResponse response) {
-        if (getModulesReplacements() != null) {
-            LOGGER.debug("modules-replacements: {} ", getModulesReplacements());
-            OPTS.put("js.commonjs-core-modules-replacements", getModulesReplacements());
-        } else {
-            OPTS.remove("js.commonjs-core-modules-replacements");
+        ContextPool.PooledContext ctx;
+
+        try {
+            ctx = contextPool.checkout();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted waiting for a js context", ie);
         }
 
-        try (var ctx = Context.newBuilder().engine(engine).allowAllAccess(true).allowHostClassLookup(className -> true)
-                .allowIO(true).allowExperimentalOptions(true).options(OPTS).build()) {
+        var reusable = true;
 
-            ctx.getBindings("js").putMember("LOGGER", LOGGER);
+        try {
+            ctx.handle.executeVoid(request, response);
+        } catch (PolyglotException pe) {
+            reusable = !(pe.isCancelled() || pe.isExit() || pe.isInternalError() || pe.isResourceExhausted());
+            throw pe;
+        } finally {
+            contextPool.checkin(ctx, reusable);
+        }
+    }
 
-            if (this.mclient != null) {
-                ctx.getBindings("js").putMember("mclient", this.mclient);
-            }
+    /**
+     *
+     * @return the pool of contexts
+     */
+    ContextPool getContextPool() {
+        return this.contextPool;
+    }
 
-            ctx.eval(source).getMember("handle").executeVoid(request, response);
-        }
+    /**
+     * closes the contexts of the service, the ones in use are closed after
+     * the requests complete
+     */
+    public void close() {
+        this.contextPool.close();
     }
 }
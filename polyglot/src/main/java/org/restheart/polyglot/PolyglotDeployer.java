@@ -76,6 +76,10 @@ public class PolyglotDeployer implements Initializer {
 
     private MongoClient mclient;
 
+    private int jsContextsPoolSize = DEFAULT_JS_CONTEXTS_POOL_SIZE;
+
+    private static final int DEFAULT_JS_CONTEXTS_POOL_SIZE = 16;
+
     @InjectPluginsRegistry
     public void reg(PluginsRegistry registry) {
         this.registry = registry;
@@ -96,6 +100,8 @@ public class PolyglotDeployer implements Initializer {
 
         pluginsDirectory = getPluginsDirectory(args);
 
+        this.jsContextsPoolSize = getJsContextsPoolSize(args);
+
         this.requireCdw = pluginsDirectory.resolve("node_modules").toAbsolutePath();
 
         if (!Files.exists(requireCdw)) {
@@ -230,6 +236,28 @@ public class PolyglotDeployer implements Initializer {
         }
     }
 
+    /**
+     * the max number of contexts of each JavaScriptService is set by
+     * plugins-args.polyglotDeployer.js-contexts-pool-size, defaulting to
+     * worker-threads, so that requests never wait for a context
+     */
+    @SuppressWarnings("rawtypes")
+    private int getJsContextsPoolSize(Map<String, Object> args) {
+        var pluginsArgs = args.get(ConfigurationKeys.PLUGINS_ARGS_KEY);
+
+        if (pluginsArgs instanceof Map
+                && ((Map) pluginsArgs).get("polyglotDeployer") instanceof Map
+                && ((Map) ((Map) pluginsArgs).get("polyglotDeployer")).get("js-contexts-pool-size") instanceof Integer) {
+            return (Integer) ((Map) ((Map) pluginsArgs).get("polyglotDeployer")).get("js-contexts-pool-size");
+        }
+
+        var workerThreads = args.get(ConfigurationKeys.WORKER_THREADS_KEY);
+
+        return workerThreads instanceof Integer && (Integer) workerThreads > 0
+                ? (Integer) workerThreads
+                : DEFAULT_JS_CONTEXTS_POOL_SIZE;
+    }
+
     private ArrayList<Path> findJsPlugins(Path pluginsDirectory) {
         if (pluginsDirectory == null) {
             return new ArrayList<>();
@@ -301,7 +329,7 @@ public class PolyglotDeployer implements Initializer {
                 });
 
             } else {
-                var srv = new JavaScriptService(pluginPath, this.requireCdw, this.mclient);
+                var srv = new JavaScriptService(pluginPath, this.requireCdw, this.mclient, this.jsContextsPoolSize);
 
                 var record = new PluginRecord<Service>(srv.getName(), "description", true, srv.getClass().getName(),
                         srv, new HashMap<>());
@@ -322,6 +350,12 @@ public class PolyglotDeployer implements Initializer {
         if (srvToUndeploy != null) {
             registry.unplug(srvToUndeploy.getUri(), srvToUndeploy.getMatchPolicy());
 
+            if (srvToUndeploy instanceof JavaScriptService) {
+                var jsSrv = (JavaScriptService) srvToUndeploy;
+                LOGGER.debug("closing js contexts pool {}", jsSrv.getContextPool());
+                jsSrv.close();
+            }
+
             LOGGER.info(ansi().fg(GREEN).a("removed service {} bound to URI {}").reset().toString(),
                     srvToUndeploy.getName(), srvToUndeploy.getUri());
         }
@@ -0,0 +1,246 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-security
+ * %%
+ * Copyright (C) 2018 - 2020 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+ /*
+ * Copyright SoftInstigate srl. All Rights Reserved.
+ *
+ *
+ * The copyright to the computer program(s) herein is the property of
+ * SoftInstigate srl, Italy. The program(s) may be used and/or copied only
+ * with the written permission of SoftInstigate srl or in accordance with the
+ * terms and conditions stipulated in the agreement/contract under which the
+ * program(s) have been supplied. This copyright notice must not be removed.
+ */
+package org.restheart.security.plugins.authenticators;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.codahale.metrics.Timer;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiPredicate;
+import org.mindrot.jbcrypt.BCrypt;
+import org.restheart.cache.Cache;
+import org.restheart.cache.CacheFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Verifies passwords against bcrypt hashes on a dedicated, bounded pool of
+ * threads, so that a burst of authentications cannot take all the worker
+ * threads.
+ *
+ * Concurrent verifications of the same password against the same hash are
+ * coalesced into a single bcrypt check. When the pool queue is full the
+ * verification is rejected with SaturatedException.
+ *
+ * verifyAsync() does not block the calling thread; its result is kept for a
+ * few seconds, so that a following verify() of the same credentials, e.g.
+ * from the authenticator, returns it without waiting for the pool.
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class BCryptVerifier {
+    private static final Logger LOGGER
+            = LoggerFactory.getLogger(BCryptVerifier.class);
+
+    private static final String DEFAULT_REGISTRY = "default";
+
+    private static final long RESULTS_TTL = 10 * 1_000; // 10 seconds
+
+    private final ThreadPoolExecutor executor;
+
+    private final ConcurrentHashMap<List<String>, CompletableFuture<Boolean>> inflight
+            = new ConcurrentHashMap<>();
+
+    // the results of the checks recently completed
+    private final Cache<List<String>, Boolean> results;
+
+    private final BiPredicate<String, String> checker;
+
+    private final Timer latency;
+    private final Meter coalesced;
+    private final Meter rejected;
+
+    /**
+     *
+     * @param name the name of the verifier, used for threads and metrics
+     * @param threads the number of threads of the pool
+     * @param queueSize the max number of verifications waiting for a thread
+     */
+    public BCryptVerifier(String name, int threads, int queueSize) {
+        this(name, threads, queueSize, BCrypt::checkpw);
+    }
+
+    /**
+     *
+     * @param name
+     * @param threads
+     * @param queueSize
+     * @param checker checks the password against the hash
+     */
+    BCryptVerifier(String name, int threads, int queueSize,
+            BiPredicate<String, String> checker) {
+        this.checker = checker;
+        this.results = CacheFactory.createLocalCache(queueSize + threads,
+                Cache.EXPIRE_POLICY.AFTER_WRITE,
+                RESULTS_TTL);
+
+        this.executor = new ThreadPoolExecutor(
+                threads, threads,
+                1, TimeUnit.MINUTES,
+                new ArrayBlockingQueue<>(queueSize),
+                new ThreadFactoryBuilder()
+                        .setDaemon(true)
+                        .setNameFormat(name + "-bcrypt-%d")
+                        .build(),
+                new ThreadPoolExecutor.AbortPolicy());
+
+        this.executor.allowCoreThreadTimeOut(true);
+
+        // initialize default metrics registry name, if not already set
+        if (SharedMetricRegistries.tryGetDefault() == null) {
+            SharedMetricRegistries.setDefault(DEFAULT_REGISTRY);
+        }
+
+        var registry = SharedMetricRegistries.tryGetDefault();
+        var prefix = name + ".bcrypt";
+
+        this.latency = registry.timer(MetricRegistry.name(prefix, "latency"));
+        this.coalesced = registry.meter(MetricRegistry.name(prefix, "coalesced"));
+        this.rejected = registry.meter(MetricRegistry.name(prefix, "rejected"));
+        registry.gauge(MetricRegistry.name(prefix, "queue-depth"),
+                () -> (Gauge<Integer>) () -> this.executor.getQueue().size());
+        registry.gauge(MetricRegistry.name(prefix, "in-flight"),
+                () -> (Gauge<Integer>) () -> this.inflight.size());
+    }
+
+    /**
+     * checks the password against the bcrypt hash; if the check was recently
+     * completed by verifyAsync() its result is returned, otherwise the
+     * calling thread is blocked until the check, executed by the pool,
+     * completes
+     *
+     * @param username
+     * @param password
+     * @param hash
+     * @return true if the password matches the hash
+     * @throws SaturatedException if the pool cannot accept the check
+     */
+    public boolean verify(String username, String password, String hash) {
+        var result = completed(username, password, hash);
+
+        return result.isPresent()
+                ? result.get()
+                : join(verifyAsync(username, password, hash));
+    }
+
+    /**
+     * starts the check of the password against the bcrypt hash on the pool,
+     * without blocking the calling thread
+     *
+     * @param username
+     * @param password
+     * @param hash
+     * @return the check, completed exceptionally with SaturatedException if
+     * the pool cannot accept it
+     */
+    public CompletableFuture<Boolean> verifyAsync(String username, String password, String hash) {
+        var result = completed(username, password, hash);
+
+        if (result.isPresent()) {
+            return CompletableFuture.completedFuture(result.get());
+        }
+
+        var key = List.of(username, hash, password);
+        var check = new CompletableFuture<Boolean>();
+        var running = this.inflight.putIfAbsent(key, check);
+
+        if (running != null) {
+            this.coalesced.mark();
+            return running;
+        }
+
+        try {
+            this.executor.execute(() -> {
+                try (var ctx = this.latency.time()) {
+                    var matches = this.checker.test(password, hash);
+                    this.results.put(key, matches);
+                    check.complete(matches);
+                } catch (Throwable t) {
+                    check.completeExceptionally(t);
+                } finally {
+                    this.inflight.remove(key, check);
+                }
+            });
+        } catch (RejectedExecutionException ree) {
+            this.inflight.remove(key, check);
+            this.rejected.mark();
+
+            LOGGER.warn("bcrypt verification rejected, {} checks queued",
+                    this.executor.getQueue().size());
+
+            check.completeExceptionally(new SaturatedException());
+        }
+
+        return check;
+    }
+
+    private Optional<Boolean> completed(String username, String password, String hash) {
+        var result = this.results.get(List.of(username, hash, password));
+
+        return result == null ? Optional.empty() : result;
+    }
+
+    private boolean join(CompletableFuture<Boolean> check) {
+        try {
+            return check.join();
+        } catch (CompletionException ce) {
+            if (ce.getCause() instanceof SaturatedException) {
+                throw (SaturatedException) ce.getCause();
+            } else if (ce.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ce.getCause();
+            } else {
+                throw ce;
+            }
+        }
+    }
+
+    /**
+     * thrown when the verification is rejected because the pool is saturated
+     */
+    public static class SaturatedException extends RuntimeException {
+        private static final long serialVersionUID = -2153407620281036542L;
+
+        public SaturatedException() {
+            super("bcrypt verification pool saturated");
+        }
+    }
+}
@@ -51,6 +51,7 @@ import java.util.Arrays;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import org.bson.BsonDocument;
 import org.bson.Document;
 import org.mindrot.jbcrypt.BCrypt;
@@ -98,8 +99,23 @@ public class MongoRealmAuthenticator implements Authenticator {
     private Cache.EXPIRE_POLICY cacheExpirePolicy
             = Cache.EXPIRE_POLICY.AFTER_WRITE;
 
+    private Integer bcryptThreads = Runtime.getRuntime().availableProcessors();
+    private Integer bcryptQueueSize = 64;
+
+    private Boolean cacheRefreshAhead = false;
+    private Integer cachePreloadSize = 0;
+    private BsonDocument cachePreloadSort = BsonDocument.parse("{\"_id\": -1}");
+    private Integer negativeCacheSize = 10_000; // 10000 entries
+    private Integer negativeCacheTTL = 10 * 1_000; // 10 seconds
+
     private LoadingCache<String, PwdCredentialAccount> USERS_CACHE = null;
 
+    // ids of unknown users, kept apart so that requests with random ids
+    // cannot evict the accounts from USERS_CACHE
+    private Cache<String, Boolean> UNKNOWN_USERS_CACHE = null;
+
+    private BCryptVerifier bcryptVerifier = null;
+
     private static final transient Cache<String, String> USERS_PWDS_CACHE
             = CacheFactory.createLocalCache(
                     1_000l,
@@ -117,6 +133,34 @@ public class MongoRealmAuthenticator implements Authenticator {
         this.cacheSize = argValue(args, "cache-size");
         this.cacheTTL = argValue(args, "cache-ttl");
 
+        if (args.containsKey("cache-refresh-ahead")) {
+            this.cacheRefreshAhead = argValue(args, "cache-refresh-ahead");
+        }
+
+        if (args.containsKey("cache-preload-size")) {
+            this.cachePreloadSize = argValue(args, "cache-preload-size");
+        }
+
+        if (args.containsKey("cache-preload-sort")) {
+            String _cachePreloadSort = argValue(args, "cache-preload-sort");
+
+            try {
+                this.cachePreloadSort = BsonDocument.parse(_cachePreloadSort);
+            } catch (JsonParseException ex) {
+                throw new ConfigurationException(
+                        "wrong configuration file format. "
+                        + "cache-preload-sort must be a json document", ex);
+            }
+        }
+
+        if (args.containsKey("negative-cache-size")) {
+            this.negativeCacheSize = argValue(args, "negative-cache-size");
+        }
+
+        if (args.containsKey("negative-cache-ttl")) {
+            this.negativeCacheTTL = argValue(args, "negative-cache-ttl");
+        }
+
         String _cacheExpirePolicy = argValue(args, "cache-expire-policy");
         if (_cacheExpirePolicy != null) {
             try {
@@ -134,6 +178,20 @@ public class MongoRealmAuthenticator implements Authenticator {
 
         this.bcryptComplexity = argValue(args, "bcrypt-complexity");
 
+        if (args.containsKey("bcrypt-threads")) {
+            this.bcryptThreads = argValue(args, "bcrypt-threads");
+        }
+
+        if (args.containsKey("bcrypt-queue-size")) {
+            this.bcryptQueueSize = argValue(args, "bcrypt-queue-size");
+        }
+
+        if (this.bcryptHashedPassword && this.bcryptVerifier == null) {
+            this.bcryptVerifier = new BCryptVerifier("mongoRealmAuthenticator",
+                    this.bcryptThreads,
+                    this.bcryptQueueSize);
+        }
+
         this.createUser = argValue(args, "create-user");
         String _createUserDocument = argValue(args, "create-user-document");
 
@@ -169,12 +227,24 @@ public class MongoRealmAuthenticator implements Authenticator {
         this.mclient = mclient;
 
         if (this.cacheEnabled) {
+            // with refresh ahead, entries read in the last quarter of
+            // their ttl are reloaded asynchronously
             this.USERS_CACHE = CacheFactory.createLocalLoadingCache(
                     this.cacheSize,
                     this.cacheExpirePolicy,
-                    this.cacheTTL, (String key) -> {
+                    this.cacheTTL,
+                    this.cacheRefreshAhead ? this.cacheTTL * 3 / 4 : 0,
+                    (String key) -> {
                         return findAccount(accountIdTrasformer(key));
                     });
+
+            // negative-cache-ttl <= 0 disables the negative cache
+            if (this.negativeCacheTTL > 0) {
+                this.UNKNOWN_USERS_CACHE = CacheFactory.createLocalCache(
+                        this.negativeCacheSize,
+                        Cache.EXPIRE_POLICY.AFTER_WRITE,
+                        this.negativeCacheTTL);
+            }
         }
 
         if (!checkUserCollection()) {
@@ -190,6 +260,60 @@ public class MongoRealmAuthenticator implements Authenticator {
                 LOGGER.trace("Not creating default user since users exist");
             }
         }
+
+        if (this.cacheEnabled && this.cachePreloadSize > 0) {
+            preloadAccounts();
+        }
+    }
+
+    /**
+     * loads in the cache, with a single query, the first cache-preload-size
+     * accounts sorted by cache-preload-sort
+     */
+    private void preloadAccounts() {
+        try {
+            var count = 0;
+
+            var accounts = mclient
+                    .getDatabase(this.getUsersDb())
+                    .getCollection(this.getUsersCollection())
+                    .find()
+                    .sort(this.cachePreloadSort)
+                    .limit(Math.min(this.cachePreloadSize, this.cacheSize));
+
+            for (var _account : accounts) {
+                var id = accountId(_account);
+
+                if (id != null) {
+                    var account = toAccount(id, _account);
+
+                    if (account != null) {
+                        USERS_CACHE.put(id, account);
+                        count++;
+                    }
+                }
+            }
+
+            LOGGER.debug("Preloaded {} accounts in the users cache", count);
+        } catch (Throwable t) {
+            LOGGER.warn("Error preloading the users cache", t);
+        }
+    }
+
+    private String accountId(Document account) {
+        try {
+            Object id = JsonPath.read(account.toJson(), "$.".concat(this.propId));
+
+            if (id instanceof JsonElement
+                    && ((JsonElement) id).isJsonPrimitive()
+                    && ((JsonElement) id).getAsJsonPrimitive().isString()) {
+                return ((JsonElement) id).getAsString();
+            } else {
+                return id instanceof String ? (String) id : null;
+            }
+        } catch (IllegalArgumentException | PathNotFoundException pnfe) {
+            return null;
+        }
     }
 
     @InjectPluginsRegistry
@@ -235,6 +359,48 @@ public class MongoRealmAuthenticator implements Authenticator {
         }
     }
 
+    /**
+     * Starts the bcrypt check of the password of the account on the pool of
+     * the verifier, without blocking the calling thread. When the check
+     * completes, verify() returns its result without waiting for the pool.
+     *
+     * @param id
+     * @param password
+     * @return the bcrypt check, or null if no bcrypt check is required, e.g.
+     * the account does not exist or passwords are not hashed
+     */
+    public CompletableFuture<Boolean> verifyAsync(String id, char[] password) {
+        if (!this.bcryptHashedPassword
+                || this.bcryptVerifier == null
+                || password == null) {
+            return null;
+        }
+
+        var ref = getAccount(id);
+
+        if (ref == null
+                || ref.getPrincipal() == null
+                || ref.getPrincipal().getName() == null
+                || ref.getCredentials() == null
+                || ref.getCredentials().getPassword() == null) {
+            return null;
+        }
+
+        var username = ref.getPrincipal().getName();
+        var _password = new String(password);
+        var _expected = new String(ref.getCredentials().getPassword());
+
+        var _cachedPwd = USERS_PWDS_CACHE.get(username.concat(_expected));
+
+        if (_cachedPwd != null
+                && _cachedPwd.isPresent()
+                && _cachedPwd.get().equals(_password)) {
+            return null;
+        }
+
+        return this.bcryptVerifier.verifyAsync(username, _password, _expected);
+    }
+
     /**
      * @return the bcryptComplexity
      */
@@ -265,6 +431,7 @@ public class MongoRealmAuthenticator implements Authenticator {
         }
 
         return checkPassword(
+                this.bcryptVerifier,
                 ref.getPrincipal().getName(),
                 this.bcryptHashedPassword,
                 credential.getPassword(),
@@ -322,7 +489,19 @@ public class MongoRealmAuthenticator implements Authenticator {
         return null;
     }
 
-    static boolean checkPassword(String username,
+    /**
+     *
+     * @param verifier the verifier executing the bcrypt check, if null it is
+     * executed by the calling thread
+     * @param username
+     * @param hashed
+     * @param password
+     * @param expected
+     * @return true if password verified successfully
+     * @throws BCryptVerifier.SaturatedException if the verifier is saturated
+     */
+    static boolean checkPassword(BCryptVerifier verifier,
+            String username,
             boolean hashed,
             char[] password,
             char[] expected) {
@@ -345,7 +524,9 @@ public class MongoRealmAuthenticator implements Authenticator {
             }
 
             try {
-                boolean check = BCrypt.checkpw(_password, _expected);
+                boolean check = verifier == null
+                        ? BCrypt.checkpw(_password, _expected)
+                        : verifier.verify(username, _password, _expected);
 
                 if (check) {
                     USERS_PWDS_CACHE.put(username.concat(_expected), _password);
@@ -353,6 +534,8 @@ public class MongoRealmAuthenticator implements Authenticator {
                 } else {
                     return false;
                 }
+            } catch (BCryptVerifier.SaturatedException se) {
+                throw se;
             } catch (Throwable t) {
                 USERS_PWDS_CACHE.invalidate(username.concat(_expected));
                 LOGGER.warn("Error checking bcryped pwd hash", t);
@@ -372,16 +555,37 @@ public class MongoRealmAuthenticator implements Authenticator {
         if (USERS_CACHE == null) {
             return findAccount(this.accountIdTrasformer(id));
         } else {
+            if (UNKNOWN_USERS_CACHE != null
+                    && UNKNOWN_USERS_CACHE.get(id) != null) {
+                return null;
+            }
+
             Optional<PwdCredentialAccount> _account = USERS_CACHE.getLoading(id);
 
             if (_account != null && _account.isPresent()) {
                 return _account.get();
             } else {
+                USERS_CACHE.invalidate(id);
+
+                if (UNKNOWN_USERS_CACHE != null) {
+                    UNKNOWN_USERS_CACHE.put(id, true);
+                }
+
                 return null;
             }
         }
     }
 
+    /**
+     * forgets the ids of unknown users, so that users just created are not
+     * rejected until the negative cache expires
+     */
+    public void invalidateUnknownUsers() {
+        if (UNKNOWN_USERS_CACHE != null) {
+            UNKNOWN_USERS_CACHE.asMap().clear();
+        }
+    }
+
     /**
      * Override this method to trasform the account id. By default it returns
      * the id without any transformation. For example, it could be overridden to
@@ -507,6 +711,10 @@ public class MongoRealmAuthenticator implements Authenticator {
             return null;
         }
 
+        return toAccount(accountId, _account);
+    }
+
+    private PwdCredentialAccount toAccount(String accountId, Document _account) {
         JsonElement account;
 
         try {
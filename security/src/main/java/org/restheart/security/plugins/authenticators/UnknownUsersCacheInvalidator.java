@@ -0,0 +1,87 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-security
+ * %%
+ * Copyright (C) 2018 - 2020 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+/*
+ * Copyright SoftInstigate srl. All Rights Reserved.
+ *
+ *
+ * The copyright to the computer program(s) herein is the property of
+ * SoftInstigate srl, Italy. The program(s) may be used and/or copied only
+ * with the written permission of SoftInstigate srl or in accordance with the
+ * terms and conditions stipulated in the agreement/contract under which the
+ * program(s) have been supplied. This copyright notice must not be removed.
+ */
+package org.restheart.security.plugins.authenticators;
+
+import org.restheart.ConfigurationException;
+import org.restheart.exchange.MongoRequest;
+import org.restheart.exchange.MongoResponse;
+import org.restheart.plugins.InjectPluginsRegistry;
+import org.restheart.plugins.InterceptPoint;
+import org.restheart.plugins.MongoInterceptor;
+import org.restheart.plugins.PluginRecord;
+import org.restheart.plugins.PluginsRegistry;
+import org.restheart.plugins.RegisterPlugin;
+import org.restheart.plugins.security.Authenticator;
+
+/**
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+@RegisterPlugin(name = "unknownUsersCacheInvalidator",
+        description = "forgets the unknown user ids cached by mongoRealmAuthenticator when users are written",
+        interceptPoint = InterceptPoint.RESPONSE)
+public class UnknownUsersCacheInvalidator implements MongoInterceptor {
+    private MongoRealmAuthenticator rhAuth = null;
+
+    @InjectPluginsRegistry
+    public void init(PluginsRegistry registry) {
+        PluginRecord<Authenticator> _mra;
+
+        try {
+            _mra = registry.getAuthenticator("mongoRealmAuthenticator");
+        } catch (ConfigurationException ce) {
+            return;
+        }
+
+        if (_mra != null && _mra.isEnabled()) {
+            var _rhAuth = (MongoRealmAuthenticator) _mra.getInstance();
+
+            if (_rhAuth.getUsersDb() != null
+                    && _rhAuth.getUsersCollection() != null) {
+                this.rhAuth = _rhAuth;
+            }
+        }
+    }
+
+    @Override
+    public void handle(MongoRequest request, MongoResponse response) throws Exception {
+        this.rhAuth.invalidateUnknownUsers();
+    }
+
+    @Override
+    public boolean resolve(MongoRequest request, MongoResponse response) {
+        return this.rhAuth != null
+                && request.isWriteDocument()
+                && this.rhAuth.getUsersDb().equalsIgnoreCase(request.getDBName())
+                && this.rhAuth.getUsersCollection().equalsIgnoreCase(request.getCollectionName())
+                && !response.isInError();
+    }
+}
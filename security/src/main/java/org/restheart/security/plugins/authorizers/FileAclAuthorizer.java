@@ -56,6 +56,9 @@ public class FileAclAuthorizer
 
     private final HashMap<String, Set<Predicate>> acl = new HashMap<>();
 
+    // the predicates of each role indexed by method and path
+    private final HashMap<String, PredicateIndex> index = new HashMap<>();
+
     @InjectConfiguration
     public void init(Map<String, Object> confArgs)
             throws FileNotFoundException, ConfigurationException {
@@ -81,6 +84,8 @@ public class FileAclAuthorizer
                 }
 
                 aclForRole(role).add(predicate);
+                this.index.computeIfAbsent(role, r -> new PredicateIndex())
+                        .add(_predicate, predicate);
 
             } catch (ConfigurationException pce) {
                 LambdaUtils.throwsSneakyException(pce);
@@ -112,9 +117,10 @@ public class FileAclAuthorizer
         // see https://issues.jboss.org/browse/UNDERTOW-1317
         request.getExchange().setRelativePath(request.getExchange().getRequestPath());
 
-        return roles(exchange).anyMatch(role -> aclForRole(role)
-                .stream()
-                .anyMatch(p -> p.resolve(exchange)));
+        return roles(exchange).anyMatch(role -> {
+            var _index = this.index.get(role);
+            return _index != null && _index.anyMatch(exchange);
+        });
     }
 
     @Override
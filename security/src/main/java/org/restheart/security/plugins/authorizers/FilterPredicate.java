@@ -37,6 +37,8 @@ import io.undertow.predicate.Predicate;
 import io.undertow.predicate.PredicateParser;
 import io.undertow.server.HttpServerExchange;
 import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -58,7 +60,10 @@ public class FilterPredicate {
     private final Predicate predicate;
     private final BsonDocument readFilter;
     private final BsonDocument writeFilter;
+    private final FilterTemplate readFilterTemplate;
+    private final FilterTemplate writeFilterTemplate;
     private final int priority;
+    private final boolean methodAndCollectionOnly;
 
     private static final Logger LOGGER
             = LoggerFactory.getLogger(FilterPredicate.class);
@@ -75,6 +80,9 @@ public class FilterPredicate {
         this.readFilter = readFilter;
         this.writeFilter = writeFilter;
         this.priority = priority;
+        this.methodAndCollectionOnly = false;
+        this.readFilterTemplate = FilterTemplate.compile(getReadFilter());
+        this.writeFilterTemplate = FilterTemplate.compile(getWriteFilter());
     }
 
     FilterPredicate(BsonDocument doc) {
@@ -106,6 +114,8 @@ public class FilterPredicate {
             throw new IllegalArgumentException("_predicate must be a string");
         }
 
+        this.methodAndCollectionOnly = dependsOnlyOnMethodAndCollection(_predicate.asString().getValue());
+
         try {
             this.predicate = PredicateParser.parse(
                     _predicate.asString().getValue(),
@@ -152,6 +162,9 @@ public class FilterPredicate {
         } else {
             this.priority = _priority.asNumber().intValue();
         }
+
+        this.readFilterTemplate = FilterTemplate.compile(getReadFilter());
+        this.writeFilterTemplate = FilterTemplate.compile(getWriteFilter());
     }
 
     /**
@@ -186,6 +199,20 @@ public class FilterPredicate {
                 : JsonUtils.unescapeKeys(writeFilter).asDocument();
     }
 
+    /**
+     * @return the readFilter compiled into a template, or null
+     */
+    public FilterTemplate getReadFilterTemplate() {
+        return readFilterTemplate;
+    }
+
+    /**
+     * @return the writeFilter compiled into a template, or null
+     */
+    public FilterTemplate getWriteFilterTemplate() {
+        return writeFilterTemplate;
+    }
+
     /**
      * @return the priority
      */
@@ -193,6 +220,16 @@ public class FilterPredicate {
         return priority;
     }
 
+    /**
+     * @return true if the predicate only depends on the request method and
+     * on the first two segments of the path (db and collection), so that it
+     * always resolves the same for requests with equal method, db and
+     * collection
+     */
+    public boolean isMethodAndCollectionOnly() {
+        return methodAndCollectionOnly;
+    }
+
     /**
      * @return the _id
      */
@@ -217,13 +254,127 @@ public class FilterPredicate {
         }
     }
 
+    private static final String PATH_PREFIX = "path-prefix";
+
+    private static final Set<String> METHOD_AND_COLLECTION_PREDICATES = Set.of(
+            PATH_PREFIX, "method");
+
+    private static final Set<String> METHOD_AND_COLLECTION_PARAMS = Set.of(
+            "value", "path");
+
+    private static final Set<String> OPERATORS = Set.of(
+            "and", "or", "not", "true", "false");
+
+    /**
+     * checks the predicate text against the undertow predicate language:
+     * only the method and path-prefix predicates (with default match
+     * attribute and prefixes of at most two segments) combined with logical
+     * operators are allowed; any exchange attribute (%x or ${x}) makes the
+     * predicate depend on other request values
+     *
+     * @param predicate
+     * @return true if the predicate only depends on the request method and on
+     * the first two segments of the path
+     */
+    static boolean dependsOnlyOnMethodAndCollection(String predicate) {
+        // the function names for function arguments, "" for grouping parenthesis
+        var stack = new ArrayDeque<String>();
+        var len = predicate.length();
+        var idx = 0;
+
+        while (idx < len) {
+            var c = predicate.charAt(idx);
+
+            if (c == '\'' || c == '"') {
+                var end = predicate.indexOf(c, idx + 1);
+
+                if (end < 0) {
+                    return false;
+                }
+
+                if (PATH_PREFIX.equals(stack.peek())
+                        && segments(predicate.substring(idx + 1, end)) > 2) {
+                    return false;
+                }
+
+                idx = end + 1;
+            } else if (Character.isLetterOrDigit(c) || c == '-' || c == '_') {
+                var start = idx;
+
+                while (idx < len && (Character.isLetterOrDigit(predicate.charAt(idx))
+                        || predicate.charAt(idx) == '-'
+                        || predicate.charAt(idx) == '_')) {
+                    idx++;
+                }
+
+                var id = predicate.substring(start, idx);
+
+                var next = idx;
+
+                while (next < len && Character.isWhitespace(predicate.charAt(next))) {
+                    next++;
+                }
+
+                var follower = next < len ? predicate.charAt(next) : 0;
+
+                if (OPERATORS.contains(id)) {
+                    // a following parenthesis groups
+                    continue;
+                } else if (follower == '(' || follower == '[') {
+                    if (!METHOD_AND_COLLECTION_PREDICATES.contains(id)) {
+                        return false;
+                    }
+
+                    stack.push(id);
+                    idx = next + 1;
+                } else if (follower == '=') {
+                    if (!METHOD_AND_COLLECTION_PARAMS.contains(id) || stack.isEmpty() || stack.peek().isEmpty()) {
+                        return false;
+                    }
+
+                    idx = next + 1;
+                } else if (stack.isEmpty() || stack.peek().isEmpty()) {
+                    // a predicate without arguments, e.g. secure
+                    return false;
+                }
+            } else if (c == '(' || c == '[') {
+                stack.push("");
+                idx++;
+            } else if (c == ')' || c == ']') {
+                if (stack.isEmpty()) {
+                    return false;
+                }
+
+                stack.pop();
+                idx++;
+            } else if (c == '%' || c == '$') {
+                // exchange attribute
+                return false;
+            } else if (c == '/' && PATH_PREFIX.equals(stack.peek())) {
+                // unquoted prefix
+                return false;
+            } else {
+                idx++;
+            }
+        }
+
+        return stack.isEmpty();
+    }
+
+    private static long segments(String path) {
+        return Arrays.stream(path.split("/")).filter(s -> !s.isEmpty()).count();
+    }
+
     /**
      * resolves the a filter variables such as %USER, %ROLES, and %NOW
      *
      * @param exchange
      * @param filter
      * @return the filter with interpolated variables
+     * @deprecated use getReadFilterTemplate() and getWriteFilterTemplate()
+     * that bind the variables without serializing and parsing the filter
      */
+    @Deprecated
     public static JsonObject interpolateFilterVars(final HttpServerExchange exchange,
             final BsonDocument filter) {
         if (Objects.isNull(filter) || filter.isNull()) {
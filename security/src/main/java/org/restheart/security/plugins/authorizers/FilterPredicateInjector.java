@@ -30,8 +30,6 @@
  */
 package org.restheart.security.plugins.authorizers;
 
-import java.util.ArrayDeque;
-import org.bson.BsonDocument;
 import org.restheart.exchange.MongoRequest;
 import org.restheart.exchange.MongoResponse;
 import org.restheart.plugins.InjectPluginsRegistry;
@@ -73,16 +71,14 @@ public class FilterPredicateInjector implements MongoInterceptor {
         var predicate = FilterPredicate.from(exchange);
 
         if (request.isGet()
-                && predicate.getReadFilter() != null) {
-            LOGGER.debug("read filter: {}", predicate.getReadFilter());
-            addFilter(request, predicate.getReadFilter());
+                && predicate.getReadFilterTemplate() != null) {
+            addFilter(request, predicate.getReadFilterTemplate());
         } else if ((request.isPatch()
                 || request.isPut()
                 || request.isPost()
                 || request.isDelete())
-                && predicate.getWriteFilter() != null) {
-            LOGGER.debug("write filter to add: {}", predicate.getWriteFilter());
-            addFilter(request, predicate.getWriteFilter());
+                && predicate.getWriteFilterTemplate() != null) {
+            addFilter(request, predicate.getWriteFilterTemplate());
         } else {
             LOGGER.trace("predicate specifies no filter");
         }
@@ -95,20 +91,13 @@ public class FilterPredicateInjector implements MongoInterceptor {
                 && FilterPredicate.from(request.getExchange()) != null;
     }
 
-    private void addFilter(final MongoRequest request, final BsonDocument filter) {
-        if (filter == null) {
-            return;
-        }
-
-        // this resolve the filter against the current exchange
-        // eg {'username':'%u'} => {'username':'uji'}
-        var resolvedFilter = FilterPredicate
-                .interpolateFilterVars(request.getExchange(), filter);
+    private void addFilter(final MongoRequest request, final FilterTemplate filter) {
+        // this binds the filter to the current exchange
+        // eg {'username':'%USER'} => {'username':'uji'}
+        var resolvedFilter = filter.bind(request.getExchange());
 
-        if (request.getFilter() == null) {
-            request.setFilter(new ArrayDeque<>());
-        }
+        LOGGER.debug("filter to add: {}", resolvedFilter);
 
-        request.getFilter().add(resolvedFilter.toString());
+        request.addFilter(resolvedFilter);
     }
 }
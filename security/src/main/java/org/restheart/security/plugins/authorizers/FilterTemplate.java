@@ -0,0 +1,319 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-security
+ * %%
+ * Copyright (C) 2018 - 2020 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.security.plugins.authorizers;
+
+import io.undertow.attribute.ExchangeAttributes;
+import io.undertow.server.HttpServerExchange;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.bson.BsonArray;
+import org.bson.BsonDateTime;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+
+/**
+ * An ACL filter compiled into a template whose slots are bound to the
+ * variables %USER, %ROLES and %NOW of the request, producing the filter as a
+ * BsonDocument without serializing and parsing it.
+ *
+ * A string value equal to a variable is replaced by a value of the variable
+ * type: %USER by the username string, %ROLES by the array of the roles and
+ * %NOW by the current date (truncated to seconds). Variables within a longer
+ * string or a key are replaced by their textual representation.
+ *
+ * The parts of the filter that don't contain variables are shared by all
+ * bound filters: the returned documents must not be modified.
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class FilterTemplate {
+    private static final Pattern VARS = Pattern.compile("%USER|%ROLES|%NOW");
+
+    private enum Var {
+        USER("%USER"), ROLES("%ROLES"), NOW("%NOW");
+
+        final String name;
+
+        Var(String name) {
+            this.name = name;
+        }
+
+        static Var of(String name) {
+            for (var v : values()) {
+                if (v.name.equals(name)) {
+                    return v;
+                }
+            }
+
+            return null;
+        }
+    }
+
+    private final Slot root;
+
+    private FilterTemplate(Slot root) {
+        this.root = root;
+    }
+
+    /**
+     *
+     * @param filter
+     * @return the compiled filter or null if filter is null
+     */
+    public static FilterTemplate compile(BsonDocument filter) {
+        return filter == null ? null : new FilterTemplate(compileValue(filter));
+    }
+
+    /**
+     * binds the variables of the template to the user and time of the
+     * exchange
+     *
+     * @param exchange
+     * @return the filter
+     */
+    public BsonDocument bind(HttpServerExchange exchange) {
+        return bind(username(exchange), roles(exchange), Instant.now());
+    }
+
+    /**
+     * binds the variables of the template
+     *
+     * @param username the value of %USER, if null it is not replaced
+     * @param roles the value of %ROLES
+     * @param now the value of %NOW
+     * @return the filter
+     */
+    public BsonDocument bind(String username, Set<String> roles, Instant now) {
+        return root.bind(new Vars(username, roles, now)).asDocument();
+    }
+
+    private static String username(HttpServerExchange exchange) {
+        return ExchangeAttributes.remoteUser().readAttribute(exchange);
+    }
+
+    private static Set<String> roles(HttpServerExchange exchange) {
+        var sc = exchange.getSecurityContext();
+
+        if (Objects.nonNull(sc)
+                && Objects.nonNull(sc.getAuthenticatedAccount())
+                && Objects.nonNull(sc.getAuthenticatedAccount().getRoles())) {
+            return sc.getAuthenticatedAccount().getRoles();
+        } else {
+            return Collections.emptySet();
+        }
+    }
+
+    private static Slot compileValue(BsonValue value) {
+        if (value.isString()) {
+            var s = value.asString().getValue();
+            var v = Var.of(s);
+
+            if (v != null) {
+                // typed slot
+                return vars -> vars.bind(v, value);
+            }
+
+            var text = compileString(s);
+
+            return text.isConstant()
+                    ? new Constant(value)
+                    : vars -> new BsonString(text.bind(vars));
+        } else if (value.isDocument()) {
+            var keys = new ArrayList<StringSlot>();
+            var slots = new ArrayList<Slot>();
+            var constant = true;
+
+            for (var entry : value.asDocument().entrySet()) {
+                var key = compileString(entry.getKey());
+                var slot = compileValue(entry.getValue());
+
+                constant = constant && key.isConstant() && slot instanceof Constant;
+                keys.add(key);
+                slots.add(slot);
+            }
+
+            if (constant) {
+                return new Constant(value);
+            }
+
+            return vars -> {
+                var ret = new BsonDocument();
+
+                for (var idx = 0; idx < keys.size(); idx++) {
+                    ret.put(keys.get(idx).bind(vars), slots.get(idx).bind(vars));
+                }
+
+                return ret;
+            };
+        } else if (value.isArray()) {
+            var items = new ArrayList<Slot>();
+            var constant = true;
+
+            for (var item : value.asArray()) {
+                var slot = compileValue(item);
+                constant = constant && slot instanceof Constant;
+                items.add(slot);
+            }
+
+            if (constant) {
+                return new Constant(value);
+            }
+
+            return vars -> {
+                var ret = new BsonArray();
+                items.forEach(i -> ret.add(i.bind(vars)));
+                return ret;
+            };
+        } else {
+            return new Constant(value);
+        }
+    }
+
+    /**
+     * compiles a string into its constant parts and variables
+     */
+    private static StringSlot compileString(String s) {
+        var parts = new ArrayList<Object>();
+
+        if (s.indexOf('%') >= 0) {
+            Matcher m = VARS.matcher(s);
+            var last = 0;
+
+            while (m.find()) {
+                if (m.start() > last) {
+                    parts.add(s.substring(last, m.start()));
+                }
+
+                parts.add(Var.of(m.group()));
+                last = m.end();
+            }
+
+            if (last < s.length()) {
+                parts.add(s.substring(last));
+            }
+        } else {
+            parts.add(s);
+        }
+
+        return new StringSlot(parts);
+    }
+
+    @FunctionalInterface
+    private interface Slot {
+        BsonValue bind(Vars vars);
+    }
+
+    private static class Constant implements Slot {
+        private final BsonValue value;
+
+        Constant(BsonValue value) {
+            this.value = value;
+        }
+
+        @Override
+        public BsonValue bind(Vars vars) {
+            return value;
+        }
+    }
+
+    /**
+     * a string with variables replaced by their textual representation
+     */
+    private static class StringSlot {
+        private final List<Object> parts;
+
+        StringSlot(List<Object> parts) {
+            this.parts = parts;
+        }
+
+        boolean isConstant() {
+            return parts.stream().noneMatch(p -> p instanceof Var);
+        }
+
+        String bind(Vars vars) {
+            if (parts.size() == 1 && parts.get(0) instanceof String) {
+                return (String) parts.get(0);
+            }
+
+            var sb = new StringBuilder();
+
+            for (var part : parts) {
+                if (part instanceof Var) {
+                    sb.append(vars.text((Var) part));
+                } else {
+                    sb.append(part);
+                }
+            }
+
+            return sb.toString();
+        }
+    }
+
+    private static class Vars {
+        final String username;
+        final Set<String> roles;
+        final long nowMillis;
+
+        Vars(String username, Set<String> roles, Instant now) {
+            this.username = username;
+            this.roles = roles == null ? Collections.emptySet() : roles;
+            this.nowMillis = now.getEpochSecond() * 1000;
+        }
+
+        /**
+         * @return the typed value of the variable
+         */
+        BsonValue bind(Var v, BsonValue unbound) {
+            switch (v) {
+                case USER:
+                    return username == null ? unbound : new BsonString(username);
+                case ROLES:
+                    var ret = new BsonArray();
+                    roles.forEach(r -> ret.add(new BsonString(r)));
+                    return ret;
+                default:
+                    return new BsonDateTime(nowMillis);
+            }
+        }
+
+        /**
+         * @return the textual value of the variable, as replaced by the
+         * former string interpolation
+         */
+        String text(Var v) {
+            switch (v) {
+                case USER:
+                    return username == null ? v.name : username;
+                case ROLES:
+                    return roles.toString();
+                default:
+                    return "{'$date':" + nowMillis + "}";
+            }
+        }
+    }
+}
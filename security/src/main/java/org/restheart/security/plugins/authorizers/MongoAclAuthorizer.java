@@ -30,25 +30,25 @@
  */
 package org.restheart.security.plugins.authorizers;
 
-import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import static com.google.common.collect.Sets.newHashSet;
 import com.mongodb.MongoClient;
-import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.in;
 import static io.undertow.predicate.Predicate.PREDICATE_CONTEXT;
 import io.undertow.security.idm.Account;
 import io.undertow.server.HttpServerExchange;
 import io.undertow.util.AttachmentKey;
 import java.security.Principal;
-import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
-import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 import org.bson.BsonDocument;
+import org.bson.conversions.Bson;
 import org.restheart.ConfigurationException;
 import org.restheart.cache.Cache;
 import org.restheart.cache.CacheFactory;
@@ -92,7 +92,14 @@ public class MongoAclAuthorizer implements Authorizer {
     private Integer cacheTTL = 60 * 1_000; // 1 minute
     private Cache.EXPIRE_POLICY cacheExpirePolicy = Cache.EXPIRE_POLICY.AFTER_WRITE;
 
-    private LoadingCache<String, LinkedHashSet<FilterPredicate>> acl = null;
+    private boolean decisionCacheEnabled = false;
+    private Integer decisionCacheSize = 10_000; // 10000 entries
+
+    // the predicates of all roles of a role set, ordered by priority
+    private LoadingCache<Set<String>, List<FilterPredicate>> aclByRoles = null;
+
+    // the predicate matching requests with given roles, method, db and collection
+    private Cache<List<Object>, FilterPredicate> decisions = null;
 
     private MongoClient mclient;
 
@@ -123,12 +130,28 @@ public class MongoAclAuthorizer implements Authorizer {
                     }
                 }
 
-                this.acl = CacheFactory.createLocalLoadingCache(
+                this.aclByRoles = CacheFactory.createLocalLoadingCache(
                         this.cacheSize,
                         this.cacheExpirePolicy,
-                        this.cacheTTL, (String role) -> {
-                            return this.findRolePredicates(role);
+                        this.cacheTTL, (Set<String> roles) -> {
+                            return this.findRolesPredicates(roles);
                         });
+
+                if (args.containsKey("decision-cache-enabled")) {
+                    this.decisionCacheEnabled = argValue(args, "decision-cache-enabled");
+                }
+
+                if (this.decisionCacheEnabled) {
+                    if (args.containsKey("decision-cache-size")) {
+                        this.decisionCacheSize = argValue(args, "decision-cache-size");
+                    }
+
+                    // decisions expire with the acl they are computed from
+                    this.decisions = CacheFactory.createLocalCache(
+                            this.decisionCacheSize,
+                            Cache.EXPIRE_POLICY.AFTER_WRITE,
+                            this.cacheTTL);
+                }
             }
         }
     }
@@ -180,58 +203,78 @@ public class MongoAclAuthorizer implements Authorizer {
         // see https://issues.jboss.org/browse/UNDERTOW-1317
         exchange.setRelativePath(exchange.getRequestPath());
 
-        final ArrayList<FilterPredicate> predicates = new ArrayList<>();
+        var roles = Set.copyOf(account(exchange).getRoles());
 
-        // debug roles and predicates evaluation order
-        if (LOGGER.isDebugEnabled()) {
-            roles(exchange).forEachOrdered(role
-                    -> {
-                ArrayList<FilterPredicate> matched = Lists.newArrayListWithCapacity(1);
+        // the decision only depends on roles, method, db and collection if
+        // all predicates evaluated to get it only depend on method, db and
+        // collection
+        List<Object> decisionKey = null;
 
-                predicatesForRole(role)
-                        .stream().anyMatch(predicate -> {
-                            var resolved = predicate.resolve(exchange);
+        if (this.decisions != null) {
+            decisionKey = List.of(roles,
+                    exchange.getRequestMethod().toString(),
+                    collectionPath(exchange.getRequestPath()));
 
-                            String marker;
+            var cached = this.decisions.get(decisionKey);
 
-                            // to highlight the effective predicate
-                            if (resolved && matched.isEmpty()) {
-                                matched.add(predicate);
-                                marker = "<--";
-                            } else {
-                                marker = "";
-                            }
+            if (cached != null) {
+                LOGGER.debug("roles {}, cached predicate {}", roles,
+                        cached.isPresent() ? cached.get().getId() : null);
+
+                return allow(exchange, cached.orElse(null));
+            }
+        }
 
-                            LOGGER.debug("role {}, predicate {}, resolve {} {}",
-                                    role,
-                                    predicate.getId(),
-                                    resolved,
-                                    marker);
+        var cacheable = true;
 
-                            return false;
-                        });
-            });
+        // the applicable predicate is the first one, in priority order,
+        // that resolves the exchange
+        for (var predicate : predicatesForRoles(roles)) {
+            var resolved = predicate.resolve(exchange);
+            cacheable = cacheable && predicate.isMethodAndCollectionOnly();
+
+            LOGGER.debug("roles {}, predicate {}, resolve {}",
+                    roles,
+                    predicate.getId(),
+                    resolved);
+
+            if (resolved) {
+                if (decisionKey != null && cacheable) {
+                    this.decisions.put(decisionKey, predicate);
+                }
+
+                return allow(exchange, predicate);
+            }
         }
 
-        // the applicable predicate is the ones that
-        // resolves the exchange
-        roles(exchange)
-                .forEachOrdered(role
-                        -> predicatesForRole(role)
-                        .stream()
-                        .anyMatch(r -> {
-                            if (r.resolve(exchange)) {
-                                predicates.add(r);
-                                return true;
-                            } else {
-                                return false;
-                            }
-                        }));
+        if (decisionKey != null && cacheable) {
+            this.decisions.put(decisionKey, null);
+        }
 
-        if (predicates.isEmpty()) {
+        return false;
+    }
+
+    /**
+     * @param path the request path
+     * @return the path up to the third slash, e.g. /db/coll for
+     * /db/coll/docid; path-prefix predicates with at most two segments
+     * resolve the same for all paths with the same collection path
+     */
+    static String collectionPath(String path) {
+        var idx = path.indexOf('/', 1);
+
+        if (idx >= 0) {
+            idx = path.indexOf('/', idx + 1);
+        }
+
+        return idx < 0 ? path : path.substring(0, idx);
+    }
+
+    private boolean allow(HttpServerExchange exchange, FilterPredicate predicate) {
+        if (predicate == null) {
             return false;
         } else {
-            exchange.putAttachment(MATCHING_ACL_PREDICATE, predicates.get(0));
+            exchange.putAttachment(MATCHING_ACL_PREDICATE, predicate);
             return true;
         }
     }
@@ -266,15 +309,11 @@ public class MongoAclAuthorizer implements Authorizer {
         }
     }
 
-    private Stream<String> roles(HttpServerExchange exchange) {
-        return account(exchange).getRoles().stream();
-    }
-
-    private LinkedHashSet<FilterPredicate> predicatesForRole(String role) {
-        LinkedHashSet<FilterPredicate> predicates = getRoleFilterPredicates(role);
+    private List<FilterPredicate> predicatesForRoles(Set<String> roles) {
+        List<FilterPredicate> predicates = getRolesFilterPredicates(roles);
 
         if (predicates == null) {
-            return Sets.newLinkedHashSet();
+            return Collections.emptyList();
         } else {
             return predicates;
         }
@@ -294,16 +333,26 @@ public class MongoAclAuthorizer implements Authorizer {
      * @return the acl
      */
     public LinkedHashSet<FilterPredicate> getRoleFilterPredicates(String role) {
+        var predicates = getRolesFilterPredicates(Set.of(role));
+
+        return predicates == null ? null : new LinkedHashSet<>(predicates);
+    }
+
+    /**
+     * @param roles
+     * @return the acl of all the roles, ordered by priority
+     */
+    public List<FilterPredicate> getRolesFilterPredicates(Set<String> roles) {
         if (this.cacheEnabled) {
-            var _roleFilterPredicates = this.acl.getLoading(role);
+            var _rolesFilterPredicates = this.aclByRoles.getLoading(roles);
 
-            if (_roleFilterPredicates != null && _roleFilterPredicates.isPresent()) {
-                return _roleFilterPredicates.get();
+            if (_rolesFilterPredicates != null && _rolesFilterPredicates.isPresent()) {
+                return _rolesFilterPredicates.get();
             } else {
                 return null;
             }
         } else {
-            return findRolePredicates(role);
+            return findRolesPredicates(roles);
         }
     }
 
@@ -328,14 +377,27 @@ public class MongoAclAuthorizer implements Authorizer {
     private static final BsonDocument PROJECTION = BsonDocument.parse("{\"_id\":1,\"roles\":1,\"predicate\":1,\"writeFilter\":1,\"readFilter\":1,\"priority\":1}");
     private static final BsonDocument SORT = BsonDocument.parse("{\"priority\":-1,\"_id\":-1}");
 
-    private LinkedHashSet<FilterPredicate> findRolePredicates(final String role) {
+    /**
+     * finds the predicates of all roles with a single query, so that they are
+     * globally ordered by priority regardless of the order of the roles
+     *
+     * @param roles
+     * @return the predicates
+     */
+    private List<FilterPredicate> findRolesPredicates(final Set<String> roles) {
+        var ret = findPredicates(in("roles", roles));
+
+        return ret == null ? null : List.copyOf(ret);
+    }
+
+    private LinkedHashSet<FilterPredicate> findPredicates(final Bson filter) {
         if (this.mclient == null) {
             LOGGER.error("Cannot find acl: mongo service is not enabled.");
             return null;
         } else {
             var predicates = this.mclient.getDatabase(this.aclDb)
                     .getCollection(this.aclCollection, BsonDocument.class)
-                    .find(eq("roles", role))
+                    .find(filter)
                     .projection(PROJECTION)
                     .sort(SORT);
 
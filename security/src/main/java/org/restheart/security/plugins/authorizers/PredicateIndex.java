@@ -0,0 +1,382 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-security
+ * %%
+ * Copyright (C) 2018 - 2020 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.security.plugins.authorizers;
+
+import io.undertow.predicate.Predicate;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.HttpString;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Indexes the predicates of a role by method and path, so that only the
+ * predicates that can match the request are resolved.
+ *
+ * The predicates that are conjunctions of path-prefix, path or path-template
+ * and method are indexed in per method path tries. The ones made only of
+ * path-prefix or path and method are matched by the trie without resolving
+ * them; the others are resolved if the trie matches their path and method.
+ * All other predicates are always resolved.
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+class PredicateIndex {
+    private static final Pattern PATH_PREFIX = Pattern.compile(
+            "^path-prefix\\s*[\\[(]\\s*(?:path\\s*=\\s*)?([\"'])([^\"']*)\\1\\s*[\\])]$");
+
+    private static final Pattern PATH = Pattern.compile(
+            "^path\\s*[\\[(]\\s*(?:path\\s*=\\s*)?([\"'])([^\"']*)\\1\\s*[\\])]$");
+
+    private static final Pattern PATH_TEMPLATE = Pattern.compile(
+            "^path-template\\s*[\\[(]\\s*(?:value\\s*=\\s*)?([\"'])([^\"']*)\\1\\s*[\\])]$");
+
+    private static final Pattern METHOD = Pattern.compile(
+            "^method\\s*[\\[(]\\s*(?:value\\s*=\\s*)?(.+?)\\s*[\\])]$");
+
+    private static final Pattern METHOD_NAME = Pattern.compile("[A-Za-z]+");
+
+    // trie of the predicates applying to any method
+    private final Node anyMethod = new Node();
+
+    // tries of the predicates applying to given methods
+    private final HashMap<HttpString, Node> byMethod = new HashMap<>();
+
+    // predicates that cannot be indexed
+    private final List<Predicate> others = new ArrayList<>();
+
+    /**
+     *
+     * @param text the predicate text
+     * @param predicate the parsed predicate
+     */
+    void add(String text, Predicate predicate) {
+        var conjuncts = conjuncts(text.trim());
+
+        if (conjuncts == null) {
+            this.others.add(predicate);
+            return;
+        }
+
+        List<String> segments = null;
+        var exact = false;
+        var pure = true;
+        Set<HttpString> methods = null;
+
+        for (var conjunct : conjuncts) {
+            var m = PATH_PREFIX.matcher(conjunct);
+
+            if (segments == null && m.matches()) {
+                segments = segments(normalizePrefix(m.group(2)));
+                continue;
+            }
+
+            m = PATH.matcher(conjunct);
+
+            if (segments == null && m.matches()) {
+                segments = segments(m.group(2).startsWith("/") ? m.group(2) : "/" + m.group(2));
+                exact = true;
+                continue;
+            }
+
+            m = PATH_TEMPLATE.matcher(conjunct);
+
+            if (segments == null && m.matches()) {
+                // index the literal segments before the first variable
+                segments = literalPrefix(m.group(2));
+                pure = false;
+                continue;
+            }
+
+            m = METHOD.matcher(conjunct);
+
+            if (methods == null && m.matches()) {
+                methods = methods(m.group(1));
+
+                if (methods != null) {
+                    continue;
+                }
+            }
+
+            // any other predicate of the conjunction
+            pure = false;
+        }
+
+        var entry = new Entry(predicate, pure);
+
+        if (segments == null) {
+            // no path condition
+            segments = List.of();
+            exact = false;
+        }
+
+        if (methods == null) {
+            add(this.anyMethod, segments, exact, entry);
+        } else {
+            for (var method : methods) {
+                add(this.byMethod.computeIfAbsent(method, k -> new Node()), segments, exact, entry);
+            }
+        }
+    }
+
+    /**
+     *
+     * @param exchange
+     * @return true if any predicate resolves the exchange
+     */
+    boolean anyMatch(HttpServerExchange exchange) {
+        var segments = segments(exchange.getRelativePath());
+
+        if (anyMatch(this.anyMethod, segments, exchange)) {
+            return true;
+        }
+
+        var methodRoot = this.byMethod.get(exchange.getRequestMethod());
+
+        if (methodRoot != null && anyMatch(methodRoot, segments, exchange)) {
+            return true;
+        }
+
+        return this.others.stream().anyMatch(p -> p.resolve(exchange));
+    }
+
+    private static void add(Node root, List<String> segments, boolean exact, Entry entry) {
+        var node = root;
+        // path() ignores trailing slashes, see exactEnd()
+        var end = exact ? exactEnd(segments) : segments.size();
+
+        for (var segment : segments.subList(0, end)) {
+            node = node.children.computeIfAbsent(segment, k -> new Node());
+        }
+
+        if (exact) {
+            node.exact.add(entry);
+        } else {
+            node.prefix.add(entry);
+        }
+    }
+
+    private static boolean anyMatch(Node root, List<String> segments, HttpServerExchange exchange) {
+        var node = root;
+        var idx = 0;
+        var exactEnd = exactEnd(segments);
+
+        while (node != null) {
+            for (var entry : node.prefix) {
+                if (entry.matches(exchange)) {
+                    return true;
+                }
+            }
+
+            if (idx == exactEnd) {
+                for (var entry : node.exact) {
+                    if (entry.matches(exchange)) {
+                        return true;
+                    }
+                }
+            }
+
+            if (idx == segments.size()) {
+                return false;
+            }
+
+            node = node.children.get(segments.get(idx++));
+        }
+
+        return false;
+    }
+
+    /**
+     * @param path
+     * @return the segments of the path, e.g. / =&gt; [], /a =&gt; [a] and
+     * /a/ =&gt; [a, ""]
+     */
+    static List<String> segments(String path) {
+        if (path == null || path.isEmpty() || "/".equals(path)) {
+            return List.of();
+        }
+
+        var _path = path.startsWith("/") ? path.substring(1) : path;
+
+        return List.of(_path.split("/", -1));
+    }
+
+    /**
+     * path() normalizes the trailing slashes of both its path and the
+     * request path, e.g. path('/db/') matches /db and path('/db') matches
+     * /db/ and /db//
+     *
+     * @return the number of segments without the trailing empty ones
+     */
+    private static int exactEnd(List<String> segments) {
+        var ret = segments.size();
+
+        while (ret > 0 && segments.get(ret - 1).isEmpty()) {
+            ret--;
+        }
+
+        return ret;
+    }
+
+    /**
+     * path-prefix matches at segment boundaries, ignoring the trailing slash
+     */
+    private static String normalizePrefix(String prefix) {
+        var ret = prefix.startsWith("/") ? prefix : "/" + prefix;
+
+        while (ret.length() > 1 && ret.endsWith("/")) {
+            ret = ret.substring(0, ret.length() - 1);
+        }
+
+        return ret;
+    }
+
+    private static List<String> literalPrefix(String template) {
+        var ret = new ArrayList<String>();
+        var segments = segments(template.startsWith("/") ? template : "/" + template);
+
+        for (var idx = 0; idx < segments.size(); idx++) {
+            var segment = segments.get(idx);
+
+            // the last segment might match a trailing slash
+            if (idx == segments.size() - 1
+                    || segment.isEmpty()
+                    || segment.contains("{")
+                    || segment.contains("*")) {
+                break;
+            }
+
+            ret.add(segment);
+        }
+
+        return ret;
+    }
+
+    /**
+     * @return the methods or null if the value is not a list of methods
+     */
+    private static Set<HttpString> methods(String value) {
+        var _value = value.trim();
+
+        if (_value.startsWith("{") && _value.endsWith("}")) {
+            _value = _value.substring(1, _value.length() - 1);
+        }
+
+        var names = Stream.of(_value.split(","))
+                .map(String::trim)
+                .map(n -> n.length() > 1
+                        && (n.startsWith("\"") && n.endsWith("\"")
+                        || n.startsWith("'") && n.endsWith("'"))
+                        ? n.substring(1, n.length() - 1)
+                        : n)
+                .collect(Collectors.toList());
+
+        if (names.isEmpty() || names.stream().anyMatch(n -> !METHOD_NAME.matcher(n).matches())) {
+            return null;
+        }
+
+        return names.stream()
+                .map(HttpString::tryFromString)
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * splits the predicate in the terms of a top level conjunction
+     *
+     * @return the terms or null if the predicate is not a conjunction, i.e.
+     * it uses or or not at the top level
+     */
+    static List<String> conjuncts(String predicate) {
+        var ret = new ArrayList<String>();
+        var depth = 0;
+        var start = 0;
+        var idx = 0;
+        var len = predicate.length();
+
+        while (idx < len) {
+            var c = predicate.charAt(idx);
+
+            if (c == '"' || c == '\'') {
+                var end = predicate.indexOf(c, idx + 1);
+
+                if (end < 0) {
+                    return null;
+                }
+
+                idx = end + 1;
+                continue;
+            } else if (c == '(' || c == '[' || c == '{') {
+                depth++;
+            } else if (c == ')' || c == ']' || c == '}') {
+                depth--;
+            } else if (depth == 0 && (idx == 0 || Character.isWhitespace(predicate.charAt(idx - 1)))) {
+                if (keywordAt(predicate, idx, "or") || keywordAt(predicate, idx, "not")) {
+                    return null;
+                } else if (keywordAt(predicate, idx, "and")) {
+                    ret.add(predicate.substring(start, idx).trim());
+                    idx += 3;
+                    start = idx;
+                    continue;
+                }
+            }
+
+            idx++;
+        }
+
+        ret.add(predicate.substring(start).trim());
+
+        return ret.stream().anyMatch(String::isEmpty) ? null : ret;
+    }
+
+    private static boolean keywordAt(String s, int idx, String keyword) {
+        var end = idx + keyword.length();
+
+        return s.startsWith(keyword, idx)
+                && (end == s.length()
+                || Character.isWhitespace(s.charAt(end))
+                || s.charAt(end) == '(');
+    }
+
+    private static class Node {
+        final HashMap<String, Node> children = new HashMap<>();
+        final List<Entry> prefix = new ArrayList<>();
+        final List<Entry> exact = new ArrayList<>();
+    }
+
+    private static class Entry {
+        final Predicate predicate;
+        // true if the path and method of the trie fully determine the match
+        final boolean pure;
+
+        Entry(Predicate predicate, boolean pure) {
+            this.predicate = predicate;
+            this.pure = pure;
+        }
+
+        boolean matches(HttpServerExchange exchange) {
+            return this.pure || this.predicate.resolve(exchange);
+        }
+    }
+}
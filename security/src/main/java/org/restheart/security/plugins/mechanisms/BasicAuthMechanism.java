@@ -23,8 +23,15 @@ package org.restheart.security.plugins.mechanisms;
 import io.undertow.security.api.SecurityContext;
 import io.undertow.security.idm.IdentityManager;
 import io.undertow.server.HttpServerExchange;
+import io.undertow.util.AttachmentKey;
+import io.undertow.util.Headers;
+import static io.undertow.util.StatusCodes.SERVICE_UNAVAILABLE;
 import static io.undertow.util.StatusCodes.UNAUTHORIZED;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
 import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 import org.restheart.ConfigurationException;
 import static org.restheart.plugins.ConfigurablePlugin.argValue;
 import org.restheart.plugins.InjectConfiguration;
@@ -32,6 +39,8 @@ import org.restheart.plugins.InjectPluginsRegistry;
 import org.restheart.plugins.PluginsRegistry;
 import org.restheart.plugins.RegisterPlugin;
 import org.restheart.plugins.security.AuthMechanism;
+import org.restheart.security.plugins.authenticators.BCryptVerifier;
+import org.restheart.security.plugins.authenticators.MongoRealmAuthenticator;
 
 /**
  *
@@ -47,6 +56,12 @@ public class BasicAuthMechanism extends io.undertow.security.impl.BasicAuthentic
     public static final String SILENT_HEADER_KEY = "No-Auth-Challenge";
     public static final String SILENT_QUERY_PARAM_KEY = "noauthchallenge";
 
+    private static final AttachmentKey<Boolean> SATURATED = AttachmentKey.create(Boolean.class);
+
+    private static final String BASIC_PREFIX = "Basic ";
+
+    private IdentityManager identityManager = null;
+
     public BasicAuthMechanism()
             throws ConfigurationException {
         super("RESTHeart Realm", "basicAuthMechanism", false);
@@ -65,6 +80,8 @@ public class BasicAuthMechanism extends io.undertow.security.impl.BasicAuthentic
     }
 
     private void setIdentityManager(IdentityManager idm) {
+        this.identityManager = idm;
+
         try {
             var clazz = Class.forName("io.undertow.security.impl.BasicAuthenticationMechanism");
             var idmF = clazz.getDeclaredField("identityManager");
@@ -81,7 +98,11 @@ public class BasicAuthMechanism extends io.undertow.security.impl.BasicAuthentic
 
     @Override
     public ChallengeResult sendChallenge(final HttpServerExchange exchange, final SecurityContext securityContext) {
-        if (exchange.getRequestHeaders().contains(SILENT_HEADER_KEY)
+        if (exchange.getAttachment(SATURATED) != null) {
+            // credentials could not be verified, the client should retry
+            exchange.getResponseHeaders().put(Headers.RETRY_AFTER, "1");
+            return new ChallengeResult(true, SERVICE_UNAVAILABLE);
+        } else if (exchange.getRequestHeaders().contains(SILENT_HEADER_KEY)
                 || exchange.getQueryParameters().containsKey(SILENT_QUERY_PARAM_KEY)) {
             return new ChallengeResult(true, UNAUTHORIZED);
         } else {
@@ -89,9 +110,70 @@ public class BasicAuthMechanism extends io.undertow.security.impl.BasicAuthentic
         }
     }
 
+    /**
+     * with mongoRealmAuthenticator and bcrypt hashed passwords, starts the
+     * bcrypt check so that the request is suspended, instead of blocking the
+     * worker thread, while it executes
+     */
+    @Override
+    public CompletionStage<?> preAuthenticate(final HttpServerExchange exchange) {
+        if (!(this.identityManager instanceof MongoRealmAuthenticator)) {
+            return null;
+        }
+
+        var header = exchange.getRequestHeaders().getFirst(Headers.AUTHORIZATION);
+
+        if (header == null || !header.regionMatches(true, 0, BASIC_PREFIX, 0, BASIC_PREFIX.length())) {
+            return null;
+        }
+
+        String credentials;
+
+        try {
+            credentials = new String(Base64.getDecoder()
+                    .decode(header.substring(BASIC_PREFIX.length()).trim()),
+                    StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException iae) {
+            return null;
+        }
+
+        var idx = credentials.indexOf(':');
+
+        if (idx < 0) {
+            return null;
+        }
+
+        var check = ((MongoRealmAuthenticator) this.identityManager).verifyAsync(
+                credentials.substring(0, idx),
+                credentials.substring(idx + 1).toCharArray());
+
+        if (check == null) {
+            return null;
+        }
+
+        return check.exceptionally(t -> {
+            var cause = t instanceof CompletionException ? t.getCause() : t;
+
+            if (cause instanceof BCryptVerifier.SaturatedException) {
+                exchange.putAttachment(SATURATED, true);
+            }
+
+            return false;
+        });
+    }
+
     @Override
     public AuthenticationMechanismOutcome authenticate(final HttpServerExchange exchange,
             final SecurityContext securityContext) {
-        return super.authenticate(exchange, securityContext);
+        if (exchange.getAttachment(SATURATED) != null) {
+            return AuthenticationMechanismOutcome.NOT_AUTHENTICATED;
+        }
+
+        try {
+            return super.authenticate(exchange, securityContext);
+        } catch (BCryptVerifier.SaturatedException se) {
+            exchange.putAttachment(SATURATED, true);
+            return AuthenticationMechanismOutcome.NOT_AUTHENTICATED;
+        }
     }
 }
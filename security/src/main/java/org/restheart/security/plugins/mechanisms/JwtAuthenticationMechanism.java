@@ -28,6 +28,10 @@ import com.auth0.jwt.exceptions.JWTVerificationException;
 import com.auth0.jwt.interfaces.Claim;
 import com.auth0.jwt.interfaces.DecodedJWT;
 import com.auth0.jwt.interfaces.Verification;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.RatioGauge;
+import com.codahale.metrics.SharedMetricRegistries;
 import com.google.common.net.HttpHeaders;
 import io.undertow.security.api.AuthenticationMechanism;
 import io.undertow.security.api.SecurityContext;
@@ -42,13 +46,17 @@ import java.security.cert.CertificateFactory;
 import java.security.cert.X509Certificate;
 import java.security.interfaces.RSAPublicKey;
 import java.util.Base64;
+import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.function.Consumer;
 import org.apache.commons.codec.binary.StringUtils;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.restheart.ConfigurationException;
+import org.restheart.cache.Cache;
+import org.restheart.cache.CacheFactory;
 import org.restheart.exchange.Request;
 import org.restheart.idm.JwtAccount;
 import static org.restheart.plugins.ConfigurablePlugin.argValue;
@@ -83,6 +91,16 @@ public class JwtAuthenticationMechanism implements AuthMechanism, ConsumingPlugi
     private String issuer;
     private String audience;
 
+    private boolean cacheEnabled = true;
+    private Integer cacheSize = 1_000; // 1000 entries
+    private Integer cacheTTL = 10 * 60 * 1_000; // 10 minutes
+
+    // verified tokens by sha-256 digest, entries are also evicted when the
+    // token expires
+    private Cache<String, VerifiedJwt> cache = null;
+    private Meter cacheHits;
+    private Meter cacheMisses;
+
     @InjectConfiguration
     public void init(Map<String, Object> args) throws ConfigurationException {
         // get configuration arguments
@@ -125,6 +143,44 @@ public class JwtAuthenticationMechanism implements AuthMechanism, ConsumingPlugi
         }
 
         this.jwtVerifier = v.build();
+
+        if (args.containsKey("cache-enabled")) {
+            this.cacheEnabled = argValue(args, "cache-enabled");
+        }
+
+        if (this.cacheEnabled) {
+            if (args.containsKey("cache-size")) {
+                this.cacheSize = argValue(args, "cache-size");
+            }
+
+            if (args.containsKey("cache-ttl")) {
+                this.cacheTTL = argValue(args, "cache-ttl");
+            }
+
+            this.cache = CacheFactory.createLocalCache(this.cacheSize,
+                    Cache.EXPIRE_POLICY.AFTER_WRITE,
+                    this.cacheTTL);
+
+            // initialize default metrics registry name, if not already set
+            if (SharedMetricRegistries.tryGetDefault() == null) {
+                SharedMetricRegistries.setDefault("default");
+            }
+
+            var registry = SharedMetricRegistries.tryGetDefault();
+
+            this.cacheHits = registry.meter("jwtAuthenticationMechanism.cache.hits");
+            this.cacheMisses = registry.meter("jwtAuthenticationMechanism.cache.misses");
+            registry.gauge("jwtAuthenticationMechanism.cache.hit-rate",
+                    () -> new RatioGauge() {
+                @Override
+                protected RatioGauge.Ratio getRatio() {
+                    return RatioGauge.Ratio.of(cacheHits.getCount(),
+                            cacheHits.getCount() + cacheMisses.getCount());
+                }
+            });
+            registry.gauge("jwtAuthenticationMechanism.cache.size",
+                    () -> (Gauge<Integer>) () -> this.cache.asMap().size());
+        }
     }
 
     @Override
@@ -139,63 +195,51 @@ public class JwtAuthenticationMechanism implements AuthMechanism, ConsumingPlugi
                             Base64.getUrlDecoder().decode(token));
                 }
 
-                DecodedJWT verifiedJwt = jwtVerifier.verify(token);
+                VerifiedJwt verified = null;
+                String digest = null;
+
+                if (this.cache != null) {
+                    digest = DigestUtils.sha256Hex(token);
+                    var cached = this.cache.get(digest);
 
-                String subject = verifiedJwt.getClaim(usernameClaim).asString();
+                    if (cached != null && cached.isPresent()) {
+                        if (cached.get().isExpired()) {
+                            this.cache.invalidate(digest);
+                        } else {
+                            verified = cached.get();
+                        }
+                    }
 
-                if (subject == null) {
-                    LOGGER.debug("username not specified with claim {}", usernameClaim);
-                    sc.authenticationFailed("JwtAuthenticationManager", "username not specified");
-                    return AuthenticationMechanismOutcome.NOT_AUTHENTICATED;
+                    if (verified != null) {
+                        this.cacheHits.mark();
+                    } else {
+                        this.cacheMisses.mark();
+                    }
                 }
 
-                Set<String> actualRoles = new LinkedHashSet<>();
-
-                if (rolesClaim != null) {
-                    Claim _roles = verifiedJwt.getClaim(rolesClaim);
-
-                    if (_roles != null && !_roles.isNull()) {
-                        try {
-                            String[] __roles = _roles.asArray(String.class);
-
-                            if (__roles != null) {
-                                for (String role : __roles) {
-                                    actualRoles.add(role);
-                                }
-                            } else {
-                                LOGGER.debug("roles is not an array: {}", 
-                                        _roles.asString());
-                                return AuthenticationMechanismOutcome.NOT_AUTHENTICATED;
-                            }
-                        } catch (JWTDecodeException ex) {
-                            LOGGER.warn("Jwt cannot get roles from claim {}, "
-                                    + "extepected an array of strings: {}",
-                                    rolesClaim,
-                                    _roles.toString());
-                        }
+                if (verified == null) {
+                    verified = verify(token, sc);
+
+                    if (verified == null) {
+                        return AuthenticationMechanismOutcome.NOT_AUTHENTICATED;
+                    } else if (this.cache != null) {
+                        this.cache.put(digest, verified);
                     }
-                } else if (this.fixedRoles != null) {
-                    actualRoles.addAll(this.fixedRoles);
                 }
 
                 if (this.extraJwtVerifier != null) {
-                    this.extraJwtVerifier.accept(verifiedJwt);
+                    this.extraJwtVerifier.accept(verified.jwt);
                 }
 
-                var jwtPayload = new String(Base64.getUrlDecoder()
-                        .decode(verifiedJwt.getPayload()),
-                        Charset.forName("UTF-8"));
-
-                JwtAccount account = new JwtAccount(
-                        subject,
-                        actualRoles,
-                        jwtPayload
-                );
+                // the account is built per request, the cached claims are
+                // never shared
+                var account = verified.account();
 
                 sc.authenticationComplete(account,
                         "JwtAuthenticationManager", false);
 
-                Request.of(hse).addXForwardedHeader("Jwt-Payload", jwtPayload);
+                Request.of(hse).addXForwardedHeader("Jwt-Payload",
+                        account.getJwtPayload());
 
                 return AuthenticationMechanismOutcome.AUTHENTICATED;
             }
@@ -208,6 +252,97 @@ public class JwtAuthenticationMechanism implements AuthMechanism, ConsumingPlugi
         return AuthenticationMechanismOutcome.NOT_ATTEMPTED;
     }
 
+    /**
+     * verifies the token and builds the account
+     *
+     * @param token
+     * @param sc
+     * @return the verified token or null if it does not specify a valid
+     * account
+     * @throws JWTVerificationException
+     */
+    private VerifiedJwt verify(String token, SecurityContext sc)
+            throws JWTVerificationException {
+        DecodedJWT verifiedJwt = jwtVerifier.verify(token);
+
+        String subject = verifiedJwt.getClaim(usernameClaim).asString();
+
+        if (subject == null) {
+            LOGGER.debug("username not specified with claim {}", usernameClaim);
+            sc.authenticationFailed("JwtAuthenticationManager", "username not specified");
+            return null;
+        }
+
+        Set<String> actualRoles = new LinkedHashSet<>();
+
+        if (rolesClaim != null) {
+            Claim _roles = verifiedJwt.getClaim(rolesClaim);
+
+            if (_roles != null && !_roles.isNull()) {
+                try {
+                    String[] __roles = _roles.asArray(String.class);
+
+                    if (__roles != null) {
+                        for (String role : __roles) {
+                            actualRoles.add(role);
+                        }
+                    } else {
+                        LOGGER.debug("roles is not an array: {}",
+                                _roles.asString());
+                        return null;
+                    }
+                } catch (JWTDecodeException ex) {
+                    LOGGER.warn("Jwt cannot get roles from claim {}, "
+                            + "extepected an array of strings: {}",
+                            rolesClaim,
+                            _roles.toString());
+                }
+            }
+        } else if (this.fixedRoles != null) {
+            actualRoles.addAll(this.fixedRoles);
+        }
+
+        var jwtPayload = new String(Base64.getUrlDecoder()
+                .decode(verifiedJwt.getPayload()),
+                Charset.forName("UTF-8"));
+
+        return new VerifiedJwt(verifiedJwt, subject, actualRoles, jwtPayload);
+    }
+
+    /**
+     * the claims of a verified token, valid until the token expires
+     */
+    private static class VerifiedJwt {
+        final DecodedJWT jwt;
+        final String subject;
+        final Set<String> roles;
+        final String jwtPayload;
+        final long expiresAt;
+
+        VerifiedJwt(DecodedJWT jwt, String subject, Set<String> roles, String jwtPayload) {
+            this.jwt = jwt;
+            this.subject = subject;
+            this.roles = Collections.unmodifiableSet(roles);
+            this.jwtPayload = jwtPayload;
+            this.expiresAt = jwt.getExpiresAt() == null
+                    ? Long.MAX_VALUE
+                    : jwt.getExpiresAt().getTime();
+        }
+
+        /**
+         * @return a new account with the claims
+         */
+        JwtAccount account() {
+            return new JwtAccount(this.subject,
+                    new LinkedHashSet<>(this.roles),
+                    this.jwtPayload);
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() >= this.expiresAt;
+        }
+    }
+
     @Override
     public ChallengeResult sendChallenge(final HttpServerExchange exchange,
             final SecurityContext securityContext) {
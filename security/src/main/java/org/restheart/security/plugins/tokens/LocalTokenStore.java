@@ -0,0 +1,87 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-security
+ * %%
+ * Copyright (C) 2018 - 2020 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.security.plugins.tokens;
+
+import java.util.Optional;
+import java.util.Set;
+import org.restheart.cache.Cache;
+import org.restheart.cache.CacheFactory;
+import org.restheart.idm.PwdCredentialAccount;
+
+/**
+ * TokenStore that keeps the auth tokens in memory; tokens expire ttl
+ * minutes after the last use.
+ *
+ * Tokens are not shared between the nodes of a cluster, see MongoTokenStore.
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class LocalTokenStore implements TokenStore {
+    private final Cache<String, PwdCredentialAccount> cache;
+
+    /**
+     *
+     * @param ttl the tokens time to live in minutes
+     */
+    public LocalTokenStore(int ttl) {
+        this.cache = CacheFactory.createLocalCache(Long.MAX_VALUE,
+                Cache.EXPIRE_POLICY.AFTER_READ,
+                ttl * 60 * 1_000);
+    }
+
+    @Override
+    public PwdCredentialAccount get(String id) {
+        var _account = this.cache.get(id);
+
+        return _account != null && _account.isPresent()
+                ? _account.get()
+                : null;
+    }
+
+    @Override
+    public PwdCredentialAccount putIfAbsent(String id, PwdCredentialAccount account) {
+        var existing = this.cache.asMap().putIfAbsent(id, Optional.of(account));
+
+        return existing != null && existing.isPresent()
+                ? existing.get()
+                : account;
+    }
+
+    @Override
+    public void update(String id, Set<String> roles) {
+        this.cache.asMap().computeIfPresent(id, (k, v) -> v.isPresent()
+                && !v.get().getRoles().equals(roles)
+                ? Optional.of(new PwdCredentialAccount(id, v.get().getCredentials().getPassword(), roles))
+                : v);
+    }
+
+    @Override
+    public void invalidate(String id) {
+        this.cache.invalidate(id);
+    }
+
+    /**
+     * @return the cache
+     */
+    public Cache<String, PwdCredentialAccount> getCache() {
+        return cache;
+    }
+}
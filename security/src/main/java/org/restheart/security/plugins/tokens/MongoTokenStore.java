@@ -0,0 +1,410 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-security
+ * %%
+ * Copyright (C) 2018 - 2020 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.security.plugins.tokens;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.mongodb.MongoClient;
+import com.mongodb.MongoCommandException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import static com.mongodb.client.model.Filters.and;
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.ne;
+import com.mongodb.client.model.IndexOptions;
+import static com.mongodb.client.model.Updates.set;
+import io.undertow.util.HexConverter;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import org.bson.BsonArray;
+import org.bson.BsonDateTime;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonString;
+import org.restheart.cache.Cache;
+import org.restheart.cache.CacheFactory;
+import org.restheart.idm.PwdCredentialAccount;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * TokenStore that keeps the auth tokens in a MongoDB collection, so that a
+ * token issued by a node is valid on all the nodes of a cluster.
+ *
+ * The collection only stores the SHA-256 digest of the tokens, as _id, with
+ * the account id and roles; a token is verified looking up its digest. The
+ * plain tokens are only kept in memory by the node that issued them, to
+ * return them again to their account: an account can have a token per node.
+ *
+ * Tokens expire ttl minutes after the last use via a TTL index; the
+ * expiration is moved forward when less than half of the ttl is left.
+ *
+ * Verified tokens are kept in a small near cache, so that verifying a token
+ * doesn't require a query. On a Replica Set, the entries of the near cache
+ * are invalidated watching the changes of the tokens collection; otherwise
+ * they are only invalidated by the near cache TTL. The watcher is stopped by
+ * close(), also invoked on JVM shutdown.
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class MongoTokenStore implements TokenStore {
+    private static final Logger LOGGER
+            = LoggerFactory.getLogger(MongoTokenStore.class);
+
+    private static final long RESTART_DELAY = 1_000;
+
+    // error code of $changeStream on a standalone instance
+    private static final int CHANGE_STREAM_NOT_SUPPORTED = 40573;
+
+    private final MongoCollection<BsonDocument> coll;
+    private final long ttl;
+
+    // verified tokens by digest
+    private final Cache<String, Entry> nearCache;
+
+    // plain tokens issued by this node by account id
+    private final Cache<String, char[]> issued;
+
+    final Thread watcher;
+    private final Thread shutdownHook;
+    private volatile boolean closed = false;
+    private volatile MongoCursor<?> watching = null;
+
+    /**
+     *
+     * @param mclient
+     * @param db
+     * @param collection
+     * @param ttl the tokens time to live in minutes
+     * @param nearCacheSize
+     * @param nearCacheTTL the near cache time to live in milliseconds
+     */
+    public MongoTokenStore(MongoClient mclient,
+            String db,
+            String collection,
+            int ttl,
+            int nearCacheSize,
+            int nearCacheTTL) {
+        this(mclient.getDatabase(db).getCollection(collection, BsonDocument.class),
+                ttl, nearCacheSize, nearCacheTTL);
+    }
+
+    MongoTokenStore(MongoCollection<BsonDocument> coll,
+            int ttl,
+            int nearCacheSize,
+            int nearCacheTTL) {
+        this.coll = coll;
+        this.ttl = ttl * 60 * 1_000l;
+        this.nearCache = CacheFactory.createLocalCache(nearCacheSize,
+                Cache.EXPIRE_POLICY.AFTER_WRITE,
+                nearCacheTTL);
+        this.issued = CacheFactory.createLocalCache(Long.MAX_VALUE,
+                Cache.EXPIRE_POLICY.AFTER_READ,
+                this.ttl);
+
+        this.coll.createIndex(new BsonDocument("expireAt", new BsonInt32(1)),
+                new IndexOptions().expireAfter(0l, TimeUnit.SECONDS));
+
+        this.coll.createIndex(new BsonDocument("account", new BsonInt32(1)));
+
+        this.watcher = new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("token-store-watcher-%d")
+                .build()
+                .newThread(this::watch);
+
+        this.watcher.start();
+
+        this.shutdownHook = new Thread(this::stopWatching);
+        Runtime.getRuntime().addShutdownHook(this.shutdownHook);
+    }
+
+    /**
+     * stops watching the changes of the tokens collection
+     */
+    @Override
+    public void close() {
+        try {
+            Runtime.getRuntime().removeShutdownHook(this.shutdownHook);
+        } catch (IllegalStateException ise) {
+            // shutdown in progress
+        }
+
+        stopWatching();
+    }
+
+    private void stopWatching() {
+        this.closed = true;
+        this.watcher.interrupt();
+
+        var cursor = this.watching;
+
+        if (cursor != null) {
+            try {
+                cursor.close();
+            } catch (Throwable t) {
+                LOGGER.debug("Error closing the auth tokens change stream", t);
+            }
+        }
+    }
+
+    @Override
+    public PwdCredentialAccount get(String id) {
+        var _token = this.issued.get(id);
+
+        if (_token == null || !_token.isPresent()) {
+            return null;
+        }
+
+        var account = verify(id, _token.get());
+
+        if (account == null) {
+            // invalidated or expired
+            this.issued.invalidate(id);
+        }
+
+        return account;
+    }
+
+    @Override
+    public PwdCredentialAccount verify(String id, char[] token) {
+        var digest = digest(token);
+        var now = System.currentTimeMillis();
+        var _entry = this.nearCache.get(digest);
+
+        Entry entry;
+
+        if (_entry != null && _entry.isPresent() && _entry.get().expireAt > now) {
+            entry = _entry.get();
+        } else {
+            entry = find(digest, now);
+
+            if (entry == null) {
+                this.nearCache.invalidate(digest);
+                return null;
+            }
+
+            this.nearCache.put(digest, entry);
+        }
+
+        if (!entry.id.equals(id)) {
+            return null;
+        }
+
+        if (entry.expireAt - now < this.ttl / 2) {
+            // expire ttl after last use
+            entry.expireAt = now + this.ttl;
+
+            this.coll.updateOne(eq("_id", digest),
+                    set("expireAt", new BsonDateTime(entry.expireAt)));
+        }
+
+        return new PwdCredentialAccount(id, token, entry.roles);
+    }
+
+    @Override
+    public PwdCredentialAccount putIfAbsent(String id, PwdCredentialAccount account) {
+        var existing = get(id);
+
+        if (existing != null) {
+            return existing;
+        }
+
+        var now = System.currentTimeMillis();
+        var token = account.getCredentials().getPassword();
+        var digest = digest(token);
+        var roles = new TreeSet<String>(account.getRoles());
+
+        this.coll.insertOne(new BsonDocument("_id", new BsonString(digest))
+                .append("account", new BsonString(id))
+                .append("roles", roles(roles))
+                .append("expireAt", new BsonDateTime(now + this.ttl)));
+
+        this.nearCache.put(digest, new Entry(id, roles, now + this.ttl));
+        this.issued.put(id, token);
+
+        return account;
+    }
+
+    @Override
+    public void update(String id, Set<String> roles) {
+        var _roles = roles(roles);
+
+        var result = this.coll.updateMany(
+                and(eq("account", id), ne("roles", _roles)),
+                set("roles", _roles));
+
+        if (result.getModifiedCount() > 0) {
+            invalidateNearCache(id);
+        }
+    }
+
+    @Override
+    public void invalidate(String id) {
+        this.coll.deleteMany(eq("account", id));
+        this.issued.invalidate(id);
+        invalidateNearCache(id);
+    }
+
+    private void invalidateNearCache(String id) {
+        this.nearCache.asMap().values()
+                .removeIf(e -> e.isPresent() && e.get().id.equals(id));
+    }
+
+    private Entry find(String digest, long now) {
+        var doc = this.coll.find(eq("_id", digest)).first();
+
+        if (doc == null
+                || !doc.isString("account")
+                || !doc.isDateTime("expireAt")
+                || doc.getDateTime("expireAt").getValue() <= now) {
+            return null;
+        }
+
+        var roles = new TreeSet<String>();
+
+        if (doc.isArray("roles")) {
+            doc.getArray("roles").stream()
+                    .filter(r -> r.isString())
+                    .map(r -> r.asString().getValue())
+                    .forEachOrdered(roles::add);
+        }
+
+        return new Entry(doc.getString("account").getValue(),
+                roles,
+                doc.getDateTime("expireAt").getValue());
+    }
+
+    /**
+     * @param token
+     * @return the hex SHA-256 digest of the token
+     */
+    static String digest(char[] token) {
+        try {
+            var bytes = StandardCharsets.UTF_8.encode(CharBuffer.wrap(token));
+            var md = MessageDigest.getInstance("SHA-256");
+            md.update(bytes);
+            return HexConverter.convertToHexString(md.digest());
+        } catch (NoSuchAlgorithmException nsae) {
+            // every Java platform supports SHA-256
+            throw new IllegalStateException(nsae);
+        }
+    }
+
+    private static BsonArray roles(Set<String> roles) {
+        var ret = new BsonArray();
+        new TreeSet<>(roles).forEach(r -> ret.add(new BsonString(r)));
+        return ret;
+    }
+
+    /**
+     * invalidates the near cache entries of the changed tokens
+     */
+    private void watch() {
+        BsonDocument resumeToken = null;
+
+        while (!this.closed) {
+            var received = false;
+
+            try {
+                var stream = this.coll.watch();
+
+                if (resumeToken != null) {
+                    stream = stream.resumeAfter(resumeToken);
+                }
+
+                try (var cursor = stream.iterator()) {
+                    this.watching = cursor;
+
+                    if (this.closed) {
+                        return;
+                    }
+
+                    LOGGER.debug("Watching the auth tokens");
+
+                    while (cursor.hasNext()) {
+                        var event = cursor.next();
+                        received = true;
+                        resumeToken = event.getResumeToken();
+
+                        var key = event.getDocumentKey();
+
+                        if (key != null && key.isString("_id")) {
+                            this.nearCache.invalidate(key.getString("_id").getValue());
+                        } else {
+                            this.nearCache.asMap().clear();
+                        }
+                    }
+                }
+            } catch (MongoCommandException mce) {
+                if (this.closed) {
+                    return;
+                }
+
+                if (mce.getErrorCode() == CHANGE_STREAM_NOT_SUPPORTED) {
+                    LOGGER.warn("Cannot watch the auth tokens: MongoDB is not "
+                            + "a Replica Set. The near cache is only invalidated "
+                            + "by its TTL");
+                    return;
+                }
+
+                LOGGER.warn("Error watching the auth tokens, restarting: {}", mce.getMessage());
+            } catch (Throwable t) {
+                if (this.closed) {
+                    return;
+                }
+
+                LOGGER.warn("Error watching the auth tokens, restarting: {}", t.getMessage());
+            } finally {
+                this.watching = null;
+            }
+
+            if (resumeToken == null || !received) {
+                // changes might have been missed
+                resumeToken = null;
+                this.nearCache.asMap().clear();
+            }
+
+            try {
+                Thread.sleep(RESTART_DELAY);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private static class Entry {
+        final String id;
+        final Set<String> roles;
+        volatile long expireAt;
+
+        Entry(String id, Set<String> roles, long expireAt) {
+            this.id = id;
+            this.roles = roles;
+            this.expireAt = expireAt;
+        }
+    }
+}
@@ -21,6 +21,7 @@
 package org.restheart.security.plugins.tokens;
 
 import com.google.common.collect.Sets;
+import com.mongodb.MongoClient;
 import io.undertow.security.idm.Account;
 import io.undertow.security.idm.Credential;
 import io.undertow.security.idm.PasswordCredential;
@@ -29,16 +30,14 @@ import java.math.BigInteger;
 import java.security.SecureRandom;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
-import java.util.Arrays;
 import java.util.Map;
-import java.util.Optional;
 import org.restheart.ConfigurationException;
 import org.restheart.cache.Cache;
-import org.restheart.cache.CacheFactory;
 import org.restheart.exchange.JsonProxyRequest;
 import org.restheart.idm.PwdCredentialAccount;
 import org.restheart.plugins.ConfigurablePlugin;
 import org.restheart.plugins.InjectConfiguration;
+import org.restheart.plugins.InjectMongoClient;
 import org.restheart.plugins.InjectPluginsRegistry;
 import org.restheart.plugins.PluginsRegistry;
 import org.restheart.plugins.RegisterPlugin;
@@ -59,11 +58,18 @@ public class RndTokenManager implements TokenManager {
 
     private static final SecureRandom RND_GENERATOR = new SecureRandom();
 
-    private static Cache<String, PwdCredentialAccount> CACHE = null;
+    private TokenStore store = null;
 
     private int ttl = -1;
     private String srvURI = null;
 
+    private String storeType = "memory";
+    // not mounted by default, the tokens are not exposed by the API
+    private String storeDb = "restheart-tokens";
+    private String storeCollection = "tokens";
+    private Integer nearCacheSize = 1_000; // 1000 entries
+    private Integer nearCacheTTL = 10 * 1_000; // 10 seconds
+
     @InjectConfiguration
     @InjectPluginsRegistry
     public void init(Map<String, Object> confArgs,
@@ -72,9 +78,34 @@ public class RndTokenManager implements TokenManager {
 
         this.srvURI = ConfigurablePlugin.argValue(confArgs, "srv-uri");
 
-        CACHE = CacheFactory.createLocalCache(Long.MAX_VALUE,
-                Cache.EXPIRE_POLICY.AFTER_READ,
-                ttl * 60 * 1_000);
+        if (confArgs.containsKey("store")) {
+            this.storeType = ConfigurablePlugin.argValue(confArgs, "store");
+        }
+
+        if ("mongo".equals(this.storeType)) {
+            if (confArgs.containsKey("store-db")) {
+                this.storeDb = ConfigurablePlugin.argValue(confArgs, "store-db");
+            }
+
+            if (confArgs.containsKey("store-collection")) {
+                this.storeCollection = ConfigurablePlugin.argValue(confArgs, "store-collection");
+            }
+
+            if (confArgs.containsKey("near-cache-size")) {
+                this.nearCacheSize = ConfigurablePlugin.argValue(confArgs, "near-cache-size");
+            }
+
+            if (confArgs.containsKey("near-cache-ttl")) {
+                this.nearCacheTTL = ConfigurablePlugin.argValue(confArgs, "near-cache-ttl");
+            }
+
+            // the store is created when the mongo client is injected
+        } else if ("memory".equals(this.storeType)) {
+            this.store = new LocalTokenStore(this.ttl);
+        } else {
+            throw new ConfigurationException("wrong configuration of "
+                    + "rndTokenManager, store valid values are memory, mongo");
+        }
 
         // add the auth token header to CORS header Access-Control-Expose-Headers
         // using helper interceptor tokenCORSResponseInterceptor
@@ -96,6 +127,29 @@ public class RndTokenManager implements TokenManager {
         }
     }
 
+    @InjectMongoClient
+    public void setMongoClient(MongoClient mclient) {
+        if ("mongo".equals(this.storeType)) {
+            try {
+                var previous = this.store;
+
+                this.store = new MongoTokenStore(mclient,
+                        this.storeDb,
+                        this.storeCollection,
+                        this.ttl,
+                        this.nearCacheSize,
+                        this.nearCacheTTL);
+
+                if (previous != null) {
+                    // stops watching the tokens
+                    previous.close();
+                }
+            } catch (Throwable t) {
+                LOGGER.error("Error creating the auth tokens store", t);
+            }
+        }
+    }
+
     @Override
     public Account verify(final Account account) {
         return account;
@@ -103,12 +157,13 @@ public class RndTokenManager implements TokenManager {
 
     @Override
     public Account verify(final String id, final Credential credential) {
-        final Optional<PwdCredentialAccount> _account = CACHE.get(id);
+        if (this.store == null) {
+            LOGGER.error("Cannot verify auth token: token store is not available.");
+            return null;
+        }
 
-        return _account != null
-                && _account.isPresent()
-                && verifyToken(_account.get(), credential)
-                ? _account.get()
+        return credential instanceof PasswordCredential
+                ? this.store.verify(id, ((PasswordCredential) credential).getPassword())
                 : null;
     }
 
@@ -117,65 +172,64 @@ public class RndTokenManager implements TokenManager {
         return null;
     }
 
-    private boolean verifyToken(final PwdCredentialAccount account,
-            final Credential credential) {
-        if (credential instanceof PasswordCredential) {
-            char[] token = ((PasswordCredential) credential).getPassword();
-            char[] expectedToken = account.getCredentials().getPassword();
-
-            return Arrays.equals(token, expectedToken);
-        }
-        return false;
+    /**
+     * @return the cache of the memory token store, or null if using another
+     * store
+     * @deprecated use getStore()
+     */
+    @Deprecated
+    public Cache<String, PwdCredentialAccount> getCACHE() {
+        return this.store instanceof LocalTokenStore
+                ? ((LocalTokenStore) this.store).getCache()
+                : null;
     }
 
-    public Cache<String, PwdCredentialAccount> getCACHE() {
-        return CACHE;
+    /**
+     * @return the token store
+     */
+    public TokenStore getStore() {
+        return store;
     }
 
     @Override
     public PasswordCredential get(Account account) {
-        Optional<PwdCredentialAccount> cachedAccount = CACHE
-                .get(account.getPrincipal().getName());
+        if (this.store == null) {
+            LOGGER.error("Cannot get auth token: token store is not available.");
+            return null;
+        }
+
+        var id = account.getPrincipal().getName();
+        var cachedAccount = this.store.get(id);
 
-        if (cachedAccount != null && cachedAccount.isPresent()) {
-            return cachedAccount.get().getCredentials();
+        if (cachedAccount != null) {
+            return cachedAccount.getCredentials();
         } else {
             char[] token = nextToken();
             PwdCredentialAccount newCachedTokenAccount = new PwdCredentialAccount(
-                    account.getPrincipal().getName(),
+                    id,
                     token,
                     Sets.newTreeSet(account.getRoles()));
 
-            CACHE.put(account.getPrincipal().getName(),
-                    newCachedTokenAccount);
-
-            return newCachedTokenAccount.getCredentials();
+            return this.store.putIfAbsent(id, newCachedTokenAccount)
+                    .getCredentials();
         }
     }
 
     @Override
     public void invalidate(Account account) {
-        CACHE.invalidate(account.getPrincipal().getName());
+        if (this.store != null) {
+            this.store.invalidate(account.getPrincipal().getName());
+        }
     }
 
     @Override
     public void update(Account account) {
-        String id = account.getPrincipal().getName();
-
-        Optional<PwdCredentialAccount> _authTokenAccount
-                = CACHE.get(id);
-
-        if (_authTokenAccount != null && _authTokenAccount.isPresent()) {
-            PwdCredentialAccount authTokenAccount = _authTokenAccount.get();
-
-            PwdCredentialAccount updatedAuthTokenAccount
-                    = new PwdCredentialAccount(
-                            id,
-                            authTokenAccount.getCredentials().getPassword(),
-                            account.getRoles());
-
-            CACHE.put(id, updatedAuthTokenAccount);
+        if (this.store == null) {
+            return;
         }
+
+        this.store.update(account.getPrincipal().getName(),
+                Sets.newTreeSet(account.getRoles()));
     }
 
     @Override
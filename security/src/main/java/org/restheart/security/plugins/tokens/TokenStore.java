@@ -0,0 +1,90 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-security
+ * %%
+ * Copyright (C) 2018 - 2020 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.security.plugins.tokens;
+
+import java.util.Arrays;
+import java.util.Set;
+import org.restheart.idm.PwdCredentialAccount;
+
+/**
+ * Stores the auth tokens issued by RndTokenManager, as accounts whose
+ * password is the token, by account id.
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public interface TokenStore {
+    /**
+     *
+     * @param id the account id
+     * @return the account with the auth token issued by this node or null if
+     * no such valid token exists for the account
+     */
+    public PwdCredentialAccount get(String id);
+
+    /**
+     *
+     * @param id the account id
+     * @param token the auth token
+     * @return the account with the auth token if it is a valid token of the
+     * account, otherwise null
+     */
+    public default PwdCredentialAccount verify(String id, char[] token) {
+        var account = get(id);
+
+        return account != null
+                && Arrays.equals(token, account.getCredentials().getPassword())
+                ? account
+                : null;
+    }
+
+    /**
+     * stores the account with the auth token if no valid token exists for the
+     * account
+     *
+     * @param id the account id
+     * @param account the account with the auth token
+     * @return the stored account, i.e. the existing one or account
+     */
+    public PwdCredentialAccount putIfAbsent(String id, PwdCredentialAccount account);
+
+    /**
+     * updates the roles of the account keeping its auth tokens; the store is
+     * not written if the roles didn't change
+     *
+     * @param id the account id
+     * @param roles the roles of the account
+     */
+    public void update(String id, Set<String> roles);
+
+    /**
+     * removes the auth tokens of the account
+     *
+     * @param id the account id
+     */
+    public void invalidate(String id);
+
+    /**
+     * releases the resources of the store; invoked when the store is
+     * replaced
+     */
+    public default void close() {
+    }
+}
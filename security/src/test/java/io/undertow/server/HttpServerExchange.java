@@ -47,6 +47,7 @@ public class HttpServerExchange extends AbstractAttachable {
     private String relativePath;
     private HttpString requestMethod;
     private Map<String, Deque<String>> queryParameters;
+    private final HeaderMap requestHeaders = new HeaderMap();
 
     public HttpServerExchange() {
     }
@@ -151,7 +152,7 @@ public class HttpServerExchange extends AbstractAttachable {
     }
 
     public HeaderMap getRequestHeaders() {
-        return null;
+        return requestHeaders;
     }
 
     public SecurityContext getSecurityContext() {
@@ -0,0 +1,155 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-security
+ * %%
+ * Copyright (C) 2018 - 2020 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.security.plugins.authenticators;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+import org.mindrot.jbcrypt.BCrypt;
+
+/**
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class BCryptVerifierTest {
+    private static final String HASH = BCrypt.hashpw("secret", BCrypt.gensalt(4));
+
+    // blocks the checks until released, counting them and their threads
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger calls = new AtomicInteger(0);
+    private final ConcurrentHashMap<String, Boolean> threads = new ConcurrentHashMap<>();
+
+    private boolean check(String password, String hash) {
+        calls.incrementAndGet();
+        threads.put(Thread.currentThread().getName(), true);
+
+        try {
+            release.await();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+
+        return BCrypt.checkpw(password, hash);
+    }
+
+    @Test
+    public void testVerify() {
+        var verifier = new BCryptVerifier("testVerify", 1, 1);
+
+        assertTrue(verifier.verify("admin", "secret", HASH));
+        assertFalse(verifier.verify("admin", "wrong", HASH));
+    }
+
+    @Test
+    public void testVerifyAsync() {
+        var verifier = new BCryptVerifier("testVerifyAsync", 1, 1, this::check);
+
+        var check = verifier.verifyAsync("admin", "secret", HASH);
+
+        // the calling thread is not blocked
+        assertFalse(check.isDone());
+
+        release.countDown();
+
+        assertTrue(check.join());
+        assertEquals(1, calls.get());
+        assertEquals(1, threads.size());
+        assertTrue("executed by the pool",
+                threads.keySet().iterator().next().startsWith("testVerifyAsync-bcrypt-"));
+    }
+
+    @Test
+    public void testVerifyReusesCompletedCheck() {
+        var verifier = new BCryptVerifier("testVerifyReusesCompletedCheck", 1, 1, this::check);
+        release.countDown();
+
+        assertTrue(verifier.verifyAsync("admin", "secret", HASH).join());
+        assertFalse(verifier.verifyAsync("admin", "wrong", HASH).join());
+
+        // verify() gets the results without executing the checks again
+        assertTrue(verifier.verify("admin", "secret", HASH));
+        assertFalse(verifier.verify("admin", "wrong", HASH));
+        assertEquals(2, calls.get());
+
+        // different credentials are checked
+        assertFalse(verifier.verify("admin", "other", HASH));
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    public void testCoalescing() {
+        var verifier = new BCryptVerifier("testCoalescing", 1, 1, this::check);
+
+        // more concurrent checks of the same credentials than pool threads
+        // and queue slots: they are coalesced and never rejected
+        var first = verifier.verifyAsync("admin", "secret", HASH);
+
+        for (var idx = 0; idx < 8; idx++) {
+            assertSame(first, verifier.verifyAsync("admin", "secret", HASH));
+        }
+
+        release.countDown();
+
+        assertTrue(first.join());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void testSaturation() {
+        var verifier = new BCryptVerifier("testSaturation", 1, 1, this::check);
+
+        // distinct credentials cannot be coalesced: the first check takes
+        // the thread, the second the queue slot, the third is rejected
+        var running = verifier.verifyAsync("admin", "wrong1", HASH);
+        var queued = verifier.verifyAsync("admin", "wrong2", HASH);
+        var rejected = verifier.verifyAsync("admin", "wrong3", HASH);
+
+        assertTrue(rejected.isCompletedExceptionally());
+
+        try {
+            verifier.verify("admin", "wrong4", HASH);
+            fail("verify must throw SaturatedException");
+        } catch (BCryptVerifier.SaturatedException se) {
+            // expected
+        }
+
+        release.countDown();
+
+        assertFalse(running.join());
+        assertFalse(queued.join());
+
+        try {
+            rejected.join();
+            fail("the rejected check must fail");
+        } catch (CompletionException ce) {
+            assertTrue(ce.getCause() instanceof BCryptVerifier.SaturatedException);
+        }
+
+        assertEquals("rejected checks are not executed", 2, calls.get());
+    }
+}
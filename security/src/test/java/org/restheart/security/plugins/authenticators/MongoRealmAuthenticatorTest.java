@@ -0,0 +1,284 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-security
+ * %%
+ * Copyright (C) 2018 - 2020 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.security.plugins.authenticators;
+
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.Option;
+import com.jayway.jsonpath.spi.json.GsonJsonProvider;
+import com.jayway.jsonpath.spi.json.JsonProvider;
+import com.jayway.jsonpath.spi.mapper.GsonMappingProvider;
+import com.jayway.jsonpath.spi.mapper.MappingProvider;
+import com.mongodb.MongoClient;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoDatabase;
+import io.undertow.security.idm.PasswordCredential;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.restheart.idm.PwdCredentialAccount;
+import org.restheart.plugins.PluginsRegistry;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class MongoRealmAuthenticatorTest {
+    private final Map<String, Document> users = new ConcurrentHashMap<>();
+    private final AtomicInteger lookups = new AtomicInteger(0);
+
+    // when set, lookups wait for it
+    private volatile CountDownLatch gate = null;
+
+    private MongoClient mclient;
+    private MongoCollection<Document> coll;
+    private FindIterable<Document> preload;
+
+    @BeforeClass
+    public static void setJsonpathDefaults() {
+        // as done by the Bootstrapper
+        Configuration.setDefaults(new Configuration.Defaults() {
+            private final JsonProvider jsonProvider = new GsonJsonProvider();
+            private final MappingProvider mappingProvider = new GsonMappingProvider();
+
+            @Override
+            public JsonProvider jsonProvider() {
+                return jsonProvider;
+            }
+
+            @Override
+            public MappingProvider mappingProvider() {
+                return mappingProvider;
+            }
+
+            @Override
+            public Set<Option> options() {
+                return EnumSet.noneOf(Option.class);
+            }
+        });
+    }
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        mclient = mock(MongoClient.class);
+        var db = mock(MongoDatabase.class);
+        coll = mock(MongoCollection.class);
+        preload = mock(FindIterable.class);
+
+        when(mclient.getDatabase("restheart")).thenReturn(db);
+        when(db.getCollection("users")).thenReturn(coll);
+
+        when(coll.find(any(Bson.class))).thenAnswer(i -> {
+            var id = ((Bson) i.getArgument(0))
+                    .toBsonDocument(BsonDocument.class,
+                            MongoClientSettings.getDefaultCodecRegistry())
+                    .getString("_id").getValue();
+
+            FindIterable<Document> found = mock(FindIterable.class);
+            when(found.first()).thenAnswer(f -> {
+                lookups.incrementAndGet();
+
+                if (gate != null) {
+                    gate.await();
+                }
+
+                return users.get(id);
+            });
+
+            return found;
+        });
+
+        when(coll.find()).thenReturn(preload);
+        when(preload.sort(any())).thenReturn(preload);
+        when(preload.limit(anyInt())).thenReturn(preload);
+    }
+
+    @Test
+    public void testNegativeCache() {
+        var authenticator = authenticator(Map.of());
+
+        assertNull(authenticator.verify("alice", pwd("secret")));
+        assertNull(authenticator.verify("alice", pwd("secret")));
+        assertEquals("unknown id must be looked up once", 1, lookups.get());
+
+        users.put("alice", user("alice", "secret", "user"));
+
+        assertNull("unknown id is cached", authenticator.verify("alice", pwd("secret")));
+        assertEquals(1, lookups.get());
+
+        // as done by UnknownUsersCacheInvalidator when a user is written
+        authenticator.invalidateUnknownUsers();
+
+        assertNotNull(authenticator.verify("alice", pwd("secret")));
+        assertEquals(2, lookups.get());
+    }
+
+    @Test
+    public void testNegativeCacheDisabled() {
+        var authenticator = authenticator(Map.of("negative-cache-ttl", 0));
+
+        assertNull(authenticator.verify("alice", pwd("secret")));
+        assertNull(authenticator.verify("alice", pwd("secret")));
+        assertEquals(2, lookups.get());
+
+        users.put("alice", user("alice", "secret", "user"));
+
+        assertNotNull(authenticator.verify("alice", pwd("secret")));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testPreload() {
+        var accounts = List.of(
+                user("alice", "secret", "user"),
+                user("bob", "secret", "user")).iterator();
+
+        MongoCursor<Document> cursor = mock(MongoCursor.class);
+        when(cursor.hasNext()).thenAnswer(i -> accounts.hasNext());
+        when(cursor.next()).thenAnswer(i -> accounts.next());
+        when(preload.iterator()).thenReturn(cursor);
+
+        users.put("carol", user("carol", "secret", "user"));
+
+        var authenticator = authenticator(Map.of(
+                "cache-preload-size", 2,
+                "cache-preload-sort", "{\"lastLogin\": -1}"));
+
+        verify(preload).sort(BsonDocument.parse("{\"lastLogin\": -1}"));
+        verify(preload).limit(2);
+
+        assertNotNull(authenticator.verify("alice", pwd("secret")));
+        assertNotNull(authenticator.verify("bob", pwd("secret")));
+        assertEquals("preloaded accounts must not be looked up", 0, lookups.get());
+
+        assertNotNull(authenticator.verify("carol", pwd("secret")));
+        assertEquals(1, lookups.get());
+    }
+
+    @Test
+    public void testRefreshAhead() throws Exception {
+        users.put("alice", user("alice", "secret", "user"));
+
+        var refreshing = authenticator(Map.of(
+                "cache-ttl", 2_000,
+                "cache-refresh-ahead", true));
+
+        // refresh ahead is disabled by default
+        var notRefreshing = authenticator(Map.of("cache-ttl", 2_000));
+
+        assertTrue(hasRole(refreshing, "user"));
+        assertTrue(hasRole(notRefreshing, "user"));
+        assertEquals(2, lookups.get());
+
+        users.put("alice", user("alice", "secret", "admin"));
+
+        // after refreshAfter (3/4 of cache-ttl) but before the expiration
+        Thread.sleep(1_700);
+
+        // the cached account is returned while it is reloaded in background
+        gate = new CountDownLatch(1);
+        assertTrue(hasRole(refreshing, "user"));
+        assertTrue(hasRole(notRefreshing, "user"));
+        gate.countDown();
+        gate = null;
+
+        var refreshed = false;
+
+        for (var c = 0; c < 100 && !refreshed; c++) {
+            Thread.sleep(10);
+            refreshed = hasRole(refreshing, "admin");
+        }
+
+        assertTrue("the account must be reloaded in background", refreshed);
+        assertTrue(hasRole(notRefreshing, "user"));
+        assertEquals("only the refreshing cache reloads", 3, lookups.get());
+    }
+
+    private boolean hasRole(MongoRealmAuthenticator authenticator, String role) {
+        var account = (PwdCredentialAccount) authenticator.verify("alice", pwd("secret"));
+
+        return account != null && account.getRoles().contains(role);
+    }
+
+    private MongoRealmAuthenticator authenticator(Map<String, Object> conf) {
+        var args = new HashMap<String, Object>();
+        args.put("users-db", "restheart");
+        args.put("users-collection", "users");
+        args.put("cache-enabled", true);
+        args.put("cache-size", 1_000);
+        args.put("cache-ttl", 60_000);
+        args.put("cache-expire-policy", "AFTER_WRITE");
+        args.put("bcrypt-hashed-password", false);
+        args.put("bcrypt-complexity", 12);
+        args.put("create-user", false);
+        args.put("create-user-document", "{}");
+        args.put("prop-id", "_id");
+        args.put("prop-password", "password");
+        args.put("json-path-roles", "$.roles");
+        args.putAll(conf);
+
+        var authenticator = new MongoRealmAuthenticator() {
+            @Override
+            public boolean checkUserCollection() {
+                return true;
+            }
+        };
+
+        authenticator.setConf(args);
+        authenticator.setRegistry(mock(PluginsRegistry.class));
+        authenticator.setMongoClient(mclient);
+
+        return authenticator;
+    }
+
+    private static Document user(String id, String password, String role) {
+        return new Document("_id", id)
+                .append("password", password)
+                .append("roles", List.of(role));
+    }
+
+    private static PasswordCredential pwd(String password) {
+        return new PasswordCredential(password.toCharArray());
+    }
+}
@@ -0,0 +1,61 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-security
+ * %%
+ * Copyright (C) 2018 - 2020 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.security.plugins.authorizers;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class FilterPredicateTest {
+    @Test
+    public void testMethodAndCollectionOnly() {
+        assertTrue(FilterPredicate.dependsOnlyOnMethodAndCollection("path-prefix('/db/coll') and method(GET)"));
+        assertTrue(FilterPredicate.dependsOnlyOnMethodAndCollection("method({GET, POST}) and path-prefix(path='/db/')"));
+        assertTrue(FilterPredicate.dependsOnlyOnMethodAndCollection("not (path-prefix('/a') or path-prefix(path=\"/b\"))"));
+        assertTrue(FilterPredicate.dependsOnlyOnMethodAndCollection("path-prefix({'/a/b', '/c'})"));
+        assertTrue(FilterPredicate.dependsOnlyOnMethodAndCollection("true"));
+    }
+
+    @Test
+    public void testNotMethodAndCollectionOnly() {
+        assertFalse(FilterPredicate.dependsOnlyOnMethodAndCollection("path-template('/{db}') and equals(%u, ${db})"));
+        assertFalse(FilterPredicate.dependsOnlyOnMethodAndCollection("path-template(value='/a', match=%U)"));
+        assertFalse(FilterPredicate.dependsOnlyOnMethodAndCollection("secure and path-prefix('/a')"));
+        assertFalse(FilterPredicate.dependsOnlyOnMethodAndCollection("not (secure)"));
+        assertFalse(FilterPredicate.dependsOnlyOnMethodAndCollection("qparams-contain(filter)"));
+        assertFalse(FilterPredicate.dependsOnlyOnMethodAndCollection("regex('/a.*')"));
+    }
+
+    @Test
+    public void testDocumentLevelPredicates() {
+        // these resolve differently for documents of the same collection
+        assertFalse(FilterPredicate.dependsOnlyOnMethodAndCollection("path('/db/coll')"));
+        assertFalse(FilterPredicate.dependsOnlyOnMethodAndCollection("path-template('/{db}/{coll}')"));
+        assertFalse(FilterPredicate.dependsOnlyOnMethodAndCollection("path-suffix('/_meta')"));
+        assertFalse(FilterPredicate.dependsOnlyOnMethodAndCollection("path-prefix('/db/coll/doc')"));
+        assertFalse(FilterPredicate.dependsOnlyOnMethodAndCollection("path-prefix({'/a', '/db/coll/doc'})"));
+        assertFalse(FilterPredicate.dependsOnlyOnMethodAndCollection("path-prefix(/db/coll)"));
+    }
+}
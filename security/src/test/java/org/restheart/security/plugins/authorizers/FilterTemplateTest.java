@@ -0,0 +1,90 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-security
+ * %%
+ * Copyright (C) 2018 - 2020 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.security.plugins.authorizers;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import org.bson.BsonArray;
+import org.bson.BsonDateTime;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import org.junit.Test;
+
+/**
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class FilterTemplateTest {
+    private static final Set<String> ROLES = new TreeSet<>(Set.of("admin", "user"));
+    private static final Instant NOW = Instant.ofEpochMilli(1_600_000_000_123l);
+
+    @Test
+    public void testTypedVars() {
+        var template = FilterTemplate.compile(BsonDocument.parse("{'author': '%USER', "
+                + "'roles': {'$in': '%ROLES'}, 'expires': {'$gt': '%NOW'}, 'status': 'public'}"));
+
+        var filter = template.bind("uji", ROLES, NOW);
+
+        assertEquals(new BsonString("uji"), filter.get("author"));
+        assertEquals(new BsonArray(List.of(new BsonString("admin"), new BsonString("user"))),
+                filter.getDocument("roles").get("$in"));
+        assertEquals(new BsonDateTime(1_600_000_000_000l), filter.getDocument("expires").get("$gt"));
+        assertEquals(new BsonString("public"), filter.get("status"));
+    }
+
+    @Test
+    public void testVarsWithinStrings() {
+        var template = FilterTemplate.compile(BsonDocument.parse("{'$or': [{'path': '/users/%USER/docs'}, "
+                + "{'acl.%USER': true}]}"));
+
+        var filter = template.bind("uji", ROLES, NOW);
+
+        assertEquals(BsonDocument.parse("{'$or': [{'path': '/users/uji/docs'}, {'acl.uji': true}]}"), filter);
+    }
+
+    @Test
+    public void testMissingUser() {
+        var template = FilterTemplate.compile(BsonDocument.parse("{'author': '%USER'}"));
+
+        assertEquals(BsonDocument.parse("{'author': '%USER'}"), template.bind(null, Set.of(), NOW));
+    }
+
+    @Test
+    public void testConstantFilter() {
+        var constant = BsonDocument.parse("{'status': 'public', 'tags': ['a', 'b']}");
+        var template = FilterTemplate.compile(constant);
+
+        assertSame(constant, template.bind("uji", ROLES, NOW));
+    }
+
+    @Test
+    public void testConstantPartsAreShared() {
+        var filter = BsonDocument.parse("{'author': '%USER', 'tags': {'$in': ['a', 'b']}}");
+        var template = FilterTemplate.compile(filter);
+
+        assertSame(filter.get("tags"), template.bind("uji", ROLES, NOW).get("tags"));
+        assertSame(filter.get("tags"), template.bind("foo", ROLES, NOW).get("tags"));
+    }
+}
@@ -0,0 +1,101 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-security
+ * %%
+ * Copyright (C) 2018 - 2020 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.security.plugins.authorizers;
+
+import static io.undertow.predicate.Predicate.PREDICATE_CONTEXT;
+import io.undertow.predicate.PredicateParser;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.HttpString;
+import java.util.List;
+import java.util.TreeMap;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class MongoAclAuthorizerTest {
+    private static final List<String> PREDICATES = List.of(
+            "path-prefix[path=\"/\"] and method[value=\"OPTIONS\"]",
+            "path-prefix('/db/coll') and method(GET)",
+            "path-prefix[path=\"/db/coll/\"] and method[value={\"PUT\", \"PATCH\"}]",
+            "path-prefix('/db')",
+            "method(DELETE) and path-prefix('/tmp')",
+            "path-prefix('/a') or path-prefix('/b/c')",
+            "not path-prefix('/secret')");
+
+    private static final List<String> PATHS = List.of(
+            "/", "/db", "/db/", "/dbx", "/db/coll", "/db/coll/", "/db/collx",
+            "/db/coll/doc", "/db/coll/doc/", "/db/coll/doc/x", "/db//coll",
+            "/db//", "//db", "/db/coll//", "/tmp", "/tmp/a", "/tmpa", "/tmp/a/b",
+            "/a", "/a/b", "/b/c", "/b/c/d", "/b/cd", "/secret", "/secret/a/b");
+
+    private static final List<String> METHODS = List.of(
+            "GET", "PUT", "PATCH", "DELETE", "OPTIONS");
+
+    @Test
+    public void testCollectionPath() {
+        assertEquals("/", MongoAclAuthorizer.collectionPath("/"));
+        assertEquals("/db", MongoAclAuthorizer.collectionPath("/db"));
+        assertEquals("/db/", MongoAclAuthorizer.collectionPath("/db/"));
+        assertEquals("/db/coll", MongoAclAuthorizer.collectionPath("/db/coll"));
+        assertEquals("/db/coll", MongoAclAuthorizer.collectionPath("/db/coll/"));
+        assertEquals("/db/coll", MongoAclAuthorizer.collectionPath("/db/coll/doc"));
+        assertEquals("/db/coll", MongoAclAuthorizer.collectionPath("/db/coll/doc/x"));
+        assertEquals("/db/", MongoAclAuthorizer.collectionPath("/db//coll"));
+    }
+
+    /**
+     * cacheable predicates must resolve the same for all requests with the
+     * same method and collection path, i.e. with the same decision key
+     */
+    @Test
+    public void testSameResolveForSameDecisionKey() {
+        for (var text : PREDICATES) {
+            assertTrue(text, FilterPredicate.dependsOnlyOnMethodAndCollection(text));
+
+            var predicate = PredicateParser.parse(text, getClass().getClassLoader());
+
+            for (var method : METHODS) {
+                for (var path : PATHS) {
+                    var key = MongoAclAuthorizer.collectionPath(path);
+
+                    assertEquals(text + " on " + method + " " + path,
+                            predicate.resolve(exchange(method, key)),
+                            predicate.resolve(exchange(method, path)));
+                }
+            }
+        }
+    }
+
+    private static HttpServerExchange exchange(String method, String path) {
+        var exchange = new HttpServerExchange();
+
+        exchange.setRequestMethod(HttpString.tryFromString(method));
+        exchange.setRequestPath(path);
+        exchange.setRelativePath(path);
+        exchange.putAttachment(PREDICATE_CONTEXT, new TreeMap<>());
+
+        return exchange;
+    }
+}
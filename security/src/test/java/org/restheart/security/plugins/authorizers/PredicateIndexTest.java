@@ -0,0 +1,108 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-security
+ * %%
+ * Copyright (C) 2018 - 2020 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.security.plugins.authorizers;
+
+import static io.undertow.predicate.Predicate.PREDICATE_CONTEXT;
+import io.undertow.predicate.PredicateParser;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.HttpString;
+import java.util.List;
+import java.util.TreeMap;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import org.junit.Test;
+
+/**
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class PredicateIndexTest {
+    private static final List<String> PREDICATES = List.of(
+            "path-prefix[path=\"/\"] and method[value=\"OPTIONS\"]",
+            "path-prefix('/db/coll') and method(GET)",
+            "path-prefix[path=\"/db/coll/\"] and method[value={\"PUT\", \"PATCH\"}]",
+            "path('/db') and method(GET)",
+            "path('/db/')",
+            "path('/db/coll/') and method(PUT)",
+            "path-template('/{db}/{coll}/docs') and method(POST)",
+            "method(DELETE) and path-prefix('/tmp')",
+            "path-prefix('/a') or path-prefix('/b')",
+            "not path-prefix('/secret')");
+
+    private static final List<String> REQUESTS = List.of(
+            "OPTIONS /", "OPTIONS /db/coll",
+            "GET /", "GET /db", "GET /db/", "PUT /db/", "GET /dbx",
+            "GET /db/coll", "GET /db/coll/", "GET /db/collx", "GET /db/coll/doc",
+            "PUT /db/coll", "PUT /db/coll/doc", "PATCH /db/coll/doc", "POST /db/coll/doc",
+            "POST /x/y/docs", "POST /x/y/docs/", "POST /x/docs", "GET /x/y/docs",
+            "DELETE /tmp", "DELETE /tmp/a", "DELETE /tmpa", "GET /tmp/a",
+            "GET /a/b", "GET /b", "GET /c", "GET /secret/a", "GET /db//coll",
+            "GET /db//", "PUT /db//", "GET //db", "PUT /db/coll//", "DELETE /tmp/");
+
+    @Test
+    public void testSegments() {
+        assertEquals(List.of(), PredicateIndex.segments("/"));
+        assertEquals(List.of("a"), PredicateIndex.segments("/a"));
+        assertEquals(List.of("a", ""), PredicateIndex.segments("/a/"));
+        assertEquals(List.of("a", "", "b"), PredicateIndex.segments("/a//b"));
+    }
+
+    @Test
+    public void testConjuncts() {
+        assertEquals(List.of("path('/a and b')", "method(GET)"),
+                PredicateIndex.conjuncts("path('/a and b') and method(GET)"));
+        assertEquals(List.of("(path('/a') or path('/b'))", "method(GET)"),
+                PredicateIndex.conjuncts("(path('/a') or path('/b')) and method(GET)"));
+        assertNull(PredicateIndex.conjuncts("path('/a') or method(GET)"));
+        assertNull(PredicateIndex.conjuncts("not path('/a')"));
+    }
+
+    /**
+     * the index must give the same result of resolving each predicate
+     */
+    @Test
+    public void testSameResultOfResolve() {
+        for (var text : PREDICATES) {
+            var predicate = PredicateParser.parse(text, getClass().getClassLoader());
+            var index = new PredicateIndex();
+            index.add(text, predicate);
+
+            for (var request : REQUESTS) {
+                var expected = predicate.resolve(exchange(request));
+                var actual = index.anyMatch(exchange(request));
+
+                assertEquals(text + " on " + request, expected, actual);
+            }
+        }
+    }
+
+    private static HttpServerExchange exchange(String request) {
+        var parts = request.split(" ");
+        var exchange = new HttpServerExchange();
+
+        exchange.setRequestMethod(HttpString.tryFromString(parts[0]));
+        exchange.setRequestPath(parts[1]);
+        exchange.setRelativePath(parts[1]);
+        exchange.putAttachment(PREDICATE_CONTEXT, new TreeMap<>());
+
+        return exchange;
+    }
+}
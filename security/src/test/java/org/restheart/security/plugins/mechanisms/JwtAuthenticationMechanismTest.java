@@ -0,0 +1,157 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-security
+ * %%
+ * Copyright (C) 2018 - 2020 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.security.plugins.mechanisms;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.codahale.metrics.SharedMetricRegistries;
+import io.undertow.security.api.AuthenticationMechanism.AuthenticationMechanismOutcome;
+import io.undertow.security.api.SecurityContext;
+import io.undertow.security.idm.Account;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Set;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import org.restheart.exchange.ByteArrayProxyRequest;
+import org.restheart.exchange.PipelineInfo;
+import org.restheart.plugins.RegisterPlugin.MATCH_POLICY;
+
+/**
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class JwtAuthenticationMechanismTest {
+    private static final String KEY = "secret";
+
+    private JwtAuthenticationMechanism mechanism;
+
+    @Before
+    public void setUp() throws Exception {
+        var args = new HashMap<String, Object>();
+        args.put("base64Encoded", false);
+        args.put("algorithm", "HS256");
+        args.put("key", KEY);
+        args.put("usernameClaim", "sub");
+        args.put("rolesClaim", "roles");
+        args.put("fixedRoles", null);
+        args.put("issuer", null);
+        args.put("audience", null);
+
+        mechanism = new JwtAuthenticationMechanism();
+        mechanism.init(args);
+    }
+
+    private static String token(String subject, Date expiresAt) {
+        return JWT.create()
+                .withSubject(subject)
+                .withArrayClaim("roles", new String[]{"user"})
+                .withExpiresAt(expiresAt)
+                .sign(Algorithm.HMAC256(KEY));
+    }
+
+    private static Date in(long millis) {
+        return new Date(System.currentTimeMillis() + millis);
+    }
+
+    private static long count(String meter) {
+        return SharedMetricRegistries.tryGetDefault()
+                .meter("jwtAuthenticationMechanism.cache." + meter).getCount();
+    }
+
+    private AuthenticationMechanismOutcome authenticate(String token, SecurityContext sc) {
+        var exchange = new HttpServerExchange();
+        exchange.getRequestHeaders().put(Headers.AUTHORIZATION, "Bearer " + token);
+
+        ByteArrayProxyRequest.of(exchange).setPipelineInfo(
+                new PipelineInfo(PipelineInfo.PIPELINE_TYPE.PROXY, "/", MATCH_POLICY.PREFIX, "test"));
+
+        return mechanism.authenticate(exchange, sc);
+    }
+
+    private Account authenticated(String token) {
+        var sc = mock(SecurityContext.class);
+
+        assertEquals(AuthenticationMechanismOutcome.AUTHENTICATED, authenticate(token, sc));
+
+        var account = ArgumentCaptor.forClass(Account.class);
+        verify(sc).authenticationComplete(account.capture(), anyString(), anyBoolean());
+
+        return account.getValue();
+    }
+
+    @Test
+    public void testCacheHit() {
+        var token = token("alice", in(60_000));
+
+        var misses = count("misses");
+        var first = authenticated(token);
+        assertEquals(misses + 1, count("misses"));
+
+        // modifying an account doesn't affect the next requests
+        first.getRoles().add("admin");
+
+        var hits = count("hits");
+        var second = authenticated(token);
+        assertEquals(hits + 1, count("hits"));
+
+        assertNotSame(first, second);
+        assertEquals("alice", second.getPrincipal().getName());
+        assertEquals(Set.of("user"), second.getRoles());
+    }
+
+    @Test
+    public void testCachedTokenExpires() throws Exception {
+        // exp has seconds precision, it is 1 to 2 seconds from now
+        var expiresAt = new Date((System.currentTimeMillis() / 1_000 + 2) * 1_000);
+        var token = token("alice", expiresAt);
+
+        authenticated(token);
+
+        Thread.sleep(expiresAt.getTime() - System.currentTimeMillis() + 1_100);
+
+        assertEquals(AuthenticationMechanismOutcome.NOT_AUTHENTICATED,
+                authenticate(token, mock(SecurityContext.class)));
+    }
+
+    @Test
+    public void testCacheMiss() {
+        authenticated(token("alice", in(60_000)));
+
+        var hits = count("hits");
+        var misses = count("misses");
+
+        var other = authenticated(token("bob", in(60_000)));
+
+        assertEquals(hits, count("hits"));
+        assertEquals(misses + 1, count("misses"));
+        assertEquals("bob", other.getPrincipal().getName());
+    }
+}
@@ -0,0 +1,95 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-security
+ * %%
+ * Copyright (C) 2018 - 2020 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.security.plugins.tokens;
+
+import java.util.Set;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import org.junit.Test;
+import org.restheart.idm.PwdCredentialAccount;
+
+/**
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class LocalTokenStoreTest {
+    private static final char[] TOKEN = "a-token".toCharArray();
+
+    private static PwdCredentialAccount account(char[] token, String... roles) {
+        return new PwdCredentialAccount("admin", token, Set.of(roles));
+    }
+
+    @Test
+    public void testPutIfAbsent() {
+        var store = new LocalTokenStore(15);
+
+        var stored = store.putIfAbsent("admin", account(TOKEN, "admin"));
+
+        assertSame(stored, store.get("admin"));
+        assertNull(store.get("other"));
+
+        // a valid token exists
+        assertSame(stored, store.putIfAbsent("admin", account("another-token".toCharArray(), "admin")));
+        assertArrayEquals(TOKEN, store.get("admin").getCredentials().getPassword());
+    }
+
+    @Test
+    public void testVerify() {
+        var store = new LocalTokenStore(15);
+
+        store.putIfAbsent("admin", account(TOKEN, "admin"));
+
+        assertNotNull(store.verify("admin", TOKEN));
+        assertNull(store.verify("admin", "wrong".toCharArray()));
+        assertNull(store.verify("other", TOKEN));
+    }
+
+    @Test
+    public void testUpdate() {
+        var store = new LocalTokenStore(15);
+
+        store.putIfAbsent("admin", account(TOKEN, "admin"));
+        store.update("admin", Set.of("admin", "user"));
+
+        var updated = store.verify("admin", TOKEN);
+
+        assertNotNull(updated);
+        assertEquals(Set.of("admin", "user"), updated.getRoles());
+
+        // no token, nothing to update
+        store.update("other", Set.of("user"));
+        assertNull(store.get("other"));
+    }
+
+    @Test
+    public void testInvalidate() {
+        var store = new LocalTokenStore(15);
+
+        store.putIfAbsent("admin", account(TOKEN, "admin"));
+        store.invalidate("admin");
+
+        assertNull(store.get("admin"));
+        assertNull(store.verify("admin", TOKEN));
+    }
+}
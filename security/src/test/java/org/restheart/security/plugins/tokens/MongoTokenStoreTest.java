@@ -0,0 +1,227 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-security
+ * %%
+ * Copyright (C) 2018 - 2020 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.security.plugins.tokens;
+
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.bson.BsonArray;
+import org.bson.BsonDateTime;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.conversions.Bson;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import org.restheart.idm.PwdCredentialAccount;
+
+/**
+ * Tests MongoTokenStore on a fake collection; two stores on the same
+ * collection act as two nodes of a cluster.
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class MongoTokenStoreTest {
+    private static final char[] TOKEN = "a-token".toCharArray();
+
+    // the documents of the fake collection by _id
+    private Map<String, BsonDocument> docs;
+    private MongoCollection<BsonDocument> coll;
+
+    private static BsonDocument toBson(Bson bson) {
+        return bson.toBsonDocument(BsonDocument.class, MongoClientSettings.getDefaultCodecRegistry());
+    }
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        docs = new ConcurrentHashMap<>();
+        coll = mock(MongoCollection.class);
+
+        when(coll.watch()).thenReturn(mock(ChangeStreamIterable.class, RETURNS_DEEP_STUBS));
+
+        when(coll.insertOne(any())).thenAnswer(i -> {
+            BsonDocument doc = i.getArgument(0);
+            docs.put(doc.getString("_id").getValue(), doc);
+            return null;
+        });
+
+        when(coll.find(any(Bson.class))).thenAnswer(i -> {
+            var id = toBson(i.getArgument(0)).getString("_id").getValue();
+            return mock(FindIterable.class, f -> "first".equals(f.getMethod().getName())
+                    ? docs.get(id)
+                    : null);
+        });
+
+        // filter {$and: [{account: <id>}, {roles: {$ne: <roles>}}]}
+        when(coll.updateMany(any(Bson.class), any(Bson.class))).thenAnswer(i -> {
+            var filter = toBson(i.getArgument(0)).getArray("$and");
+            var account = filter.get(0).asDocument().get("account");
+            var previous = filter.get(1).asDocument().getDocument("roles").get("$ne");
+            var roles = toBson(i.getArgument(1)).getDocument("$set").getArray("roles");
+
+            var modified = docs.values().stream()
+                    .filter(d -> d.get("account").equals(account))
+                    .filter(d -> !d.get("roles").equals(previous))
+                    .peek(d -> d.put("roles", roles))
+                    .count();
+
+            return UpdateResult.acknowledged(modified, modified, null);
+        });
+
+        when(coll.deleteMany(any(Bson.class))).thenAnswer(i -> {
+            var account = toBson(i.getArgument(0)).get("account");
+            var before = docs.size();
+            docs.values().removeIf(d -> d.get("account").equals(account));
+            return DeleteResult.acknowledged(before - docs.size());
+        });
+    }
+
+    private MongoTokenStore node() {
+        return new MongoTokenStore(coll, 15, 100, 10_000);
+    }
+
+    private static PwdCredentialAccount account(char[] token, String... roles) {
+        return new PwdCredentialAccount("admin", token, Set.of(roles));
+    }
+
+    @Test
+    public void testCloseStopsWatcher() throws Exception {
+        var store = node();
+
+        assertTrue(store.watcher.isAlive());
+
+        store.close();
+        store.watcher.join(5_000);
+
+        assertFalse(store.watcher.isAlive());
+    }
+
+    @Test
+    public void testStoresDigest() {
+        node().putIfAbsent("admin", account(TOKEN, "admin"));
+
+        assertEquals(1, docs.size());
+
+        var doc = docs.values().iterator().next();
+
+        assertEquals(MongoTokenStore.digest(TOKEN), doc.getString("_id").getValue());
+        assertEquals(64, doc.getString("_id").getValue().length());
+        assertEquals("admin", doc.getString("account").getValue());
+        assertFalse(doc.toJson().contains(new String(TOKEN)));
+    }
+
+    @Test
+    public void testVerify() {
+        var node1 = node();
+        var node2 = node();
+
+        node1.putIfAbsent("admin", account(TOKEN, "admin"));
+
+        var verified = node2.verify("admin", TOKEN);
+
+        assertNotNull(verified);
+        assertArrayEquals(TOKEN, verified.getCredentials().getPassword());
+        assertEquals(Set.of("admin"), verified.getRoles());
+
+        assertNull(node2.verify("admin", "wrong".toCharArray()));
+        assertNull(node2.verify("other", TOKEN));
+    }
+
+    @Test
+    public void testGet() {
+        var node1 = node();
+        var node2 = node();
+
+        node1.putIfAbsent("admin", account(TOKEN, "admin"));
+
+        // the plain token is only known by the node that issued it
+        assertArrayEquals(TOKEN, node1.get("admin").getCredentials().getPassword());
+        assertNull(node2.get("admin"));
+
+        // a valid token exists
+        var existing = node1.putIfAbsent("admin", account("another-token".toCharArray(), "admin"));
+        assertArrayEquals(TOKEN, existing.getCredentials().getPassword());
+        assertEquals(1, docs.size());
+
+        // node2 issues its own token, both are valid
+        node2.putIfAbsent("admin", account("another-token".toCharArray(), "admin"));
+        assertEquals(2, docs.size());
+        assertNotNull(node1.verify("admin", TOKEN));
+        assertNotNull(node1.verify("admin", "another-token".toCharArray()));
+    }
+
+    @Test
+    public void testExpired() {
+        var roles = new BsonArray();
+        roles.add(new BsonString("admin"));
+
+        docs.put(MongoTokenStore.digest(TOKEN), new BsonDocument("_id", new BsonString(MongoTokenStore.digest(TOKEN)))
+                .append("account", new BsonString("admin"))
+                .append("roles", roles)
+                .append("expireAt", new BsonDateTime(System.currentTimeMillis() - 1_000)));
+
+        // not yet removed by the TTL monitor
+        assertNull(node().verify("admin", TOKEN));
+    }
+
+    @Test
+    public void testUpdate() {
+        var node1 = node();
+        var node2 = node();
+
+        node1.putIfAbsent("admin", account(TOKEN, "admin"));
+        node2.verify("admin", TOKEN);
+
+        node2.update("admin", Set.of("admin", "user"));
+
+        assertEquals(Set.of("admin", "user"), node2.verify("admin", TOKEN).getRoles());
+        assertEquals(Set.of("admin", "user"), node()
+                .verify("admin", TOKEN).getRoles());
+    }
+
+    @Test
+    public void testInvalidate() {
+        var node1 = node();
+
+        node1.putIfAbsent("admin", account(TOKEN, "admin"));
+        node1.invalidate("admin");
+
+        assertEquals(0, docs.size());
+        assertNull(node1.get("admin"));
+        assertNull(node1.verify("admin", TOKEN));
+    }
+}